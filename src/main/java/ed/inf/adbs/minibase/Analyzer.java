@@ -0,0 +1,55 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.utils.DatabaseCatalog;
+import ed.inf.adbs.minibase.utils.TableStatistics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the statistics of the relations of a database (ANALYZE)
+ *
+ */
+public class Analyzer {
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: Analyzer database_dir");
+            return;
+        }
+
+        analyze(args[0]);
+    }
+
+    /**
+     * Scans every relation in schema.txt once and writes the number of rows, the number of
+     * distinct values of every column and the minimum, maximum and histogram of every integer
+     * column to the statistics file next to schema.txt. Relations without a CSV file or binary
+     * column files are skipped.
+     *
+     * @param databaseDir path to database directory
+     */
+    public static void analyze(String databaseDir) {
+        DatabaseCatalog catalog = DatabaseCatalog.getCatalog(databaseDir);
+        List<String> lines = new ArrayList<>();
+
+        try {
+            for (String line : Files.readAllLines(Paths.get(databaseDir, "schema.txt"))) {
+                if (line.trim().isEmpty()) continue;
+                String name = line.split(" ")[0];
+                if (!new File(catalog.getFilePath(name)).isFile() && !catalog.hasColumnarFiles(name)) continue;
+
+                lines.addAll(TableStatistics.analyze(catalog, name).format(name));
+            }
+
+            Files.write(Paths.get(databaseDir, DatabaseCatalog.STATISTICS_FILE), lines);
+        } catch (IOException e) {
+            System.err.println("Exception occurred during analysis");
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.Query;
+import ed.inf.adbs.minibase.operators.MorselOperator;
+import ed.inf.adbs.minibase.operators.Operator;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import ed.inf.adbs.minibase.utils.Config;
+import ed.inf.adbs.minibase.utils.QueryPlan;
+import ed.inf.adbs.minibase.utils.TupleBatch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compares the interpreted operators, the fused pipelines and the morsel-driven executor on a
+ * directory of queries
+ *
+ */
+public class Benchmark {
+    /** Engines to compare, as values of the Config.ENGINE property */
+    private static final String[] ENGINES = {"interpreter", "fused", "morsel"};
+    /** Number of runs of every query that are not timed */
+    private static final int WARMUP_RUNS = 5;
+
+    public static void main(String[] args) {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: Benchmark database_dir query_dir [runs]");
+            return;
+        }
+
+        int runs = args.length == 3 ? Integer.parseInt(args[2]) : 20;
+        benchmark(args[0], args[1], runs);
+    }
+
+    /**
+     * Evaluates every query file in the query directory with each engine, and prints the
+     * median time of the timed runs and the number of result tuples. The results of a query
+     * are read and counted, but not written to file. The results of every engine are compared
+     * with those of the first engine in an extra run that is not timed.
+     *
+     * @param databaseDir path to database directory
+     * @param queryDir path to directory with query files
+     * @param runs number of timed runs of every query with each engine
+     */
+    public static void benchmark(String databaseDir, String queryDir, int runs) {
+        benchmark(databaseDir, queryDir, runs, Config.ENGINE, ENGINES);
+    }
+
+    /**
+     * Evaluates every query file in the query directory with each value of a configuration
+     * property, and prints the median time of the timed runs and the number of result tuples.
+     * Values whose sorted results differ from those of the first value are reported.
+     *
+     * @param databaseDir path to database directory
+     * @param queryDir path to directory with query files
+     * @param runs number of timed runs of every query with each value
+     * @param property configuration property to vary (see Config)
+     * @param values values of the property to compare
+     */
+    public static void benchmark(String databaseDir, String queryDir, int runs, String property, String[] values) {
+        File[] files = new File(queryDir).listFiles((dir, name) -> name.endsWith(".txt"));
+        if (files == null) {
+            System.err.println("Query directory does not exist: " + queryDir);
+            return;
+        }
+        Arrays.sort(files);
+
+        System.out.printf("%-20s", "query");
+        for (String value : values) {
+            System.out.printf(" %15s", value + " ms");
+        }
+        System.out.printf(" %10s%n", "tuples");
+        try {
+            for (File file : files) {
+                Query query = QueryParser.parse(file.toPath());
+                double[] medians = new double[values.length];
+                List<List<String>> results = new ArrayList<>();
+
+                for (int e = 0; e < values.length; e++) {
+                    System.setProperty(property, values[e]);
+                    long[] times = new long[runs];
+                    for (int run = -WARMUP_RUNS; run < runs; run++) {
+                        long start = System.nanoTime();
+                        evaluate(databaseDir, query);
+                        if (run >= 0) times[run] = System.nanoTime() - start;
+                    }
+                    Arrays.sort(times);
+                    medians[e] = runs == 0 ? 0 : times[runs / 2] / 1e6;
+                    results.add(collect(databaseDir, query));
+                }
+
+                System.out.printf("%-20s", file.getName());
+                for (double median : medians) {
+                    System.out.printf(" %15.3f", median);
+                }
+                System.out.printf(" %10d", results.get(0).size());
+                for (int e = 1; e < values.length; e++) {
+                    if (!results.get(e).equals(results.get(0))) {
+                        System.out.printf(" (%s differs: %d tuples)", values[e], results.get(e).size());
+                    }
+                }
+                System.out.println();
+            }
+        } catch (IOException e) {
+            System.err.println("Exception occurred during benchmark");
+            e.printStackTrace();
+        } finally {
+            System.clearProperty(property);
+        }
+    }
+
+    /**
+     * Builds the query plan for the query and reads all of its results.
+     *
+     * @param databaseDir path to database directory
+     * @param query query to evaluate
+     * @return returns the number of result tuples
+     * @throws IOException if reading a relation was unsuccessful
+     */
+    private static long evaluate(String databaseDir, Query query) throws IOException {
+        Operator root = plan(databaseDir, query);
+        long tuples = 0;
+        TupleBatch batch = root.getNextBatch();
+        while (batch != null) {
+            tuples += batch.size();
+            batch = root.getNextBatch();
+        }
+        return tuples;
+    }
+
+    /**
+     * Builds the query plan for the query and reads all of its results as text.
+     *
+     * @param databaseDir path to database directory
+     * @param query query to evaluate
+     * @return returns the result tuples, sorted
+     * @throws IOException if reading a relation was unsuccessful
+     */
+    private static List<String> collect(String databaseDir, Query query) throws IOException {
+        Operator root = plan(databaseDir, query);
+        List<String> tuples = new ArrayList<>();
+        TupleBatch batch = root.getNextBatch();
+        while (batch != null) {
+            for (int i = 0; i < batch.size(); i++) {
+                tuples.add(batch.getTuple(i).toString());
+            }
+            batch = root.getNextBatch();
+        }
+        Collections.sort(tuples);
+        return tuples;
+    }
+
+    /**
+     * Builds the query plan for the query with the current configuration.
+     *
+     * @param databaseDir path to database directory
+     * @param query query to evaluate
+     * @return returns the root operator, wrapped in a MorselOperator for the morsel engine
+     */
+    private static Operator plan(String databaseDir, Query query) {
+        QueryPlan.reset();
+        QueryPlan.getQueryPlan(databaseDir, query);
+        Operator root = QueryPlan.getRoot();
+        if (Config.useMorselExecution()) root = new MorselOperator(root);
+        return root;
+    }
+}
@@ -0,0 +1,158 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.Constant;
+import ed.inf.adbs.minibase.base.IntegerConstant;
+import ed.inf.adbs.minibase.utils.DatabaseCatalog;
+import ed.inf.adbs.minibase.utils.MappedCSVReader;
+import ed.inf.adbs.minibase.utils.StringDictionary;
+import ed.inf.adbs.minibase.utils.Tuple;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts the CSV files of a database to the binary columnar format
+ *
+ */
+public class ColumnarConverter {
+    /** Suffix of the files that are written before they replace the columnar files */
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: ColumnarConverter database_dir");
+            return;
+        }
+
+        convert(args[0]);
+    }
+
+    /**
+     * Converts every relation in schema.txt to one binary file per column, and writes the
+     * header file (table name, number of rows and column types) next to schema.txt. Relations
+     * without a CSV file are skipped.
+     *
+     * The files are first written to temporary files, which only replace the column files and
+     * the header once every relation has been converted. If the conversion fails the temporary
+     * files are deleted, so the previous columnar files (if any) stay complete and consistent
+     * with their header.
+     *
+     * @param databaseDir path to database directory
+     */
+    public static void convert(String databaseDir) {
+        DatabaseCatalog catalog = DatabaseCatalog.getCatalog(databaseDir);
+        List<String> header = new ArrayList<>();
+        List<Path> written = new ArrayList<>();
+
+        try {
+            for (String line : Files.readAllLines(Paths.get(databaseDir, "schema.txt"))) {
+                if (line.trim().isEmpty()) continue;
+                String name = line.split(" ")[0];
+                if (!new File(catalog.getFilePath(name)).isFile()) continue;
+
+                long rows = convertRelation(catalog, name, written);
+                StringBuilder s = new StringBuilder(name).append(" ").append(rows);
+                for (Class<? extends Constant> type : catalog.getSchema(name)) {
+                    s.append(type == IntegerConstant.class ? " int" : " string");
+                }
+                header.add(s.toString());
+            }
+
+            Path headerFile = temporary(Paths.get(databaseDir, DatabaseCatalog.COLUMNAR_HEADER));
+            written.add(headerFile);
+            Files.write(headerFile, header);
+
+            // the header is the last file in the list, so it is only replaced after the columns
+            for (Path file : written) {
+                Files.move(file, target(file), StandardCopyOption.REPLACE_EXISTING);
+            }
+            written.clear();
+        } catch (IOException e) {
+            System.err.println("Exception occurred during conversion");
+            e.printStackTrace();
+        } finally {
+            for (Path file : written) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    System.err.println("Could not delete " + file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts a single relation into temporary column files. Integer values are written as
+     * 4-byte ints and string values as a 4-byte length followed by the UTF-8 bytes. The streams
+     * are closed even if a row cannot be read.
+     *
+     * @param catalog database catalog
+     * @param name name of the relation
+     * @param written list that the paths of the temporary files are added to
+     * @return returns the number of rows written
+     * @throws IOException if reading or writing a file was unsuccessful
+     */
+    private static long convertRelation(DatabaseCatalog catalog, String name, List<Path> written) throws IOException {
+        List<Class<? extends Constant>> schema = catalog.getSchema(name);
+        Files.createDirectories(Paths.get(catalog.getColumnPath(name, 0)).getParent());
+
+        DataOutputStream[] columns = new DataOutputStream[schema.size()];
+        try {
+            for (int i = 0; i < schema.size(); i++) {
+                Path file = temporary(Paths.get(catalog.getColumnPath(name, i)));
+                written.add(file);
+                columns[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile())));
+            }
+
+            long rows = 0;
+            MappedCSVReader reader = new MappedCSVReader(catalog.getFilePath(name), schema, catalog.getLayout(name));
+            Tuple tuple = reader.readTuple();
+            while (tuple != null) {
+                for (int i = 0; i < schema.size(); i++) {
+                    if (!tuple.isString(i)) {
+                        columns[i].writeInt((int) tuple.get(i));
+                    } else {
+                        String value = StringDictionary.getDictionary().decode(tuple.get(i));
+                        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                        columns[i].writeInt(bytes.length);
+                        columns[i].write(bytes);
+                    }
+                }
+                rows++;
+                tuple = reader.readTuple();
+            }
+            return rows;
+        } finally {
+            for (DataOutputStream column : columns) {
+                if (column != null) column.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the path of the temporary file that is written before a file is replaced.
+     *
+     * @param file path of the file
+     * @return returns the path of the temporary file
+     */
+    private static Path temporary(Path file) {
+        return file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+    }
+
+    /**
+     * Returns the path of the file that a temporary file replaces.
+     *
+     * @param temporary path of the temporary file
+     * @return returns the path of the file
+     */
+    private static Path target(Path temporary) {
+        String name = temporary.getFileName().toString();
+        return temporary.resolveSibling(name.substring(0, name.length() - TEMPORARY_SUFFIX.length()));
+    }
+}
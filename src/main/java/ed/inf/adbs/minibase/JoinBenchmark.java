@@ -0,0 +1,96 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.utils.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares binary join plans with the Leapfrog Triejoin on synthetic triangle queries
+ *
+ * The generated database has three relations R, S and T with the worst case for binary joins:
+ * every relation holds the pairs (0, i) and (i, 0) for i from 0 to n, so joining any two of
+ * them gives n * n intermediate tuples, while the triangle query only has about 3 * n results.
+ * It also has a relation E with the edges of a random graph, for the triangles of a graph
+ * without such skew.
+ */
+public class JoinBenchmark {
+    /** Values of the Config.JOIN property to compare */
+    private static final String[] JOINS = {"binary", "leapfrog"};
+    /** Triangle queries, as file name and query */
+    private static final String[][] QUERIES = {
+            {"triangle.txt", "Q(x, y, z) :- R(x, y), S(y, z), T(z, x)"},
+            {"triangle_count.txt", "Q(SUM(1)) :- R(x, y), S(y, z), T(z, x)"},
+            {"graph_triangle_count.txt", "Q(SUM(1)) :- E(x, y), E(y, z), E(z, x)"},
+    };
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: JoinBenchmark output_dir [n] [runs]");
+            return;
+        }
+
+        int n = args.length >= 2 ? Integer.parseInt(args[1]) : 2000;
+        int runs = args.length == 3 ? Integer.parseInt(args[2]) : 5;
+        try {
+            generate(args[0], n);
+        } catch (IOException e) {
+            System.err.println("Exception occurred while generating the database");
+            e.printStackTrace();
+            return;
+        }
+        Benchmark.benchmark(args[0], args[0] + "/queries", runs, Config.JOIN, JOINS);
+    }
+
+    /**
+     * Writes the database with the relations R, S, T and E, and the triangle queries.
+     *
+     * @param directory path to the directory of the database
+     * @param n number of pairs (0, i) and (i, 0) in R, S and T
+     * @throws IOException if a file could not be written
+     */
+    public static void generate(String directory, int n) throws IOException {
+        File files = new File(directory, "files");
+        File queries = new File(directory, "queries");
+        if (!files.isDirectory() && !files.mkdirs()) throw new IOException("Could not create " + files);
+        if (!queries.isDirectory() && !queries.mkdirs()) throw new IOException("Could not create " + queries);
+
+        try (PrintWriter schema = new PrintWriter(new File(directory, "schema.txt"))) {
+            for (String name : new String[]{"R", "S", "T", "E"}) {
+                schema.println(name + " int int");
+            }
+        }
+
+        for (String name : new String[]{"R", "S", "T"}) {
+            try (PrintWriter relation = new PrintWriter(new File(files, name + ".csv"))) {
+                relation.println("0, 0");
+                for (int i = 1; i <= n; i++) {
+                    relation.println("0, " + i);
+                    relation.println(i + ", 0");
+                }
+            }
+        }
+
+        // a random graph with about 10 * n edges between 2 * n vertices
+        Random random = new Random(42);
+        Set<String> edges = new LinkedHashSet<>();
+        while (edges.size() < 10 * n) {
+            edges.add(random.nextInt(2 * n) + ", " + random.nextInt(2 * n));
+        }
+        try (PrintWriter relation = new PrintWriter(new File(files, "E.csv"))) {
+            for (String edge : edges) {
+                relation.println(edge);
+            }
+        }
+
+        for (String[] query : QUERIES) {
+            try (PrintWriter file = new PrintWriter(new File(queries, query[0]))) {
+                file.println(query[1]);
+            }
+        }
+    }
+}
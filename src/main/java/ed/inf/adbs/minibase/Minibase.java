@@ -3,7 +3,10 @@ package ed.inf.adbs.minibase;
 import ed.inf.adbs.minibase.base.Atom;
 import ed.inf.adbs.minibase.base.Query;
 import ed.inf.adbs.minibase.base.Head;
+import ed.inf.adbs.minibase.operators.MorselOperator;
+import ed.inf.adbs.minibase.operators.Operator;
 import ed.inf.adbs.minibase.parser.QueryParser;
+import ed.inf.adbs.minibase.utils.Config;
 import ed.inf.adbs.minibase.utils.QueryPlan;
 import ed.inf.adbs.minibase.utils.WriteCSV;
 
@@ -36,7 +39,8 @@ public class Minibase {
     /**
      * Method for starting the query evaluation. First parses the query and initialises
      * the query planner and file writer, and then peforms the query by calling dump()
-     * to print the results to file.
+     * to print the results to file. With -Dminibase.engine=morsel the plan is evaluated by the
+     * morsel-driven executor instead of the iterator engine.
      *
      * @param databaseDir path to database directory
      * @param inputFile path to input file
@@ -45,10 +49,12 @@ public class Minibase {
     public static void evaluateCQ(String databaseDir, String inputFile, String outputFile) {
         try {
             Query query = QueryParser.parse(Paths.get(inputFile));
-            QueryPlan plan = QueryPlan.getQueryPlan(databaseDir,query);
+            QueryPlan.getQueryPlan(databaseDir,query);
             WriteCSV writer = WriteCSV.getWriteCSV(outputFile);
 
-            plan.getRoot().dump();
+            Operator root = QueryPlan.getRoot();
+            if (Config.useMorselExecution()) root = new MorselOperator(root);
+            root.dump();
 
             writer.closeWriter();
         } catch (IOException ioe) {
@@ -0,0 +1,144 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.utils.CachedRelation;
+import ed.inf.adbs.minibase.utils.RelationCache;
+import ed.inf.adbs.minibase.utils.Tuple;
+import ed.inf.adbs.minibase.utils.TupleBatch;
+
+import java.io.IOException;
+
+/**
+ * Class for scanning a relation through the RelationCache. The child is a scan operator. The
+ * first time the relation is read, all batches of the child are collected and added to the
+ * cache, and every scan (including the scans after a reset) is then served from memory.
+ *
+ * If the relation is larger than the budget of the cache, the child is reset and the relation
+ * is streamed from the child as if the cache did not exist.
+ */
+public class CachedScanOperator extends Operator {
+    /** Scan operator that reads the relation from file */
+    private final Operator child;
+    /** Path of the file read by the child, used as the cache key */
+    private final String path;
+    /** Modification time of the file read by the child */
+    private final long lastModified;
+    /** The relation in memory, null before the first read or if the relation is streamed */
+    private CachedRelation relation;
+    /** Whether the relation is streamed from the child instead of served from memory */
+    private boolean streaming;
+    /** Index of the next batch to return */
+    private int nextBatch = 0;
+    /** Batch that getNextTuple() returns rows from */
+    private TupleBatch tupleBatch;
+    /** Position in the selection vector of the next row getNextTuple() returns */
+    private int tupleRow;
+
+    /**
+     * Constructor for the CachedScanOperator class.
+     *
+     * @param child scan operator that reads the relation from file
+     * @param path path of the file read by the child
+     * @param lastModified modification time of the file
+     * @param estimatedBytes estimated size of the relation in memory, if it does not fit in the
+     *                       cache the relation is streamed straight away
+     */
+    public CachedScanOperator(Operator child, String path, long lastModified, long estimatedBytes) {
+        this.child = child;
+        this.path = path;
+        this.lastModified = lastModified;
+        this.streaming = !RelationCache.getCache().fits(estimatedBytes);
+    }
+
+    /**
+     * Method for getting the next tuple of the relation.
+     *
+     * @return returns a tuple from the relation
+     * @throws IOException throws an error if reading from file was unsuccessful
+     */
+    @Override
+    public Tuple getNextTuple() throws IOException {
+        if (!streaming && relation == null) load();
+        if (streaming) return child.getNextTuple();
+
+        while (tupleBatch == null || tupleRow >= tupleBatch.size()) {
+            if (nextBatch >= relation.getBatchCount()) return null;
+            tupleBatch = relation.getBatch(nextBatch++);
+            tupleRow = 0;
+        }
+        return tupleBatch.getTuple(tupleRow++);
+    }
+
+    /**
+     * Method for getting the next batch of the relation.
+     *
+     * @return returns a batch of tuples from the relation, or null after the last batch
+     * @throws IOException throws an error if reading from file was unsuccessful
+     */
+    @Override
+    public TupleBatch getNextBatch() throws IOException {
+        if (!streaming && relation == null) load();
+        if (streaming) return child.getNextBatch();
+
+        if (nextBatch >= relation.getBatchCount()) return null;
+        return relation.getBatch(nextBatch++);
+    }
+
+    /**
+     * Method for getting the relation from the cache, or reading it from the child and adding it
+     * to the cache. Switches to streaming if the relation turns out to be larger than the budget.
+     *
+     * @throws IOException throws an error if reading from file was unsuccessful
+     */
+    private void load() throws IOException {
+        RelationCache cache = RelationCache.getCache();
+        relation = cache.get(path, lastModified);
+        if (relation != null) return;
+
+        CachedRelation loaded = new CachedRelation();
+        TupleBatch batch = child.getNextBatch();
+        while (batch != null) {
+            loaded.add(batch);
+            if (!cache.fits(loaded.getBytes())) {
+                streaming = true;
+                child.reset();
+                return;
+            }
+            batch = child.getNextBatch();
+        }
+
+        cache.put(path, lastModified, loaded);
+        relation = loaded;
+    }
+
+    /**
+     * Method for resetting the CachedScanOperator. The next call will start at the first batch
+     * of the relation.
+     */
+    @Override
+    public void reset() {
+        nextBatch = 0;
+        tupleBatch = null;
+        if (streaming) child.reset();
+    }
+
+    /**
+     * Method for retrieving the layout of the scanned relation.
+     *
+     * @return returns the layout of the child
+     */
+    @Override
+    public boolean[] getLayout() {
+        return child.getLayout();
+    }
+
+    /**
+     * Method for retrieving the base RelationalAtom
+     *
+     * @return returns the base RelationalAtom
+     */
+    @Override
+    public RelationalAtom getAtom() {
+        return child.getAtom();
+    }
+}
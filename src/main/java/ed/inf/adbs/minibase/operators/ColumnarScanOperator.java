@@ -0,0 +1,213 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.base.Constant;
+import ed.inf.adbs.minibase.base.IntegerConstant;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.utils.ColumnReader;
+import ed.inf.adbs.minibase.utils.DatabaseCatalog;
+import ed.inf.adbs.minibase.utils.Predicate;
+import ed.inf.adbs.minibase.utils.StringDictionary;
+import ed.inf.adbs.minibase.utils.Tuple;
+import ed.inf.adbs.minibase.utils.TupleBatch;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Class for scan operations over the binary columnar format of a relation. Only the column
+ * files of the columns that the query uses are read. The fields of the other columns are
+ * left as 0 in the returned tuples, so operators above the scan must not access them.
+ *
+ * The scan can also be given a predicate pushed down from the selections of the query. The
+ * columns that the predicate reads are read first and the batch is filtered, so the strings of
+ * the other columns are only decoded for the rows that satisfy the predicate.
+ */
+public class ColumnarScanOperator extends Operator {
+    /** Schema for the table that will be scanned */
+    private final List<Class<? extends Constant>> schema;
+    /** Tuple layout of the table that will be scanned */
+    private final boolean[] layout;
+    /** Readers for the used columns, null for the columns that are not read */
+    private final ColumnReader[] readers;
+    /** Predicate that the returned tuples satisfy, null if every row is returned */
+    private final Predicate predicate;
+    /** Columns that the predicate reads */
+    private final boolean[] predicateColumns;
+    /** Number of rows in the table */
+    private final long rowCount;
+    /** Number of rows read since the start (or the last reset) */
+    private long row;
+    /** The base Relational Atom that "prompted" the file scan */
+    private final RelationalAtom atom;
+
+    /**
+     * Constructor for the ColumnarScanOperator class that returns every row.
+     *
+     * @param fileName name of the relation
+     * @param atom base RelationalAtom
+     * @param usedColumns which columns of the relation are used by the query
+     * @throws IOException if the column files could not be opened
+     */
+    public ColumnarScanOperator(String fileName, RelationalAtom atom, boolean[] usedColumns) throws IOException {
+        this(fileName, atom, usedColumns, null);
+    }
+
+    /**
+     * Constructor for the ColumnarScanOperator class. Opens the column files of the used columns.
+     *
+     * @param fileName name of the relation
+     * @param atom base RelationalAtom
+     * @param usedColumns which columns of the relation are used by the query
+     * @param predicate predicate that the returned tuples must satisfy, or null to return every
+     *                  row. The columns it reads must be used columns
+     * @throws IOException if the column files could not be opened
+     */
+    public ColumnarScanOperator(String fileName, RelationalAtom atom, boolean[] usedColumns, Predicate predicate) throws IOException {
+        DatabaseCatalog catalog = DatabaseCatalog.getCatalog();
+        if (!catalog.hasColumnarFiles(fileName)) {
+            throw new IllegalArgumentException("No columnar files for relation " + fileName);
+        }
+        this.schema = catalog.getSchema(fileName);
+        this.layout = catalog.getLayout(fileName);
+        this.rowCount = catalog.getColumnarRowCount(fileName);
+        this.readers = new ColumnReader[schema.size()];
+        for (int i = 0; i < schema.size(); i++) {
+            if (usedColumns[i]) readers[i] = new ColumnReader(catalog.getColumnPath(fileName, i));
+        }
+        this.predicate = predicate;
+        this.predicateColumns = new boolean[schema.size()];
+        if (predicate != null) {
+            for (int slot : predicate.getSlots()) {
+                predicateColumns[slot] = true;
+            }
+        }
+        this.atom = atom;
+    }
+
+    /**
+     * Method for reading the next tuple from the column files that satisfies the predicate.
+     *
+     * @return returns a tuple from the database
+     * @throws IOException throws an error if reading from file was unsuccessful
+     */
+    @Override
+    public Tuple getNextTuple() throws IOException {
+        while (row < rowCount) {
+            row++;
+
+            long[] fields = new long[readers.length];
+            for (int i = 0; i < readers.length; i++) {
+                if (readers[i] == null) continue;
+                if (schema.get(i) == IntegerConstant.class) {
+                    fields[i] = readers[i].readInt();
+                } else {
+                    fields[i] = StringDictionary.getDictionary().encode(readers[i].readString());
+                }
+            }
+            Tuple tuple = new Tuple(fields, layout);
+            if (predicate == null || predicate.test(tuple)) return tuple;
+        }
+        return null;
+    }
+
+    /**
+     * Method for reading the next batch of tuples that satisfy the predicate. Each used column
+     * is read straight into the column of the batch: first the columns of the predicate, then
+     * the other columns, whose strings are only decoded for the rows that satisfy the predicate.
+     * Batches without such rows are skipped.
+     *
+     * @return returns a batch of tuples from the database, or null after the last row
+     * @throws IOException throws an error if reading from file was unsuccessful
+     */
+    @Override
+    public TupleBatch getNextBatch() throws IOException {
+        while (row < rowCount) {
+            int rows = (int) Math.min(TupleBatch.CAPACITY, rowCount - row);
+            row += rows;
+
+            TupleBatch batch = new TupleBatch(layout);
+            for (int r = 0; r < rows; r++) {
+                batch.nextRow();
+            }
+            for (int i = 0; i < readers.length; i++) {
+                if (readers[i] != null && predicateColumns[i]) readColumn(i, batch, rows, null);
+            }
+
+            boolean[] selected = null;
+            if (predicate != null) {
+                batch.setSize(predicate.filter(batch));
+                if (batch.size() < rows) {
+                    selected = new boolean[rows];
+                    for (int r = 0; r < batch.size(); r++) {
+                        selected[batch.getSelection()[r]] = true;
+                    }
+                }
+            }
+            for (int i = 0; i < readers.length; i++) {
+                if (readers[i] != null && !predicateColumns[i]) readColumn(i, batch, rows, selected);
+            }
+
+            if (batch.size() > 0) return batch;
+        }
+        return null;
+    }
+
+    /**
+     * Helper method for reading the next rows of a column into a batch.
+     *
+     * @param i index of the column
+     * @param batch batch to read the values into
+     * @param rows number of rows to read
+     * @param selected rows whose strings are decoded, or null to decode every row
+     * @throws IOException throws an error if reading from file was unsuccessful
+     */
+    private void readColumn(int i, TupleBatch batch, int rows, boolean[] selected) throws IOException {
+        long[] column = batch.getColumn(i);
+        if (schema.get(i) == IntegerConstant.class) {
+            for (int r = 0; r < rows; r++) column[r] = readers[i].readInt();
+        } else {
+            for (int r = 0; r < rows; r++) {
+                if (selected == null || selected[r]) {
+                    column[r] = StringDictionary.getDictionary().encode(readers[i].readString());
+                } else {
+                    readers[i].skipString();
+                }
+            }
+        }
+    }
+
+    /**
+     * Method for resetting the ColumnarScanOperator. The next getNextTuple() call will start
+     * reading at the beginning of the column files.
+     */
+    @Override
+    public void reset() {
+        try {
+            for (ColumnReader reader : readers) {
+                if (reader != null) reader.reset();
+            }
+            row = 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Method for retrieving the layout of the scanned table.
+     *
+     * @return returns the layout of the table
+     */
+    @Override
+    public boolean[] getLayout() {
+        return layout;
+    }
+
+    /**
+     * Method for retrieving the base RelationalAtom
+     *
+     * @return returns the base RelationalAtom
+     */
+    public RelationalAtom getAtom(){
+        return this.atom;
+    }
+}
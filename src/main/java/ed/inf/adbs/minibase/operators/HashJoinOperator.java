@@ -0,0 +1,102 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.base.*;
+import ed.inf.adbs.minibase.utils.Tuple;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Class for hash join operations on equality conditions.
+ *
+ * On the first call to getNextTuple() the right child is read once and stored in a hash table keyed
+ * by the values of all the equality join variables, then every tuple from the left child probes the
+ * table. Each child is therefore only read once, instead of resetting the right child for every
+ * left tuple. The join conditions that are not equalities are checked on the matches from the hash
+ * table.
+ */
+public class HashJoinOperator extends JoinOperator {
+    /** Hash table with the tuples from the right child, keyed by the values of the equality join variables */
+    private Map<Tuple, List<Tuple>> hashTable = null;
+    /** Current outer tuple */
+    private Tuple outer;
+    /** Matches in the hash table for the current outer tuple */
+    private List<Tuple> matches = Collections.emptyList();
+    /** Position of the next match to return from the matches list */
+    private int matchIndex;
+
+    /**
+     * Constructor for the HashJoinOperator class. The join conditions must include an equality.
+     *
+     * @param childLeft left child operator (probe side)
+     * @param childRight right child operator (build side)
+     * @param comparisonAtomList list of join conditions (can include non-applicable)
+     */
+    public HashJoinOperator(Operator childLeft, Operator childRight, List<ComparisonAtom> comparisonAtomList) {
+        super(childLeft, childRight, comparisonAtomList);
+        if (!isEquiJoin()) throw new IllegalArgumentException("Hash join requires an equality join condition");
+    }
+
+    /**
+     * Method for building the hash table from the right child operator.
+     *
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    private void build() throws IOException {
+        hashTable = new HashMap<>();
+        Tuple nextTuple = childRight.getNextTuple();
+        while (nextTuple != null) {
+            hashTable.computeIfAbsent(getKey(nextTuple, rightKeys), k -> new ArrayList<>()).add(nextTuple);
+            nextTuple = childRight.getNextTuple();
+        }
+    }
+
+    /**
+     * Method for getting the next joined Tuple. Returns the remaining matches for the current
+     * outer tuple first, and otherwise reads outer tuples until one has a match in the hash table
+     * that also satisfies the non-equality join conditions.
+     *
+     * @return returns a joined Tuple
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    @Override
+    public Tuple getNextTuple() throws IOException {
+        if (hashTable == null) build();
+
+        while (true) {
+            while (matchIndex < matches.size()) {
+                Tuple inner = matches.get(matchIndex++);
+                if (matchConditions(outer, inner)) {
+                    return joinTuples(outer, inner);
+                }
+            }
+
+            outer = childLeft.getNextTuple();
+            if (outer == null) return null;
+            matches = hashTable.getOrDefault(getKey(outer, leftKeys), Collections.emptyList());
+            matchIndex = 0;
+        }
+    }
+
+    /**
+     * Method for resetting the HashJoinOperator. The hash table is kept, so only the left
+     * child has to be read again.
+     */
+    @Override
+    public void reset() {
+        childLeft.reset();
+        matches = Collections.emptyList();
+        matchIndex = 0;
+    }
+
+    /**
+     * Setter for the right child operation. The hash table is rebuilt from the new child.
+     *
+     * @param childRight right child operation
+     */
+    @Override
+    public void setChildRight(Operator childRight) {
+        super.setChildRight(childRight);
+        hashTable = null;
+    }
+}
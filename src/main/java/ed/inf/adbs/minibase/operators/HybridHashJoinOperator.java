@@ -0,0 +1,422 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.base.*;
+import ed.inf.adbs.minibase.utils.Config;
+import ed.inf.adbs.minibase.utils.GroupTable;
+import ed.inf.adbs.minibase.utils.Tuple;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Class for hash join operations on equality conditions whose build side may not fit in memory.
+ *
+ * The tuples of the right child are hash-partitioned by the values of the equality join variables
+ * into PARTITIONS partitions, each with its own hash table. While the estimated size of the tables
+ * is larger than the memory budget (see Config.getJoinBudget()), the largest partition that is
+ * still in memory is written to a temporary spill file, and the later tuples of that partition are
+ * written to the file as well. If the build side fits, no partition is spilled and the join works
+ * like a HashJoinOperator.
+ *
+ * The tuples of the left child probe the tables of the partitions that stayed in memory
+ * straight away, and the tuples of spilled partitions are written to a spill file of their
+ * partition. Once the left child is consumed, every spilled partition is joined on its own from
+ * its two spill files, with a new partitioning of its tuples, so a partition that is still too
+ * large (e.g. because of skew) is split again. After GroupTable.PARTITION_LEVELS levels the
+ * partition is joined in memory regardless of its size.
+ *
+ * The join returns the same tuples as a HashJoinOperator, but the matches of the spilled
+ * partitions come after the matches of the partitions that stayed in memory.
+ */
+public class HybridHashJoinOperator extends JoinOperator {
+    /** Number of partitions of the build side at every level */
+    private static final int PARTITIONS = 16;
+    /** Estimated number of bytes per tuple in a hash table, not counting the values */
+    private static final long TUPLE_BYTES = 96;
+
+    /** Largest number of bytes the hash tables of the build side may use */
+    private final long budget;
+    /** Join of the tuples of the children, null until the first call of getNextTuple() */
+    private Pass pass = null;
+
+    /**
+     * Constructor for the HybridHashJoinOperator class. The join conditions must include an
+     * equality.
+     *
+     * @param childLeft left child operator (probe side)
+     * @param childRight right child operator (build side)
+     * @param comparisonAtomList list of join conditions (can include non-applicable)
+     */
+    public HybridHashJoinOperator(Operator childLeft, Operator childRight, List<ComparisonAtom> comparisonAtomList) {
+        super(childLeft, childRight, comparisonAtomList);
+        if (!isEquiJoin()) throw new IllegalArgumentException("Hash join requires an equality join condition");
+        this.budget = Config.getJoinBudget();
+    }
+
+    /**
+     * Method for estimating the number of bytes the hash tables use for a build side.
+     *
+     * @param columns number of columns of the build side
+     * @param rows number of tuples of the build side
+     * @return returns the estimated number of bytes
+     */
+    public static long estimateBytes(int columns, long rows) {
+        return rows * (TUPLE_BYTES + 8L * columns);
+    }
+
+    /**
+     * Method for getting the next joined Tuple.
+     *
+     * @return returns a joined Tuple
+     * @throws IOException throws an error if reading from file at a leaf node or from a spill
+     * file was unsuccessful
+     */
+    @Override
+    public Tuple getNextTuple() throws IOException {
+        if (pass == null) {
+            pass = new Pass(childRight::getNextTuple, childLeft::getNextTuple, 0);
+        }
+        return pass.next();
+    }
+
+    /**
+     * Method for resetting the HybridHashJoinOperator. If no partition was spilled the hash
+     * tables are kept, so only the left child has to be read again, as in HashJoinOperator.
+     * Otherwise the spill files of the left child have been consumed, and both children are
+     * read again.
+     */
+    @Override
+    public void reset() {
+        childLeft.reset();
+        if (pass != null && !pass.reprobe(childLeft::getNextTuple)) {
+            pass.discard();
+            pass = null;
+            childRight.reset();
+        }
+    }
+
+    /**
+     * Setter for the right child operation. The hash tables are rebuilt from the new child.
+     *
+     * @param childRight right child operation
+     */
+    @Override
+    public void setChildRight(Operator childRight) {
+        super.setChildRight(childRight);
+        if (pass != null) pass.discard();
+        pass = null;
+    }
+
+    /**
+     * Interface for the inputs of a pass: either a child operator or a spill file.
+     */
+    private interface TupleSource {
+        /**
+         * Method for reading the next tuple of the input.
+         *
+         * @return returns the next tuple, or null at the end of the input
+         * @throws IOException throws an error if reading the input was unsuccessful
+         */
+        Tuple next() throws IOException;
+    }
+
+    /**
+     * Class for the join of a build input and a probe input at one partitioning level. The
+     * spilled partitions are joined by passes at the next level.
+     */
+    private class Pass {
+        /** Tuples of the build side */
+        private final TupleSource build;
+        /** Tuples of the probe side */
+        private TupleSource probe;
+        /** Partitioning level */
+        private final int level;
+        /** Largest number of bytes the hash tables of this pass may use */
+        private final long passBudget;
+        /** Hash tables of the partitions, null for spilled partitions */
+        private final List<Map<Tuple, List<Tuple>>> tables = new ArrayList<>(PARTITIONS);
+        /** Estimated number of bytes of the hash table of every partition */
+        private final long[] bytes = new long[PARTITIONS];
+        /** Spill files of the build side, null for partitions that stayed in memory */
+        private final SpillFile[] buildFiles = new SpillFile[PARTITIONS];
+        /** Spill files of the probe side, null for partitions without spilled probe tuples */
+        private final SpillFile[] probeFiles = new SpillFile[PARTITIONS];
+        /** Whether the build side has been read */
+        private boolean built = false;
+        /** Whether the probe side has been read */
+        private boolean probed = false;
+        /** Index of the next spilled partition to join */
+        private int nextPartition = 0;
+        /** Pass that joins the current spilled partition */
+        private Pass child = null;
+        /** Current outer tuple */
+        private Tuple outer;
+        /** Matches in the hash table for the current outer tuple */
+        private List<Tuple> matches = Collections.emptyList();
+        /** Position of the next match to return from the matches list */
+        private int matchIndex;
+
+        /**
+         * Constructor for a pass.
+         *
+         * @param build tuples of the build side
+         * @param probe tuples of the probe side
+         * @param level partitioning level
+         */
+        private Pass(TupleSource build, TupleSource probe, int level) {
+            this.build = build;
+            this.probe = probe;
+            this.level = level;
+            this.passBudget = level + 1 < GroupTable.PARTITION_LEVELS ? budget : Long.MAX_VALUE;
+            for (int p = 0; p < PARTITIONS; p++) {
+                tables.add(new HashMap<>());
+            }
+        }
+
+        /**
+         * Method for reading the build side into the hash tables and spill files of the
+         * partitions. Whenever the tables are larger than the budget the largest partition in
+         * memory is spilled.
+         *
+         * @throws IOException throws an error if reading the build side or writing a spill file
+         * was unsuccessful
+         */
+        private void build() throws IOException {
+            built = true;
+            long total = 0;
+            Tuple tuple = build.next();
+            while (tuple != null) {
+                Tuple key = getKey(tuple, rightKeys);
+                int p = GroupTable.partition(key.hashCode(), PARTITIONS, level);
+                if (tables.get(p) == null) {
+                    buildFiles[p].write(tuple);
+                } else {
+                    tables.get(p).computeIfAbsent(key, k -> new ArrayList<>()).add(tuple);
+                    long size = TUPLE_BYTES + 8L * tuple.size();
+                    bytes[p] += size;
+                    total += size;
+                    while (total > passBudget) {
+                        total -= spillLargest();
+                    }
+                }
+                tuple = build.next();
+            }
+            for (SpillFile file : buildFiles) {
+                if (file != null) file.finish();
+            }
+        }
+
+        /**
+         * Helper method for writing the largest partition that is still in memory to a spill
+         * file.
+         *
+         * @return returns the estimated number of bytes freed
+         * @throws IOException throws an error if writing the spill file was unsuccessful
+         */
+        private long spillLargest() throws IOException {
+            int largest = -1;
+            for (int p = 0; p < PARTITIONS; p++) {
+                if (tables.get(p) != null && (largest < 0 || bytes[p] > bytes[largest])) largest = p;
+            }
+            SpillFile file = new SpillFile(childRight.getLayout());
+            for (List<Tuple> tuples : tables.get(largest).values()) {
+                for (Tuple tuple : tuples) {
+                    file.write(tuple);
+                }
+            }
+            buildFiles[largest] = file;
+            tables.set(largest, null);
+            long freed = bytes[largest];
+            bytes[largest] = 0;
+            return freed;
+        }
+
+        /**
+         * Method for getting the next joined Tuple of the pass. The probe side is joined with the
+         * partitions in memory first, then the spilled partitions are joined one at a time.
+         *
+         * @return returns a joined Tuple, or null if the pass has no more results
+         * @throws IOException throws an error if reading an input or a spill file was
+         * unsuccessful
+         */
+        private Tuple next() throws IOException {
+            if (!built) build();
+
+            while (true) {
+                while (matchIndex < matches.size()) {
+                    Tuple inner = matches.get(matchIndex++);
+                    if (matchConditions(outer, inner)) {
+                        return joinTuples(outer, inner);
+                    }
+                }
+
+                if (!probed) {
+                    outer = probe.next();
+                    matches = Collections.emptyList();
+                    matchIndex = 0;
+                    if (outer == null) {
+                        probed = true;
+                        for (SpillFile file : probeFiles) {
+                            if (file != null) file.finish();
+                        }
+                        continue;
+                    }
+                    Tuple key = getKey(outer, leftKeys);
+                    int p = GroupTable.partition(key.hashCode(), PARTITIONS, level);
+                    if (tables.get(p) != null) {
+                        matches = tables.get(p).getOrDefault(key, Collections.emptyList());
+                    } else {
+                        if (probeFiles[p] == null) probeFiles[p] = new SpillFile(childLeft.getLayout());
+                        probeFiles[p].write(outer);
+                    }
+                    continue;
+                }
+
+                if (child != null) {
+                    Tuple joined = child.next();
+                    if (joined != null) return joined;
+                    child = null;
+                }
+                if (nextPartition >= PARTITIONS) return null;
+                int p = nextPartition++;
+                if (buildFiles[p] == null) continue;
+                if (probeFiles[p] == null) {
+                    // no probe tuple can match the partition
+                    buildFiles[p].delete();
+                    buildFiles[p] = null;
+                    continue;
+                }
+                child = new Pass(buildFiles[p]::read, probeFiles[p]::read, level + 1);
+                buildFiles[p] = null;
+                probeFiles[p] = null;
+            }
+        }
+
+        /**
+         * Method for probing the hash tables again with a new probe side. Only possible if no
+         * partition was spilled, since the spill files are deleted once they are joined.
+         *
+         * @param probe tuples of the new probe side
+         * @return returns true if the pass was restarted, false if it has to be discarded
+         */
+        private boolean reprobe(TupleSource probe) {
+            if (!built) return true;
+            for (Map<Tuple, List<Tuple>> table : tables) {
+                if (table == null) return false;
+            }
+            this.probe = probe;
+            probed = false;
+            matches = Collections.emptyList();
+            matchIndex = 0;
+            return true;
+        }
+
+        /**
+         * Method for deleting the spill files of the pass and of its current child pass.
+         */
+        private void discard() {
+            if (child != null) child.discard();
+            for (int p = 0; p < PARTITIONS; p++) {
+                if (buildFiles[p] != null) buildFiles[p].delete();
+                if (probeFiles[p] != null) probeFiles[p].delete();
+            }
+        }
+    }
+
+    /**
+     * Class for a temporary file that stores the tuples of a spilled partition. The tuples are
+     * written with write(), and read back in the same order with read() after finish(). The file
+     * is deleted when it has been read to the end.
+     */
+    private static class SpillFile {
+        /** Temporary file */
+        private final File file;
+        /** Layout of the tuples */
+        private final boolean[] layout;
+        /** Stream that the tuples are written to, null after finish() */
+        private DataOutputStream output;
+        /** Stream that the tuples are read from, null until the first read() */
+        private DataInputStream input;
+
+        /**
+         * Constructor for the SpillFile class. Creates the temporary file.
+         *
+         * @param layout layout of the tuples
+         * @throws IOException throws an error if the file could not be created
+         */
+        private SpillFile(boolean[] layout) throws IOException {
+            this.layout = layout;
+            this.file = File.createTempFile("minibase-join-", ".spill");
+            file.deleteOnExit();
+            this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        }
+
+        /**
+         * Method for writing a tuple to the file.
+         *
+         * @param tuple tuple with the layout of the file
+         * @throws IOException throws an error if writing was unsuccessful
+         */
+        private void write(Tuple tuple) throws IOException {
+            for (int i = 0; i < layout.length; i++) {
+                output.writeLong(tuple.get(i));
+            }
+        }
+
+        /**
+         * Method for closing the file for writing.
+         *
+         * @throws IOException throws an error if writing was unsuccessful
+         */
+        private void finish() throws IOException {
+            if (output != null) output.close();
+            output = null;
+        }
+
+        /**
+         * Method for reading the next tuple from the file.
+         *
+         * @return returns the next tuple, or null at the end of the file
+         * @throws IOException throws an error if reading was unsuccessful
+         */
+        private Tuple read() throws IOException {
+            if (input == null) {
+                if (!file.exists()) return null;
+                input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            }
+            long[] values = new long[layout.length];
+            try {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = input.readLong();
+                }
+            } catch (EOFException e) {
+                delete();
+                return null;
+            }
+            return new Tuple(values, layout);
+        }
+
+        /**
+         * Method for closing and deleting the file.
+         */
+        private void delete() {
+            try {
+                if (output != null) output.close();
+                if (input != null) input.close();
+            } catch (IOException e) {
+                // the file is deleted regardless
+            }
+            output = null;
+            input = null;
+            if (!file.delete()) file.deleteOnExit();
+        }
+    }
+}
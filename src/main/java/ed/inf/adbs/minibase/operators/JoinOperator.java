@@ -1,6 +1,7 @@
 package ed.inf.adbs.minibase.operators;
 
 import ed.inf.adbs.minibase.base.*;
+import ed.inf.adbs.minibase.utils.JoinPredicate;
 import ed.inf.adbs.minibase.utils.Tuple;
 import ed.inf.adbs.minibase.utils.CompareUtil;
 
@@ -11,26 +12,40 @@ import java.util.List;
 /**
  * Class for join operations.
  *
- * The constructor calls parseComparisons to find the join condition, and getNextTuple() uses
- * match() to check whether the condition holds. If parseComparisons was unable to find a
- * condition, match() always returns true (cartesian product).
+ * The constructor calls parseComparisons to find the join conditions, and getNextTuple() uses
+ * match() to check whether the conditions hold. The join conditions are all variables shared by
+ * the two child operations, which must be equal, together with all the explicit conditions that
+ * compare a variable from each side. If parseComparisons was unable to find a condition, match()
+ * always returns true (cartesian product). The conditions are compiled into a JoinPredicate for
+ * the column types of the children.
  */
 public class JoinOperator extends Operator {
     /** Left child operator */
-    private Operator childLeft;
+    protected Operator childLeft;
     /** Right child operator */
-    private Operator childRight;
+    protected Operator childRight;
     /** List of join conditions */
     private final List<ComparisonAtom> comparisonAtomList;
-    /** Join condition for this join (join on explicit condition) */
-    private ComparisonAtom compareAtom;
-    /** Join condition for this join (join on variable) */
-    private Variable compareVar;
 
-    /** Index of condition variable in the childLeft operation base relation */
-    private int leftIndex;
-    /** Index of condition variable in the childRight operation base relation */
-    private int rightIndex;
+    /** Indexes of the equality join variables in the childLeft operation base relation */
+    protected int[] leftKeys;
+    /** Indexes of the equality join variables in the childRight operation base relation */
+    protected int[] rightKeys;
+    /** Join conditions that are not equalities, with the childLeft variable on the left-hand side */
+    protected List<ComparisonAtom> conditions;
+    /** Index of the left-hand side variable of each condition in the childLeft operation base relation */
+    protected int[] conditionLeft;
+    /** Index of the right-hand side variable of each condition in the childRight operation base relation */
+    protected int[] conditionRight;
+
+    /** Tuple layout of the output, built when the join conditions are parsed */
+    private boolean[] layout;
+    /** Compiled conjunction of all join conditions */
+    private JoinPredicate matcher;
+    /** Compiled conjunction of the join conditions that are not equalities */
+    private JoinPredicate conditionMatcher;
+    /** Base relational atom of the output, built when the join conditions are parsed */
+    private RelationalAtom atom;
 
     /** Current inner tuple */
     private Tuple inner;
@@ -52,44 +67,97 @@ public class JoinOperator extends Operator {
     }
 
     /**
-     * Method for finding the condition that applies to this join. If there is no explicit
-     * condition ComparisonAtom that applies, the method checks if there is a suitable
-     * variable to join on.
+     * Method for finding the conditions that apply to this join. Every variable that exists in
+     * both child operations is an equality condition. Every explicit condition ComparisonAtom
+     * with one variable from each side is also used: equalities are added to the equality keys
+     * and the remaining conditions are stored in the 'conditions' list.
      *
      * @param comparisonAtomList list of join conditions
      */
     private void parseComparisons(List<ComparisonAtom> comparisonAtomList){
+        List<Term> leftTerms = childLeft.getAtom().getTerms();
+        List<Term> rightTerms = childRight.getAtom().getTerms();
+
+        List<Term> atomTerms = new ArrayList<>(leftTerms);
+        atomTerms.addAll(rightTerms);
+        atom = new RelationalAtom(childLeft.getAtom().getName(), atomTerms);
+        boolean[] leftLayout = childLeft.getLayout();
+        boolean[] rightLayout = childRight.getLayout();
+        layout = Tuple.join(leftLayout, rightLayout);
+
+        List<Integer> leftKeyList = new ArrayList<>();
+        List<Integer> rightKeyList = new ArrayList<>();
+        conditions = new ArrayList<>();
+
+        // shared variables
+        for (Term leftTerm:leftTerms){
+            if (leftTerm instanceof Variable && rightTerms.contains(leftTerm)){
+                int leftIndex = leftTerms.indexOf(leftTerm);
+                if (!leftKeyList.contains(leftIndex)){
+                    leftKeyList.add(leftIndex);
+                    rightKeyList.add(rightTerms.indexOf(leftTerm));
+                }
+            }
+        }
+
         // check join conditions
         for (ComparisonAtom comp:comparisonAtomList){
-            if (childLeft.getAtom().getTerms().contains(comp.getTerm1())
-                    && childRight.getAtom().getTerms().contains(comp.getTerm2())) {
-                compareAtom = comp;
-                leftIndex = childLeft.getAtom().getTerms().indexOf(comp.getTerm1());
-                rightIndex = childRight.getAtom().getTerms().indexOf(comp.getTerm2());
-            } else if (childLeft.getAtom().getTerms().contains(comp.getTerm2())
-                    && childRight.getAtom().getTerms().contains(comp.getTerm1())) {
-                leftIndex = childLeft.getAtom().getTerms().indexOf(comp.getTerm2());
-                rightIndex = childRight.getAtom().getTerms().indexOf(comp.getTerm1());
+            ComparisonAtom condition = null;
+            if (leftTerms.contains(comp.getTerm1()) && rightTerms.contains(comp.getTerm2())) {
+                condition = comp;
+            } else if (leftTerms.contains(comp.getTerm2()) && rightTerms.contains(comp.getTerm1())) {
                 // swap condition so that variable for childLeft is on left and the variable for childRight is on the right
-                compareAtom = new ComparisonAtom(comp.getTerm2(),comp.getTerm1(),CompareUtil.swapCompare(comp.getOp()));
+                condition = new ComparisonAtom(comp.getTerm2(),comp.getTerm1(),CompareUtil.swapCompare(comp.getOp()));
             }
-        }
 
-        // if no join condition, check for a variable
-        if (compareAtom == null){
-            for (Term leftTerm:childLeft.getAtom().getTerms()){
-                if (leftTerm instanceof Variable){
-                    for (Term rightTerm:childRight.getAtom().getTerms()){
-                        if (leftTerm.equals(rightTerm)) {
-                            compareVar = (Variable) leftTerm;
-                            leftIndex = childLeft.getAtom().getTerms().indexOf(compareVar);
-                            rightIndex = childRight.getAtom().getTerms().indexOf(compareVar);
-                            break;
-                        }
-                    }
-                }
+            if (condition == null) continue;
+            int leftIndex = leftTerms.indexOf(condition.getTerm1());
+            int rightIndex = rightTerms.indexOf(condition.getTerm2());
+            if (condition.getOp() == ComparisonOperator.EQ){
+                leftKeyList.add(leftIndex);
+                rightKeyList.add(rightIndex);
+            } else {
+                conditions.add(condition);
             }
         }
+
+        leftKeys = toArray(leftKeyList);
+        rightKeys = toArray(rightKeyList);
+        conditionLeft = new int[conditions.size()];
+        conditionRight = new int[conditions.size()];
+        for (int i = 0; i < conditions.size(); i++){
+            conditionLeft[i] = leftTerms.indexOf(conditions.get(i).getTerm1());
+            conditionRight[i] = rightTerms.indexOf(conditions.get(i).getTerm2());
+        }
+
+        // compile the conditions for the column types of the children
+        List<JoinPredicate> keyPredicates = new ArrayList<>();
+        for (int i = 0; i < leftKeys.length; i++){
+            keyPredicates.add(JoinPredicate.compare(leftKeys[i], leftLayout[leftKeys[i]], ComparisonOperator.EQ,
+                    rightKeys[i], rightLayout[rightKeys[i]]));
+        }
+        List<JoinPredicate> conditionPredicates = new ArrayList<>();
+        for (int i = 0; i < conditions.size(); i++){
+            conditionPredicates.add(JoinPredicate.compare(conditionLeft[i], leftLayout[conditionLeft[i]],
+                    conditions.get(i).getOp(), conditionRight[i], rightLayout[conditionRight[i]]));
+        }
+        conditionMatcher = JoinPredicate.and(conditionPredicates);
+        keyPredicates.add(conditionMatcher);
+        matcher = JoinPredicate.and(keyPredicates);
+    }
+
+    /**
+     * Helper method for converting a list of indexes to an array.
+     *
+     * @param list list of indexes
+     * @return returns the indexes as an array
+     */
+    private static int[] toArray(List<Integer> list){
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++){
+            array[i] = list.get(i);
+        }
+        return array;
     }
 
     /**
@@ -106,11 +174,7 @@ public class JoinOperator extends Operator {
             inner = childRight.getNextTuple();
             while (inner != null) {
                 if (match(outer,inner)) {
-                    List<Constant> terms = new ArrayList<>();
-                    terms.addAll(outer.getFields());
-                    terms.addAll(inner.getFields());
-
-                    return new Tuple(terms);
+                    return joinTuples(outer, inner);
                 }
                 inner = childRight.getNextTuple();
             }
@@ -122,9 +186,7 @@ public class JoinOperator extends Operator {
             inner = childRight.getNextTuple();
             while (inner != null) {
                 if (match(outer,inner)) {
-                    List<Constant> terms = new ArrayList<>(outer.getFields());
-                    terms.addAll(inner.getFields());
-                    return new Tuple(terms);
+                    return joinTuples(outer, inner);
                 }
                 inner = childRight.getNextTuple();
             }
@@ -134,21 +196,56 @@ public class JoinOperator extends Operator {
     }
 
     /**
-     * Method for checking whether two Tuples can be joined. If both compareAtom and
-     * compareVar are null, a cartesian product is necessary and the function returns true.
+     * Method for checking whether two Tuples can be joined. If there are no join conditions,
+     * a cartesian product is necessary and the function returns true.
      *
      * @param outer Tuple from the outer relation (leftChild)
      * @param inner Tuple from the inner relation (rightChild)
      * @return returns true if the tuples should be joined and added to output
      */
-    private boolean match(Tuple outer, Tuple inner){
-        if (compareAtom!=null){
-            return CompareUtil.evaluateComparison(outer.getFields().get(leftIndex), inner.getFields().get(rightIndex), compareAtom.getOp());
-        } else if (compareVar!=null){
-            return outer.getFields().get(leftIndex).equals(inner.getFields().get(rightIndex));
-        }
+    protected boolean match(Tuple outer, Tuple inner){
+        return matcher.test(outer, inner);
+    }
 
-        return true;
+    /**
+     * Method for checking whether two Tuples satisfy the join conditions that are not
+     * equalities. Used on its own by joins that already guarantee the equality conditions.
+     *
+     * @param outer Tuple from the outer relation (leftChild)
+     * @param inner Tuple from the inner relation (rightChild)
+     * @return returns true if all the non-equality conditions hold
+     */
+    protected boolean matchConditions(Tuple outer, Tuple inner){
+        return conditionMatcher.test(outer, inner);
+    }
+
+    /**
+     * Method for creating the output tuple from two matching tuples.
+     *
+     * @param outer Tuple from the outer relation (leftChild)
+     * @param inner Tuple from the inner relation (rightChild)
+     * @return returns the joined Tuple
+     */
+    protected Tuple joinTuples(Tuple outer, Tuple inner){
+        return Tuple.join(outer, inner, layout);
+    }
+
+    /**
+     * Method for extracting the values of the equality join variables from a tuple, which the
+     * hash joins use as the key of the tuple in their hash tables.
+     *
+     * @param tuple tuple to extract the values from
+     * @param keys indexes of the join variables in the tuple, leftKeys or rightKeys
+     * @return returns the key values as a tuple
+     */
+    protected static Tuple getKey(Tuple tuple, int[] keys) {
+        long[] values = new long[keys.length];
+        boolean[] layout = new boolean[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = tuple.get(keys[i]);
+            layout[i] = tuple.isString(keys[i]);
+        }
+        return new Tuple(values, layout);
     }
 
     /**
@@ -161,35 +258,85 @@ public class JoinOperator extends Operator {
         childRight.reset();
     }
 
+    /**
+     * Method for retrieving the layout of the joined tuples: the layout of the left child
+     * followed by the layout of the right child.
+     *
+     * @return returns the layout of the output
+     */
+    @Override
+    public boolean[] getLayout() {
+        return layout;
+    }
+
     /**
      * Method for retrieving the base RelationalAtom. The base relational atom is the atom that
-     * results from joining the vase relations from the child operations.
+     * results from joining the base relations from the child operations. It is built when the
+     * join conditions are parsed, and rebuilt by reloadIndex().
      *
      * @return returns the base RelationalAtom
      */
     public RelationalAtom getAtom(){
-        List<Term> atomTerms = new ArrayList<>();
-        atomTerms.addAll(childLeft.getAtom().getTerms());
-        atomTerms.addAll(childRight.getAtom().getTerms());
-        return new RelationalAtom(childLeft.getAtom().getName(), atomTerms);
+        return atom;
     }
 
     /**
-     * Getter for the comparison atom variable
+     * Method for checking whether the join has an equality condition, either an explicit EQ
+     * comparison or a shared variable. Equi-joins can be evaluated with a HashJoinOperator.
      *
-     * @return returns a ComparisonAtom
+     * @return returns true if the join has at least one equality condition
      */
-    public ComparisonAtom getCompareAtom() {
-        return compareAtom;
+    public boolean isEquiJoin() {
+        return leftKeys.length > 0;
     }
 
     /**
-     * Getter for the comparison variable
+     * Method for checking whether the join has no equality condition but an inequality (LT, LEQ,
+     * GT or GEQ). Range joins can be evaluated with a SortMergeJoinOperator.
      *
-     * @return returns a Variable
+     * @return returns true if the join conditions contain an inequality and no equality
      */
-    public Variable getCompareVar() {
-        return compareVar;
+    public boolean isRangeJoin() {
+        return !isEquiJoin() && getRangeCondition() >= 0;
+    }
+
+    /**
+     * Method for finding the first inequality (LT, LEQ, GT or GEQ) among the join conditions.
+     *
+     * @return returns the position of the condition in the conditions list, or -1 if there is none
+     */
+    protected int getRangeCondition() {
+        for (int i = 0; i < conditions.size(); i++){
+            switch (conditions.get(i).getOp()) {
+                case LT:
+                case LEQ:
+                case GT:
+                case GEQ:
+                    return i;
+                default:
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Method for retrieving all variables used in the join conditions.
+     *
+     * @return returns a list of variables
+     */
+    public List<Variable> getJoinVariables() {
+        List<Variable> variables = new ArrayList<>();
+        for (int leftKey : leftKeys){
+            variables.add((Variable) childLeft.getAtom().getTerms().get(leftKey));
+        }
+        for (int rightKey : rightKeys){
+            variables.add((Variable) childRight.getAtom().getTerms().get(rightKey));
+        }
+        for (ComparisonAtom condition : conditions){
+            variables.add((Variable) condition.getTerm1());
+            variables.add((Variable) condition.getTerm2());
+        }
+        return variables;
     }
 
     /**
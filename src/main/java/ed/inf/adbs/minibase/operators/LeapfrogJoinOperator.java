@@ -0,0 +1,543 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.base.*;
+import ed.inf.adbs.minibase.utils.Predicate;
+import ed.inf.adbs.minibase.utils.Tuple;
+import ed.inf.adbs.minibase.utils.TupleBatch;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Class for joining all relational atoms of a query at once with the Leapfrog Triejoin
+ * algorithm, a worst-case optimal join. For cyclic queries (e.g. triangles) every binary join
+ * plan can have intermediate results that are asymptotically larger than the output, while
+ * Leapfrog Triejoin only does work proportional to the largest possible output.
+ *
+ * The variables of the query are put into a global order, the variables shared by the most
+ * atoms first. The tuples of every child are read once and sorted by the values of the
+ * variables of its atom in the global order, which makes the sorted rows a trie: the rows that
+ * share values for the first k variables are a contiguous range. The join binds one variable at
+ * a time. The atoms with the variable intersect their ranges by leapfrogging: the atom with the
+ * smallest value seeks (by galloping search) to the largest value of the others, until all
+ * atoms agree on a value, which is then bound before descending to the next variable.
+ *
+ * The join conditions between variables of different atoms are checked as soon as all of their
+ * variables are bound. Rows with equal values for all variables of an atom are counted, so
+ * the join returns every combination of matching rows, as the binary joins do. The output has
+ * the same base relational atom and layout as a left-deep tree of binary joins of the children
+ * in the given order.
+ */
+public class LeapfrogJoinOperator extends Operator {
+    /** Child operators, one per relational atom */
+    private final List<Operator> children;
+    /** Base relational atom of the output */
+    private final RelationalAtom atom;
+    /** Tuple layout of the output */
+    private final boolean[] layout;
+    /** Number of variables */
+    private final int depthCount;
+    /** For every child the positions of its variables in the global order, in that order */
+    private final int[][] atomVariables;
+    /** For every child and variable of the atom the slot of the variable in the tuples */
+    private final int[][] atomSlots;
+    /** For every child the pairs of slots that hold the same variable and must be equal */
+    private final int[][] repeatedSlots;
+    /** For every variable the children whose atoms contain it */
+    private final int[][] participants;
+    /** For every variable the level of the variable in the trie of each participant */
+    private final int[][] participantLevels;
+    /** For every variable the join conditions that can be checked once it is bound, or null */
+    private final Predicate[] filters;
+    /** For every output column the position of its variable in the global order, or -1 */
+    private final int[] outputVariables;
+    /** For every output column that holds a constant the encoded constant */
+    private final long[] outputConstants;
+    /** Whether a variable has different types in different atoms, so nothing can match */
+    private final boolean typeMismatch;
+
+    /** Sorted trie columns of every child: [child][level][row], null until the children are read */
+    private long[][][] tries = null;
+    /** Number of rows of every child */
+    private int[] rowCounts;
+    /** Start of the current range of every child and level */
+    private int[][] low;
+    /** End of the current range of every child and level */
+    private int[][] high;
+    /** Current row of every child and level */
+    private int[][] current;
+    /** End of the rows with the current value of every child and level */
+    private int[][] end;
+    /** Values of the bound variables */
+    private final long[] binding;
+    /** Bound variables as a tuple, for the join conditions */
+    private final Tuple bindingTuple;
+    /** Depth of the variable that is being bound */
+    private int depth;
+    /** Whether the ranges at the current depth still have to be opened */
+    private boolean opening;
+    /** Whether every binding has been returned */
+    private boolean done;
+    /** Number of copies of the current binding that have not been returned yet */
+    private long remaining;
+
+    /**
+     * Constructor for the LeapfrogJoinOperator class.
+     *
+     * @param children child operators, one per relational atom, in the order of the output
+     * @param comparisonAtomList join conditions of the query, between variables of different atoms
+     */
+    public LeapfrogJoinOperator(List<Operator> children, List<ComparisonAtom> comparisonAtomList) {
+        this.children = new ArrayList<>(children);
+
+        // the output is the concatenation of the children, as for a left-deep join tree
+        List<Term> outputTerms = new ArrayList<>();
+        List<Boolean> outputLayout = new ArrayList<>();
+        for (Operator child : children) {
+            outputTerms.addAll(child.getAtom().getTerms());
+            for (boolean string : child.getLayout()) {
+                outputLayout.add(string);
+            }
+        }
+        this.atom = new RelationalAtom(children.get(0).getAtom().getName(), outputTerms);
+        this.layout = new boolean[outputLayout.size()];
+        for (int i = 0; i < layout.length; i++) {
+            layout[i] = outputLayout.get(i);
+        }
+
+        List<Variable> variables = orderVariables(children);
+        this.depthCount = variables.size();
+        this.binding = new long[depthCount];
+
+        // resolve the variables of every atom to slots and trie levels
+        boolean[] variableLayout = new boolean[depthCount];
+        boolean[] typed = new boolean[depthCount];
+        boolean mismatch = false;
+        this.atomVariables = new int[children.size()][];
+        this.atomSlots = new int[children.size()][];
+        this.repeatedSlots = new int[children.size()][];
+        List<List<Integer>> participantList = new ArrayList<>();
+        List<List<Integer>> levelList = new ArrayList<>();
+        for (int d = 0; d < depthCount; d++) {
+            participantList.add(new ArrayList<>());
+            levelList.add(new ArrayList<>());
+        }
+        for (int c = 0; c < children.size(); c++) {
+            List<Term> terms = children.get(c).getAtom().getTerms();
+            boolean[] childLayout = children.get(c).getLayout();
+            List<Integer> depths = new ArrayList<>();
+            List<Integer> repeated = new ArrayList<>();
+            for (int slot = 0; slot < terms.size(); slot++) {
+                if (!(terms.get(slot) instanceof Variable)) continue;
+                int first = terms.indexOf(terms.get(slot));
+                if (first != slot) {
+                    repeated.add(first);
+                    repeated.add(slot);
+                    continue;
+                }
+                int d = variables.indexOf(terms.get(slot));
+                depths.add(d);
+                if (typed[d] && variableLayout[d] != childLayout[slot]) mismatch = true;
+                typed[d] = true;
+                variableLayout[d] = childLayout[slot];
+            }
+            Collections.sort(depths);
+            atomVariables[c] = new int[depths.size()];
+            atomSlots[c] = new int[depths.size()];
+            for (int level = 0; level < depths.size(); level++) {
+                int d = depths.get(level);
+                atomVariables[c][level] = d;
+                atomSlots[c][level] = terms.indexOf(variables.get(d));
+                participantList.get(d).add(c);
+                levelList.get(d).add(level);
+            }
+            repeatedSlots[c] = toArray(repeated);
+        }
+        this.typeMismatch = mismatch;
+        this.participants = new int[depthCount][];
+        this.participantLevels = new int[depthCount][];
+        for (int d = 0; d < depthCount; d++) {
+            participants[d] = toArray(participantList.get(d));
+            participantLevels[d] = toArray(levelList.get(d));
+        }
+
+        // check every join condition at the depth of its last variable
+        this.filters = new Predicate[depthCount];
+        RelationalAtom bindingAtom = new RelationalAtom("binding", new ArrayList<Term>(variables));
+        this.bindingTuple = new Tuple(binding, variableLayout);
+        List<List<ComparisonAtom>> conditions = new ArrayList<>();
+        for (int d = 0; d < depthCount; d++) {
+            conditions.add(new ArrayList<>());
+        }
+        for (ComparisonAtom comp : comparisonAtomList) {
+            int d1 = variables.indexOf(comp.getTerm1());
+            int d2 = variables.indexOf(comp.getTerm2());
+            if (d1 < 0 || d2 < 0) continue;
+            conditions.get(Math.max(d1, d2)).add(comp);
+        }
+        for (int d = 0; d < depthCount; d++) {
+            if (conditions.get(d).isEmpty()) continue;
+            filters[d] = Predicate.compile(bindingAtom, conditions.get(d), variableLayout);
+        }
+
+        this.outputVariables = new int[outputTerms.size()];
+        this.outputConstants = new long[outputTerms.size()];
+        for (int i = 0; i < outputTerms.size(); i++) {
+            Term term = outputTerms.get(i);
+            outputVariables[i] = variables.indexOf(term);
+            if (term instanceof Constant) outputConstants[i] = Tuple.encode((Constant) term);
+        }
+        reset();
+    }
+
+    /**
+     * Helper method for choosing the global order of the variables. Variables that are in more
+     * atoms come first, so the join intersects the atoms early, and ties keep the order in
+     * which the variables appear in the atoms.
+     *
+     * @param children child operators
+     * @return returns the variables in the global order
+     */
+    private static List<Variable> orderVariables(List<Operator> children) {
+        List<Variable> variables = new ArrayList<>();
+        Map<Variable, Integer> atomCounts = new HashMap<>();
+        for (Operator child : children) {
+            Set<Variable> seen = new HashSet<>();
+            for (Term term : child.getAtom().getTerms()) {
+                if (term instanceof Variable && seen.add((Variable) term)) {
+                    if (!atomCounts.containsKey(term)) variables.add((Variable) term);
+                    atomCounts.merge((Variable) term, 1, Integer::sum);
+                }
+            }
+        }
+        // the sort is stable, so ties keep the order of appearance
+        variables.sort((a, b) -> atomCounts.get(b) - atomCounts.get(a));
+        return variables;
+    }
+
+    /**
+     * Method for reading every child and sorting its rows into a trie. Rows in which a variable
+     * that appears twice in the atom has different values are left out.
+     *
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    private void load() throws IOException {
+        int count = children.size();
+        tries = new long[count][][];
+        rowCounts = new int[count];
+        low = new int[count][];
+        high = new int[count][];
+        current = new int[count][];
+        end = new int[count][];
+
+        for (int c = 0; c < count; c++) {
+            int[] slots = atomSlots[c];
+            int[] repeated = repeatedSlots[c];
+            List<long[]> rows = new ArrayList<>();
+            TupleBatch batch = children.get(c).getNextBatch();
+            while (batch != null) {
+                int[] selection = batch.getSelection();
+                for (int i = 0; i < batch.size(); i++) {
+                    int row = selection[i];
+                    boolean equal = true;
+                    for (int r = 0; r < repeated.length && equal; r += 2) {
+                        equal = batch.getColumn(repeated[r])[row] == batch.getColumn(repeated[r + 1])[row];
+                    }
+                    if (!equal) continue;
+                    long[] values = new long[slots.length];
+                    for (int level = 0; level < slots.length; level++) {
+                        values[level] = batch.getColumn(slots[level])[row];
+                    }
+                    rows.add(values);
+                }
+                batch = children.get(c).getNextBatch();
+            }
+
+            rows.sort(LeapfrogJoinOperator::compareRows);
+            long[][] columns = new long[slots.length][rows.size()];
+            for (int row = 0; row < rows.size(); row++) {
+                long[] values = rows.get(row);
+                for (int level = 0; level < slots.length; level++) {
+                    columns[level][row] = values[level];
+                }
+            }
+            tries[c] = columns;
+            rowCounts[c] = rows.size();
+            low[c] = new int[slots.length];
+            high[c] = new int[slots.length];
+            current[c] = new int[slots.length];
+            end[c] = new int[slots.length];
+        }
+    }
+
+    /**
+     * Helper method for comparing two rows lexicographically.
+     *
+     * @param a first row
+     * @param b second row
+     * @return returns a negative number, zero or a positive number if a is smaller, equal or larger
+     */
+    private static int compareRows(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int compare = Long.compare(a[i], b[i]);
+            if (compare != 0) return compare;
+        }
+        return 0;
+    }
+
+    /**
+     * Method for getting the next joined Tuple.
+     *
+     * @return returns a joined Tuple
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    @Override
+    public Tuple getNextTuple() throws IOException {
+        long[] values = new long[layout.length];
+        return nextValues(values) ? new Tuple(values, layout) : null;
+    }
+
+    /**
+     * Method for getting the next batch of joined tuples. The values are written into the
+     * batch straight from the bound variables.
+     *
+     * @return returns a batch of joined tuples, or null if there are no more results
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    @Override
+    public TupleBatch getNextBatch() throws IOException {
+        long[] values = new long[layout.length];
+        if (!nextValues(values)) return null;
+        TupleBatch batch = new TupleBatch(layout);
+        batch.addRow(values);
+        while (!batch.isFull() && nextValues(values)) {
+            batch.addRow(values);
+        }
+        return batch;
+    }
+
+    /**
+     * Helper method for writing the values of the next joined tuple into an array.
+     *
+     * @param values array with one element per output column
+     * @return returns false if there are no more results
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    private boolean nextValues(long[] values) throws IOException {
+        if (tries == null) load();
+        while (remaining == 0) {
+            if (done || !nextBinding()) {
+                done = true;
+                return false;
+            }
+            remaining = multiplicity();
+        }
+        remaining--;
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = outputVariables[i] >= 0 ? binding[outputVariables[i]] : outputConstants[i];
+        }
+        return true;
+    }
+
+    /**
+     * Helper method for finding the next binding of all variables. Binds the variable at the
+     * current depth to the next value that all participants agree on, and descends to the next
+     * depth, or goes back to the previous depth if there is no such value.
+     *
+     * @return returns false if every binding has been found
+     */
+    private boolean nextBinding() {
+        if (typeMismatch) return false;
+        if (depthCount == 0) {
+            // only constants, the single empty binding is returned once
+            if (!opening) return false;
+            opening = false;
+            return true;
+        }
+
+        while (depth >= 0) {
+            int[] atoms = participants[depth];
+            int[] levels = participantLevels[depth];
+            if (opening) {
+                for (int i = 0; i < atoms.length; i++) {
+                    int c = atoms[i];
+                    int level = levels[i];
+                    low[c][level] = level == 0 ? 0 : current[c][level - 1];
+                    high[c][level] = level == 0 ? rowCounts[c] : end[c][level - 1];
+                    current[c][level] = low[c][level];
+                }
+                opening = false;
+            } else {
+                for (int i = 0; i < atoms.length; i++) {
+                    current[atoms[i]][levels[i]] = end[atoms[i]][levels[i]];
+                }
+            }
+
+            if (!leapfrog(atoms, levels)) {
+                depth--;
+                continue;
+            }
+            long key = tries[atoms[0]][levels[0]][current[atoms[0]][levels[0]]];
+            for (int i = 0; i < atoms.length; i++) {
+                int c = atoms[i];
+                int level = levels[i];
+                end[c][level] = upperBound(tries[c][level], key, current[c][level], high[c][level]);
+            }
+            binding[depth] = key;
+            if (filters[depth] != null && !filters[depth].test(bindingTuple)) continue;
+
+            if (depth == depthCount - 1) return true;
+            depth++;
+            opening = true;
+        }
+        return false;
+    }
+
+    /**
+     * Helper method for the leapfrog intersection of the participants of a variable. Moves the
+     * current rows forward until all participants have the same value.
+     *
+     * @param atoms children whose atoms contain the variable
+     * @param levels level of the variable in the trie of each child
+     * @return returns false if the ranges have no common value
+     */
+    private boolean leapfrog(int[] atoms, int[] levels) {
+        while (true) {
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < atoms.length; i++) {
+                int c = atoms[i];
+                int level = levels[i];
+                if (current[c][level] >= high[c][level]) return false;
+                max = Math.max(max, tries[c][level][current[c][level]]);
+            }
+
+            boolean agree = true;
+            for (int i = 0; i < atoms.length; i++) {
+                int c = atoms[i];
+                int level = levels[i];
+                long[] column = tries[c][level];
+                if (column[current[c][level]] < max) {
+                    current[c][level] = lowerBound(column, max, current[c][level], high[c][level]);
+                    if (current[c][level] >= high[c][level]) return false;
+                    if (column[current[c][level]] != max) agree = false;
+                }
+            }
+            if (agree) return true;
+        }
+    }
+
+    /**
+     * Helper method for the number of copies of the current binding: the product of the number
+     * of rows of every child with the bound values.
+     *
+     * @return returns the number of joined tuples with the current binding
+     */
+    private long multiplicity() {
+        long copies = 1;
+        for (int c = 0; c < children.size(); c++) {
+            int last = atomVariables[c].length - 1;
+            copies = copies * (last < 0 ? rowCounts[c] : end[c][last] - current[c][last]);
+        }
+        return copies;
+    }
+
+    /**
+     * Helper method for finding the first row of a range with a value of at least the key. The
+     * search gallops forward from the start of the range before a binary search, so short seeks
+     * are cheap.
+     *
+     * @param column sorted column of a trie level
+     * @param key value to seek
+     * @param from start of the range
+     * @param to end of the range
+     * @return returns the first row with a value of at least the key, or to if there is none
+     */
+    private static int lowerBound(long[] column, long key, int from, int to) {
+        int step = 1;
+        int lo = from;
+        int hi = from;
+        while (hi < to && column[hi] < key) {
+            lo = hi + 1;
+            hi = hi + step;
+            step = step * 2;
+        }
+        hi = Math.min(hi, to);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (column[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Helper method for finding the first row of a range with a value larger than the key.
+     *
+     * @param column sorted column of a trie level
+     * @param key value of the current rows
+     * @param from start of the range
+     * @param to end of the range
+     * @return returns the first row with a larger value, or to if there is none
+     */
+    private static int upperBound(long[] column, long key, int from, int to) {
+        return key == Long.MAX_VALUE ? to : lowerBound(column, key + 1, from, to);
+    }
+
+    /**
+     * Helper method for converting a list of integers to an array.
+     *
+     * @param list list of integers
+     * @return returns the integers as an array
+     */
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Method for resetting the LeapfrogJoinOperator. The tries are kept, so the children are
+     * not read again.
+     */
+    @Override
+    public void reset() {
+        depth = 0;
+        opening = true;
+        done = false;
+        remaining = 0;
+    }
+
+    /**
+     * Method for retrieving the layout of the joined tuples: the layouts of the children in
+     * order.
+     *
+     * @return returns the layout of the output
+     */
+    @Override
+    public boolean[] getLayout() {
+        return layout;
+    }
+
+    /**
+     * Method for retrieving the base RelationalAtom: the terms of the atoms of the children
+     * in order.
+     *
+     * @return returns the base RelationalAtom
+     */
+    @Override
+    public RelationalAtom getAtom() {
+        return atom;
+    }
+
+    /**
+     * Getter for the child operations.
+     *
+     * @return returns the child operations, one per relational atom
+     */
+    public List<Operator> getChildren() {
+        return children;
+    }
+}
@@ -0,0 +1,877 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.utils.Config;
+import ed.inf.adbs.minibase.utils.ExternalAggregation;
+import ed.inf.adbs.minibase.utils.GroupTable;
+import ed.inf.adbs.minibase.utils.Predicate;
+import ed.inf.adbs.minibase.utils.Tuple;
+import ed.inf.adbs.minibase.utils.TupleBatch;
+import ed.inf.adbs.minibase.utils.WorkerPool;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Class for evaluating an operator tree built by QueryPlan with morsel-driven parallelism. The
+ * tree is split into pipelines at its pipeline breakers: the right child of every join is
+ * evaluated completely (into a hash table for the hash joins on equality conditions, and into a
+ * list for the other joins) before the pipeline that probes it starts, and a SumOperator at the
+ * root waits for all of its input before returning groups.
+ *
+ * A pipeline starts at a source operator (a scan) and applies the selections, projections and
+ * join probes above it to one morsel at a time. A morsel is one batch of the source, so at most
+ * TupleBatch.CAPACITY rows. The morsels are read from the source by the calling thread and run
+ * as tasks on the WorkerPool, whose threads steal tasks from each other when their own queue
+ * is empty. A SumOperator at the root is evaluated as a partial aggregate in every worker
+ * thread, and the partial aggregates are merged once all morsels are done.
+ *
+ * The results of the morsels are consumed in the order of the morsels, so the output contains
+ * the same tuples as the iterator engine. Only a few morsels per worker thread are in flight at
+ * a time, so the intermediate results of a pipeline are not all held in memory at once.
+ */
+public class MorselOperator extends Operator {
+    /** Number of morsels per worker thread that are evaluated ahead of the consumer */
+    private static final int MORSELS_AHEAD = 4;
+
+    /** Root of the operator tree that is evaluated */
+    private final Operator root;
+    /** Pipeline that produces the input of the root */
+    private final Pipeline pipeline;
+    /** Current evaluation of the root, null until the first call of getNextBatch() */
+    private Execution execution;
+    /** Batch that getNextTuple() returns rows from */
+    private TupleBatch tupleBatch;
+    /** Position in the batch of the next row getNextTuple() returns */
+    private int tupleRow;
+
+    /**
+     * Constructor for the MorselOperator class. Splits the tree into pipelines, but does not
+     * evaluate anything yet.
+     *
+     * @param root root of the operator tree built by QueryPlan
+     */
+    public MorselOperator(Operator root) {
+        this.root = root;
+        if (root instanceof ProjectOperator) {
+            this.pipeline = compile(((ProjectOperator) root).getChild());
+        } else if (root instanceof SumOperator) {
+            this.pipeline = compile(((SumOperator) root).getChild());
+        } else {
+            this.pipeline = compile(root);
+        }
+    }
+
+    /**
+     * Method for splitting an operator tree into a pipeline. Joins add a probe of their right
+     * child, which becomes a pipeline of its own, to the pipeline of their left child.
+     * Operators that cannot be applied to a morsel on their own are the source of the pipeline.
+     *
+     * @param operator root of the tree
+     * @return returns the pipeline that produces the output of the root
+     */
+    private static Pipeline compile(Operator operator) {
+        if (operator instanceof ProjectOperator) {
+            ProjectOperator project = (ProjectOperator) operator;
+            return compile(project.getChild()).then(new ProjectStage(project.getOutputIndexes(), project.getLayout()));
+        } else if (operator instanceof SelectOperator) {
+            SelectOperator select = (SelectOperator) operator;
+            return compile(select.getChild()).then(new SelectStage(select.getPredicate()));
+        } else if (operator instanceof JoinOperator) {
+            JoinOperator join = (JoinOperator) operator;
+            Pipeline build = compile(join.getChildRight());
+            boolean distinct = join.getChildRight() instanceof ProjectOperator;
+            Stage probe = join.isEquiJoin()
+                    ? new HashProbeStage(join, build, distinct)
+                    : new LoopProbeStage(join, build, distinct);
+            return compile(join.getChildLeft()).then(probe);
+        }
+        return new Pipeline(operator, Collections.emptyList());
+    }
+
+    /**
+     * Method for getting the next tuple of the output.
+     *
+     * @return returns a tuple from the output, or null if there are no more results
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    @Override
+    public Tuple getNextTuple() throws IOException {
+        while (tupleBatch == null || tupleRow >= tupleBatch.size()) {
+            tupleBatch = getNextBatch();
+            if (tupleBatch == null) return null;
+            tupleRow = 0;
+        }
+        return tupleBatch.getTuple(tupleRow++);
+    }
+
+    /**
+     * Method for getting the next batch of the output. The first call builds the hash tables of
+     * the joins and starts the evaluation of the root.
+     *
+     * @return returns a batch of tuples from the output, or null if there are no more results
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    @Override
+    public TupleBatch getNextBatch() throws IOException {
+        if (execution == null) {
+            pipeline.prepare();
+            if (root instanceof ProjectOperator) {
+                ProjectOperator project = (ProjectOperator) root;
+                execution = new ProjectExecution(pipeline, project.getOutputIndexes(), project.getLayout());
+            } else if (root instanceof SumOperator) {
+                execution = new SumExecution(pipeline, (SumOperator) root);
+            } else {
+                execution = new PipelineExecution(pipeline);
+            }
+        }
+        return execution.next();
+    }
+
+    /**
+     * Method for resetting the MorselOperator. The sources of all pipelines are reset, and the
+     * next getNextBatch() call evaluates the tree again.
+     */
+    @Override
+    public void reset() {
+        pipeline.reset();
+        execution = null;
+        tupleBatch = null;
+    }
+
+    /**
+     * Method for retrieving the layout of the output tuples.
+     *
+     * @return returns the layout of the root
+     */
+    @Override
+    public boolean[] getLayout() {
+        return root.getLayout();
+    }
+
+    /**
+     * Method for retrieving the base RelationalAtom
+     *
+     * @return returns the base RelationalAtom of the root
+     */
+    @Override
+    public RelationalAtom getAtom() {
+        return root.getAtom();
+    }
+
+    /**
+     * Helper method for waiting for a submitted morsel. Errors of the worker thread are thrown
+     * again in the calling thread.
+     *
+     * @param morsel submitted morsel
+     * @param <R> type of the result of the morsel
+     * @return returns the result of the morsel
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    private static <R> R await(Future<R> morsel) throws IOException {
+        try {
+            return morsel.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a morsel", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Interface for the work done on a single morsel at the end of a pipeline.
+     *
+     * @param <R> type of the result of a morsel
+     */
+    private interface MorselTask<R> {
+        /**
+         * Method for processing the output of the pipeline for one morsel. Runs on a worker thread.
+         *
+         * @param batches batches that the pipeline produced from the morsel
+         * @return returns the result of the morsel
+         * @throws IOException throws an error if the task could not write a spill file
+         */
+        R apply(List<TupleBatch> batches) throws IOException;
+    }
+
+    /**
+     * Class for a source operator followed by the stages that are applied to every morsel.
+     */
+    private static final class Pipeline {
+        /** Operator that produces the morsels */
+        private final Operator source;
+        /** Stages applied to every morsel, in order */
+        private final List<Stage> stages;
+
+        /**
+         * Constructor for a pipeline.
+         *
+         * @param source operator that produces the morsels
+         * @param stages stages applied to every morsel, in order
+         */
+        private Pipeline(Operator source, List<Stage> stages) {
+            this.source = source;
+            this.stages = stages;
+        }
+
+        /**
+         * Method for extending the pipeline with another stage.
+         *
+         * @param stage stage applied to the output of this pipeline
+         * @return returns the extended pipeline
+         */
+        private Pipeline then(Stage stage) {
+            List<Stage> extended = new ArrayList<>(stages);
+            extended.add(stage);
+            return new Pipeline(source, extended);
+        }
+
+        /**
+         * Method for evaluating the pipeline breakers of the stages, i.e. the right children of
+         * the joins, in pipeline order.
+         *
+         * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+         */
+        private void prepare() throws IOException {
+            for (Stage stage : stages) {
+                stage.prepare();
+            }
+        }
+
+        /**
+         * Method for resetting the source and the pipelines of the stages.
+         */
+        private void reset() {
+            source.reset();
+            for (Stage stage : stages) {
+                stage.reset();
+            }
+        }
+
+        /**
+         * Method for applying the stages to one morsel. Runs on a worker thread.
+         *
+         * @param morsel batch of the source
+         * @return returns the batches that come out of the last stage
+         */
+        private List<TupleBatch> process(TupleBatch morsel) {
+            List<TupleBatch> batches = Collections.singletonList(morsel);
+            for (Stage stage : stages) {
+                List<TupleBatch> output = new ArrayList<>();
+                for (TupleBatch batch : batches) {
+                    stage.apply(batch, output);
+                }
+                if (output.isEmpty()) return output;
+                batches = output;
+            }
+            return batches;
+        }
+
+        /**
+         * Method for starting the evaluation of the pipeline on the worker threads.
+         *
+         * @param task work done on the output of every morsel
+         * @param <R> type of the result of a morsel
+         * @return returns the dispatcher that returns the results in morsel order
+         */
+        private <R> Dispatcher<R> dispatch(MorselTask<R> task) {
+            return new Dispatcher<>(this, task);
+        }
+
+        /**
+         * Method for evaluating the whole pipeline and collecting its output.
+         *
+         * @return returns the output batches in morsel order
+         * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+         */
+        private List<TupleBatch> collect() throws IOException {
+            prepare();
+            Dispatcher<List<TupleBatch>> dispatcher = dispatch(batches -> batches);
+            List<TupleBatch> output = new ArrayList<>();
+            List<TupleBatch> batches = dispatcher.next();
+            while (batches != null) {
+                output.addAll(batches);
+                batches = dispatcher.next();
+            }
+            return output;
+        }
+    }
+
+    /**
+     * Class for reading the morsels of a pipeline from its source, submitting them to the
+     * worker threads, and returning their results in morsel order.
+     *
+     * @param <R> type of the result of a morsel
+     */
+    private static final class Dispatcher<R> {
+        /** Pipeline that is evaluated */
+        private final Pipeline pipeline;
+        /** Work done on the output of every morsel */
+        private final MorselTask<R> task;
+        /** Morsels that have been submitted and not yet returned, in morsel order */
+        private final Deque<Future<R>> pending = new ArrayDeque<>();
+        /** Whether the source has no more morsels */
+        private boolean exhausted = false;
+
+        /**
+         * Constructor for a dispatcher.
+         *
+         * @param pipeline pipeline that is evaluated
+         * @param task work done on the output of every morsel
+         */
+        private Dispatcher(Pipeline pipeline, MorselTask<R> task) {
+            this.pipeline = pipeline;
+            this.task = task;
+        }
+
+        /**
+         * Method for getting the result of the next morsel. Submits morsels until there are
+         * MORSELS_AHEAD per worker thread in flight, and waits for the oldest one.
+         *
+         * @return returns the result of the next morsel, or null if there are no more morsels
+         * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+         */
+        private R next() throws IOException {
+            int window = WorkerPool.getWorkers().getParallelism() * MORSELS_AHEAD;
+            while (!exhausted && pending.size() < window) {
+                TupleBatch morsel = pipeline.source.getNextBatch();
+                if (morsel == null) {
+                    exhausted = true;
+                } else {
+                    pending.add(WorkerPool.getWorkers().getPool().submit(
+                            () -> task.apply(pipeline.process(morsel))));
+                }
+            }
+            if (pending.isEmpty()) return null;
+            return await(pending.poll());
+        }
+    }
+
+    /**
+     * Class for the work done on a morsel by one operator of a pipeline.
+     */
+    private abstract static class Stage {
+        /**
+         * Method for applying the stage to a batch. Runs on a worker thread, so the stage must
+         * not change its own state or the input batch.
+         *
+         * @param batch input batch
+         * @param output list that the output batches are added to
+         */
+        abstract void apply(TupleBatch batch, List<TupleBatch> output);
+
+        /**
+         * Method for evaluating the pipeline breaker of the stage before the first morsel.
+         *
+         * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+         */
+        void prepare() throws IOException {
+        }
+
+        /**
+         * Method for resetting the pipeline breaker of the stage.
+         */
+        void reset() {
+        }
+    }
+
+    /**
+     * Stage for a SelectOperator. The predicate is evaluated on a view of the batch, so the
+     * selection vector of the input is not changed.
+     */
+    private static final class SelectStage extends Stage {
+        /** Selection predicate */
+        private final Predicate predicate;
+
+        /**
+         * Constructor for the stage.
+         *
+         * @param predicate selection predicate
+         */
+        private SelectStage(Predicate predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        void apply(TupleBatch batch, List<TupleBatch> output) {
+            TupleBatch view = batch.view();
+            view.setSize(predicate.filter(view));
+            if (view.size() > 0) output.add(view);
+        }
+    }
+
+    /**
+     * Stage for a ProjectOperator below the root. Duplicates are only removed within the batch,
+     * as the projection at the root removes the remaining ones.
+     */
+    private static final class ProjectStage extends Stage {
+        /** Slots of the output variables in the input tuples */
+        private final int[] outputIndexes;
+        /** Tuple layout of the output */
+        private final boolean[] layout;
+
+        /**
+         * Constructor for the stage.
+         *
+         * @param outputIndexes slots of the output variables in the input tuples
+         * @param layout tuple layout of the output
+         */
+        private ProjectStage(int[] outputIndexes, boolean[] layout) {
+            this.outputIndexes = outputIndexes;
+            this.layout = layout;
+        }
+
+        @Override
+        void apply(TupleBatch batch, List<TupleBatch> output) {
+            TupleBatch projected = new TupleBatch(layout);
+            Set<Tuple> seen = new HashSet<>();
+            int[] selection = batch.getSelection();
+            for (int r = 0;r<batch.size();r++){
+                long[] keepFields = new long[outputIndexes.length];
+                for (int j = 0;j<outputIndexes.length;j++){
+                    keepFields[j] = batch.getColumn(outputIndexes[j])[selection[r]];
+                }
+                if (seen.add(new Tuple(keepFields, layout))) projected.addRow(keepFields);
+            }
+            if (projected.size() > 0) output.add(projected);
+        }
+    }
+
+    /**
+     * Stage for probing the right child of a join. The right child is a pipeline of its own,
+     * which is evaluated completely by prepare(). If the right child is a ProjectOperator its
+     * duplicates are left out, as in the iterator engine.
+     */
+    private abstract static class ProbeStage extends Stage {
+        /** Join that is probed */
+        protected final JoinOperator join;
+        /** Pipeline of the right child */
+        private final Pipeline build;
+        /** Whether duplicates of the right child are left out */
+        private final boolean distinct;
+        /** Whether the join is a semi-join, which stops at the first match of every left tuple */
+        private final boolean semi;
+
+        /**
+         * Constructor for the stage.
+         *
+         * @param join join that is probed
+         * @param build pipeline of the right child
+         * @param distinct whether duplicates of the right child are left out
+         */
+        private ProbeStage(JoinOperator join, Pipeline build, boolean distinct) {
+            this.join = join;
+            this.build = build;
+            this.distinct = distinct;
+            this.semi = join instanceof SemiJoinOperator;
+        }
+
+        @Override
+        void prepare() throws IOException {
+            Set<Tuple> seen = new HashSet<>();
+            for (TupleBatch batch : build.collect()) {
+                for (int r = 0;r<batch.size();r++){
+                    Tuple inner = batch.getTuple(r);
+                    if (!distinct || seen.add(inner)) add(inner);
+                }
+            }
+        }
+
+        @Override
+        void reset() {
+            build.reset();
+        }
+
+        @Override
+        void apply(TupleBatch batch, List<TupleBatch> output) {
+            TupleBatch joined = new TupleBatch(join.getLayout());
+            for (int r = 0;r<batch.size();r++){
+                Tuple outer = batch.getTuple(r);
+                for (Tuple inner : matches(outer)) {
+                    if (matches(outer, inner)) {
+                        if (joined.isFull()) {
+                            output.add(joined);
+                            joined = new TupleBatch(join.getLayout());
+                        }
+                        joined.addTuple(join.joinTuples(outer, inner));
+                        if (semi) break;
+                    }
+                }
+            }
+            if (joined.size() > 0) output.add(joined);
+        }
+
+        /**
+         * Method for adding a tuple of the right child to the stored inner relation.
+         *
+         * @param inner tuple of the right child
+         */
+        abstract void add(Tuple inner);
+
+        /**
+         * Method for finding the candidate inner tuples for an outer tuple.
+         *
+         * @param outer tuple of the left child
+         * @return returns the inner tuples that may match
+         */
+        abstract List<Tuple> matches(Tuple outer);
+
+        /**
+         * Method for checking whether a candidate inner tuple matches an outer tuple.
+         *
+         * @param outer tuple of the left child
+         * @param inner candidate tuple of the right child
+         * @return returns true if the tuples should be joined
+         */
+        abstract boolean matches(Tuple outer, Tuple inner);
+    }
+
+    /**
+     * Stage for probing a join on equality conditions. The inner relation is stored in a hash
+     * table keyed by the values of the equality join variables, as in HashJoinOperator.
+     */
+    private static final class HashProbeStage extends ProbeStage {
+        /** Hash table with the tuples of the right child */
+        private final Map<Tuple, List<Tuple>> hashTable = new HashMap<>();
+
+        /**
+         * Constructor for the stage.
+         *
+         * @param join join that is probed
+         * @param build pipeline of the right child
+         * @param distinct whether duplicates of the right child are left out
+         */
+        private HashProbeStage(JoinOperator join, Pipeline build, boolean distinct) {
+            super(join, build, distinct);
+        }
+
+        @Override
+        void prepare() throws IOException {
+            hashTable.clear();
+            super.prepare();
+        }
+
+        @Override
+        void add(Tuple inner) {
+            hashTable.computeIfAbsent(JoinOperator.getKey(inner, join.rightKeys), k -> new ArrayList<>()).add(inner);
+        }
+
+        @Override
+        List<Tuple> matches(Tuple outer) {
+            return hashTable.getOrDefault(JoinOperator.getKey(outer, join.leftKeys), Collections.emptyList());
+        }
+
+        @Override
+        boolean matches(Tuple outer, Tuple inner) {
+            return join.matchConditions(outer, inner);
+        }
+    }
+
+    /**
+     * Stage for probing any other join. Every outer tuple is compared with every tuple of the
+     * inner relation, as in the nested loop JoinOperator.
+     */
+    private static final class LoopProbeStage extends ProbeStage {
+        /** Tuples of the right child */
+        private final List<Tuple> inner = new ArrayList<>();
+
+        /**
+         * Constructor for the stage.
+         *
+         * @param join join that is probed
+         * @param build pipeline of the right child
+         * @param distinct whether duplicates of the right child are left out
+         */
+        private LoopProbeStage(JoinOperator join, Pipeline build, boolean distinct) {
+            super(join, build, distinct);
+        }
+
+        @Override
+        void prepare() throws IOException {
+            inner.clear();
+            super.prepare();
+        }
+
+        @Override
+        void add(Tuple tuple) {
+            inner.add(tuple);
+        }
+
+        @Override
+        List<Tuple> matches(Tuple outer) {
+            return inner;
+        }
+
+        @Override
+        boolean matches(Tuple outer, Tuple inner) {
+            return join.match(outer, inner);
+        }
+    }
+
+    /**
+     * Interface for the evaluation of the root of the tree.
+     */
+    private interface Execution {
+        /**
+         * Method for getting the next batch of the output.
+         *
+         * @return returns a batch with at least one row, or null if there are no more results
+         * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+         */
+        TupleBatch next() throws IOException;
+    }
+
+    /**
+     * Evaluation of a root that is not a projection or an aggregate, which returns the output of
+     * the pipeline as it is.
+     */
+    private static final class PipelineExecution implements Execution {
+        /** Dispatcher of the pipeline */
+        private final Dispatcher<List<TupleBatch>> dispatcher;
+        /** Output batches of the current morsel */
+        private Iterator<TupleBatch> batches = Collections.emptyIterator();
+
+        /**
+         * Constructor for the evaluation.
+         *
+         * @param pipeline pipeline that produces the input of the root
+         */
+        private PipelineExecution(Pipeline pipeline) {
+            this.dispatcher = pipeline.dispatch(batches -> batches);
+        }
+
+        @Override
+        public TupleBatch next() throws IOException {
+            while (!batches.hasNext()) {
+                List<TupleBatch> morsel = dispatcher.next();
+                if (morsel == null) return null;
+                batches = morsel.iterator();
+            }
+            return batches.next();
+        }
+    }
+
+    /**
+     * Evaluation of a ProjectOperator at the root. Every morsel is projected and deduplicated on
+     * a worker thread, and the calling thread removes the duplicates across morsels in morsel
+     * order.
+     */
+    private static final class ProjectExecution implements Execution {
+        /** Dispatcher of the pipeline, which returns the distinct projected rows of every morsel */
+        private final Dispatcher<Set<Tuple>> dispatcher;
+        /** Tuple layout of the output */
+        private final boolean[] layout;
+        /** Rows that have already been returned */
+        private final Set<Tuple> seen = new HashSet<>();
+        /** Output batches that are ready to be returned */
+        private final Deque<TupleBatch> ready = new ArrayDeque<>();
+
+        /**
+         * Constructor for the evaluation.
+         *
+         * @param pipeline pipeline that produces the input of the root
+         * @param outputIndexes slots of the output variables in the input tuples
+         * @param layout tuple layout of the output
+         */
+        private ProjectExecution(Pipeline pipeline, int[] outputIndexes, boolean[] layout) {
+            this.layout = layout;
+            this.dispatcher = pipeline.dispatch(batches -> {
+                Set<Tuple> rows = new LinkedHashSet<>();
+                for (TupleBatch batch : batches) {
+                    int[] selection = batch.getSelection();
+                    for (int r = 0;r<batch.size();r++){
+                        long[] keepFields = new long[outputIndexes.length];
+                        for (int j = 0;j<outputIndexes.length;j++){
+                            keepFields[j] = batch.getColumn(outputIndexes[j])[selection[r]];
+                        }
+                        rows.add(new Tuple(keepFields, layout));
+                    }
+                }
+                return rows;
+            });
+        }
+
+        @Override
+        public TupleBatch next() throws IOException {
+            while (ready.isEmpty()) {
+                Set<Tuple> rows = dispatcher.next();
+                if (rows == null) return null;
+                TupleBatch output = null;
+                for (Tuple row : rows) {
+                    if (!seen.add(row)) continue;
+                    if (output == null || output.isFull()) {
+                        output = new TupleBatch(layout);
+                        ready.add(output);
+                    }
+                    output.addTuple(row);
+                }
+            }
+            return ready.poll();
+        }
+    }
+
+    /**
+     * Evaluation of a SumOperator at the root. Every worker thread adds the products of its
+     * morsels to its own partial aggregate, so the threads do not share any state while the
+     * morsels are evaluated. Once all morsels are done the partial aggregates are merged by hash
+     * partition (see GroupTable.merge()), and the groups are returned a batch at a time. The
+     * aggregates are GroupTables with long sums, as in SumOperator.
+     *
+     * As in SumOperator, every worker thread may use its share of Config.getAggregationBudget().
+     * A partial aggregate that grows beyond it is spilled to an ExternalAggregation and the thread
+     * starts a new one. If anything was spilled, the partial aggregates that are left are spilled
+     * too, and the groups are returned from the spilled partitions instead of the merged tables.
+     */
+    private static final class SumExecution implements Execution {
+        /** Pipeline that produces the input of the aggregate */
+        private final Pipeline pipeline;
+        /** Slots of the grouping variables in the input tuples */
+        private final int[] groupSlots;
+        /** Slots of the variables among the product terms in the input tuples */
+        private final int[] productSlots;
+        /** Product of the constants among the product terms */
+        private final long constantProduct;
+        /** Tuple layout of the output, the grouping variables followed by the sum */
+        private final boolean[] layout;
+        /** Partial aggregates of the worker threads, keyed by the thread */
+        private final Map<Thread, GroupTable> partials = new ConcurrentHashMap<>();
+        /** Merged groups of the output in disjoint tables, null if the groups come from "external" */
+        private List<GroupTable> groups = null;
+        /** Aggregation that returns the groups if any partial aggregate was spilled */
+        private ExternalAggregation external = null;
+        /** Whether all morsels are done and the groups computed */
+        private boolean aggregated = false;
+        /** Index of the next table of groups to return */
+        private int nextTable = 0;
+        /** Table of the next group to return, null before the first table is taken */
+        private GroupTable table = null;
+        /** Number of the next group to return in its table */
+        private int nextGroup = 0;
+
+        /**
+         * Constructor for the evaluation.
+         *
+         * @param pipeline pipeline that produces the input of the aggregate
+         * @param sum aggregate at the root
+         */
+        private SumExecution(Pipeline pipeline, SumOperator sum) {
+            this.pipeline = pipeline;
+            this.groupSlots = sum.getGroupSlots();
+            this.productSlots = sum.getProductSlots();
+            this.constantProduct = sum.getConstantProduct();
+            this.layout = sum.getLayout();
+        }
+
+        @Override
+        public TupleBatch next() throws IOException {
+            if (!aggregated) aggregate();
+
+            TupleBatch output = null;
+            while (output == null || !output.isFull()) {
+                if (table == null || nextGroup >= table.size()) {
+                    table = takeTable();
+                    nextGroup = 0;
+                    if (table == null) break;
+                    continue;
+                }
+                if (output == null) output = new TupleBatch(layout);
+                int row = output.nextRow();
+                for (int j = 0;j<groupSlots.length;j++){
+                    output.getColumn(j)[row] = table.getKey(nextGroup, j);
+                }
+                output.getColumn(groupSlots.length)[row] = table.getSum(nextGroup);
+                nextGroup++;
+            }
+            return output;
+        }
+
+        /**
+         * Helper method for getting the next table of groups to return.
+         *
+         * @return returns the table, or null if every group has been returned
+         * @throws IOException throws an error if reading a spill file was unsuccessful
+         */
+        private GroupTable takeTable() throws IOException {
+            if (external != null) return external.nextTable();
+            return nextTable < groups.size() ? groups.get(nextTable++) : null;
+        }
+
+        /**
+         * Helper method for evaluating all morsels and merging the partial aggregates, or
+         * spilling them if the memory budget was exceeded. Without grouping variables there is
+         * a single group, which exists even if the input is empty and is never spilled.
+         *
+         * @throws IOException throws an error if reading from file at a leaf node or writing a
+         * spill file was unsuccessful
+         */
+        private void aggregate() throws IOException {
+            aggregated = true;
+            ExternalAggregation aggregation = new ExternalAggregation(groupSlots.length, Config.getAggregationBudget());
+            long budget = Config.getAggregationBudget() / WorkerPool.getWorkers().getParallelism();
+            Dispatcher<Boolean> dispatcher = pipeline.dispatch(batches -> {
+                GroupTable partial = partials.computeIfAbsent(Thread.currentThread(), t -> new GroupTable(groupSlots.length));
+                for (TupleBatch batch : batches) {
+                    aggregateBatch(batch, partial);
+                }
+                if (groupSlots.length > 0 && partial.getBytes() > budget) {
+                    aggregation.spill(partial);
+                    partials.put(Thread.currentThread(), new GroupTable(groupSlots.length));
+                }
+                return true;
+            });
+            while (dispatcher.next() != null) {
+                // the morsels only change the partial aggregates
+            }
+
+            if (!aggregation.hasSpilled()) {
+                groups = GroupTable.merge(new ArrayList<>(partials.values()), groupSlots.length);
+                if (groupSlots.length == 0) groups.get(0).add(new long[0], 0);
+                return;
+            }
+            // the partial sums still in memory are re-aggregated together with the spilled ones
+            for (GroupTable partial : partials.values()) {
+                aggregation.spill(partial);
+            }
+            external = aggregation;
+        }
+
+        /**
+         * Helper method for adding the products of the rows of a batch to a partial aggregate.
+         *
+         * @param batch output batch of the pipeline
+         * @param partial partial aggregate of the current worker thread
+         */
+        private void aggregateBatch(TupleBatch batch, GroupTable partial) {
+            for (int slot:productSlots){
+                if (batch.getLayout()[slot]) throw new IllegalArgumentException("Field is not an integer");
+            }
+            int[] selection = batch.getSelection();
+            for (int r = 0;r<batch.size();r++){
+                int row = selection[r];
+                long product = constantProduct;
+                for (int slot:productSlots){
+                    product = product * batch.getColumn(slot)[row];
+                }
+                partial.add(batch, groupSlots, row, product);
+            }
+        }
+    }
+}
@@ -2,12 +2,16 @@ package ed.inf.adbs.minibase.operators;
 
 import ed.inf.adbs.minibase.base.RelationalAtom;
 import ed.inf.adbs.minibase.utils.Tuple;
+import ed.inf.adbs.minibase.utils.TupleBatch;
 import ed.inf.adbs.minibase.utils.WriteCSV;
 
 import java.io.IOException;
 
 /**
  * Abstract class for the Operators.
+ *
+ * Operators can be evaluated a tuple at a time with getNextTuple(), or a batch at a time with
+ * getNextBatch(). A parent operator uses one of the two methods on its child consistently.
  */
 public abstract class Operator {
     /**
@@ -18,6 +22,36 @@ public abstract class Operator {
      */
     public abstract Tuple getNextTuple() throws IOException;
 
+    /**
+     * Method for retrieving the next batch of tuples from the child-operator or file. The default
+     * implementation is an adapter that collects up to TupleBatch.CAPACITY tuples from
+     * getNextTuple(), so that tuple-at-a-time operators can be used below batch operators.
+     * Operators that can process whole batches override this method.
+     *
+     * @return returns a batch with at least one selected row, or null if there are no more tuples
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    public TupleBatch getNextBatch() throws IOException {
+        Tuple nextTuple = getNextTuple();
+        if (nextTuple == null) return null;
+
+        TupleBatch batch = new TupleBatch(nextTuple.getLayout());
+        batch.addTuple(nextTuple);
+        while (!batch.isFull() && (nextTuple = getNextTuple()) != null) {
+            batch.addTuple(nextTuple);
+        }
+        return batch;
+    }
+
+    /**
+     * Method for retrieving the layout of the tuples produced by the operation, i.e. which of
+     * their fields are strings. The layout is known when the operator is created, so conditions
+     * can be compiled for the column types before any tuple is read.
+     *
+     * @return returns an array with true for every string field
+     */
+    public abstract boolean[] getLayout();
+
     /**
      * Method for resetting the getNextTuple() method, such that it starts reading at the
      * beginning of the child-operator the next time getNextTuple() is called.
@@ -26,19 +60,23 @@ public abstract class Operator {
 
     /**
      * Method for printing the results of the query. If there is a valid WriteCSV instance, the
-     * Tuples are dumped in a file, otherwise to standard output.
+     * Tuples are dumped in a file, otherwise to standard output. The results are read
+     * a batch at a time.
      */
     public void dump() {
         try {
-            Tuple nextTuple = getNextTuple();
-            while (nextTuple != null) {
-                if (WriteCSV.getWriteCSV()!=null){
-                    WriteCSV writer = WriteCSV.getWriteCSV();
-                    writer.write(nextTuple);
-                } else {
-                    System.out.print(nextTuple);
+            TupleBatch batch = getNextBatch();
+            while (batch != null) {
+                for (int i = 0; i < batch.size(); i++) {
+                    Tuple nextTuple = batch.getTuple(i);
+                    if (WriteCSV.getWriteCSV()!=null){
+                        WriteCSV writer = WriteCSV.getWriteCSV();
+                        writer.write(nextTuple);
+                    } else {
+                        System.out.print(nextTuple);
+                    }
                 }
-                nextTuple = getNextTuple();
+                batch = getNextBatch();
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -0,0 +1,267 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.base.*;
+import ed.inf.adbs.minibase.utils.GroupTable;
+import ed.inf.adbs.minibase.utils.Tuple;
+import ed.inf.adbs.minibase.utils.TupleBatch;
+import ed.inf.adbs.minibase.utils.WorkerPool;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Class for hash join operations on equality conditions that are evaluated by the worker
+ * threads.
+ *
+ * Both children are partitioned by the hash codes of the values of the equality join variables, so
+ * that matching tuples are always in the partition with the same number. The number of partitions
+ * is chosen from the size of the right child so that the hash table of a partition is about
+ * PARTITION_BYTES large, and is at least a few partitions per worker thread.
+ *
+ * The right child is read completely, its batches are partitioned by tasks on the WorkerPool
+ * (every task into partition lists of its own), and a hash table is built for every partition,
+ * again by one task per range of partitions. The left child is then read in chunks of
+ * PROBE_BATCHES batches per worker thread. Every chunk is partitioned in the same way, and every
+ * task probes the hash tables of its range of partitions with the tuples of those partitions.
+ * No task writes to data that another task reads or writes, so no locking is needed.
+ *
+ * The results of a chunk are returned in the order of the partitions, so the join returns the
+ * same tuples as a HashJoinOperator, in a different order.
+ */
+public class ParallelHashJoinOperator extends JoinOperator {
+    /** Estimated number of bytes of the hash table of a partition, so that it fits in a core's cache */
+    private static final long PARTITION_BYTES = 256 << 10;
+    /** Largest number of partitions */
+    private static final int MAX_PARTITIONS = 4096;
+    /** Number of partitions per worker thread, so that the tasks can be balanced */
+    private static final int PARTITIONS_PER_THREAD = 4;
+    /** Number of batches of the left child per worker thread in a chunk */
+    private static final int PROBE_BATCHES = 16;
+
+    /** Hash tables of the partitions of the right child, null until the first call of getNextTuple() */
+    private List<Map<Tuple, List<Tuple>>> tables = null;
+    /** Joined tuples of the current chunk of the left child */
+    private List<Tuple> output = Collections.emptyList();
+    /** Position of the next tuple to return from the output list */
+    private int outputIndex;
+
+    /**
+     * Constructor for the ParallelHashJoinOperator class. The join conditions must include an
+     * equality.
+     *
+     * @param childLeft left child operator (probe side)
+     * @param childRight right child operator (build side)
+     * @param comparisonAtomList list of join conditions (can include non-applicable)
+     */
+    public ParallelHashJoinOperator(Operator childLeft, Operator childRight, List<ComparisonAtom> comparisonAtomList) {
+        super(childLeft, childRight, comparisonAtomList);
+        if (!isEquiJoin()) throw new IllegalArgumentException("Hash join requires an equality join condition");
+    }
+
+    /**
+     * Method for getting the next joined Tuple. Returns the remaining results of the current
+     * chunk first, and otherwise joins the next chunk of the left child.
+     *
+     * @return returns a joined Tuple
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    @Override
+    public Tuple getNextTuple() throws IOException {
+        if (tables == null) build();
+
+        while (outputIndex >= output.size()) {
+            List<TupleBatch> chunk = readBatches(childLeft, WorkerPool.getWorkers().getParallelism() * PROBE_BATCHES);
+            if (chunk.isEmpty()) return null;
+            output = probe(chunk);
+            outputIndex = 0;
+        }
+        return output.get(outputIndex++);
+    }
+
+    /**
+     * Method for building the hash tables from the right child operator. The number of
+     * partitions is chosen once the size of the right child is known.
+     *
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    private void build() throws IOException {
+        List<TupleBatch> batches = readBatches(childRight, Integer.MAX_VALUE);
+        long rows = 0;
+        for (TupleBatch batch : batches) {
+            rows = rows + batch.size();
+        }
+
+        int parallelism = WorkerPool.getWorkers().getParallelism();
+        long bytes = HybridHashJoinOperator.estimateBytes(childRight.getLayout().length, rows);
+        long parts = Math.max(parallelism * PARTITIONS_PER_THREAD, bytes / PARTITION_BYTES + 1);
+        int partitions = (int) Math.min(parts, MAX_PARTITIONS);
+
+        List<List<List<Tuple>>> partitioned = partition(batches, rightKeys, partitions);
+        List<ForkJoinTask<List<Map<Tuple, List<Tuple>>>>> tasks = new ArrayList<>();
+        for (int[] range : ranges(partitions)) {
+            tasks.add(WorkerPool.getWorkers().getPool().submit(() -> {
+                List<Map<Tuple, List<Tuple>>> built = new ArrayList<>();
+                for (int p = range[0]; p < range[1]; p++) {
+                    Map<Tuple, List<Tuple>> table = new HashMap<>();
+                    for (List<List<Tuple>> lists : partitioned) {
+                        for (Tuple tuple : lists.get(p)) {
+                            table.computeIfAbsent(getKey(tuple, rightKeys), k -> new ArrayList<>()).add(tuple);
+                        }
+                    }
+                    built.add(table);
+                }
+                return built;
+            }));
+        }
+
+        tables = new ArrayList<>(partitions);
+        for (ForkJoinTask<List<Map<Tuple, List<Tuple>>>> task : tasks) {
+            tables.addAll(task.join());
+        }
+    }
+
+    /**
+     * Method for joining a chunk of the left child with the hash tables. The chunk is
+     * partitioned, and every task probes the hash tables of a range of partitions.
+     *
+     * @param chunk batches of the left child
+     * @return returns the joined tuples in the order of the partitions
+     */
+    private List<Tuple> probe(List<TupleBatch> chunk) {
+        List<List<List<Tuple>>> partitioned = partition(chunk, leftKeys, tables.size());
+        List<ForkJoinTask<List<Tuple>>> tasks = new ArrayList<>();
+        for (int[] range : ranges(tables.size())) {
+            tasks.add(WorkerPool.getWorkers().getPool().submit(() -> {
+                List<Tuple> joined = new ArrayList<>();
+                for (int p = range[0]; p < range[1]; p++) {
+                    Map<Tuple, List<Tuple>> table = tables.get(p);
+                    for (List<List<Tuple>> lists : partitioned) {
+                        for (Tuple outer : lists.get(p)) {
+                            for (Tuple inner : table.getOrDefault(getKey(outer, leftKeys), Collections.emptyList())) {
+                                if (matchConditions(outer, inner)) joined.add(joinTuples(outer, inner));
+                            }
+                        }
+                    }
+                }
+                return joined;
+            }));
+        }
+
+        List<Tuple> joined = new ArrayList<>();
+        for (ForkJoinTask<List<Tuple>> task : tasks) {
+            joined.addAll(task.join());
+        }
+        return joined;
+    }
+
+    /**
+     * Helper method for partitioning batches by the values of the join variables. The batches
+     * are split into one range per worker thread, and every range is partitioned by its own
+     * task into its own partition lists.
+     *
+     * @param batches batches to partition
+     * @param keys indexes of the join variables in the tuples
+     * @param partitions number of partitions
+     * @return returns the partition lists of every task, in the order of the batches
+     */
+    private static List<List<List<Tuple>>> partition(List<TupleBatch> batches, int[] keys, int partitions) {
+        int parallelism = WorkerPool.getWorkers().getParallelism();
+        List<ForkJoinTask<List<List<Tuple>>>> tasks = new ArrayList<>();
+        for (int t = 0; t < parallelism; t++) {
+            int start = (int) ((long) batches.size() * t / parallelism);
+            int end = (int) ((long) batches.size() * (t + 1) / parallelism);
+            if (start == end) continue;
+            tasks.add(WorkerPool.getWorkers().getPool().submit(() -> {
+                List<List<Tuple>> lists = new ArrayList<>(partitions);
+                for (int p = 0; p < partitions; p++) {
+                    lists.add(new ArrayList<>());
+                }
+                for (TupleBatch batch : batches.subList(start, end)) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        Tuple tuple = batch.getTuple(i);
+                        lists.get(partitionOf(tuple, keys, partitions)).add(tuple);
+                    }
+                }
+                return lists;
+            }));
+        }
+
+        List<List<List<Tuple>>> partitioned = new ArrayList<>();
+        for (ForkJoinTask<List<List<Tuple>>> task : tasks) {
+            partitioned.add(task.join());
+        }
+        return partitioned;
+    }
+
+    /**
+     * Helper method for splitting the partitions into ranges, one task per range.
+     *
+     * @param partitions number of partitions
+     * @return returns the start and end of every range
+     */
+    private static List<int[]> ranges(int partitions) {
+        int tasks = Math.min(partitions, WorkerPool.getWorkers().getParallelism() * PARTITIONS_PER_THREAD);
+        List<int[]> ranges = new ArrayList<>();
+        for (int t = 0; t < tasks; t++) {
+            ranges.add(new int[]{(int) ((long) partitions * t / tasks), (int) ((long) partitions * (t + 1) / tasks)});
+        }
+        return ranges;
+    }
+
+    /**
+     * Helper method for reading batches from a child operator.
+     *
+     * @param child child operator
+     * @param limit largest number of batches to read
+     * @return returns the batches, an empty list at the end of the child
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    private static List<TupleBatch> readBatches(Operator child, int limit) throws IOException {
+        List<TupleBatch> batches = new ArrayList<>();
+        while (batches.size() < limit) {
+            TupleBatch batch = child.getNextBatch();
+            if (batch == null) break;
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Helper method for choosing the partition of a tuple from the values of its join variables.
+     *
+     * @param tuple tuple to partition
+     * @param keys indexes of the join variables in the tuple
+     * @param partitions number of partitions
+     * @return returns the partition of the tuple
+     */
+    private static int partitionOf(Tuple tuple, int[] keys, int partitions) {
+        int hash = 0;
+        for (int key : keys) {
+            hash = hash * 31 + Long.hashCode(tuple.get(key));
+        }
+        return GroupTable.partition(hash, partitions, 0);
+    }
+
+    /**
+     * Method for resetting the ParallelHashJoinOperator. The hash tables are kept, so only the
+     * left child has to be read again.
+     */
+    @Override
+    public void reset() {
+        childLeft.reset();
+        output = Collections.emptyList();
+        outputIndex = 0;
+    }
+
+    /**
+     * Setter for the right child operation. The hash tables are rebuilt from the new child.
+     *
+     * @param childRight right child operation
+     */
+    @Override
+    public void setChildRight(Operator childRight) {
+        super.setChildRight(childRight);
+        tables = null;
+    }
+}
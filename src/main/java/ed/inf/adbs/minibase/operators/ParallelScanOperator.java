@@ -0,0 +1,237 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.base.Constant;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.utils.DatabaseCatalog;
+import ed.inf.adbs.minibase.utils.MappedCSVReader;
+import ed.inf.adbs.minibase.utils.Predicate;
+import ed.inf.adbs.minibase.utils.Tuple;
+import ed.inf.adbs.minibase.utils.TupleBatch;
+import ed.inf.adbs.minibase.utils.WorkerPool;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Class for scanning a relation file with several threads. The file is split into chunks of
+ * whole lines (see MappedCSVReader.splitLines()), and every chunk is parsed into batches by its
+ * own MappedCSVReader on the WorkerPool, with the same used columns and pushed down predicate as
+ * ScanOperator.
+ *
+ * At most two chunks per worker thread are parsed ahead of the parent, so the memory used does
+ * not grow with the size of the file. The batches are returned in the order of the chunks, so
+ * the tuples come in the same order as from ScanOperator. Files smaller than
+ * MIN_PARALLEL_BYTES are parsed as a single chunk.
+ */
+public class ParallelScanOperator extends Operator {
+    /** Size in bytes of the smallest file that is split into several chunks */
+    private static final long MIN_PARALLEL_BYTES = 1 << 20;
+    /** Size in bytes that chunks of large files are split into */
+    private static final long CHUNK_BYTES = 4 << 20;
+    /** Number of chunks per worker thread that are parsed ahead of the parent */
+    private static final int CHUNKS_AHEAD = 2;
+
+    /** Path to the file that stores the table that will be scanned */
+    private final String path;
+    /** Schema for the table that will be scanned */
+    private final List<Class<? extends Constant>> schema;
+    /** Tuple layout of the table that will be scanned */
+    private final boolean[] layout;
+    /** Columns that are parsed, the fields of the other columns are left as 0 */
+    private final boolean[] usedColumns;
+    /** Predicate that the returned tuples satisfy, null if every row is returned */
+    private final Predicate predicate;
+    /** The base Relational Atom that "prompted" the file scan */
+    private final RelationalAtom atom;
+    /** Offsets of the chunk boundaries in the file, null until the file is split */
+    private long[] boundaries;
+    /** Whether the first chunks of the current scan have been submitted */
+    private boolean started = false;
+    /** Index of the next chunk to submit */
+    private int nextChunk;
+    /** Chunks that have been submitted and not yet returned, in file order */
+    private final Deque<Future<List<TupleBatch>>> pending = new ArrayDeque<>();
+    /** Batches of the chunk that is being returned */
+    private List<TupleBatch> chunkBatches;
+    /** Index of the next batch of chunkBatches to return */
+    private int nextBatch;
+    /** Batch that getNextTuple() returns rows from */
+    private TupleBatch tupleBatch;
+    /** Position in the batch of the next row getNextTuple() returns */
+    private int tupleRow;
+
+    /**
+     * Constructor for the ParallelScanOperator class.
+     *
+     * @param fileName name of the relation
+     * @param atom base RelationalAtom
+     * @param usedColumns array with true for every column that should be parsed, or null to
+     *                    parse every column
+     * @param predicate predicate that the returned tuples must satisfy, or null to return every
+     *                  row. The columns it reads must be used columns
+     * @throws FileNotFoundException if there is no file with the given relation name
+     */
+    public ParallelScanOperator(String fileName, RelationalAtom atom, boolean[] usedColumns, Predicate predicate) throws FileNotFoundException {
+        DatabaseCatalog catalog = DatabaseCatalog.getCatalog();
+        if (catalog.getSchema(fileName)==null) {
+            throw new IllegalArgumentException("Filename does not exist in schema");
+        }
+        this.schema = catalog.getSchema(fileName);
+        this.layout = catalog.getLayout(fileName);
+        this.usedColumns = usedColumns;
+        this.predicate = predicate;
+        this.path = catalog.getFilePath(fileName);
+        if (!new File(this.path).isFile()) throw new FileNotFoundException(this.path);
+        this.atom = atom;
+    }
+
+    /**
+     * Method for reading the next tuple from the file.
+     *
+     * @return returns a tuple from the database
+     * @throws IOException throws an error if reading from file was unsuccessful
+     */
+    @Override
+    public Tuple getNextTuple() throws IOException {
+        while (tupleBatch == null || tupleRow >= tupleBatch.size()) {
+            tupleBatch = getNextBatch();
+            if (tupleBatch == null) return null;
+            tupleRow = 0;
+        }
+        return tupleBatch.getTuple(tupleRow++);
+    }
+
+    /**
+     * Method for reading the next batch of tuples from the file. Waits for the next chunk if it
+     * has not been parsed yet, and submits a new chunk for every chunk that is taken.
+     *
+     * @return returns a batch of tuples from the database, or null at the end of the file
+     * @throws IOException throws an error if reading from file was unsuccessful
+     */
+    @Override
+    public TupleBatch getNextBatch() throws IOException {
+        if (!started) start();
+
+        while (chunkBatches == null || nextBatch >= chunkBatches.size()) {
+            if (pending.isEmpty()) return null;
+            chunkBatches = await(pending.poll());
+            nextBatch = 0;
+            submit();
+        }
+        return chunkBatches.get(nextBatch++);
+    }
+
+    /**
+     * Helper method for submitting the first chunks of a scan. The file is split into chunks by
+     * the first scan, and the later scans after a reset use the same chunks.
+     *
+     * @throws IOException throws an error if the file could not be read
+     */
+    private void start() throws IOException {
+        int parallelism = WorkerPool.getWorkers().getParallelism();
+        if (boundaries == null) {
+            long size = new File(path).length();
+            long chunks = size < MIN_PARALLEL_BYTES ? 1 : Math.max(parallelism, size / CHUNK_BYTES);
+            boundaries = MappedCSVReader.splitLines(path, (int) Math.min(chunks, Integer.MAX_VALUE));
+        }
+        started = true;
+        nextChunk = 0;
+        for (int i = 0; i < parallelism * CHUNKS_AHEAD; i++) {
+            submit();
+        }
+    }
+
+    /**
+     * Helper method for submitting the next chunk to the worker threads, if there is one.
+     */
+    private void submit() {
+        if (nextChunk >= boundaries.length - 1) return;
+        long start = boundaries[nextChunk];
+        long end = boundaries[nextChunk + 1];
+        nextChunk++;
+        pending.add(WorkerPool.getWorkers().getPool().submit(() -> parseChunk(start, end)));
+    }
+
+    /**
+     * Helper method for parsing a chunk of the file into batches. Runs on a worker thread.
+     *
+     * @param start offset of the start of the chunk
+     * @param end offset after the end of the chunk
+     * @return returns the batches of the tuples in the chunk that satisfy the predicate
+     * @throws IOException throws an error if the chunk could not be read
+     */
+    private List<TupleBatch> parseChunk(long start, long end) throws IOException {
+        MappedCSVReader reader = new MappedCSVReader(path, schema, layout, usedColumns, predicate, start, end);
+        List<TupleBatch> batches = new ArrayList<>();
+        TupleBatch batch = reader.readBatch();
+        while (batch != null) {
+            batches.add(batch);
+            batch = reader.readBatch();
+        }
+        return batches;
+    }
+
+    /**
+     * Helper method for waiting for a submitted chunk. Errors of the worker thread are thrown
+     * again in the calling thread.
+     *
+     * @param chunk submitted chunk
+     * @return returns the batches of the chunk
+     * @throws IOException throws an error if the chunk could not be read
+     */
+    private static List<TupleBatch> await(Future<List<TupleBatch>> chunk) throws IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a chunk of the scan", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Method for resetting the ParallelScanOperator. Chunks that are still being parsed are
+     * cancelled, and the next getNextBatch() call starts again with the first chunk.
+     */
+    @Override
+    public void reset() {
+        for (Future<List<TupleBatch>> chunk : pending) {
+            chunk.cancel(false);
+        }
+        pending.clear();
+        started = false;
+        chunkBatches = null;
+        tupleBatch = null;
+    }
+
+    /**
+     * Method for retrieving the layout of the scanned table.
+     *
+     * @return returns the layout of the table
+     */
+    @Override
+    public boolean[] getLayout() {
+        return layout;
+    }
+
+    /**
+     * Method for retrieving the base RelationalAtom
+     *
+     * @return returns the base RelationalAtom
+     */
+    @Override
+    public RelationalAtom getAtom() {
+        return atom;
+    }
+}
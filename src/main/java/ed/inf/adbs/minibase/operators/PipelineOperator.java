@@ -0,0 +1,100 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.utils.Pipeline;
+import ed.inf.adbs.minibase.utils.Tuple;
+import ed.inf.adbs.minibase.utils.TupleBatch;
+
+import java.io.IOException;
+
+/**
+ * Class for evaluating a compiled Pipeline on a source operator. The operator replaces a chain
+ * of SelectOperators followed by a ProjectOperator or a SumOperator (see PipelineCompiler), and
+ * produces the same tuples as the chain it replaces.
+ */
+public class PipelineOperator extends Operator {
+    /** Compiled pipeline */
+    private final Pipeline pipeline;
+    /** Operator that produces the input batches of the pipeline */
+    private final Operator source;
+    /** Base relational atom of the output */
+    private final RelationalAtom atom;
+    /** Current evaluation of the pipeline */
+    private Pipeline.Execution execution;
+    /** Batch that getNextTuple() returns rows from */
+    private TupleBatch tupleBatch;
+    /** Position in the selection vector of the next row getNextTuple() returns */
+    private int tupleRow;
+
+    /**
+     * Constructor for the PipelineOperator class.
+     *
+     * @param pipeline compiled pipeline
+     * @param source operator that produces the input batches of the pipeline
+     * @param atom base relational atom of the output
+     */
+    public PipelineOperator(Pipeline pipeline, Operator source, RelationalAtom atom) {
+        this.pipeline = pipeline;
+        this.source = source;
+        this.atom = atom;
+        this.execution = pipeline.execute(source);
+    }
+
+    /**
+     * Method for getting the next tuple of the output.
+     *
+     * @return returns a tuple from the output, or null if there are no more results
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    @Override
+    public Tuple getNextTuple() throws IOException {
+        while (tupleBatch == null || tupleRow >= tupleBatch.size()) {
+            tupleBatch = execution.next();
+            if (tupleBatch == null) return null;
+            tupleRow = 0;
+        }
+        return tupleBatch.getTuple(tupleRow++);
+    }
+
+    /**
+     * Method for getting the next batch of the output.
+     *
+     * @return returns a batch of tuples from the output, or null if there are no more results
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    @Override
+    public TupleBatch getNextBatch() throws IOException {
+        return execution.next();
+    }
+
+    /**
+     * Method for resetting the PipelineOperator. The source is reset and a new evaluation of the
+     * pipeline is started.
+     */
+    @Override
+    public void reset() {
+        source.reset();
+        execution = pipeline.execute(source);
+        tupleBatch = null;
+    }
+
+    /**
+     * Method for retrieving the layout of the output tuples.
+     *
+     * @return returns the layout of the pipeline output
+     */
+    @Override
+    public boolean[] getLayout() {
+        return pipeline.getLayout();
+    }
+
+    /**
+     * Method for retrieving the base RelationalAtom
+     *
+     * @return returns the base RelationalAtom
+     */
+    @Override
+    public RelationalAtom getAtom() {
+        return atom;
+    }
+}
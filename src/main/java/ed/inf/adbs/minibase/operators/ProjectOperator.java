@@ -2,6 +2,7 @@ package ed.inf.adbs.minibase.operators;
 
 import ed.inf.adbs.minibase.base.*;
 import ed.inf.adbs.minibase.utils.Tuple;
+import ed.inf.adbs.minibase.utils.TupleBatch;
 
 import java.io.IOException;
 import java.util.*;
@@ -17,9 +18,11 @@ public class ProjectOperator extends Operator {
     /** List of variables that should be in the output */
     private final List<Variable> outputVars;
     /** Indexes of the variables in the relational atom */
-    private List<Integer> outputIndexes;
+    private int[] outputIndexes;
     /** Base relational atom */
     private RelationalAtom atom;
+    /** Tuple layout of the output */
+    private boolean[] layout;
 
     /**
      * Constructor for the ProjectOperator class. The constructor calls outputIndexes()
@@ -37,6 +40,7 @@ public class ProjectOperator extends Operator {
         this.atom = atom;
         outputIndexes();
         updateAtom();
+        setLayout(child.getLayout());
     }
 
     /**
@@ -52,7 +56,10 @@ public class ProjectOperator extends Operator {
                 indexes.add(index);
             }
         }
-        outputIndexes = indexes;
+        outputIndexes = new int[indexes.size()];
+        for (int i = 0;i<indexes.size();i++){
+            outputIndexes[i] = indexes.get(i);
+        }
     }
 
     /**
@@ -61,7 +68,7 @@ public class ProjectOperator extends Operator {
      */
     private void updateAtom(){
         List<Term> terms = new ArrayList<>();
-        for (Integer index:outputIndexes){
+        for (int index:outputIndexes){
             if (!terms.contains(atom.getTerms().get(index))) terms.add(atom.getTerms().get(index));
         }
         atom = new RelationalAtom(atom.getName(),terms);
@@ -78,13 +85,12 @@ public class ProjectOperator extends Operator {
     public Tuple getNextTuple() throws IOException {
         Tuple nextTuple = child.getNextTuple();
         while (nextTuple != null) {
-            List<Constant> keepFields = new ArrayList<>();
-
-            for (Integer index:outputIndexes){
-                keepFields.add(nextTuple.getFields().get(index));
+            long[] keepFields = new long[outputIndexes.length];
+            for (int i = 0;i<outputIndexes.length;i++){
+                keepFields[i] = nextTuple.get(outputIndexes[i]);
             }
 
-            Tuple keepTuple = new Tuple(keepFields);
+            Tuple keepTuple = new Tuple(keepFields, layout);
 
             if (!outputBuffer.contains(keepTuple)) {
                 outputBuffer.add(keepTuple);
@@ -96,6 +102,49 @@ public class ProjectOperator extends Operator {
         return null;
     }
 
+    /**
+     * Method for reading the next batch from the child operation and returning only the
+     * specified projection variables. Rows that have already been returned are left out.
+     *
+     * @return returns a batch with only the terms specified by outputVars, or null if there are no more results
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    @Override
+    public TupleBatch getNextBatch() throws IOException {
+        TupleBatch batch = child.getNextBatch();
+        while (batch != null) {
+            TupleBatch output = null;
+            int[] selection = batch.getSelection();
+            for (int i = 0;i<batch.size();i++){
+                long[] keepFields = new long[outputIndexes.length];
+                for (int j = 0;j<outputIndexes.length;j++){
+                    keepFields[j] = batch.getColumn(outputIndexes[j])[selection[i]];
+                }
+
+                if (outputBuffer.add(new Tuple(keepFields, layout))) {
+                    if (output == null) output = new TupleBatch(layout);
+                    output.addRow(keepFields);
+                }
+            }
+
+            if (output != null) return output;
+            batch = child.getNextBatch();
+        }
+        return null;
+    }
+
+    /**
+     * Helper method for setting the output layout from the layout of the child operation.
+     *
+     * @param childLayout layout of the tuples from the child operation
+     */
+    private void setLayout(boolean[] childLayout){
+        layout = new boolean[outputIndexes.length];
+        for (int i = 0;i<outputIndexes.length;i++){
+            layout[i] = childLayout[outputIndexes[i]];
+        }
+    }
+
     /**
      * Method for resetting the ProjectOperation. The next getNextTuple() call will start
      * reading at the beginning of the child operation output. The outputBuffer variable
@@ -107,6 +156,34 @@ public class ProjectOperator extends Operator {
         child.reset();
     }
 
+    /**
+     * Method for retrieving the layout of the projected tuples.
+     *
+     * @return returns the layout of the output
+     */
+    @Override
+    public boolean[] getLayout() {
+        return layout;
+    }
+
+    /**
+     * Getter for the child operation.
+     *
+     * @return returns the child operation
+     */
+    public Operator getChild() {
+        return child;
+    }
+
+    /**
+     * Getter for the slots of the output variables in the base relational atom of the child.
+     *
+     * @return returns the slots in output order
+     */
+    public int[] getOutputIndexes() {
+        return outputIndexes;
+    }
+
     /**
      * Method for retrieving the base RelationalAtom
      *
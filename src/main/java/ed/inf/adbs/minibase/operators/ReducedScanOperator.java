@@ -0,0 +1,102 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.utils.SemiJoinReduction;
+import ed.inf.adbs.minibase.utils.Tuple;
+import ed.inf.adbs.minibase.utils.TupleBatch;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Class for scanning a relation after the semi-join reduction of an acyclic query (see
+ * SemiJoinReduction). The reduction reads all relations of the query on the first call of
+ * getNextBatch() of any of its scans, and every scan then returns the remaining tuples of its
+ * relation from memory. The scan has the same base relational atom and layout as the scan of
+ * the relation, so the joins above it are planned as before.
+ */
+public class ReducedScanOperator extends Operator {
+    /** Semi-join reduction of the relations of the query */
+    private final SemiJoinReduction reduction;
+    /** Position of the relation in the reduction */
+    private final int index;
+    /** Reduced batches of the relation, null until the reduction has run */
+    private List<TupleBatch> batches = null;
+    /** Index of the next batch to return */
+    private int nextBatch = 0;
+    /** Batch that getNextTuple() returns rows from */
+    private TupleBatch tupleBatch;
+    /** Position in the selection vector of the next row getNextTuple() returns */
+    private int tupleRow;
+
+    /**
+     * Constructor for the ReducedScanOperator class.
+     *
+     * @param reduction semi-join reduction of the relations of the query
+     * @param index position of the relation in the reduction
+     */
+    public ReducedScanOperator(SemiJoinReduction reduction, int index) {
+        this.reduction = reduction;
+        this.index = index;
+    }
+
+    /**
+     * Method for getting the next tuple of the reduced relation.
+     *
+     * @return returns a tuple from the relation
+     * @throws IOException throws an error if reading from file was unsuccessful
+     */
+    @Override
+    public Tuple getNextTuple() throws IOException {
+        while (tupleBatch == null || tupleRow >= tupleBatch.size()) {
+            tupleBatch = getNextBatch();
+            if (tupleBatch == null) return null;
+            tupleRow = 0;
+        }
+        return tupleBatch.getTuple(tupleRow++);
+    }
+
+    /**
+     * Method for getting the next batch of the reduced relation. The batches are views, so
+     * filters of the parent do not change the reduced relation.
+     *
+     * @return returns a batch of tuples from the relation, or null at the end of the relation
+     * @throws IOException throws an error if reading from file was unsuccessful
+     */
+    @Override
+    public TupleBatch getNextBatch() throws IOException {
+        if (batches == null) batches = reduction.getRelation(index);
+        if (nextBatch >= batches.size()) return null;
+        return batches.get(nextBatch++).view();
+    }
+
+    /**
+     * Method for resetting the ReducedScanOperator. The next call starts again at the first
+     * batch of the reduced relation.
+     */
+    @Override
+    public void reset() {
+        nextBatch = 0;
+        tupleBatch = null;
+    }
+
+    /**
+     * Method for retrieving the layout of the scanned relation.
+     *
+     * @return returns the layout of the relation
+     */
+    @Override
+    public boolean[] getLayout() {
+        return reduction.getScan(index).getLayout();
+    }
+
+    /**
+     * Method for retrieving the base RelationalAtom
+     *
+     * @return returns the base RelationalAtom
+     */
+    @Override
+    public RelationalAtom getAtom() {
+        return reduction.getScan(index).getAtom();
+    }
+}
@@ -4,10 +4,16 @@ import ed.inf.adbs.minibase.base.Constant;
 import ed.inf.adbs.minibase.base.IntegerConstant;
 import ed.inf.adbs.minibase.base.RelationalAtom;
 import ed.inf.adbs.minibase.base.StringConstant;
+import ed.inf.adbs.minibase.utils.Config;
 import ed.inf.adbs.minibase.utils.DatabaseCatalog;
+import ed.inf.adbs.minibase.utils.MappedCSVReader;
+import ed.inf.adbs.minibase.utils.Predicate;
+import ed.inf.adbs.minibase.utils.StringDictionary;
 import ed.inf.adbs.minibase.utils.Tuple;
+import ed.inf.adbs.minibase.utils.TupleBatch;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
@@ -18,33 +24,89 @@ import java.util.List;
 /**
  * Class for scan operations. The constructor (or reset) sets the reader to the start
  * of the file. Then as getNextTuple() is called parse() is used to parse a line from file.
+ *
+ * By default the file is instead read through a MappedCSVReader, which parses the fields
+ * directly from a memory-mapped buffer (see Config.useMemoryMappedScan()).
+ *
+ * The scan can be given the columns that the query uses. The fields of the other columns are
+ * not converted (the memory-mapped scan skips them at the byte level) and are 0 in the tuples.
+ * It can also be given a predicate pushed down from the selections of the query, which is
+ * evaluated field by field while a row is parsed: the row is abandoned as soon as a comparison
+ * fails, and only rows that satisfy the predicate become tuples.
  */
 public class ScanOperator extends Operator {
     /** Reader for reading the database files line by line */
     private BufferedReader reader;
+    /** Reader for the memory-mapped file, null unless the memory-mapped scan is used */
+    private MappedCSVReader mappedReader;
+    /** Whether the file is scanned through a memory-mapped buffer */
+    private final boolean memoryMapped;
     /** Path to the file that stores the table that will be scanned */
     private final String path;
     /** Schema for the table that will be scanned */
     private final List<Class<? extends Constant>> schema;
+    /** Tuple layout of the table that will be scanned */
+    private final boolean[] layout;
+    /** Columns that are parsed, the fields of the other columns are left as 0 */
+    private final boolean[] usedColumns;
+    /** Predicate that the returned tuples satisfy, null if every row is returned */
+    private final Predicate predicate;
+    /** Parts of the predicate by the column after which they are evaluated, null if there is none */
+    private final Predicate[] checks;
+    /** Values of the row that is being parsed by parse() */
+    private final long[] rowFields;
+    /** Tuple over rowFields that the predicate is evaluated on */
+    private final Tuple row;
     /** The base Relational Atom that "prompted" the file scan */
     private final RelationalAtom atom;
 
     /**
-     * Constructor for the ScanOperator class.
+     * Constructor for the ScanOperator class that parses every column.
      *
      * @param fileName name of the relation
      * @param atom base RelationalAtom
      * @throws FileNotFoundException if there is no file with the given relation name
      */
     public ScanOperator(String fileName, RelationalAtom atom) throws FileNotFoundException {
+        this(fileName, atom, null, null);
+    }
+
+    /**
+     * Constructor for the ScanOperator class.
+     *
+     * @param fileName name of the relation
+     * @param atom base RelationalAtom
+     * @param usedColumns array with true for every column that should be parsed, or null to
+     *                    parse every column
+     * @param predicate predicate that the returned tuples must satisfy, or null to return every
+     *                  row. The columns it reads must be used columns
+     * @throws FileNotFoundException if there is no file with the given relation name
+     */
+    public ScanOperator(String fileName, RelationalAtom atom, boolean[] usedColumns, Predicate predicate) throws FileNotFoundException {
         DatabaseCatalog catalog = DatabaseCatalog.getCatalog();
         if (catalog.getSchema(fileName)==null) {
             throw new IllegalArgumentException("Filename does not exist in schema");
         } else {
             this.schema = catalog.getSchema(fileName);
         }
-        this.path = catalog.getDirectory() + "/files/" + fileName + ".csv";
-        this.reader = new BufferedReader(new FileReader(this.path));
+        this.layout = catalog.getLayout(fileName);
+        if (usedColumns == null) {
+            usedColumns = new boolean[layout.length];
+            Arrays.fill(usedColumns, true);
+        }
+        this.usedColumns = usedColumns;
+        this.predicate = predicate;
+        this.checks = predicate == null ? null : predicate.splitByLastSlot(layout.length);
+        this.rowFields = new long[layout.length];
+        this.row = new Tuple(rowFields, layout);
+        this.path = catalog.getFilePath(fileName);
+        this.memoryMapped = Config.useMemoryMappedScan();
+        if (memoryMapped) {
+            // the file is mapped on the first call to getNextTuple()
+            if (!new File(this.path).isFile()) throw new FileNotFoundException(this.path);
+        } else {
+            this.reader = new BufferedReader(new FileReader(this.path));
+        }
         this.atom = atom;
     }
 
@@ -56,54 +118,87 @@ public class ScanOperator extends Operator {
      */
     @Override
     public Tuple getNextTuple() throws IOException {
+        if (memoryMapped) {
+            if (mappedReader == null) mappedReader = new MappedCSVReader(path, schema, layout, usedColumns, predicate);
+            return mappedReader.readTuple();
+        }
+
         String nextLine = reader.readLine();
-        if (nextLine == null) {
-            return null;
-        } else {
-            return parse(nextLine);
+        while (nextLine != null) {
+            Tuple tuple = parse(nextLine);
+            if (tuple != null) return tuple;
+            nextLine = reader.readLine();
+        }
+        return null;
+    }
+
+    /**
+     * Method for reading the next batch of tuples from the file. The memory-mapped scan parses
+     * the lines straight into the batch, otherwise the tuples are collected by getNextTuple().
+     *
+     * @return returns a batch of tuples from the database, or null at the end of the file
+     * @throws IOException throws an error if reading from file was unsuccessful
+     */
+    @Override
+    public TupleBatch getNextBatch() throws IOException {
+        if (memoryMapped) {
+            if (mappedReader == null) mappedReader = new MappedCSVReader(path, schema, layout, usedColumns, predicate);
+            return mappedReader.readBatch();
         }
+        return super.getNextBatch();
     }
 
     /**
-     * Method for parsing the string read from file into a Tuple object.
+     * Method for parsing the string read from file into a Tuple object. The fields of unused
+     * columns are not converted, and the parts of the predicate are evaluated as soon as their
+     * columns have been converted.
      *
      * @param line string as read from file
-     * @return returns a Tuple object
+     * @return returns a Tuple object, or null if the row does not satisfy the predicate
      */
     private Tuple parse(String line) {
         // fields in the tuple
-        List<Constant> fields = new ArrayList<>();
+        long[] fields = rowFields;
+
+        // a blank line has no fields, the memory-mapped scan rejects it in the same way
+        if (line.trim().isEmpty()) throw new IllegalArgumentException("Number of fields in file does not match schema");
 
         // input string split by commas
         List<String> getParts = new ArrayList<>(Arrays.asList(line.split(",")));
 
         if (getParts.size()!=schema.size()) throw new IllegalArgumentException("Number of fields in file does not match schema");
 
-        // iterate through comma split list and create objects of Constant subclasses
+        // iterate through comma split list and convert the fields of the used columns
         for (int i = 0;i<getParts.size();i++){
-            Class<? extends Constant> type = schema.get(i);
-            String value = getParts.get(i).trim();
-            Constant constant;
-
-            if (type==StringConstant.class && value.charAt(0)=='\''){
-                if (value.charAt(value.length() - 1)!='\''){
-                    throw new IllegalArgumentException("String is not enclosed properly with ' ");
-                }
-                String strippedValue = value.substring(1, value.length() - 1);
-                constant = new StringConstant(strippedValue);
-            } else if (type==IntegerConstant.class) {
-                try{
-                    int num = Integer.parseInt(value);
-                    constant = new IntegerConstant(num);
-                } catch (NumberFormatException e) {
-                    throw new NumberFormatException("Value is not an integer");
-                }
-            } else {
-                throw new IllegalArgumentException("Illegal type in schema");
+            if (usedColumns[i]) fields[i] = parseField(getParts.get(i).trim(), schema.get(i));
+            if (checks != null && !checks[i].test(row)) return null;
+        }
+        return new Tuple(fields.clone(), layout);
+    }
+
+    /**
+     * Helper method for converting a field read from file into its value.
+     *
+     * @param value field without surrounding whitespace
+     * @param type type of the column in the schema
+     * @return returns the integer value or the string code of the field
+     */
+    private long parseField(String value, Class<? extends Constant> type) {
+        if (type==StringConstant.class && value.charAt(0)=='\''){
+            if (value.charAt(value.length() - 1)!='\''){
+                throw new IllegalArgumentException("String is not enclosed properly with ' ");
             }
-            fields.add(constant);
+            String strippedValue = value.substring(1, value.length() - 1);
+            return StringDictionary.getDictionary().encode(strippedValue);
+        } else if (type==IntegerConstant.class) {
+            try{
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new NumberFormatException("Value is not an integer");
+            }
+        } else {
+            throw new IllegalArgumentException("Illegal type in schema");
         }
-        return new Tuple(fields);
     }
 
     /**
@@ -113,12 +208,26 @@ public class ScanOperator extends Operator {
     @Override
     public void reset() {
         try {
-            this.reader = new BufferedReader(new FileReader(this.path));
-        } catch (FileNotFoundException e) {
+            if (memoryMapped) {
+                if (mappedReader != null) mappedReader.reset();
+            } else {
+                this.reader = new BufferedReader(new FileReader(this.path));
+            }
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Method for retrieving the layout of the scanned table.
+     *
+     * @return returns the layout of the table
+     */
+    @Override
+    public boolean[] getLayout() {
+        return layout;
+    }
+
     /**
      * Method for retrieving the base RelationalAtom
      *
@@ -1,17 +1,22 @@
 package ed.inf.adbs.minibase.operators;
 
 import ed.inf.adbs.minibase.base.*;
+import ed.inf.adbs.minibase.utils.Predicate;
 import ed.inf.adbs.minibase.utils.Tuple;
-import ed.inf.adbs.minibase.utils.CompareUtil;
+import ed.inf.adbs.minibase.utils.TupleBatch;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
 /**
  * Class for select operations. Selection checks both that all of the explicit conditions
  * are met, and that any constants in the base relation matches.
+ *
+ * The conditions are compiled when the operator is created: every variable is resolved to its
+ * slot in the base relational atom, every constant is encoded, and the comparisons are compiled
+ * for the column types of the child into a single Predicate. No terms, types or operators are
+ * looked up while tuples are filtered.
  */
 public class SelectOperator extends Operator{
     /** Child operator */
@@ -20,10 +25,13 @@ public class SelectOperator extends Operator{
     private final List<ComparisonAtom> comparisonAtomList;
     /** Base relational atom */
     private RelationalAtom atom;
+    /** Conjunction of the constant matches and the selection conditions */
+    private Predicate predicate;
 
     /**
      * Constructor for the SelectOperator class. Uses removeIrrelevantComparisons() to parse
-     * the input conditions so that only conditions relevant to the base relation remain.
+     * the input conditions so that only conditions relevant to the base relation remain,
+     * and compiles them with compile().
      *
      * @param child child operation
      * @param comparisonAtomList list of condition atoms to select by
@@ -32,26 +40,39 @@ public class SelectOperator extends Operator{
     public SelectOperator(Operator child, List<ComparisonAtom> comparisonAtomList, RelationalAtom atom) {
         this.child = child;
         this.atom = atom;
-        this.comparisonAtomList = removeIrrelevantComparisons(comparisonAtomList);
+        this.comparisonAtomList = removeIrrelevantComparisons(atom, comparisonAtomList);
+        compile();
     }
 
     /**
-     * Method to remove conditions that do not apply to this base relation (i.e. if no
-     * variable in the comparison atom exists in this relation).
+     * Method to remove conditions that do not apply to a base relation. A condition applies
+     * if all of its variables exist in the relation. Conditions between two constants apply to
+     * every relation, and are evaluated when they are compiled.
      *
+     * @param atom base relational atom
      * @param comparisonAtomList list of condition atoms
      * @return returns a minimized list of condition atoms
      */
-    private List<ComparisonAtom> removeIrrelevantComparisons(List<ComparisonAtom> comparisonAtomList){
+    public static List<ComparisonAtom> removeIrrelevantComparisons(RelationalAtom atom, List<ComparisonAtom> comparisonAtomList){
         List<ComparisonAtom> addComparisons = new ArrayList<>();
         for (ComparisonAtom comp:comparisonAtomList){
-            if (atom.getTerms().contains(comp.getTerm1()) || atom.getTerms().contains(comp.getTerm2())){
-                addComparisons.add(comp);
-            }
+            Term term1 = comp.getTerm1();
+            Term term2 = comp.getTerm2();
+            if (term1 instanceof Variable && !atom.getTerms().contains(term1)) continue;
+            if (term2 instanceof Variable && !atom.getTerms().contains(term2)) continue;
+            addComparisons.add(comp);
         }
         return addComparisons;
     }
 
+    /**
+     * Method for compiling the constants of the base relational atom and the selection
+     * conditions into one Predicate.
+     */
+    private void compile(){
+        predicate = Predicate.compile(atom, comparisonAtomList, child.getLayout());
+    }
+
     /**
      * Method for reading the next tuple from the child operation that matches all the
      * selection criteria.
@@ -64,7 +85,7 @@ public class SelectOperator extends Operator{
         Tuple nextTuple = child.getNextTuple();
 
         while (nextTuple != null) {
-            if (match(nextTuple) && (constantMatch(nextTuple))) {
+            if (predicate.test(nextTuple)) {
                 return nextTuple;
             }
             nextTuple  = child.getNextTuple();
@@ -73,111 +94,87 @@ public class SelectOperator extends Operator{
     }
 
     /**
-     * Helper method for getNextTuple(). Checks whether the constants in the input tuple match
-     * the constants in the base relational atom.
+     * Method for reading the next batch from the child operation and removing the rows that do
+     * not match the selection criteria from its selection vector. Batches where no rows match
+     * are skipped.
      *
-     * @param tuple tuple to check condition for
-     * @return returns true if all constants match or there are no constants
+     * @return returns a batch with the rows that match the selection criteria, or null if there are no more results
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
      */
-    private boolean constantMatch(Tuple tuple){
-        for (int i =0;i<atom.getTerms().size();i++){
-            Term term = atom.getTerms().get(i);
-            Constant field = tuple.getFields().get(i);
-            if (term instanceof Constant) {
-                if (term instanceof StringConstant && field instanceof StringConstant){
-                    if (!Objects.equals(((StringConstant) term).getValue(), ((StringConstant) field).getValue())){
-                        return false;
-                    }
-                } else if (term instanceof IntegerConstant && field instanceof IntegerConstant ) {
-                    if (!Objects.equals(((IntegerConstant) term).getValue(), ((IntegerConstant) field).getValue())){
-                        return false;
-                    }
-                } else {
-                    return false;
-                }
-            }
+    @Override
+    public TupleBatch getNextBatch() throws IOException {
+        TupleBatch batch = child.getNextBatch();
+        while (batch != null) {
+            batch.setSize(predicate.filter(batch));
+            if (batch.size() > 0) return batch;
+            batch = child.getNextBatch();
         }
-        return true;
+        return null;
+    }
+
+    /**
+     * Method for resetting the SelectOperation. The next getNextTuple() call will start
+     * reading at the beginning of the child operation output.
+     */
+    @Override
+    public void reset() {
+        child.reset();
     }
 
     /**
-     * Method for checking whether a tuple matches the selection criteria. Iterates through
-     * all criteria in the comparisonAtomList-variable.
+     * Method for retrieving the layout of the selected tuples, which is the layout of the child.
      *
-     * @param tuple a tuple to check criteria for
-     * @return returns true if the tuple matches the criteria
+     * @return returns the layout of the child
      */
-    private boolean match(Tuple tuple){
-        for (ComparisonAtom comp:comparisonAtomList){
-            if (!matchOneCondition(comp,tuple)){
-                return false;
-            }
-        }
-        return true;
+    @Override
+    public boolean[] getLayout() {
+        return child.getLayout();
     }
 
     /**
-     * Helper method for match(). Checks whether a Tuple passes single selection condition.
+     * Method for retrieving the base RelationalAtom
      *
-     * @param comp selection condition
-     * @param tuple tuple to check condition for
-     * @return returns true if the tuple matches the condition
+     * @return returns the base RelationalAtom
      */
-    private boolean matchOneCondition(ComparisonAtom comp,Tuple tuple){
-        if (atom.getTerms().size()!=tuple.getFields().size()) throw new IllegalArgumentException("Mismatch in matchOnePredicate");
-
-        Constant tupleTerm1= null;
-        if (comp.getTerm1() instanceof Variable){
-            int index = atom.getTerms().indexOf(comp.getTerm1());
-            if (index >= 0){
-                tupleTerm1 = tuple.getFields().get(index);
-            }
-        } else {
-            tupleTerm1 = (Constant) comp.getTerm1();
-        }
+    public RelationalAtom getAtom(){
+        return this.atom;
+    }
 
-        Constant tupleTerm2 = null;
-        if (comp.getTerm2() instanceof Variable){
-            int index = atom.getTerms().indexOf(comp.getTerm2());
-            if (index >= 0){
-                tupleTerm2 = tuple.getFields().get(index);
-            }
-        } else {
-            tupleTerm2 = (Constant) comp.getTerm2();
-        }
 
-        if (tupleTerm1==null || tupleTerm2==null){
-            return false;
-        } else {
-            return CompareUtil.evaluateComparison(tupleTerm1,tupleTerm2,comp.getOp());
-        }
+    /**
+     * Getter for the child operation.
+     *
+     * @return returns the child operation
+     */
+    public Operator getChild() {
+        return child;
     }
 
     /**
-     * Method for resetting the SelectOperation. The next getNextTuple() call will start
-     * reading at the beginning of the child operation output.
+     * Getter for the compiled conjunction of the constant matches and the selection conditions.
+     *
+     * @return returns the compiled predicate
      */
-    @Override
-    public void reset() {
-        child.reset();
+    public Predicate getPredicate() {
+        return predicate;
     }
 
     /**
-     * Method for retrieving the base RelationalAtom
+     * Getter for the selection conditions that apply to the base relation.
      *
-     * @return returns the base RelationalAtom
+     * @return returns the list of condition atoms
      */
-    public RelationalAtom getAtom(){
-        return this.atom;
+    public List<ComparisonAtom> getConditions() {
+        return comparisonAtomList;
     }
 
-
     /**
-     * Method for setting base relational atom
+     * Method for setting base relational atom. The conditions are compiled again for the new atom.
      *
      * @param atom base relational atom
      */
     public void setAtom(RelationalAtom atom) {
         this.atom = atom;
+        compile();
     }
 }
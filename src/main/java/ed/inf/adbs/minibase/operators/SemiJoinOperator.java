@@ -0,0 +1,169 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.base.*;
+import ed.inf.adbs.minibase.utils.Tuple;
+import ed.inf.adbs.minibase.utils.TupleBatch;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Class for semi-join operations: the tuples of the left child that match at least one tuple
+ * of the right child. Used for relational atoms that only filter the query by existence, whose
+ * variables are not needed above the join (see QueryPlan).
+ *
+ * The right child is read once into a hash table keyed by the values of the equality join variables
+ * (a single empty key if there are none). Without other join conditions only the keys are kept, and
+ * a left tuple is returned if its key is in the table. Otherwise the left tuple is compared with
+ * the tuples of its key until the first one that satisfies the conditions. Every left tuple is
+ * returned at most once, so the output is never larger than the left child, and it has the layout
+ * and base relational atom of the left child.
+ */
+public class SemiJoinOperator extends JoinOperator {
+    /** Hash table with the tuples from the right child, keyed by the values of the equality join variables */
+    private Map<Tuple, List<Tuple>> hashTable = null;
+
+    /**
+     * Constructor for the SemiJoinOperator class.
+     *
+     * @param childLeft left child operator, whose matching tuples are returned
+     * @param childRight right child operator, which is only checked for matches
+     * @param comparisonAtomList list of join conditions (can include non-applicable)
+     */
+    public SemiJoinOperator(Operator childLeft, Operator childRight, List<ComparisonAtom> comparisonAtomList) {
+        super(childLeft, childRight, comparisonAtomList);
+    }
+
+    /**
+     * Method for building the hash table from the right child operator. Without join conditions
+     * other than equalities the tuples themselves are not needed, and only the keys are stored.
+     *
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    private void build() throws IOException {
+        hashTable = new HashMap<>();
+        Tuple nextTuple = childRight.getNextTuple();
+        while (nextTuple != null) {
+            Tuple key = getKey(nextTuple, rightKeys);
+            if (conditions.isEmpty()) {
+                hashTable.putIfAbsent(key, Collections.emptyList());
+            } else {
+                hashTable.computeIfAbsent(key, k -> new ArrayList<>()).add(nextTuple);
+            }
+            nextTuple = childRight.getNextTuple();
+        }
+    }
+
+    /**
+     * Method for checking whether a left tuple has a match in the hash table. Stops at the
+     * first matching right tuple.
+     *
+     * @param outer tuple of the left child
+     * @return returns true if the tuple should be returned
+     */
+    private boolean hasMatch(Tuple outer) {
+        List<Tuple> matches = hashTable.get(getKey(outer, leftKeys));
+        if (matches == null) return false;
+        if (conditions.isEmpty()) return true;
+        for (Tuple inner : matches) {
+            if (matchConditions(outer, inner)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Method for getting the next left Tuple that has a match in the right child.
+     *
+     * @return returns a Tuple of the left child
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    @Override
+    public Tuple getNextTuple() throws IOException {
+        if (hashTable == null) build();
+
+        Tuple outer = childLeft.getNextTuple();
+        while (outer != null && !hasMatch(outer)) {
+            outer = childLeft.getNextTuple();
+        }
+        return outer;
+    }
+
+    /**
+     * Method for getting the next batch of left tuples that have a match in the right child.
+     * The rows without a match are removed from the selection vector of a view of the batch of
+     * the left child, so no values are copied.
+     *
+     * @return returns a batch of tuples of the left child, or null if there are no more
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    @Override
+    public TupleBatch getNextBatch() throws IOException {
+        if (hashTable == null) build();
+
+        TupleBatch batch = childLeft.getNextBatch();
+        while (batch != null) {
+            TupleBatch filtered = batch.view();
+            int[] selection = filtered.getSelection();
+            int size = 0;
+            for (int i = 0; i < filtered.size(); i++) {
+                if (hasMatch(filtered.getTuple(i))) selection[size++] = selection[i];
+            }
+            filtered.setSize(size);
+            if (size > 0) return filtered;
+            batch = childLeft.getNextBatch();
+        }
+        return null;
+    }
+
+    /**
+     * Method for creating the output tuple from two matching tuples: the left tuple on its own.
+     *
+     * @param outer Tuple from the outer relation (leftChild)
+     * @param inner Tuple from the inner relation (rightChild)
+     * @return returns the outer Tuple
+     */
+    @Override
+    protected Tuple joinTuples(Tuple outer, Tuple inner) {
+        return outer;
+    }
+
+    /**
+     * Method for resetting the SemiJoinOperator. The hash table is kept, so only the left
+     * child has to be read again.
+     */
+    @Override
+    public void reset() {
+        childLeft.reset();
+    }
+
+    /**
+     * Method for retrieving the layout of the output, which is the layout of the left child.
+     *
+     * @return returns the layout of the left child
+     */
+    @Override
+    public boolean[] getLayout() {
+        return childLeft.getLayout();
+    }
+
+    /**
+     * Method for retrieving the base RelationalAtom, which is the atom of the left child.
+     *
+     * @return returns the base RelationalAtom of the left child
+     */
+    @Override
+    public RelationalAtom getAtom() {
+        return childLeft.getAtom();
+    }
+
+    /**
+     * Setter for the right child operation. The hash table is rebuilt from the new child.
+     *
+     * @param childRight right child operation
+     */
+    @Override
+    public void setChildRight(Operator childRight) {
+        super.setChildRight(childRight);
+        hashTable = null;
+    }
+}
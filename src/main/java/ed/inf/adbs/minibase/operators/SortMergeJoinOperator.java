@@ -0,0 +1,208 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.base.*;
+import ed.inf.adbs.minibase.utils.CompareUtil;
+import ed.inf.adbs.minibase.utils.Tuple;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Class for sort-merge join operations on an inequality condition (LT, LEQ, GT or GEQ).
+ *
+ * The first inequality among the join conditions is used for the sweep, any other join
+ * conditions are checked on the candidate pairs. On the first call to getNextTuple() both
+ * children are read and sorted on their join value for the sweep condition.
+ * The left tuples are then swept in ascending order. Since the right tuples are sorted too, the
+ * matches for a left tuple are always a suffix (LT, LEQ) or a prefix (GT, GEQ) of the sorted right
+ * tuples, and the boundary of that range only moves forward during the sweep.
+ */
+public class SortMergeJoinOperator extends JoinOperator {
+    /** Operator of the join condition used for the sweep */
+    private final ComparisonOperator op;
+    /** Index of the sweep variable in the childLeft operation base relation */
+    private int leftIndex;
+    /** Index of the sweep variable in the childRight operation base relation */
+    private int rightIndex;
+    /** Tuples from the left child sorted on the join value */
+    private List<Tuple> leftTuples = null;
+    /** Tuples from the right child sorted on the join value */
+    private List<Tuple> rightTuples = null;
+    /** Position of the current tuple in leftTuples */
+    private int leftPos;
+    /** Boundary of the matching range in rightTuples for the current left tuple */
+    private int boundary;
+    /** Position of the next right tuple to join with the current left tuple */
+    private int rightPos;
+    /** End (exclusive) of the matching range in rightTuples for the current left tuple */
+    private int rightEnd;
+
+    /**
+     * Constructor for the SortMergeJoinOperator class. The join conditions must include an
+     * inequality and no equality.
+     *
+     * @param childLeft left child operator
+     * @param childRight right child operator
+     * @param comparisonAtomList list of join conditions (can include non-applicable)
+     */
+    public SortMergeJoinOperator(Operator childLeft, Operator childRight, List<ComparisonAtom> comparisonAtomList) {
+        super(childLeft, childRight, comparisonAtomList);
+        if (!isRangeJoin()) throw new IllegalArgumentException("Sort-merge join requires an inequality join condition");
+        this.op = conditions.get(getRangeCondition()).getOp();
+    }
+
+    /**
+     * Method for reading both child operators and sorting them on the join value. If the
+     * join values have different types no tuples can match, and both lists are left empty.
+     *
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    private void sort() throws IOException {
+        leftIndex = conditionLeft[getRangeCondition()];
+        rightIndex = conditionRight[getRangeCondition()];
+        leftTuples = readAll(childLeft);
+        rightTuples = readAll(childRight);
+
+        if (!leftTuples.isEmpty() && !rightTuples.isEmpty()
+                && leftTuples.get(0).isString(leftIndex) != rightTuples.get(0).isString(rightIndex)) {
+            leftTuples.clear();
+            rightTuples.clear();
+        }
+
+        leftTuples.sort(byField(leftIndex));
+        rightTuples.sort(byField(rightIndex));
+        leftPos = -1;
+        boundary = 0;
+        rightPos = 0;
+        rightEnd = 0;
+    }
+
+    /**
+     * Helper method for reading all tuples from an operator into a list.
+     *
+     * @param operator operator to read from
+     * @return returns a list with the tuples
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    private static List<Tuple> readAll(Operator operator) throws IOException {
+        List<Tuple> tuples = new ArrayList<>();
+        Tuple nextTuple = operator.getNextTuple();
+        while (nextTuple != null) {
+            tuples.add(nextTuple);
+            nextTuple = operator.getNextTuple();
+        }
+        return tuples;
+    }
+
+    /**
+     * Helper method for creating a comparator that orders tuples on a single field.
+     *
+     * @param index index of the field to order on
+     * @return returns a tuple comparator
+     */
+    private static Comparator<Tuple> byField(int index) {
+        return (a, b) -> CompareUtil.compareValues(a.get(index), b.get(index), a.isString(index));
+    }
+
+    /**
+     * Method for getting the next joined Tuple. When the candidates for the current left tuple have
+     * been checked, the sweep moves to the next left tuple and advances the boundary in the
+     * right tuples until it satisfies the sweep condition. Candidates are returned if they
+     * satisfy all the join conditions.
+     *
+     * @return returns a joined Tuple
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    @Override
+    public Tuple getNextTuple() throws IOException {
+        if (leftTuples == null) sort();
+
+        while (true) {
+            while (rightPos < rightEnd) {
+                Tuple outer = leftTuples.get(leftPos);
+                Tuple inner = rightTuples.get(rightPos++);
+                if (match(outer, inner)) {
+                    return joinTuples(outer, inner);
+                }
+            }
+
+            leftPos++;
+            if (leftPos >= leftTuples.size()) return null;
+            long value = leftTuples.get(leftPos).get(leftIndex);
+            boolean strings = leftTuples.get(leftPos).isString(leftIndex);
+
+            // advance the boundary past all right tuples that are "smaller" than the left value
+            while (boundary < rightTuples.size() && beforeBoundary(value, rightTuples.get(boundary).get(rightIndex), strings)) {
+                boundary++;
+            }
+
+            if (op == ComparisonOperator.LT || op == ComparisonOperator.LEQ) {
+                rightPos = boundary;
+                rightEnd = rightTuples.size();
+            } else {
+                rightPos = 0;
+                rightEnd = boundary;
+            }
+        }
+    }
+
+    /**
+     * Helper method for deciding whether a right value lies before the boundary for a left value.
+     * For LT and LEQ the right values before the boundary are the ones that do not match, for GT
+     * and GEQ they are the ones that do match.
+     *
+     * @param leftValue join value of the left tuple
+     * @param rightValue join value of the right tuple
+     * @param strings whether the join values are string codes
+     * @return returns true if the boundary should move past the right value
+     */
+    private boolean beforeBoundary(long leftValue, long rightValue, boolean strings) {
+        int comparison = CompareUtil.compareValues(rightValue, leftValue, strings);
+        switch (op) {
+            case LT:
+            case GEQ:
+                return comparison <= 0;
+            case LEQ:
+            case GT:
+                return comparison < 0;
+            default:
+                throw new IllegalArgumentException("Unrecognized comparison operator");
+        }
+    }
+
+    /**
+     * Method for resetting the SortMergeJoinOperator. The sorted tuples are kept, so the
+     * next getNextTuple() call starts the sweep from the beginning without reading the children.
+     */
+    @Override
+    public void reset() {
+        leftPos = -1;
+        boundary = 0;
+        rightPos = 0;
+        rightEnd = 0;
+    }
+
+    /**
+     * Setter for the left child operation. The children are read and sorted again.
+     *
+     * @param childLeft left child operation
+     */
+    @Override
+    public void setChildLeft(Operator childLeft) {
+        super.setChildLeft(childLeft);
+        leftTuples = null;
+    }
+
+    /**
+     * Setter for the right child operation. The children are read and sorted again.
+     *
+     * @param childRight right child operation
+     */
+    @Override
+    public void setChildRight(Operator childRight) {
+        super.setChildRight(childRight);
+        leftTuples = null;
+    }
+}
@@ -1,13 +1,36 @@
 package ed.inf.adbs.minibase.operators;
 
 import ed.inf.adbs.minibase.base.*;
+import ed.inf.adbs.minibase.utils.Config;
+import ed.inf.adbs.minibase.utils.ExternalAggregation;
+import ed.inf.adbs.minibase.utils.GroupTable;
 import ed.inf.adbs.minibase.utils.Tuple;
+import ed.inf.adbs.minibase.utils.TupleBatch;
+import ed.inf.adbs.minibase.utils.WorkerPool;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
 
 /**
- * Class for sum aggregate operations.
+ * Class for sum aggregate operations. The grouping variables and the product terms of the
+ * aggregate are resolved to slots in the base relational atom when the operator is created.
+ *
+ * Groups are kept in a GroupTable keyed by the encoded grouping values, and products and sums
+ * are computed as long values, so large sums do not overflow.
+ *
+ * With more than one worker thread (see Config.getParallelism()) the aggregate is computed in
+ * two phases. The batches of the child are aggregated by tasks on the WorkerPool, and every
+ * worker thread adds its batches to its own partial GroupTable. Once the child is consumed the
+ * partial tables are merged by hash partition (see GroupTable.merge()), and the groups are
+ * returned from the merged partitions one after the other.
+ *
+ * The groups may use at most Config.getAggregationBudget() bytes of memory (split evenly between
+ * the worker threads in the parallel case). Tables that grow beyond it are spilled to disk by an
+ * ExternalAggregation, and the groups are then returned from the spilled partitions, which are
+ * aggregated again one partition at a time.
  */
 public class SumOperator extends Operator {
     /** Child operator */
@@ -18,10 +41,37 @@ public class SumOperator extends Operator {
     private final RelationalAtom atom;
     /** List of variables to group on */
     private final List<Variable> group;
-    /** Tuples in the grouped output */
-    private List<Tuple> tuples = null;
+    /** Number of batches per worker thread that are aggregated ahead of the reading thread */
+    private static final int BATCHES_AHEAD = 4;
+
+    /** Merged groups of a parallel aggregate in disjoint tables, null if the groups come from "external" */
+    private List<GroupTable> groups = null;
+    /** Aggregation that returns the groups of a serial aggregate, or of a parallel one that spilled */
+    private ExternalAggregation external = null;
+    /** Whether the child has been consumed and the groups computed */
+    private boolean grouped = false;
+    /** Index of the next table of groups to return */
+    private int nextTable = 0;
+    /** Table of the next group to return, null before the first table is taken */
+    private GroupTable table = null;
+    /** Number of the next group to return in its table */
+    private int nextGroup = 0;
+    /** Whether the aggregate is computed in two phases on the worker threads */
+    private final boolean parallel;
     /** Boolean to block non-grouping getNextTuple() after non-grouping sum aggregation */
     private boolean block;
+    /** Aggregate values of the rows in the current batch */
+    private final long[] products = new long[TupleBatch.CAPACITY];
+    /** Slots of the grouping variables in the base relational atom */
+    private final int[] groupSlots;
+    /** Slots of the variables among the product terms in the base relational atom */
+    private final int[] productSlots;
+    /** Product of the constants among the product terms */
+    private final long constantProduct;
+    /** Tuple layout of the grouping variables */
+    private final boolean[] groupLayout;
+    /** Tuple layout of the output: the grouping variables followed by the sum */
+    private final boolean[] layout;
 
 
     /**
@@ -38,6 +88,35 @@ public class SumOperator extends Operator {
         this.atom = atom;
         this.group = group;
         this.block = false;
+        this.parallel = Config.getParallelism() > 1;
+
+        this.groupSlots = new int[group.size()];
+        this.groupLayout = new boolean[group.size()];
+        for (int i = 0;i<group.size();i++){
+            groupSlots[i] = atom.getTerms().indexOf(group.get(i));
+            if (groupSlots[i] < 0) throw new IllegalArgumentException("Term not in tuple: term=" + group.get(i));
+            groupLayout[i] = child.getLayout()[groupSlots[i]];
+        }
+        this.layout = Arrays.copyOf(groupLayout, group.size() + 1);
+
+        List<Integer> slots = new ArrayList<>();
+        long constants = 1;
+        for (Term term:agg.getProductTerms()){
+            if (term instanceof Variable) {
+                int slot = atom.getTerms().indexOf(term);
+                if (slot < 0) throw new IllegalArgumentException("Term not in tuple: term=" + term);
+                slots.add(slot);
+            } else if (term instanceof IntegerConstant){
+                constants = Math.multiplyExact(constants, ((IntegerConstant) term).getValue());
+            } else {
+                throw new IllegalArgumentException("Term is not an integer: term=" + term);
+            }
+        }
+        this.productSlots = new int[slots.size()];
+        for (int i = 0;i<slots.size();i++){
+            productSlots[i] = slots.get(i);
+        }
+        this.constantProduct = constants;
     }
 
     /**
@@ -52,122 +131,233 @@ public class SumOperator extends Operator {
     public Tuple getNextTuple() throws IOException {
         if (block) return null;
         if (group.size()==0){
-            List<Constant> sum = Collections.singletonList(new IntegerConstant(noGrouping()));
+            long[] sum = new long[]{noGrouping()};
             block = true;
-            return new Tuple(sum);
+            return new Tuple(sum, layout);
         } else {
-            // group if grouping has not been done, otherwise retrieve a tuple from the list
-            if (tuples==null){
+            // group if grouping has not been done, otherwise retrieve the next group
+            if (!grouped){
                 withGrouping();
             }
-            if (tuples.size()==0){
-                return null;
-            } else {
-                Tuple tuple = tuples.get(0);
-                tuples.remove(0);
-                return tuple;
-            }
+            long[] values = nextGroupValues();
+            return values == null ? null : new Tuple(values, layout);
         }
     }
 
+    /**
+     * Method for getting the next batch of the result of grouping and aggregation. With
+     * grouping variables the groups are copied into the batch straight from the GroupTable.
+     *
+     * @return returns a batch of tuples with the grouping variables and aggregation result
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    @Override
+    public TupleBatch getNextBatch() throws IOException {
+        if (group.size()==0) return super.getNextBatch();
+
+        if (!grouped){
+            withGrouping();
+        }
+        long[] values = nextGroupValues();
+        if (values == null) return null;
+        TupleBatch batch = new TupleBatch(layout);
+        while (values != null) {
+            batch.addRow(values);
+            if (batch.isFull()) break;
+            values = nextGroupValues();
+        }
+        return batch;
+    }
+
     /**
      * Helper method for getNextTuple() for grouping on a list of variables. Stores the
-     * grouped Tuples to the "tuples"-variable
+     * groups to the "groups"-variable, or to the "external"-variable if they did not fit in the
+     * memory budget. The child operator is read a batch at a time.
      *
      * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
      */
     private void withGrouping() throws IOException {
-        tuples = new ArrayList<>();
-
-        // group by updating a map where the key is a list of constants
-        Map<List<Constant>,Integer> grouped = new HashMap<>();
+        grouped = true;
+        nextTable = 0;
+        nextGroup = 0;
+        table = null;
+        ExternalAggregation aggregation = new ExternalAggregation(group.size(), Config.getAggregationBudget());
+        if (parallel) {
+            List<GroupTable> partials = partialAggregates(aggregation);
+            if (!aggregation.hasSpilled()) {
+                groups = GroupTable.merge(partials, group.size());
+                return;
+            }
+            // the partial sums still in memory are re-aggregated together with the spilled ones
+            for (GroupTable partial : partials) {
+                aggregation.spill(partial);
+            }
+            external = aggregation;
+            return;
+        }
+        external = aggregation;
 
         // iterate through child operator
-        Tuple nextTuple = child.getNextTuple();
-        while (nextTuple != null) {
-            List<Constant> groupby = new ArrayList<>();
-            for (Term term:group){
-                int index = atom.getTerms().indexOf(term);
-                if (index>=0){
-                    groupby.add(nextTuple.getFields().get(index));
-                }
+        TupleBatch batch = child.getNextBatch();
+        while (batch != null) {
+            computeProducts(batch, products);
+            int[] selection = batch.getSelection();
+            for (int r = 0;r<batch.size();r++){
+                aggregation.add(batch, groupSlots, selection[r], products[r]);
             }
 
-            Integer oldValue = grouped.get(groupby);
-            if (oldValue==null){
-                grouped.put(groupby, sumForRow(nextTuple));
+            batch = child.getNextBatch();
+        }
+    }
+
+    /**
+     * Helper method for the first phase of a parallel aggregate. The batches of the child are
+     * read by the calling thread and aggregated by tasks on the WorkerPool, each into the
+     * partial table of the worker thread that runs it. Without grouping variables every task
+     * adds the sum of its batch to the single group of its partial table. A partial table that
+     * grows beyond its share of the memory budget is spilled, and the thread starts a new one.
+     *
+     * @param aggregation aggregation that partial tables are spilled to, or null if they are
+     *                    never spilled
+     * @return returns the partial tables of the threads
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    private List<GroupTable> partialAggregates(ExternalAggregation aggregation) throws IOException {
+        Map<Thread, GroupTable> partials = new ConcurrentHashMap<>();
+        Deque<ForkJoinTask<?>> pending = new ArrayDeque<>();
+        int window = WorkerPool.getWorkers().getParallelism() * BATCHES_AHEAD;
+        long budget = Config.getAggregationBudget() / WorkerPool.getWorkers().getParallelism();
+
+        TupleBatch batch = child.getNextBatch();
+        while (batch != null) {
+            TupleBatch input = batch;
+            pending.add(WorkerPool.getWorkers().getPool().submit(() -> {
+                GroupTable partial = partials.computeIfAbsent(Thread.currentThread(), t -> new GroupTable(group.size()));
+                long[] batchProducts = new long[TupleBatch.CAPACITY];
+                computeProducts(input, batchProducts);
+                int[] selection = input.getSelection();
+                if (group.size()==0){
+                    long sum = 0;
+                    for (int r = 0;r<input.size();r++){
+                        sum = sum + batchProducts[r];
+                    }
+                    partial.add(new long[0], sum);
+                } else {
+                    for (int r = 0;r<input.size();r++){
+                        partial.add(input, groupSlots, selection[r], batchProducts[r]);
+                    }
+                    if (aggregation != null && partial.getBytes() > budget) {
+                        try {
+                            aggregation.spill(partial);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        partials.put(Thread.currentThread(), new GroupTable(group.size()));
+                    }
+                }
+            }));
+            if (pending.size() >= window) join(pending.poll());
+            batch = child.getNextBatch();
+        }
+
+        while (!pending.isEmpty()) {
+            join(pending.poll());
+        }
+        return new ArrayList<>(partials.values());
+    }
+
+    /**
+     * Helper method for waiting for a task of a parallel aggregate. Errors from writing a spill
+     * file are thrown again in the calling thread.
+     *
+     * @param task submitted task
+     * @throws IOException throws an error if the task could not write a spill file
+     */
+    private static void join(ForkJoinTask<?> task) throws IOException {
+        try {
+            task.join();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Helper method for getting the output values of the next group: the grouping values
+     * followed by the sum.
+     *
+     * @return returns the values of the output tuple, or null if every group has been returned
+     * @throws IOException throws an error if reading a spill file was unsuccessful
+     */
+    private long[] nextGroupValues() throws IOException {
+        while (table == null || nextGroup >= table.size()) {
+            if (external != null) {
+                table = external.nextTable();
             } else {
-                grouped.put(groupby, oldValue+sumForRow(nextTuple));
+                table = nextTable < groups.size() ? groups.get(nextTable++) : null;
             }
-
-            nextTuple = child.getNextTuple();
+            if (table == null) return null;
+            nextGroup = 0;
         }
 
-        // for each list of constants, add a new Tuple to the output (with the constants and integer value as fields)
-        for (List<Constant> key : grouped.keySet()){
-            List<Constant> tupleTerms = new ArrayList<>(key);
-            tupleTerms.add(new IntegerConstant(grouped.get(key)));
-            tuples.add(new Tuple(tupleTerms));
+        long[] tupleValues = new long[group.size() + 1];
+        for (int i = 0;i<group.size();i++){
+            tupleValues[i] = table.getKey(nextGroup, i);
         }
+        tupleValues[group.size()] = table.getSum(nextGroup);
+        nextGroup++;
+        return tupleValues;
     }
 
     /**
      * Helper method for getNextTuple() for computing an aggregate on the entire child
      * operator. Used when there are no grouping variables specified when initialising operator.
+     * The child operator is read a batch at a time.
      *
      * @return an integer computed using the aggregate function
      * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
      */
-    private int noGrouping() throws IOException {
-        int sum = 0;
+    private long noGrouping() throws IOException {
+        long sum = 0;
+        if (parallel) {
+            for (GroupTable partial : partialAggregates(null)) {
+                sum = sum + partial.getSum(0);
+            }
+            return sum;
+        }
 
         // iterate over child operator
-        Tuple nextTuple = child.getNextTuple();
-        while (nextTuple != null) {
-            sum = sum + sumForRow(nextTuple);
-            nextTuple  = child.getNextTuple();
+        TupleBatch batch = child.getNextBatch();
+        while (batch != null) {
+            computeProducts(batch, products);
+            for (int r = 0;r<batch.size();r++){
+                sum = sum + products[r];
+            }
+            batch = child.getNextBatch();
         }
         return sum;
     }
 
     /**
-     * Helper method for computing the (product) aggregate value for a single input
-     * tuple from the child operator.
+     * Helper method for computing the (product) aggregate value for every selected row of a
+     * batch. The products start from the product of the constant terms and are then computed
+     * one variable at a time, as a loop over the column of the variable. Stores the products in
+     * the order of the selection vector.
      *
-     * @param tuple tuple to compute aggregate value for
-     * @return returns an integer
+     * @param batch batch to compute aggregate values for
+     * @param products array that the products are stored to
      */
-    private int sumForRow(Tuple tuple){
-        int sumForRow = getValue(agg.getProductTerms().get(0),tuple);
-        for (int i=1;i<agg.getProductTerms().size();i++){
-            Term term = agg.getProductTerms().get(i);
-            sumForRow = sumForRow * getValue(term,tuple);
-        }
-        return sumForRow;
-    }
+    private void computeProducts(TupleBatch batch, long[] products){
+        int size = batch.size();
+        int[] selection = batch.getSelection();
+        Arrays.fill(products, 0, size, constantProduct);
 
-    /**
-     * Helper method for sumForRow() for extracting integers given a term. If the term is
-     * a variable, the value is extracted from the input tuple. If the term is a constant,
-     * the integer value from that constant instance is returned.
-     *
-     * @param term variable to extract from tuple or a constant
-     * @param tuple tuple to extract constant from
-     * @return returns an integer
-     */
-    private int getValue(Term term, Tuple tuple){
-        if (term instanceof Variable) {
-            int index = atom.getTerms().indexOf(term);
-            if (index>=0){
-                if (!(tuple.getFields().get(index) instanceof IntegerConstant)) throw new IllegalArgumentException("Field is not an integer");
-                IntegerConstant i = (IntegerConstant) tuple.getFields().get(index);
-                return i.getValue();
+        for (int slot:productSlots){
+            if (batch.getLayout()[slot]) throw new IllegalArgumentException("Field is not an integer");
+            long[] column = batch.getColumn(slot);
+            for (int r = 0;r<size;r++){
+                products[r] = products[r] * column[selection[r]];
             }
-        } else if (term instanceof IntegerConstant){
-            return ((IntegerConstant) term).getValue();
         }
-
-        throw new IllegalArgumentException("Term not in tuple: term=" + term + ", tuple=" + tuple);
     }
 
     /**
@@ -179,6 +369,52 @@ public class SumOperator extends Operator {
         child.reset();
     }
 
+    /**
+     * Method for retrieving the layout of the output tuples.
+     *
+     * @return returns the layout of the grouping variables followed by the sum
+     */
+    @Override
+    public boolean[] getLayout() {
+        return layout;
+    }
+
+    /**
+     * Getter for the child operation.
+     *
+     * @return returns the child operation
+     */
+    public Operator getChild() {
+        return child;
+    }
+
+    /**
+     * Getter for the slots of the grouping variables in the base relational atom.
+     *
+     * @return returns the slots in output order
+     */
+    public int[] getGroupSlots() {
+        return groupSlots;
+    }
+
+    /**
+     * Getter for the slots of the variables among the product terms in the base relational atom.
+     *
+     * @return returns the slots of the product variables
+     */
+    public int[] getProductSlots() {
+        return productSlots;
+    }
+
+    /**
+     * Getter for the product of the constants among the product terms.
+     *
+     * @return returns the constant factor of every product
+     */
+    public long getConstantProduct() {
+        return constantProduct;
+    }
+
     /**
      * Method for retrieving the base RelationalAtom
      *
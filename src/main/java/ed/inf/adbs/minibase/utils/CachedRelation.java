@@ -0,0 +1,77 @@
+package ed.inf.adbs.minibase.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class for storing a parsed relation in memory, as the list of batches produced by a scan.
+ * The stored batches are never handed out directly; getBatch() returns a view with its own
+ * selection vector, so that the filters of a query cannot change the cached rows.
+ */
+public class CachedRelation {
+    /** Batches of the relation in scan order */
+    private final List<TupleBatch> batches = new ArrayList<>();
+    /** Estimated number of bytes used by the batches */
+    private long bytes = 0;
+
+    /**
+     * Method for estimating the number of bytes used by a relation in memory.
+     *
+     * @param columns number of columns of the relation
+     * @param rows number of rows of the relation
+     * @return returns the estimated number of bytes
+     */
+    public static long estimateBytes(int columns, long rows) {
+        long batches = (rows + TupleBatch.CAPACITY - 1) / TupleBatch.CAPACITY;
+        return batches * batchBytes(columns);
+    }
+
+    /**
+     * Helper method for estimating the number of bytes used by a batch: the values, the
+     * selection vector and the array headers.
+     *
+     * @param columns number of columns of the batch
+     * @return returns the estimated number of bytes
+     */
+    private static long batchBytes(int columns) {
+        return (long) columns * (TupleBatch.CAPACITY * 8L + 16) + TupleBatch.CAPACITY * 4L + 64;
+    }
+
+    /**
+     * Method for adding the next batch of the relation.
+     *
+     * @param batch batch to add, which must not be changed afterwards
+     */
+    public void add(TupleBatch batch) {
+        batches.add(batch);
+        bytes += batchBytes(batch.getLayout().length);
+    }
+
+    /**
+     * Method for getting a batch of the relation.
+     *
+     * @param index index of the batch
+     * @return returns a view of the batch with its own selection vector
+     */
+    public TupleBatch getBatch(int index) {
+        return batches.get(index).view();
+    }
+
+    /**
+     * Getter for the number of batches in the relation.
+     *
+     * @return returns the number of batches
+     */
+    public int getBatchCount() {
+        return batches.size();
+    }
+
+    /**
+     * Getter for the estimated number of bytes used by the relation.
+     *
+     * @return returns the number of bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+}
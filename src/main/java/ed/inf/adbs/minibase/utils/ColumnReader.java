@@ -0,0 +1,117 @@
+package ed.inf.adbs.minibase.utils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Class for sequentially reading the values of a binary column file. Integer columns store
+ * every value as a 4-byte big-endian int. String columns store every value as a 4-byte length
+ * followed by the UTF-8 bytes of the string. The file is read through a reusable buffer.
+ */
+public class ColumnReader {
+    /** Size of the read buffer in bytes */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Path to the column file */
+    private final String path;
+    /** Channel for reading the column file */
+    private FileChannel channel;
+    /** Read buffer */
+    private ByteBuffer buffer;
+
+    /**
+     * Constructor for the ColumnReader class. Opens the column file.
+     *
+     * @param path path to the column file
+     * @throws IOException throws an error if the file could not be opened
+     */
+    public ColumnReader(String path) throws IOException {
+        this.path = path;
+        reset();
+    }
+
+    /**
+     * Method for reading the next value of an integer column.
+     *
+     * @return returns the integer value
+     * @throws IOException throws an error if reading from file was unsuccessful
+     */
+    public int readInt() throws IOException {
+        ensure(4);
+        return buffer.getInt();
+    }
+
+    /**
+     * Method for reading the next value of a string column.
+     *
+     * @return returns the string value
+     * @throws IOException throws an error if reading from file was unsuccessful
+     */
+    public String readString() throws IOException {
+        int length = readInt();
+        ensure(length);
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * Method for skipping the next value of a string column without decoding it.
+     *
+     * @throws IOException throws an error if reading from file was unsuccessful
+     */
+    public void skipString() throws IOException {
+        int length = readInt();
+        ensure(length);
+        buffer.position(buffer.position() + length);
+    }
+
+    /**
+     * Helper method for making sure that the buffer holds at least the given number of
+     * unread bytes. Compacts the buffer and reads more of the file if necessary, and grows
+     * the buffer for values larger than it.
+     *
+     * @param bytes number of bytes needed
+     * @throws IOException throws an error if the file ends before the bytes could be read
+     */
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return;
+
+        if (buffer.capacity() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(bytes);
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) throw new IOException("Unexpected end of column file " + path);
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Method for resetting the reader to the start of the column file.
+     *
+     * @throws IOException throws an error if the file could not be opened
+     */
+    public void reset() throws IOException {
+        close();
+        channel = new RandomAccessFile(path, "r").getChannel();
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.flip();
+    }
+
+    /**
+     * Method for closing the column file.
+     *
+     * @throws IOException throws an error if the file could not be closed
+     */
+    public void close() throws IOException {
+        if (channel != null) channel.close();
+    }
+}
@@ -1,51 +1,31 @@
 package ed.inf.adbs.minibase.utils;
 
 import ed.inf.adbs.minibase.base.ComparisonOperator;
-import ed.inf.adbs.minibase.base.Constant;
-import ed.inf.adbs.minibase.base.IntegerConstant;
-import ed.inf.adbs.minibase.base.StringConstant;
 
 /**
- * Utility class for helping evaluate selection and join conditions
+ * Utility class for helping evaluate selection and join conditions. The conditions themselves
+ * are evaluated by compiled Predicate and JoinPredicate instances.
  */
 public class CompareUtil {
 
     /**
-     * Evaluates the condition using a switch statement on the comparison operator.
+     * Compares two tuple values of the same type. Integers are compared by value, and strings
+     * are decoded and compared as strings. Used both for evaluating string conditions and as a
+     * sort order for sort-merge joins.
      *
-     * @param termA term on the left-hand side of the comparison operator
-     * @param termB term on the right-hand side of the comparison operator
-     * @param cop comparison operator
-     * @return returns the boolean result of the comparison evaluation
+     * @param valueA first value
+     * @param valueB second value
+     * @param strings whether the values are string codes
+     * @return returns a negative integer, zero, or a positive integer as valueA is less than,
+     * equal to, or greater than valueB
      */
-    public static boolean evaluateComparison(Constant termA, Constant termB, ComparisonOperator cop){
-        if (termA.getClass()!=termB.getClass()) return false;
-
-        int comparisonResult;
-        if (termA.getClass().equals(IntegerConstant.class)) {
-            comparisonResult = ((IntegerConstant) termA).compareTo((IntegerConstant) termB);
-        } else if (termA.getClass().equals(StringConstant.class)) {
-            comparisonResult = ((StringConstant) termA).compareTo((StringConstant) termB);
-        } else {
-            throw new IllegalArgumentException("");
-        }
-
-        switch(cop) {
-            case EQ:
-                return comparisonResult==0;
-            case NEQ:
-                return comparisonResult!=0;
-            case GT:
-                return comparisonResult>0;
-            case GEQ:
-                return comparisonResult>=0;
-            case LT:
-                return comparisonResult<0;
-            case LEQ:
-                return comparisonResult<=0;
-            default:
-                throw new IllegalArgumentException("Unrecognized comparison operator");
+    public static int compareValues(long valueA, long valueB, boolean strings){
+        if (valueA == valueB) return 0;
+        if (strings) {
+            StringDictionary dictionary = StringDictionary.getDictionary();
+            return dictionary.decode(valueA).compareTo(dictionary.decode(valueB));
         }
+        return Long.compare(valueA, valueB);
     }
 
     /**
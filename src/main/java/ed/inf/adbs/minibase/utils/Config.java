@@ -0,0 +1,178 @@
+package ed.inf.adbs.minibase.utils;
+
+/**
+ * Class for reading the configuration options of the query evaluation. The options are set as
+ * system properties (e.g. -Dminibase.scan=reader) so that the command line arguments of
+ * Minibase stay unchanged. Every option has a default value.
+ */
+public class Config {
+    /** Property for choosing how ScanOperator reads files, either "mmap" or "reader" */
+    public static final String SCAN_MODE = "minibase.scan";
+    /** Property for the number of bytes the RelationCache may use, 0 disables the cache */
+    public static final String CACHE_BYTES = "minibase.cache.bytes";
+    /** Property for choosing how queries are evaluated, either "interpreter", "fused" or "morsel" */
+    public static final String ENGINE = "minibase.engine";
+    /** Property for the number of worker threads used by parallel operators, 1 disables them */
+    public static final String PARALLELISM = "minibase.parallelism";
+    /** Property for the number of bytes the groups of a sum aggregate may use before they are spilled to disk */
+    public static final String AGGREGATION_BYTES = "minibase.aggregation.bytes";
+    /** Property for the number of bytes the build side of a hash join may use before it is spilled to disk */
+    public static final String JOIN_BYTES = "minibase.join.bytes";
+    /** Property for choosing how the relational atoms are joined, either "auto", "binary" or "leapfrog" */
+    public static final String JOIN = "minibase.join";
+    /** Property for choosing when acyclic queries are semi-join reduced, either "auto", "on" or "off" */
+    public static final String SEMIJOIN = "minibase.semijoin";
+
+    /**
+     * Method for checking whether relation files should be scanned through a memory-mapped
+     * buffer (the default), rather than through a BufferedReader.
+     *
+     * @return returns true if the memory-mapped scan should be used
+     */
+    public static boolean useMemoryMappedScan() {
+        String mode = System.getProperty(SCAN_MODE, "mmap");
+        if (mode.equals("mmap")) {
+            return true;
+        } else if (mode.equals("reader")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unrecognized scan mode: " + mode);
+    }
+
+    /**
+     * Method for checking whether chains of selections, projections and aggregates should be
+     * compiled into fused pipelines (see PipelineCompiler), rather than evaluated by the
+     * interpreted operators (the default).
+     *
+     * @return returns true if fused pipelines should be used
+     */
+    public static boolean useFusedPipelines() {
+        String engine = System.getProperty(ENGINE, "interpreter");
+        if (engine.equals("interpreter") || engine.equals("morsel")) {
+            return false;
+        } else if (engine.equals("fused")) {
+            return true;
+        }
+        throw new IllegalArgumentException("Unrecognized engine: " + engine);
+    }
+
+    /**
+     * Method for checking whether the operator tree should be evaluated by the morsel-driven
+     * executor (see MorselOperator), which runs its pipelines on the worker threads, rather than
+     * by calling the operators from the root.
+     *
+     * @return returns true if the morsel-driven executor should be used
+     */
+    public static boolean useMorselExecution() {
+        return System.getProperty(ENGINE, "interpreter").equals("morsel");
+    }
+
+    /**
+     * Method for checking whether the relational atoms of a query should be joined at once by a
+     * LeapfrogJoinOperator, rather than by a tree of binary joins. By default ("auto") the
+     * leapfrog join is used for cyclic queries, "binary" and "leapfrog" use one of them for
+     * every query.
+     *
+     * @param cyclic whether the hypergraph of the query is cyclic (see Hypergraph)
+     * @return returns true if the leapfrog join should be used
+     */
+    public static boolean useLeapfrogJoin(boolean cyclic) {
+        String join = System.getProperty(JOIN, "auto");
+        if (join.equals("auto")) {
+            return cyclic;
+        } else if (join.equals("binary")) {
+            return false;
+        } else if (join.equals("leapfrog")) {
+            return true;
+        }
+        throw new IllegalArgumentException("Unrecognized join: " + join);
+    }
+
+    /**
+     * Method for checking whether the relations of an acyclic query should be semi-join reduced
+     * (see SemiJoinReduction) before they are joined. By default ("auto") queries with at least
+     * three relational atoms are reduced, as the hash join of two relations already skips their
+     * dangling tuples. "on" reduces every acyclic query with a join, "off" none.
+     *
+     * @param atoms number of relational atoms of the query
+     * @return returns true if the relations should be reduced
+     */
+    public static boolean useSemiJoinReduction(int atoms) {
+        String reduction = System.getProperty(SEMIJOIN, "auto");
+        if (reduction.equals("auto")) {
+            return atoms >= 3;
+        } else if (reduction.equals("on")) {
+            return atoms >= 2;
+        } else if (reduction.equals("off")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unrecognized semi-join reduction: " + reduction);
+    }
+
+    /**
+     * Method for getting the number of bytes the RelationCache may use. The default is a quarter
+     * of the maximum heap size.
+     *
+     * @return returns the budget of the cache in bytes
+     */
+    public static long getCacheBudget() {
+        String budget = System.getProperty(CACHE_BYTES);
+        if (budget == null) return Runtime.getRuntime().maxMemory() / 4;
+        try {
+            return Long.parseLong(budget);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cache budget is not a number: " + budget);
+        }
+    }
+
+    /**
+     * Method for getting the number of bytes the groups of a sum aggregate may use in memory
+     * (see ExternalAggregation). The default is a quarter of the maximum heap size.
+     *
+     * @return returns the budget of the aggregate in bytes
+     */
+    public static long getAggregationBudget() {
+        String budget = System.getProperty(AGGREGATION_BYTES);
+        if (budget == null) return Runtime.getRuntime().maxMemory() / 4;
+        try {
+            return Long.parseLong(budget);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Aggregation budget is not a number: " + budget);
+        }
+    }
+
+    /**
+     * Method for getting the number of bytes the build side of a hash join may use in memory
+     * (see HybridHashJoinOperator). The default is a quarter of the maximum heap size.
+     *
+     * @return returns the budget of the join in bytes
+     */
+    public static long getJoinBudget() {
+        String budget = System.getProperty(JOIN_BYTES);
+        if (budget == null) return Runtime.getRuntime().maxMemory() / 4;
+        try {
+            return Long.parseLong(budget);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Join budget is not a number: " + budget);
+        }
+    }
+
+    /**
+     * Method for getting the number of worker threads used by parallel operators. The default
+     * is 1, so the parallel operators are only used when they are asked for (e.g.
+     * -Dminibase.parallelism=16).
+     *
+     * @return returns the degree of parallelism, at least 1
+     */
+    public static int getParallelism() {
+        String parallelism = System.getProperty(PARALLELISM);
+        if (parallelism == null) return 1;
+        try {
+            int threads = Integer.parseInt(parallelism);
+            if (threads < 1) throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+            return threads;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parallelism is not a number: " + parallelism);
+        }
+    }
+}
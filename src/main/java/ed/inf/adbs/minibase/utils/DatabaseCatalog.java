@@ -5,13 +5,24 @@ import ed.inf.adbs.minibase.base.IntegerConstant;
 import ed.inf.adbs.minibase.base.StringConstant;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
 
 /**
  * Class for storing information about the database. The class uses a singleton pattern.
  */
 public class DatabaseCatalog {
+    /** Name of the header file of the binary columnar format, stored next to schema.txt */
+    public static final String COLUMNAR_HEADER = "columnar.txt";
+    /** Name of the directory with the binary column files, stored next to schema.txt */
+    public static final String COLUMNAR_DIR = "columns";
+    /** Name of the file with the statistics written by the Analyzer, stored next to schema.txt */
+    public static final String STATISTICS_FILE = "stats.txt";
+
     /** Class instance */
     private static DatabaseCatalog catalog = null;
     /** Path to database as String */
@@ -21,6 +32,17 @@ public class DatabaseCatalog {
      * list of Constant subclass types.*/
     private Map<String, List<Class<? extends Constant>> > schemas;
 
+    /** Map storing the number of rows of the relations that have been converted to the binary
+     * columnar format. The key is a table name. */
+    private Map<String, Long> columnarRowCounts;
+
+    /** Map storing the statistics of the tables, computed the first time they are needed.
+     * The key is a table name. */
+    private Map<String, TableStatistics> statistics;
+
+    /** Map storing the statistics read from the statistics file. The key is a table name. */
+    private Map<String, TableStatistics> analyzedStatistics;
+
     /**
      * Method for creating and retrieving the class instance.
      *
@@ -31,12 +53,29 @@ public class DatabaseCatalog {
         if (catalog == null) {
             catalog = new DatabaseCatalog();
             catalog.schemas = new HashMap<>();
-            parseSchema(databaseDir + "/schema.txt");
+            catalog.columnarRowCounts = new HashMap<>();
+            catalog.statistics = new HashMap<>();
+            catalog.analyzedStatistics = new HashMap<>();
             catalog.databaseDir = databaseDir;
+            parseSchema(databaseDir + "/schema.txt");
+            if (new File(databaseDir + "/" + COLUMNAR_HEADER).isFile()) {
+                parseColumnarHeader(databaseDir + "/" + COLUMNAR_HEADER);
+            }
+            if (new File(databaseDir + "/" + STATISTICS_FILE).isFile()) {
+                parseStatistics(databaseDir + "/" + STATISTICS_FILE);
+            }
         }
         return catalog;
     }
 
+    /**
+     * Method for discarding the class instance, so that the next call of getCatalog() reads the
+     * schema of a new database.
+     */
+    public static void reset() {
+        catalog = null;
+    }
+
     /**
      * Method for retrieving the class instance without passing in a path. Requires
      * the class to have been initialised beforehand.
@@ -84,6 +123,133 @@ public class DatabaseCatalog {
         }
     }
 
+    /**
+     * Private method for parsing the header file of the binary columnar format. Each line has
+     * the table name, the number of rows and the column types. Stores the number of rows
+     * to the private 'columnarRowCounts' variable.
+     *
+     * @param path path to the header file
+     */
+    private static void parseColumnarHeader(String path){
+        BufferedReader reader;
+        try{
+            reader = new BufferedReader(new FileReader(path));
+            String line = reader.readLine();
+
+            while (line != null) {
+                List<String> getParts = new ArrayList<>(Arrays.asList(line.split(" ")));
+                String name = getParts.get(0);
+                List<Class<? extends Constant>> schema = catalog.schemas.get(name);
+                if (schema == null || schema.size() != getParts.size() - 2) {
+                    throw new IllegalArgumentException("Columnar header does not match schema for " + name);
+                }
+                for (int i = 2;i<getParts.size();i++){
+                    String type = getParts.get(i);
+                    if ((type.equals("int") && schema.get(i - 2) != IntegerConstant.class)
+                            || (type.equals("string") && schema.get(i - 2) != StringConstant.class)) {
+                        throw new IllegalArgumentException("Columnar header does not match schema for " + name);
+                    }
+                }
+                (catalog.columnarRowCounts).put(name, Long.parseLong(getParts.get(1)));
+                line = reader.readLine();
+            }
+
+            reader.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Private method for parsing the statistics file written by the Analyzer. Stores the
+     * statistics to the private 'analyzedStatistics' variable.
+     *
+     * @param path path to the statistics file
+     */
+    private static void parseStatistics(String path){
+        try{
+            catalog.analyzedStatistics = TableStatistics.parse(Files.readAllLines(Paths.get(path)), catalog);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Method for checking whether a table is available in the binary columnar format. The
+     * columnar files are only used if they are at least as new as the CSV file of the table.
+     *
+     * @param schemaName name of the table
+     * @return returns true if the columnar files should be used
+     */
+    public boolean hasColumnarFiles(String schemaName){
+        if (!columnarRowCounts.containsKey(schemaName)) return false;
+        File csv = new File(getFilePath(schemaName));
+        for (int i = 0;i<schemas.get(schemaName).size();i++){
+            File column = new File(getColumnPath(schemaName, i));
+            if (!column.isFile() || column.lastModified() < csv.lastModified()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Method for retrieving the number of rows of a table in the binary columnar format.
+     *
+     * @param schemaName name of the table
+     * @return returns the number of rows
+     */
+    public long getColumnarRowCount(String schemaName){
+        return columnarRowCounts.get(schemaName);
+    }
+
+    /**
+     * Method for retrieving the statistics of a table. The statistics written by the Analyzer
+     * are used if the statistics file is at least as new as the CSV file of the table, otherwise
+     * the statistics are estimated from a sample of the table the first time they are requested.
+     *
+     * @param schemaName name of the table
+     * @return returns the statistics of the table
+     */
+    public TableStatistics getStatistics(String schemaName){
+        TableStatistics tableStatistics = statistics.get(schemaName);
+        if (tableStatistics == null){
+            File statisticsFile = new File(databaseDir + "/" + STATISTICS_FILE);
+            if (analyzedStatistics.containsKey(schemaName)
+                    && statisticsFile.lastModified() >= new File(getFilePath(schemaName)).lastModified()) {
+                tableStatistics = analyzedStatistics.get(schemaName);
+            } else {
+                try {
+                    tableStatistics = TableStatistics.sample(this, schemaName);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    tableStatistics = new TableStatistics(1, new long[schemas.get(schemaName).size()]);
+                }
+            }
+            statistics.put(schemaName, tableStatistics);
+        }
+        return tableStatistics;
+    }
+
+    /**
+     * Method for retrieving the path to the CSV file of a table.
+     *
+     * @param schemaName name of the table
+     * @return returns the path as a String
+     */
+    public String getFilePath(String schemaName){
+        return databaseDir + "/files/" + schemaName + ".csv";
+    }
+
+    /**
+     * Method for retrieving the path to a binary column file of a table.
+     *
+     * @param schemaName name of the table
+     * @param column index of the column in the schema
+     * @return returns the path as a String
+     */
+    public String getColumnPath(String schemaName, int column){
+        return databaseDir + "/" + COLUMNAR_DIR + "/" + schemaName + "/" + column + ".col";
+    }
+
     /**
      * Method for retrieving the schema of a particular table.
      *
@@ -94,6 +260,22 @@ public class DatabaseCatalog {
         return schemas.get(schemaName);
     }
 
+    /**
+     * Method for retrieving the tuple layout of a particular table, i.e. which of its columns
+     * are strings.
+     *
+     * @param schemaName name of the table
+     * @return returns an array with true for every string column
+     */
+    public boolean[] getLayout(String schemaName){
+        List<Class<? extends Constant>> schema = schemas.get(schemaName);
+        boolean[] layout = new boolean[schema.size()];
+        for (int i = 0;i<layout.length;i++){
+            layout[i] = schema.get(i) == StringConstant.class;
+        }
+        return layout;
+    }
+
     /**
      * Method for retrieving the path to the database.
      *
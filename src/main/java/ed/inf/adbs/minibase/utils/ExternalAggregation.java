@@ -0,0 +1,229 @@
+package ed.inf.adbs.minibase.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Class for a sum aggregate whose groups may not fit in memory. Rows are added to an in-memory
+ * GroupTable, and when the table uses more than the memory budget its groups are written to
+ * temporary spill files, one per hash partition, and the table starts again empty. A group can
+ * therefore be spilled several times with partial sums.
+ *
+ * Once all rows are added, nextTable() returns the groups. If nothing was spilled this is the
+ * in-memory table. Otherwise the spill files are read back one partition at a time, and every
+ * partition is aggregated again into a table of its own, so only one partition is in memory at
+ * once. A partition that still does not fit is split again with a different partitioning, up to
+ * GroupTable.PARTITION_LEVELS levels. The tables hold disjoint groups, and together they hold
+ * the same groups and sums as a single in-memory table.
+ */
+public class ExternalAggregation {
+    /** Number of spill files per level */
+    private static final int PARTITIONS = 16;
+
+    /** Number of grouping variables */
+    private final int width;
+    /** Largest number of bytes the in-memory table may use */
+    private final long budget;
+    /** Partitioning level of the spill files */
+    private final int level;
+    /** Groups that have not been spilled */
+    private GroupTable table;
+    /** Spill files of the partitions, null for partitions without spilled groups */
+    private final File[] files = new File[PARTITIONS];
+    /** Open streams to the spill files */
+    private final DataOutputStream[] outputs = new DataOutputStream[PARTITIONS];
+    /** Whether any groups have been spilled */
+    private boolean spilled = false;
+    /** Index of the next partition returned by nextTable() */
+    private int nextPartition = 0;
+    /** Aggregation of a partition that did not fit, whose tables are returned first */
+    private ExternalAggregation split = null;
+
+    /**
+     * Constructor for the ExternalAggregation class.
+     *
+     * @param width number of grouping variables
+     * @param budget largest number of bytes the in-memory table may use
+     */
+    public ExternalAggregation(int width, long budget) {
+        this(width, budget, 0);
+    }
+
+    /**
+     * Constructor for an aggregation at a given partitioning level.
+     *
+     * @param width number of grouping variables
+     * @param budget largest number of bytes the in-memory table may use
+     * @param level partitioning level of the spill files
+     */
+    private ExternalAggregation(int width, long budget, int level) {
+        this.width = width;
+        this.budget = budget;
+        this.level = level;
+        this.table = new GroupTable(width);
+    }
+
+    /**
+     * Method for adding a value to the sum of the group of a row of a batch. Spills the
+     * in-memory table if it becomes larger than the budget.
+     *
+     * @param batch batch that holds the row
+     * @param groupSlots slots of the grouping variables in the batch
+     * @param row row number in the batch
+     * @param value value to add
+     * @throws IOException throws an error if writing a spill file was unsuccessful
+     */
+    public void add(TupleBatch batch, int[] groupSlots, int row, long value) throws IOException {
+        table.add(batch, groupSlots, row, value);
+        if (table.getBytes() > budget) {
+            spill(table);
+            table = new GroupTable(width);
+        }
+    }
+
+    /**
+     * Method for adding a value to the sum of a group. Spills the in-memory table if it
+     * becomes larger than the budget.
+     *
+     * @param key grouping values of the group
+     * @param value value to add
+     * @throws IOException throws an error if writing a spill file was unsuccessful
+     */
+    public void add(long[] key, long value) throws IOException {
+        table.add(key, value);
+        if (table.getBytes() > budget) {
+            spill(table);
+            table = new GroupTable(width);
+        }
+    }
+
+    /**
+     * Method for writing all groups of a table to the spill files. Can be called by several
+     * threads, e.g. for the partial tables of a parallel aggregate.
+     *
+     * @param groups table with the same grouping variables
+     * @throws IOException throws an error if writing a spill file was unsuccessful
+     */
+    public synchronized void spill(GroupTable groups) throws IOException {
+        for (int group = 0; group < groups.size(); group++) {
+            DataOutputStream output = output(groups.getPartition(group, PARTITIONS, level));
+            for (int j = 0; j < width; j++) {
+                output.writeLong(groups.getKey(group, j));
+            }
+            output.writeLong(groups.getSum(group));
+        }
+        spilled = true;
+    }
+
+    /**
+     * Getter for whether any groups have been spilled.
+     *
+     * @return returns true if the groups are not all in memory
+     */
+    public synchronized boolean hasSpilled() {
+        return spilled;
+    }
+
+    /**
+     * Method for getting the next table of groups, after all rows have been added.
+     *
+     * @return returns a table with groups that are not in any other returned table, or null if
+     * every group has been returned
+     * @throws IOException throws an error if reading a spill file was unsuccessful
+     */
+    public GroupTable nextTable() throws IOException {
+        if (!spilled) {
+            GroupTable groups = table;
+            table = null;
+            return groups;
+        }
+        if (table != null) {
+            // the groups that are still in memory are merged with the spilled partial sums
+            spill(table);
+            table = null;
+            for (DataOutputStream output : outputs) {
+                if (output != null) output.close();
+            }
+        }
+
+        while (true) {
+            if (split != null) {
+                GroupTable groups = split.nextTable();
+                if (groups != null) return groups;
+                split = null;
+            }
+            if (nextPartition >= PARTITIONS) return null;
+
+            File file = files[nextPartition++];
+            if (file == null) continue;
+            GroupTable groups = readPartition(file);
+            if (groups != null) return groups;
+        }
+    }
+
+    /**
+     * Helper method for aggregating the groups of a spill file. If the groups do not fit in the
+     * budget, and the partition can be split again, the groups are passed on to the aggregation
+     * at the next level instead.
+     *
+     * @param file spill file of the partition
+     * @return returns the groups of the partition, or null if they were passed on
+     * @throws IOException throws an error if reading the spill file was unsuccessful
+     */
+    private GroupTable readPartition(File file) throws IOException {
+        boolean splittable = level + 1 < GroupTable.PARTITION_LEVELS;
+        ExternalAggregation next = splittable ? new ExternalAggregation(width, budget, level + 1) : null;
+        GroupTable groups = new GroupTable(width);
+        long[] key = new long[width];
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                try {
+                    for (int j = 0; j < width; j++) {
+                        key[j] = input.readLong();
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                long sum = input.readLong();
+                if (next != null) {
+                    next.add(key, sum);
+                } else {
+                    groups.add(key, sum);
+                }
+            }
+        } finally {
+            if (!file.delete()) file.deleteOnExit();
+        }
+
+        if (next == null) return groups;
+        if (!next.hasSpilled()) return next.nextTable();
+        split = next;
+        return null;
+    }
+
+    /**
+     * Helper method for getting the stream to the spill file of a partition, creating the file
+     * on first use.
+     *
+     * @param partition hash partition
+     * @return returns the stream
+     * @throws IOException throws an error if the file could not be created
+     */
+    private DataOutputStream output(int partition) throws IOException {
+        if (outputs[partition] == null) {
+            File file = File.createTempFile("minibase-sum-", ".spill");
+            file.deleteOnExit();
+            files[partition] = file;
+            outputs[partition] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        }
+        return outputs[partition];
+    }
+}
@@ -0,0 +1,284 @@
+package ed.inf.adbs.minibase.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Class for the groups of a sum aggregate. The table is an open-addressing hash table with
+ * linear probing, keyed by the encoded values of the grouping variables (tuple values, so
+ * strings are their dictionary codes). The keys and the sums are stored in flat primitive
+ * arrays indexed by group number, so adding a row to an existing group allocates nothing and
+ * the sums are long values that do not overflow like int sums.
+ *
+ * Groups are numbered in the order they are first added, and getKey() and getSum() read them by
+ * number, so the table is drained by counting up to size() instead of removing entries.
+ *
+ * For a parallel aggregate every thread fills its own table over its part of the input, and
+ * merge() then combines the partial tables by hash partition on the WorkerPool.
+ */
+public class GroupTable {
+    /** Initial number of slots in the hash table */
+    private static final int INITIAL_SLOTS = 64;
+    /** Odd constants that the hash code is multiplied by to choose a partition, one per level */
+    private static final int[] PARTITION_SEEDS = {0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F, 0x165667B1};
+    /** Number of times a group can be partitioned again */
+    public static final int PARTITION_LEVELS = PARTITION_SEEDS.length;
+
+    /** Number of grouping variables */
+    private final int width;
+    /** Hash table slots with the group number plus one, 0 for an empty slot */
+    private int[] slots = new int[INITIAL_SLOTS];
+    /** Grouping values of the groups, width values per group */
+    private long[] keys;
+    /** Hash codes of the groups, so the table can grow without hashing the keys again */
+    private int[] hashes;
+    /** Sums of the groups */
+    private long[] sums;
+    /** Scratch array for the grouping values of a row */
+    private final long[] scratch;
+    /** Number of groups */
+    private int size = 0;
+
+    /**
+     * Constructor for the GroupTable class.
+     *
+     * @param width number of grouping variables
+     */
+    public GroupTable(int width) {
+        this.width = width;
+        this.keys = new long[INITIAL_SLOTS / 2 * width];
+        this.hashes = new int[INITIAL_SLOTS / 2];
+        this.sums = new long[INITIAL_SLOTS / 2];
+        this.scratch = new long[width];
+    }
+
+    /**
+     * Method for adding a value to the sum of the group of a row of a batch. The group is
+     * created with a sum of 0 if it does not exist yet.
+     *
+     * @param batch batch that holds the row
+     * @param groupSlots slots of the grouping variables in the batch
+     * @param row row number in the batch
+     * @param value value to add
+     */
+    public void add(TupleBatch batch, int[] groupSlots, int row, long value) {
+        for (int j = 0; j < width; j++) {
+            scratch[j] = batch.getColumn(groupSlots[j])[row];
+        }
+        add(scratch, value);
+    }
+
+    /**
+     * Method for adding a value to the sum of a group. The group is created with a sum of 0 if
+     * it does not exist yet.
+     *
+     * @param key grouping values of the group
+     * @param value value to add
+     */
+    public void add(long[] key, long value) {
+        int hash = 0;
+        for (int j = 0; j < width; j++) {
+            hash = hash * 31 + Long.hashCode(key[j]);
+        }
+        hash = mix(hash);
+
+        int mask = slots.length - 1;
+        int index = hash & mask;
+        while (true) {
+            int group = slots[index] - 1;
+            if (group < 0) {
+                group = insert(index, hash);
+                System.arraycopy(key, 0, keys, group * width, width);
+                sums[group] = value;
+                return;
+            }
+            if (hashes[group] == hash && matches(group, key)) {
+                sums[group] += value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Method for merging the partial aggregates of several threads. The groups are split by
+     * their hash codes into as many partitions as there are partial tables, and every partition
+     * is merged by its own task on the WorkerPool. A group therefore ends up in exactly one of the
+     * merged tables, and the merged tables together hold every group once.
+     *
+     * @param partials partial tables with the same grouping variables
+     * @param width number of grouping variables
+     * @return returns the merged tables, which hold disjoint groups
+     */
+    public static List<GroupTable> merge(List<GroupTable> partials, int width) {
+        if (partials.size() <= 1) {
+            return partials.isEmpty() ? Arrays.asList(new GroupTable(width)) : partials;
+        }
+
+        int parts = partials.size();
+        List<ForkJoinTask<GroupTable>> tasks = new ArrayList<>();
+        for (int i = 0; i < parts; i++) {
+            int part = i;
+            tasks.add(WorkerPool.getWorkers().getPool().submit(() -> {
+                GroupTable merged = new GroupTable(width);
+                for (GroupTable partial : partials) {
+                    merged.addPartition(partial, part, parts);
+                }
+                return merged;
+            }));
+        }
+
+        List<GroupTable> merged = new ArrayList<>();
+        for (ForkJoinTask<GroupTable> task : tasks) {
+            merged.add(task.join());
+        }
+        return merged;
+    }
+
+    /**
+     * Helper method for adding the groups of one hash partition of another table to this table.
+     *
+     * @param other table with the same grouping variables
+     * @param part number of the partition
+     * @param parts number of partitions
+     */
+    private void addPartition(GroupTable other, int part, int parts) {
+        long[] key = new long[width];
+        for (int group = 0; group < other.size; group++) {
+            if (other.getPartition(group, parts, 0) != part) continue;
+            System.arraycopy(other.keys, group * width, key, 0, width);
+            add(key, other.sums[group]);
+        }
+    }
+
+    /**
+     * Getter for the number of groups.
+     *
+     * @return returns the number of groups
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Getter for a grouping value of a group.
+     *
+     * @param group group number
+     * @param column position of the grouping variable
+     * @return returns the grouping value
+     */
+    public long getKey(int group, int column) {
+        return keys[group * width + column];
+    }
+
+    /**
+     * Getter for the sum of a group.
+     *
+     * @param group group number
+     * @return returns the sum
+     */
+    public long getSum(int group) {
+        return sums[group];
+    }
+
+    /**
+     * Helper method for checking whether a group has the given grouping values.
+     *
+     * @param group group number
+     * @param key grouping values
+     * @return returns true if all grouping values are equal
+     */
+    private boolean matches(int group, long[] key) {
+        int offset = group * width;
+        for (int j = 0; j < width; j++) {
+            if (keys[offset + j] != key[j]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Helper method for creating a new group in an empty slot. The arrays grow when they are
+     * full, and the hash table is doubled when it becomes half full.
+     *
+     * @param index empty slot of the hash table
+     * @param hash hash code of the group
+     * @return returns the number of the new group
+     */
+    private int insert(int index, int hash) {
+        int group = size++;
+        if (group == sums.length) {
+            sums = Arrays.copyOf(sums, group * 2);
+            hashes = Arrays.copyOf(hashes, group * 2);
+            keys = Arrays.copyOf(keys, group * 2 * width);
+        }
+        hashes[group] = hash;
+        slots[index] = group + 1;
+        if (size * 2 > slots.length) rehash();
+        return group;
+    }
+
+    /**
+     * Helper method for doubling the hash table and inserting every group again.
+     */
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int group = 0; group < size; group++) {
+            int index = hashes[group] & mask;
+            while (slots[index] != 0) index = (index + 1) & mask;
+            slots[index] = group + 1;
+        }
+    }
+
+    /**
+     * Method for choosing the hash partition of a group. The hash code is multiplied by a
+     * different constant for every level, so that the groups of a partition do not share the bits
+     * of the hash code that choose their slot, and so that a partition can be split again at the
+     * next level.
+     *
+     * @param group group number
+     * @param parts number of partitions
+     * @param level partitioning level, from 0 to PARTITION_LEVELS - 1
+     * @return returns the partition, from 0 to parts - 1
+     */
+    public int getPartition(int group, int parts, int level) {
+        return partition(hashes[group], parts, level);
+    }
+
+    /**
+     * Method for choosing the hash partition of a hash code, in the same way as getPartition().
+     * Used by the operators that partition tuples by their own hash codes.
+     *
+     * @param hash hash code
+     * @param parts number of partitions
+     * @param level partitioning level, from 0 to PARTITION_LEVELS - 1
+     * @return returns the partition, from 0 to parts - 1
+     */
+    public static int partition(int hash, int parts, int level) {
+        long spread = (hash * PARTITION_SEEDS[level]) & 0xFFFFFFFFL;
+        return (int) ((spread * parts) >>> 32);
+    }
+
+    /**
+     * Method for estimating the memory used by the table.
+     *
+     * @return returns the size of the arrays of the table in bytes
+     */
+    public long getBytes() {
+        return 4L * slots.length + 8L * keys.length + 4L * hashes.length + 8L * sums.length;
+    }
+
+    /**
+     * Helper method for spreading the bits of a hash code, so that the low bits used to pick a
+     * slot depend on all bits of the grouping values.
+     *
+     * @param hash hash code of the grouping values
+     * @return returns the mixed hash code
+     */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,70 @@
+package ed.inf.adbs.minibase.utils;
+
+/**
+ * Class for estimating the number of distinct values in a column with the HyperLogLog sketch.
+ * Every value is hashed, the first PRECISION bits of the hash choose a register and the register
+ * keeps the largest number of leading zeros seen in the rest of the hash. The sketch uses
+ * 2^PRECISION bytes, independent of the number of values, and the estimate has a standard error
+ * of about 1.6%.
+ */
+public class HyperLogLog {
+    /** Number of hash bits used to choose a register */
+    private static final int PRECISION = 12;
+    /** Number of registers */
+    private static final int REGISTERS = 1 << PRECISION;
+
+    /** Largest number of leading zeros plus one, for every register */
+    private final byte[] registers = new byte[REGISTERS];
+
+    /**
+     * Method for adding a value to the sketch.
+     *
+     * @param value value to add
+     */
+    public void add(long value) {
+        long hash = hash(value);
+        int register = (int) (hash >>> (64 - PRECISION));
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+
+    /**
+     * Method for estimating the number of distinct values added to the sketch. Small estimates
+     * are corrected with linear counting of the empty registers.
+     *
+     * @return returns the estimated number of distinct values
+     */
+    public long estimate() {
+        double sum = 0;
+        int empty = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) empty++;
+        }
+
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && empty > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / empty);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Helper method for hashing a value, using the finalizer of MurmurHash3 so that every input
+     * bit affects every output bit.
+     *
+     * @param value value to hash
+     * @return returns the hash
+     */
+    private static long hash(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
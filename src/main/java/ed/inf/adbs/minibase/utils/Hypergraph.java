@@ -0,0 +1,156 @@
+package ed.inf.adbs.minibase.utils;
+
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.base.Term;
+import ed.inf.adbs.minibase.base.Variable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Class for the hypergraph of the relational atoms of a query. Every atom is an edge that
+ * contains the variables of the atom. Constants are not part of the hypergraph.
+ *
+ * The hypergraph is (alpha-)acyclic if the GYO reduction removes all but one of its edges. The
+ * reduction repeatedly removes the variables that are only in one edge, and the edges that are
+ * contained in another edge. A query with an acyclic hypergraph has a join tree, while a cyclic
+ * query (e.g. a triangle) may have binary join plans whose intermediate results are larger
+ * than the output.
+ *
+ * The join tree is found by the same reduction: an edge that is removed because it is contained
+ * in another edge becomes a child of that edge, and the last edge is the root. Every variable
+ * that an edge shares with an edge outside of its subtree is then also in its parent.
+ */
+public class Hypergraph {
+    /** Variables of every edge, in the order of the atoms */
+    private final List<Set<Variable>> edges = new ArrayList<>();
+
+    /**
+     * Constructor for the Hypergraph class.
+     *
+     * @param atoms relational atoms of the query
+     */
+    public Hypergraph(List<RelationalAtom> atoms) {
+        for (RelationalAtom atom : atoms) {
+            Set<Variable> edge = new HashSet<>();
+            for (Term term : atom.getTerms()) {
+                if (term instanceof Variable) edge.add((Variable) term);
+            }
+            edges.add(edge);
+        }
+    }
+
+    /** Parent of every edge in the join tree, -1 for the root */
+    private int[] parents = null;
+    /** Edges in the order the reduction removed them, ending with the root */
+    private int[] order = null;
+
+    /**
+     * Method for checking whether the hypergraph is acyclic with the GYO reduction.
+     *
+     * @return returns true if the reduction leaves at most one edge
+     */
+    public boolean isAcyclic() {
+        if (order == null) reduce();
+        return order.length == edges.size();
+    }
+
+    /**
+     * Getter for the join tree of an acyclic hypergraph.
+     *
+     * @return returns the parent of every edge, -1 for the root, or null if the hypergraph is
+     * cyclic
+     */
+    public int[] getParents() {
+        return isAcyclic() ? parents : null;
+    }
+
+    /**
+     * Getter for the edges in the order the GYO reduction removed them. Every edge comes after
+     * all edges of its subtree in the join tree, and the root comes last.
+     *
+     * @return returns the positions of the edges, or null if the hypergraph is cyclic
+     */
+    public int[] getOrder() {
+        return isAcyclic() ? order : null;
+    }
+
+    /**
+     * Helper method for the GYO reduction. Stores the parents of the removed edges and the
+     * order in which they were removed. If the hypergraph is cyclic the order is shorter than
+     * the number of edges.
+     */
+    private void reduce() {
+        List<Set<Variable>> remaining = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < edges.size(); i++) {
+            remaining.add(new HashSet<>(edges.get(i)));
+            positions.add(i);
+        }
+        parents = new int[edges.size()];
+        List<Integer> removed = new ArrayList<>();
+
+        boolean changed = true;
+        while (changed && remaining.size() > 1) {
+            changed = false;
+
+            // remove the variables that are only in one edge
+            for (Set<Variable> edge : remaining) {
+                if (edge.removeIf(variable -> count(remaining, variable) == 1)) changed = true;
+            }
+
+            // remove an edge that is contained in another edge, which becomes its parent
+            for (int i = 0; i < remaining.size(); i++) {
+                int container = findContainer(remaining, i);
+                if (container >= 0) {
+                    parents[positions.get(i)] = positions.get(container);
+                    removed.add(positions.get(i));
+                    remaining.remove(i);
+                    positions.remove(i);
+                    changed = true;
+                    break;
+                }
+            }
+        }
+
+        if (remaining.size() == 1) {
+            parents[positions.get(0)] = -1;
+            removed.add(positions.get(0));
+        }
+        order = new int[removed.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = removed.get(i);
+        }
+    }
+
+    /**
+     * Helper method for counting the edges that contain a variable.
+     *
+     * @param edges edges of the hypergraph
+     * @param variable variable to count
+     * @return returns the number of edges that contain the variable
+     */
+    private static int count(List<Set<Variable>> edges, Variable variable) {
+        int count = 0;
+        for (Set<Variable> edge : edges) {
+            if (edge.contains(variable)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Helper method for finding an edge that contains another edge.
+     *
+     * @param edges edges of the hypergraph
+     * @param index position of the edge to check
+     * @return returns the position of an edge that contains all variables of the edge, or -1
+     */
+    private static int findContainer(List<Set<Variable>> edges, int index) {
+        for (int j = 0; j < edges.size(); j++) {
+            if (j != index && edges.get(j).containsAll(edges.get(index))) return j;
+        }
+        return -1;
+    }
+}
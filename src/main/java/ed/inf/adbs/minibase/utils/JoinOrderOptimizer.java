@@ -0,0 +1,289 @@
+package ed.inf.adbs.minibase.utils;
+
+import ed.inf.adbs.minibase.base.*;
+import ed.inf.adbs.minibase.operators.Operator;
+
+import java.util.*;
+
+/**
+ * Class for choosing the order in which the relational atoms of a query are joined. The join
+ * tree built by the QueryPlan is left-deep, so an order is a permutation of the atoms. The best
+ * order is found by dynamic programming over the subsets of atoms, using the TableStatistics of
+ * the relations to estimate the size of every intermediate result.
+ *
+ * The cost of a plan is the sum of the estimated sizes of the join results plus the sizes of the
+ * right children, which are the build sides of the hash joins. An atom is only joined to a set of
+ * atoms it shares a variable or a join condition with, so that cartesian products are only used
+ * when the query requires them.
+ */
+public class JoinOrderOptimizer {
+    /** Largest number of atoms that are reordered, as the number of subsets grows exponentially */
+    private static final int MAX_ATOMS = 16;
+    /** Estimated selectivity of an inequality between two terms */
+    private static final double RANGE_SELECTIVITY = 1.0 / 3;
+
+    /** Operators to join, in the order of the query */
+    private final List<Operator> operators;
+    /** Join conditions of the query */
+    private final List<ComparisonAtom> joinComparators;
+    /** Estimated number of tuples produced by every operator */
+    private final double[] cardinalities;
+    /** Estimated number of distinct values of every variable, for every operator */
+    private final List<Map<Variable, Double>> distinctCounts = new ArrayList<>();
+
+    /**
+     * Class storing the best plan found for a subset of the atoms.
+     */
+    private static class SubPlan {
+        /** Indices of the operators in join order */
+        private final int[] order;
+        /** Estimated cost of the plan */
+        private final double cost;
+        /** Estimated number of tuples in the result */
+        private final double cardinality;
+        /** Estimated number of distinct values of every variable in the result */
+        private final Map<Variable, Double> distinct;
+
+        /**
+         * Constructor for the SubPlan class.
+         *
+         * @param order indices of the operators in join order
+         * @param cost estimated cost of the plan
+         * @param cardinality estimated number of tuples in the result
+         * @param distinct estimated number of distinct values of every variable
+         */
+        private SubPlan(int[] order, double cost, double cardinality, Map<Variable, Double> distinct) {
+            this.order = order;
+            this.cost = cost;
+            this.cardinality = cardinality;
+            this.distinct = distinct;
+        }
+    }
+
+    /**
+     * Constructor for the JoinOrderOptimizer class. Estimates the size of every operator after
+     * the selection conditions are applied. Comparisons with a constant use the histograms of
+     * analyzed tables.
+     *
+     * @param operators operators to join
+     * @param selectionComparators selection conditions of the query
+     * @param joinComparators join conditions of the query
+     */
+    private JoinOrderOptimizer(List<Operator> operators, List<ComparisonAtom> selectionComparators,
+                               List<ComparisonAtom> joinComparators) {
+        this.operators = operators;
+        this.joinComparators = joinComparators;
+        this.cardinalities = new double[operators.size()];
+
+        for (int i = 0; i < operators.size(); i++) {
+            RelationalAtom atom = operators.get(i).getAtom();
+            TableStatistics statistics = DatabaseCatalog.getCatalog().getStatistics(atom.getName());
+            List<Term> terms = atom.getTerms();
+
+            double cardinality = statistics.getRowCount();
+            Map<Variable, Double> distinct = new HashMap<>();
+            for (int j = 0; j < terms.size(); j++) {
+                double columnDistinct = Math.max(statistics.getDistinctCount(j), 1);
+                Term term = terms.get(j);
+                if (term instanceof Constant) {
+                    cardinality *= statistics.selectivity(j, ComparisonOperator.EQ, Tuple.encode((Constant) term));
+                } else if (distinct.containsKey(term)) {
+                    cardinality /= Math.max(distinct.get(term), columnDistinct);
+                    distinct.put((Variable) term, Math.min(distinct.get(term), columnDistinct));
+                } else {
+                    distinct.put((Variable) term, columnDistinct);
+                }
+            }
+
+            for (ComparisonAtom comp : selectionComparators) {
+                boolean term1 = comp.getTerm1() instanceof Constant || distinct.containsKey(comp.getTerm1());
+                boolean term2 = comp.getTerm2() instanceof Constant || distinct.containsKey(comp.getTerm2());
+                if (comp.getTerm1() instanceof Variable && comp.getTerm2() instanceof Constant && term1) {
+                    cardinality *= statistics.selectivity(terms.indexOf(comp.getTerm1()), comp.getOp(),
+                            Tuple.encode((Constant) comp.getTerm2()));
+                } else if (comp.getTerm2() instanceof Variable && comp.getTerm1() instanceof Constant && term2) {
+                    cardinality *= statistics.selectivity(terms.indexOf(comp.getTerm2()),
+                            CompareUtil.swapCompare(comp.getOp()), Tuple.encode((Constant) comp.getTerm1()));
+                } else if (term1 && term2) {
+                    cardinality *= selectivity(comp, distinct, distinct);
+                }
+            }
+
+            cardinalities[i] = Math.max(cardinality, 1);
+            for (Map.Entry<Variable, Double> entry : distinct.entrySet()) {
+                entry.setValue(Math.min(entry.getValue(), cardinalities[i]));
+            }
+            distinctCounts.add(distinct);
+        }
+    }
+
+    /**
+     * Method for ordering the operators of a query so that the estimated cost of the left-deep
+     * join tree is as small as possible. Ties are broken by the order of the query. Queries with
+     * more than MAX_ATOMS atoms are not reordered.
+     *
+     * @param operators operators to join, in the order of the query
+     * @param selectionComparators selection conditions of the query
+     * @param joinComparators join conditions of the query
+     * @return returns the operators in join order
+     */
+    public static List<Operator> order(List<Operator> operators, List<ComparisonAtom> selectionComparators,
+                                       List<ComparisonAtom> joinComparators) {
+        if (operators.size() <= 1 || operators.size() > MAX_ATOMS) return operators;
+
+        JoinOrderOptimizer optimizer = new JoinOrderOptimizer(operators, selectionComparators, joinComparators);
+        List<Operator> ordered = new ArrayList<>();
+        for (int i : optimizer.findBestOrder()) {
+            ordered.add(operators.get(i));
+        }
+        return ordered;
+    }
+
+    /**
+     * Method for finding the best join order. best[s] is the cheapest plan joining the set of
+     * operators s, where bit i of s is set if operator i is in the set.
+     *
+     * @return returns the indices of the operators in join order
+     */
+    private int[] findBestOrder() {
+        int n = operators.size();
+        SubPlan[] best = new SubPlan[1 << n];
+
+        for (int i = 0; i < n; i++) {
+            best[1 << i] = new SubPlan(new int[]{i}, 0, cardinalities[i], distinctCounts.get(i));
+        }
+
+        for (int set = 1; set < best.length; set++) {
+            SubPlan plan = best[set];
+            if (plan == null) continue;
+
+            boolean connectedExists = false;
+            for (int i = 0; i < n; i++) {
+                if ((set & (1 << i)) == 0 && isConnected(plan, i)) {
+                    connectedExists = true;
+                    break;
+                }
+            }
+
+            for (int i = 0; i < n; i++) {
+                if ((set & (1 << i)) != 0) continue;
+                if (connectedExists && !isConnected(plan, i)) continue;
+
+                SubPlan extended = extend(plan, i);
+                int newSet = set | (1 << i);
+                if (best[newSet] == null || extended.cost < best[newSet].cost) {
+                    best[newSet] = extended;
+                }
+            }
+        }
+        return best[best.length - 1].order;
+    }
+
+    /**
+     * Method for checking whether an operator shares a variable or a join condition with a plan.
+     *
+     * @param plan plan to join the operator to
+     * @param operator index of the operator
+     * @return returns true if the operator is connected to the plan
+     */
+    private boolean isConnected(SubPlan plan, int operator) {
+        Map<Variable, Double> distinct = distinctCounts.get(operator);
+        for (Variable variable : distinct.keySet()) {
+            if (plan.distinct.containsKey(variable)) return true;
+        }
+        for (ComparisonAtom comp : joinComparators) {
+            if (joins(comp, plan.distinct, distinct)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Method for estimating the plan that joins an operator to the result of a plan.
+     *
+     * @param plan plan that forms the left child of the join
+     * @param operator index of the operator that forms the right child of the join
+     * @return returns the extended plan
+     */
+    private SubPlan extend(SubPlan plan, int operator) {
+        Map<Variable, Double> right = distinctCounts.get(operator);
+        Map<Variable, Double> distinct = new HashMap<>(plan.distinct);
+        double cardinality = plan.cardinality * cardinalities[operator];
+
+        for (Map.Entry<Variable, Double> entry : right.entrySet()) {
+            Double leftDistinct = plan.distinct.get(entry.getKey());
+            if (leftDistinct == null) {
+                distinct.put(entry.getKey(), entry.getValue());
+            } else {
+                cardinality /= Math.max(leftDistinct, entry.getValue());
+                distinct.put(entry.getKey(), Math.min(leftDistinct, entry.getValue()));
+            }
+        }
+
+        for (ComparisonAtom comp : joinComparators) {
+            if (joins(comp, plan.distinct, right)) {
+                cardinality *= selectivity(comp, plan.distinct, right);
+            }
+        }
+
+        cardinality = Math.max(cardinality, 1);
+        for (Map.Entry<Variable, Double> entry : distinct.entrySet()) {
+            entry.setValue(Math.min(entry.getValue(), cardinality));
+        }
+
+        int[] order = Arrays.copyOf(plan.order, plan.order.length + 1);
+        order[plan.order.length] = operator;
+        double cost = plan.cost + cardinality + cardinalities[operator];
+        return new SubPlan(order, cost, cardinality, distinct);
+    }
+
+    /**
+     * Method for checking whether a join condition is first evaluated when two sets of variables
+     * are joined, i.e. one term is only in the left set and the other only in the right set.
+     *
+     * @param comp join condition
+     * @param left variables of the left child
+     * @param right variables of the right child
+     * @return returns true if the condition is evaluated by the join
+     */
+    private static boolean joins(ComparisonAtom comp, Map<Variable, Double> left, Map<Variable, Double> right) {
+        Term term1 = comp.getTerm1();
+        Term term2 = comp.getTerm2();
+        return (left.containsKey(term1) && !left.containsKey(term2) && right.containsKey(term2) && !right.containsKey(term1))
+                || (left.containsKey(term2) && !left.containsKey(term1) && right.containsKey(term1) && !right.containsKey(term2));
+    }
+
+    /**
+     * Method for estimating the fraction of tuples that satisfy a comparison. Equality is
+     * estimated from the number of distinct values, other comparisons use fixed estimates.
+     *
+     * @param comp comparison to estimate
+     * @param left distinct values of the variables of the left side
+     * @param right distinct values of the variables of the right side
+     * @return returns the estimated selectivity
+     */
+    private static double selectivity(ComparisonAtom comp, Map<Variable, Double> left, Map<Variable, Double> right) {
+        double distinct = Math.max(distinctOf(comp.getTerm1(), left, right), distinctOf(comp.getTerm2(), left, right));
+        switch (comp.getOp()) {
+            case EQ:
+                return 1 / distinct;
+            case NEQ:
+                return 1 - 1 / distinct;
+            default:
+                return RANGE_SELECTIVITY;
+        }
+    }
+
+    /**
+     * Helper method for finding the number of distinct values of a term. Constants have one value.
+     *
+     * @param term term of a comparison
+     * @param left distinct values of the variables of the left side
+     * @param right distinct values of the variables of the right side
+     * @return returns the estimated number of distinct values
+     */
+    private static double distinctOf(Term term, Map<Variable, Double> left, Map<Variable, Double> right) {
+        if (left.containsKey(term)) return left.get(term);
+        if (right.containsKey(term)) return right.get(term);
+        return 1;
+    }
+}
@@ -0,0 +1,258 @@
+package ed.inf.adbs.minibase.utils;
+
+import ed.inf.adbs.minibase.base.ComparisonOperator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class for compiled join conditions, which compare a column of the outer (left) tuple with a
+ * column of the inner (right) tuple. Like Predicate, every condition is compiled from the slots
+ * and the column types into an instance of a class that evaluates exactly one comparison, and a
+ * conjunction of conditions is compiled into a single And predicate.
+ */
+public abstract class JoinPredicate {
+    /** Predicate for conditions that can never hold, e.g. a comparison of a string and an int */
+    public static final JoinPredicate FALSE = new False();
+    /** Predicate for an empty conjunction, used for cartesian products */
+    public static final JoinPredicate TRUE = new And(new JoinPredicate[0]);
+
+    /**
+     * Method for evaluating the predicate on a pair of tuples.
+     *
+     * @param outer tuple from the outer relation (left child)
+     * @param inner tuple from the inner relation (right child)
+     * @return returns true if the pair satisfies the predicate
+     */
+    public abstract boolean test(Tuple outer, Tuple inner);
+
+    /**
+     * Method for compiling the comparison of an outer column with an inner column.
+     *
+     * @param outerSlot slot of the column in the outer tuple
+     * @param outerString whether the outer column is a string
+     * @param op comparison operator, with the outer column on the left-hand side
+     * @param innerSlot slot of the column in the inner tuple
+     * @param innerString whether the inner column is a string
+     * @return returns the compiled predicate
+     */
+    public static JoinPredicate compare(int outerSlot, boolean outerString, ComparisonOperator op, int innerSlot, boolean innerString) {
+        if (outerString != innerString) return FALSE;
+        switch (op) {
+            case EQ:
+                return new Equals(outerSlot, innerSlot);
+            case NEQ:
+                return new NotEquals(outerSlot, innerSlot);
+            default:
+        }
+        if (outerString) return new StringCompare(outerSlot, op, innerSlot);
+        switch (op) {
+            case LT:
+                return new LessThan(outerSlot, innerSlot, false);
+            case LEQ:
+                return new LessThan(outerSlot, innerSlot, true);
+            case GT:
+                return new GreaterThan(outerSlot, innerSlot, false);
+            case GEQ:
+                return new GreaterThan(outerSlot, innerSlot, true);
+            default:
+                throw new IllegalArgumentException("Unrecognized comparison operator");
+        }
+    }
+
+    /**
+     * Method for compiling a conjunction of predicates. Predicates that always hold are left out,
+     * and the conjunction is FALSE if one of the predicates is.
+     *
+     * @param predicates predicates that must all hold
+     * @return returns the compiled predicate
+     */
+    public static JoinPredicate and(List<JoinPredicate> predicates) {
+        List<JoinPredicate> parts = new ArrayList<>();
+        for (JoinPredicate predicate : predicates) {
+            if (predicate == FALSE) return FALSE;
+            if (predicate != TRUE) parts.add(predicate);
+        }
+        if (parts.isEmpty()) return TRUE;
+        if (parts.size() == 1) return parts.get(0);
+        return new And(parts.toArray(new JoinPredicate[0]));
+    }
+
+    /**
+     * Predicate that never holds.
+     */
+    private static final class False extends JoinPredicate {
+        @Override
+        public boolean test(Tuple outer, Tuple inner) {
+            return false;
+        }
+    }
+
+    /**
+     * Conjunction of predicates.
+     */
+    private static final class And extends JoinPredicate {
+        /** Predicates that must all hold */
+        private final JoinPredicate[] predicates;
+
+        /**
+         * Constructor for the conjunction.
+         *
+         * @param predicates predicates that must all hold
+         */
+        private And(JoinPredicate[] predicates) {
+            this.predicates = predicates;
+        }
+
+        @Override
+        public boolean test(Tuple outer, Tuple inner) {
+            for (JoinPredicate predicate : predicates) {
+                if (!predicate.test(outer, inner)) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Equality of an outer and an inner column. Used for integers and string codes.
+     */
+    private static final class Equals extends JoinPredicate {
+        /** Slot of the outer column */
+        private final int outerSlot;
+        /** Slot of the inner column */
+        private final int innerSlot;
+
+        /**
+         * Constructor for the predicate.
+         *
+         * @param outerSlot slot of the outer column
+         * @param innerSlot slot of the inner column
+         */
+        private Equals(int outerSlot, int innerSlot) {
+            this.outerSlot = outerSlot;
+            this.innerSlot = innerSlot;
+        }
+
+        @Override
+        public boolean test(Tuple outer, Tuple inner) {
+            return outer.get(outerSlot) == inner.get(innerSlot);
+        }
+    }
+
+    /**
+     * Inequality of an outer and an inner column. Used for integers and string codes.
+     */
+    private static final class NotEquals extends JoinPredicate {
+        /** Slot of the outer column */
+        private final int outerSlot;
+        /** Slot of the inner column */
+        private final int innerSlot;
+
+        /**
+         * Constructor for the predicate.
+         *
+         * @param outerSlot slot of the outer column
+         * @param innerSlot slot of the inner column
+         */
+        private NotEquals(int outerSlot, int innerSlot) {
+            this.outerSlot = outerSlot;
+            this.innerSlot = innerSlot;
+        }
+
+        @Override
+        public boolean test(Tuple outer, Tuple inner) {
+            return outer.get(outerSlot) != inner.get(innerSlot);
+        }
+    }
+
+    /**
+     * Outer integer column less than (or less than or equal to) an inner integer column.
+     */
+    private static final class LessThan extends JoinPredicate {
+        /** Slot of the outer column */
+        private final int outerSlot;
+        /** Slot of the inner column */
+        private final int innerSlot;
+        /** Amount added to the inner column, 1 to allow equal values and 0 otherwise */
+        private final long equal;
+
+        /**
+         * Constructor for the predicate.
+         *
+         * @param outerSlot slot of the outer column
+         * @param innerSlot slot of the inner column
+         * @param orEqual whether equal values satisfy the predicate
+         */
+        private LessThan(int outerSlot, int innerSlot, boolean orEqual) {
+            this.outerSlot = outerSlot;
+            this.innerSlot = innerSlot;
+            this.equal = orEqual ? 1 : 0;
+        }
+
+        @Override
+        public boolean test(Tuple outer, Tuple inner) {
+            return outer.get(outerSlot) < inner.get(innerSlot) + equal;
+        }
+    }
+
+    /**
+     * Outer integer column greater than (or greater than or equal to) an inner integer column.
+     */
+    private static final class GreaterThan extends JoinPredicate {
+        /** Slot of the outer column */
+        private final int outerSlot;
+        /** Slot of the inner column */
+        private final int innerSlot;
+        /** Amount added to the outer column, 1 to allow equal values and 0 otherwise */
+        private final long equal;
+
+        /**
+         * Constructor for the predicate.
+         *
+         * @param outerSlot slot of the outer column
+         * @param innerSlot slot of the inner column
+         * @param orEqual whether equal values satisfy the predicate
+         */
+        private GreaterThan(int outerSlot, int innerSlot, boolean orEqual) {
+            this.outerSlot = outerSlot;
+            this.innerSlot = innerSlot;
+            this.equal = orEqual ? 1 : 0;
+        }
+
+        @Override
+        public boolean test(Tuple outer, Tuple inner) {
+            return outer.get(outerSlot) + equal > inner.get(innerSlot);
+        }
+    }
+
+    /**
+     * Ordering comparison of an outer and an inner string column. The values are decoded for
+     * every pair.
+     */
+    private static final class StringCompare extends JoinPredicate {
+        /** Slot of the outer column */
+        private final int outerSlot;
+        /** Comparison operator */
+        private final ComparisonOperator op;
+        /** Slot of the inner column */
+        private final int innerSlot;
+
+        /**
+         * Constructor for the predicate.
+         *
+         * @param outerSlot slot of the outer column
+         * @param op comparison operator, LT, LEQ, GT or GEQ
+         * @param innerSlot slot of the inner column
+         */
+        private StringCompare(int outerSlot, ComparisonOperator op, int innerSlot) {
+            this.outerSlot = outerSlot;
+            this.op = op;
+            this.innerSlot = innerSlot;
+        }
+
+        @Override
+        public boolean test(Tuple outer, Tuple inner) {
+            return Predicate.holds(CompareUtil.compareValues(outer.get(outerSlot), inner.get(innerSlot), true), op);
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package ed.inf.adbs.minibase.utils;
+
+import ed.inf.adbs.minibase.base.Constant;
+import ed.inf.adbs.minibase.base.IntegerConstant;
+import ed.inf.adbs.minibase.base.StringConstant;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class for reading tuples from a relation file through a memory-mapped buffer. The fields are
+ * parsed directly from the bytes in the buffer using the schema of the relation, so no String is
+ * created for the line or for integer fields. Strings are decoded only to look up their code in
+ * the StringDictionary.
+ *
+ * Fields of columns that the query does not use are skipped at the byte level: the reader only
+ * looks for the end of the field, without parsing the integer or looking up the string, and
+ * stores 0 in their place. After the last used column the rest of the line is skipped at once,
+ * so the fields after it are not checked against the schema.
+ *
+ * The reader can also be given a predicate that was pushed down from the selections of the
+ * query. Every part of the predicate is evaluated as soon as the last column it reads has been
+ * parsed, and a row that fails it is skipped right away, so rejected rows are never copied into
+ * a tuple or a batch.
+ *
+ * Files are mapped in windows of at most WINDOW_SIZE bytes. Every window except the last one
+ * ends after a newline, so a line never crosses two windows.
+ *
+ * A reader can also be restricted to a byte range of the file, so that several readers can parse
+ * the chunks of one file in parallel (see ParallelScanOperator). splitLines() finds chunk
+ * boundaries that fall just after a newline, so every line belongs to exactly one chunk.
+ */
+public class MappedCSVReader {
+    /** Maximum size of a mapped window in bytes */
+    private static final int WINDOW_SIZE = 1 << 30;
+
+    /** Path to the relation file */
+    private final String path;
+    /** Schema of the relation */
+    private final List<Class<? extends Constant>> schema;
+    /** Tuple layout of the relation */
+    private final boolean[] layout;
+    /** Columns that are parsed, the fields of the other columns are skipped */
+    private final boolean[] usedColumns;
+    /** Number of fields read from every line, up to and including the last used column */
+    private final int readColumns;
+    /** Parts of the pushed down predicate by the column after which they are evaluated, null if there is none */
+    private final Predicate[] checks;
+    /** Values of the row that is being parsed */
+    private final long[] rowFields;
+    /** Tuple over rowFields that the predicate is evaluated on */
+    private final Tuple row;
+    /** Offset in the file of the first byte that is read */
+    private final long rangeStart;
+    /** Offset in the file after the last byte that is read */
+    private long rangeEnd;
+    /** Currently mapped window of the file */
+    private MappedByteBuffer buffer;
+    /** Offset of the mapped window in the file */
+    private long windowStart;
+    /** Read position in the mapped window */
+    private int pos;
+    /** Scratch array for decoding strings */
+    private byte[] scratch = new byte[64];
+
+    /**
+     * Constructor for the MappedCSVReader class that parses every column. Maps the first window
+     * of the file.
+     *
+     * @param path path to the relation file
+     * @param schema schema of the relation
+     * @param layout tuple layout of the relation
+     * @throws IOException throws an error if the file could not be mapped
+     */
+    public MappedCSVReader(String path, List<Class<? extends Constant>> schema, boolean[] layout) throws IOException {
+        this(path, schema, layout, null, null);
+    }
+
+    /**
+     * Constructor for the MappedCSVReader class. Maps the first window of the file.
+     *
+     * @param path path to the relation file
+     * @param schema schema of the relation
+     * @param layout tuple layout of the relation
+     * @param usedColumns array with true for every column that should be parsed, or null to
+     *                    parse every column
+     * @param predicate predicate that the returned rows must satisfy, or null to return every
+     *                  row. The columns it reads must be used columns
+     * @throws IOException throws an error if the file could not be mapped
+     */
+    public MappedCSVReader(String path, List<Class<? extends Constant>> schema, boolean[] layout,
+                           boolean[] usedColumns, Predicate predicate) throws IOException {
+        this(path, schema, layout, usedColumns, predicate, 0, -1);
+    }
+
+    /**
+     * Constructor for the MappedCSVReader class that reads a byte range of the file. Maps the
+     * first window of the range.
+     *
+     * @param path path to the relation file
+     * @param schema schema of the relation
+     * @param layout tuple layout of the relation
+     * @param usedColumns array with true for every column that should be parsed, or null to
+     *                    parse every column
+     * @param predicate predicate that the returned rows must satisfy, or null to return every
+     *                  row. The columns it reads must be used columns
+     * @param start offset of the first byte of the range, which must be the start of a line
+     * @param end offset after the last byte of the range, which must be the end of the file or
+     *            just after a newline, or -1 for the end of the file
+     * @throws IOException throws an error if the file could not be mapped
+     */
+    public MappedCSVReader(String path, List<Class<? extends Constant>> schema, boolean[] layout,
+                           boolean[] usedColumns, Predicate predicate, long start, long end) throws IOException {
+        this.path = path;
+        this.schema = schema;
+        this.layout = layout;
+        if (usedColumns == null) {
+            usedColumns = new boolean[schema.size()];
+            Arrays.fill(usedColumns, true);
+        }
+        this.usedColumns = usedColumns;
+        int columns = 0;
+        for (int i = 0; i < usedColumns.length; i++) {
+            if (usedColumns[i]) columns = i + 1;
+        }
+        this.readColumns = columns;
+        this.checks = predicate == null ? null : predicate.splitByLastSlot(schema.size());
+        this.rowFields = new long[schema.size()];
+        this.row = new Tuple(rowFields, layout);
+        this.rangeStart = start;
+        this.rangeEnd = end;
+        map(start);
+    }
+
+    /**
+     * Method for splitting a file into byte ranges that each hold whole lines. Every boundary
+     * between two ranges is moved forward to just after the next newline, and ranges that
+     * become empty are dropped, so there can be fewer ranges than requested.
+     *
+     * @param path path to the relation file
+     * @param chunks number of ranges to split the file into
+     * @return returns the offsets of the boundaries, starting with 0 and ending with the size of
+     * the file, where range i is from offset i up to offset i + 1
+     * @throws IOException throws an error if the file could not be read
+     */
+    public static long[] splitLines(String path, int chunks) throws IOException {
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            long size = file.length();
+            byte[] block = new byte[8192];
+            for (int i = 1; i < chunks; i++) {
+                long offset = Math.max(size * i / chunks - 1, boundaries.get(boundaries.size() - 1));
+                long boundary = size;
+                file.seek(offset);
+                int read;
+                search:
+                while ((read = file.read(block)) > 0) {
+                    for (int j = 0; j < read; j++) {
+                        if (block[j] == '\n') {
+                            boundary = offset + j + 1;
+                            break search;
+                        }
+                    }
+                    offset += read;
+                }
+                if (boundary >= size) break;
+                if (boundary > boundaries.get(boundaries.size() - 1)) boundaries.add(boundary);
+            }
+            if (size > boundaries.get(boundaries.size() - 1)) boundaries.add(size);
+        }
+
+        long[] offsets = new long[boundaries.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = boundaries.get(i);
+        }
+        return offsets;
+    }
+
+    /**
+     * Method for mapping a window of the file starting at the given offset. If the window does
+     * not reach the end of the range, its limit is moved back to just after the last newline.
+     *
+     * @param start offset in the file
+     * @throws IOException throws an error if the file could not be mapped
+     */
+    private void map(long start) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r");
+             FileChannel channel = file.getChannel()) {
+            if (rangeEnd < 0) rangeEnd = channel.size();
+            long size = Math.min(WINDOW_SIZE, rangeEnd - start);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        }
+        windowStart = start;
+        pos = 0;
+
+        if (start + buffer.limit() < rangeEnd) {
+            int end = buffer.limit() - 1;
+            while (end >= 0 && buffer.get(end) != '\n') end--;
+            if (end < 0) throw new IllegalArgumentException("Line in " + path + " is longer than the mapped window");
+            buffer.limit(end + 1);
+        }
+    }
+
+    /**
+     * Method for reading the next tuple from the file that satisfies the predicate.
+     *
+     * @return returns the next tuple, or null at the end of the file
+     * @throws IOException throws an error if the next window of the file could not be mapped
+     */
+    public Tuple readTuple() throws IOException {
+        while (nextLine()) {
+            if (parseLine()) return new Tuple(rowFields.clone(), layout);
+        }
+        return null;
+    }
+
+    /**
+     * Method for reading the next batch of tuples from the file that satisfy the predicate.
+     *
+     * @return returns a batch with up to TupleBatch.CAPACITY tuples, or null at the end of the file
+     * @throws IOException throws an error if the next window of the file could not be mapped
+     */
+    public TupleBatch readBatch() throws IOException {
+        TupleBatch batch = null;
+        while ((batch == null || !batch.isFull()) && nextLine()) {
+            if (!parseLine()) continue;
+            if (batch == null) batch = new TupleBatch(layout);
+            batch.addRow(rowFields);
+        }
+        return batch;
+    }
+
+    /**
+     * Method for checking that there is another line to read, mapping the next window of the
+     * file if needed. Blank lines are rejected in the same way as by the BufferedReader scan,
+     * which finds no fields on them.
+     *
+     * @return returns false if the end of the file was reached
+     * @throws IOException throws an error if the next window of the file could not be mapped
+     */
+    private boolean nextLine() throws IOException {
+        while (pos >= buffer.limit()) {
+            if (windowStart + buffer.limit() >= rangeEnd) return false;
+            map(windowStart + buffer.limit());
+        }
+        int start = skipSpaces(pos);
+        if (start < buffer.limit() && isLineEnd(buffer.get(start))) {
+            throw new IllegalArgumentException("Number of fields in file does not match schema");
+        }
+        return true;
+    }
+
+    /**
+     * Method for parsing one line of the file, starting at the current read position, into
+     * rowFields. The fields of unused columns are skipped and set to 0, and the fields after the
+     * last used column are not read. The line is abandoned as soon as a part of the predicate
+     * fails. Leaves the read position at the start of the next line.
+     *
+     * @return returns true if the row satisfies the predicate
+     */
+    private boolean parseLine() {
+        long[] fields = rowFields;
+        int limit = buffer.limit();
+
+        for (int i = 0; i < readColumns; i++) {
+            pos = skipSpaces(pos);
+            if (pos >= limit || isLineEnd(buffer.get(pos))) {
+                throw new IllegalArgumentException("Number of fields in file does not match schema");
+            }
+
+            Class<? extends Constant> type = schema.get(i);
+            if (type == StringConstant.class && buffer.get(pos) == '\'') {
+                if (usedColumns[i]) {
+                    fields[i] = StringDictionary.getDictionary().encode(parseString());
+                } else {
+                    skipString();
+                    fields[i] = 0;
+                }
+            } else if (type == IntegerConstant.class) {
+                if (usedColumns[i]) {
+                    fields[i] = parseInt();
+                } else {
+                    skipInt();
+                    fields[i] = 0;
+                }
+            } else {
+                throw new IllegalArgumentException("Illegal type in schema");
+            }
+
+            pos = skipSpaces(pos);
+            byte next = pos < limit ? buffer.get(pos) : (byte) '\n';
+            if (i < schema.size() - 1) {
+                if (next != ',') throw new IllegalArgumentException("Number of fields in file does not match schema");
+                pos++;
+            } else if (next == ',') {
+                throw new IllegalArgumentException("Number of fields in file does not match schema");
+            }
+
+            if (checks != null && !checks[i].test(row)) {
+                skipLine();
+                return false;
+            }
+        }
+
+        // move to the start of the next line
+        if (readColumns < schema.size()) {
+            skipLine();
+            return checks == null || readColumns > 0 || checks[0].test(row);
+        }
+        while (pos < limit && buffer.get(pos) != '\n') {
+            if (buffer.get(pos) != '\r') throw new IllegalArgumentException("Unexpected characters at end of line");
+            pos++;
+        }
+        pos++;
+        return true;
+    }
+
+    /**
+     * Helper method for moving the read position to the start of the next line, without
+     * reading the rest of the current line.
+     */
+    private void skipLine() {
+        int limit = buffer.limit();
+        while (pos < limit && buffer.get(pos) != '\n') pos++;
+        pos++;
+    }
+
+    /**
+     * Helper method for parsing an integer field at the current read position.
+     *
+     * @return returns the integer value
+     */
+    private int parseInt() {
+        int limit = buffer.limit();
+        boolean negative = false;
+        if (buffer.get(pos) == '-' || buffer.get(pos) == '+') {
+            negative = buffer.get(pos) == '-';
+            pos++;
+        }
+
+        long value = 0;
+        int start = pos;
+        while (pos < limit) {
+            int digit = buffer.get(pos) - '0';
+            if (digit < 0 || digit > 9) break;
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) throw new NumberFormatException("Value is not an integer");
+            pos++;
+        }
+        if (pos == start) throw new NumberFormatException("Value is not an integer");
+
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) throw new NumberFormatException("Value is not an integer");
+        return (int) value;
+    }
+
+    /**
+     * Helper method for parsing a string field enclosed in ' at the current read position.
+     *
+     * @return returns the string without the enclosing '
+     */
+    private String parseString() {
+        int limit = buffer.limit();
+        int start = ++pos;
+        while (pos < limit && buffer.get(pos) != '\'' && !isLineEnd(buffer.get(pos))) pos++;
+        if (pos >= limit || buffer.get(pos) != '\'') {
+            throw new IllegalArgumentException("String is not enclosed properly with ' ");
+        }
+
+        int length = pos - start;
+        if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+        for (int i = 0; i < length; i++) {
+            scratch[i] = buffer.get(start + i);
+        }
+        pos++;
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Helper method for skipping a string field enclosed in ' at the current read position,
+     * without decoding it.
+     */
+    private void skipString() {
+        int limit = buffer.limit();
+        pos++;
+        while (pos < limit && buffer.get(pos) != '\'' && !isLineEnd(buffer.get(pos))) pos++;
+        if (pos >= limit || buffer.get(pos) != '\'') {
+            throw new IllegalArgumentException("String is not enclosed properly with ' ");
+        }
+        pos++;
+    }
+
+    /**
+     * Helper method for skipping an integer field at the current read position, without
+     * parsing it. Stops at the first separator, space, tab or line end, which are the only
+     * characters up to ' ' or equal to ','.
+     */
+    private void skipInt() {
+        int limit = buffer.limit();
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b <= ' ' || b == ',') break;
+            pos++;
+        }
+    }
+
+    /**
+     * Helper method for skipping spaces and tabs.
+     *
+     * @param from position to start from
+     * @return returns the position of the first character that is not a space or tab
+     */
+    private int skipSpaces(int from) {
+        int limit = buffer.limit();
+        while (from < limit && (buffer.get(from) == ' ' || buffer.get(from) == '\t')) from++;
+        return from;
+    }
+
+    /**
+     * Helper method for checking whether a byte ends a line.
+     *
+     * @param b byte to check
+     * @return returns true if the byte is a newline or carriage return
+     */
+    private static boolean isLineEnd(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * Method for getting the current read position in the file.
+     *
+     * @return returns the number of bytes read from the start of the file
+     */
+    public long getPosition() {
+        return windowStart + pos;
+    }
+
+    /**
+     * Method for resetting the reader to the start of its range.
+     *
+     * @throws IOException throws an error if the file could not be mapped
+     */
+    public void reset() throws IOException {
+        if (windowStart == rangeStart) {
+            pos = 0;
+        } else {
+            map(rangeStart);
+        }
+    }
+}
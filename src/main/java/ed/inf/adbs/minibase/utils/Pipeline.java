@@ -0,0 +1,301 @@
+package ed.inf.adbs.minibase.utils;
+
+import ed.inf.adbs.minibase.operators.Operator;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Class for compiled pipelines. A pipeline fuses a chain of selections followed by a projection
+ * or a sum aggregate into one pass over the batches of a source operator: every batch is
+ * filtered by the conjunction of the selections and then projected or aggregated directly from
+ * its columns, without passing tuples or intermediate batches between operators.
+ *
+ * A pipeline only holds the compiled program (the predicate, the slots and the layout), so one
+ * instance can be cached and evaluated any number of times. Every evaluation is started with
+ * execute(), which returns an Execution with its own state.
+ */
+public abstract class Pipeline {
+    /** Conjunction of the selections in the pipeline */
+    protected final Predicate predicate;
+    /** Tuple layout of the output */
+    protected final boolean[] layout;
+
+    /**
+     * Constructor for the Pipeline class.
+     *
+     * @param predicate conjunction of the selections in the pipeline
+     * @param layout tuple layout of the output
+     */
+    protected Pipeline(Predicate predicate, boolean[] layout) {
+        this.predicate = predicate;
+        this.layout = layout;
+    }
+
+    /**
+     * Method for compiling a pipeline that ends with a projection. Rows that have already been
+     * returned are left out, as in ProjectOperator.
+     *
+     * @param predicate conjunction of the selections in the pipeline
+     * @param outputIndexes slots of the output variables in the source tuples
+     * @param layout tuple layout of the output
+     * @return returns the compiled pipeline
+     */
+    public static Pipeline projection(Predicate predicate, int[] outputIndexes, boolean[] layout) {
+        return new Projection(predicate, outputIndexes, layout);
+    }
+
+    /**
+     * Method for compiling a pipeline that ends with a sum aggregate, with the semantics of
+     * SumOperator.
+     *
+     * @param predicate conjunction of the selections in the pipeline
+     * @param groupSlots slots of the grouping variables in the source tuples
+     * @param productSlots slots of the variables among the product terms in the source tuples
+     * @param constantProduct product of the constants among the product terms
+     * @param layout tuple layout of the output, the grouping variables followed by the sum
+     * @return returns the compiled pipeline
+     */
+    public static Pipeline aggregation(Predicate predicate, int[] groupSlots, int[] productSlots,
+                                       long constantProduct, boolean[] layout) {
+        return new Aggregation(predicate, groupSlots, productSlots, constantProduct, layout);
+    }
+
+    /**
+     * Method for starting an evaluation of the pipeline.
+     *
+     * @param source operator that produces the input batches
+     * @return returns the evaluation, which returns the output a batch at a time
+     */
+    public abstract Execution execute(Operator source);
+
+    /**
+     * Getter for the tuple layout of the output.
+     *
+     * @return returns the layout of the output
+     */
+    public boolean[] getLayout() {
+        return layout;
+    }
+
+    /**
+     * Interface for a single evaluation of a pipeline.
+     */
+    public interface Execution {
+        /**
+         * Method for getting the next batch of the output.
+         *
+         * @return returns a batch with at least one row, or null if there are no more results
+         * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+         */
+        TupleBatch next() throws IOException;
+    }
+
+    /**
+     * Pipeline that ends with a projection.
+     */
+    private static final class Projection extends Pipeline {
+        /** Slots of the output variables in the source tuples */
+        private final int[] outputIndexes;
+
+        /**
+         * Constructor for the pipeline.
+         *
+         * @param predicate conjunction of the selections in the pipeline
+         * @param outputIndexes slots of the output variables in the source tuples
+         * @param layout tuple layout of the output
+         */
+        private Projection(Predicate predicate, int[] outputIndexes, boolean[] layout) {
+            super(predicate, layout);
+            this.outputIndexes = outputIndexes;
+        }
+
+        @Override
+        public Execution execute(Operator source) {
+            Set<Tuple> seen = new HashSet<>();
+            long[][] columns = new long[outputIndexes.length][];
+
+            return () -> {
+                TupleBatch batch = source.getNextBatch();
+                while (batch != null) {
+                    int size = predicate.filter(batch);
+                    int[] selection = batch.getSelection();
+                    for (int j = 0;j<outputIndexes.length;j++){
+                        columns[j] = batch.getColumn(outputIndexes[j]);
+                    }
+
+                    TupleBatch output = null;
+                    for (int r = 0;r<size;r++){
+                        int row = selection[r];
+                        long[] keepFields = new long[columns.length];
+                        for (int j = 0;j<columns.length;j++){
+                            keepFields[j] = columns[j][row];
+                        }
+                        if (seen.add(new Tuple(keepFields, layout))) {
+                            if (output == null) output = new TupleBatch(layout);
+                            output.addRow(keepFields);
+                        }
+                    }
+
+                    if (output != null) return output;
+                    batch = source.getNextBatch();
+                }
+                return null;
+            };
+        }
+    }
+
+    /**
+     * Pipeline that ends with a sum aggregate. The whole source is consumed by the first call of
+     * next(), and the groups are then returned a batch at a time. The groups are aggregated by an
+     * ExternalAggregation with Config.getAggregationBudget(), as in SumOperator, so they are
+     * spilled to disk if they do not fit in memory.
+     */
+    private static final class Aggregation extends Pipeline {
+        /** Slots of the grouping variables in the source tuples */
+        private final int[] groupSlots;
+        /** Slots of the variables among the product terms in the source tuples */
+        private final int[] productSlots;
+        /** Product of the constants among the product terms */
+        private final long constantProduct;
+
+        /**
+         * Constructor for the pipeline.
+         *
+         * @param predicate conjunction of the selections in the pipeline
+         * @param groupSlots slots of the grouping variables in the source tuples
+         * @param productSlots slots of the variables among the product terms in the source tuples
+         * @param constantProduct product of the constants among the product terms
+         * @param layout tuple layout of the output, the grouping variables followed by the sum
+         */
+        private Aggregation(Predicate predicate, int[] groupSlots, int[] productSlots,
+                            long constantProduct, boolean[] layout) {
+            super(predicate, layout);
+            this.groupSlots = groupSlots;
+            this.productSlots = productSlots;
+            this.constantProduct = constantProduct;
+        }
+
+        @Override
+        public Execution execute(Operator source) {
+            return new Execution() {
+                /** Groups of the output, null until the source has been consumed */
+                private ExternalAggregation groups = null;
+                /** Table of the next group to return, null before the first table is taken */
+                private GroupTable table = null;
+                /** Number of the next group to return in its table */
+                private int nextGroup = 0;
+
+                @Override
+                public TupleBatch next() throws IOException {
+                    if (groups == null) groups = aggregate(source);
+
+                    TupleBatch output = null;
+                    while (output == null || !output.isFull()) {
+                        if (table == null || nextGroup >= table.size()) {
+                            table = groups.nextTable();
+                            nextGroup = 0;
+                            if (table == null) break;
+                            continue;
+                        }
+                        if (output == null) output = new TupleBatch(layout);
+                        int row = output.nextRow();
+                        for (int j = 0;j<groupSlots.length;j++){
+                            output.getColumn(j)[row] = table.getKey(nextGroup, j);
+                        }
+                        output.getColumn(groupSlots.length)[row] = table.getSum(nextGroup);
+                        nextGroup++;
+                    }
+                    return output;
+                }
+            };
+        }
+
+        /**
+         * Helper method for consuming the source and computing the sum of every group. Without
+         * grouping variables there is a single group, which exists even if the source is empty.
+         *
+         * @param source operator that produces the input batches
+         * @return returns the aggregation that returns the groups with their sums
+         * @throws IOException throws an error if reading from file at a leaf node or writing a
+         * spill file was unsuccessful
+         */
+        private ExternalAggregation aggregate(Operator source) throws IOException {
+            ExternalAggregation sums = new ExternalAggregation(groupSlots.length, Config.getAggregationBudget());
+            long sum = 0;
+
+            TupleBatch batch = source.getNextBatch();
+            while (batch != null) {
+                int size = predicate.filter(batch);
+                if (groupSlots.length == 0) {
+                    sum = sum + sumBatch(batch, size);
+                } else {
+                    groupBatch(batch, size, sums);
+                }
+                batch = source.getNextBatch();
+            }
+
+            if (groupSlots.length == 0) sums.add(new long[0], sum);
+            return sums;
+        }
+
+        /**
+         * Helper method for summing the products of the selected rows of a batch. The loop is
+         * specialised for products of no variables and of a single variable.
+         *
+         * @param batch filtered batch
+         * @param size number of rows that passed the selections
+         * @return returns the sum of the products
+         */
+        private long sumBatch(TupleBatch batch, int size) {
+            int[] selection = batch.getSelection();
+            long sum = 0;
+            if (productSlots.length == 0) {
+                sum = size * constantProduct;
+            } else if (productSlots.length == 1) {
+                long[] column = batch.getColumn(productSlots[0]);
+                for (int r = 0;r<size;r++){
+                    sum = sum + column[selection[r]];
+                }
+                sum = sum * constantProduct;
+            } else {
+                for (int r = 0;r<size;r++){
+                    sum = sum + product(batch, selection[r]);
+                }
+            }
+            return sum;
+        }
+
+        /**
+         * Helper method for adding the products of the selected rows of a batch to their groups.
+         *
+         * @param batch filtered batch
+         * @param size number of rows that passed the selections
+         * @param sums groups with their sums
+         * @throws IOException throws an error if writing a spill file was unsuccessful
+         */
+        private void groupBatch(TupleBatch batch, int size, ExternalAggregation sums) throws IOException {
+            int[] selection = batch.getSelection();
+            for (int r = 0;r<size;r++){
+                int row = selection[r];
+                sums.add(batch, groupSlots, row, product(batch, row));
+            }
+        }
+
+        /**
+         * Helper method for computing the product of a row of a batch.
+         *
+         * @param batch batch that holds the row
+         * @param row row number in the batch
+         * @return returns the product of the constants and the variables of the product terms
+         */
+        private long product(TupleBatch batch, int row) {
+            long product = constantProduct;
+            for (int slot:productSlots){
+                product = product * batch.getColumn(slot)[row];
+            }
+            return product;
+        }
+    }
+}
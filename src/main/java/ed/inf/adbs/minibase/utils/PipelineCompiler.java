@@ -0,0 +1,112 @@
+package ed.inf.adbs.minibase.utils;
+
+import ed.inf.adbs.minibase.operators.JoinOperator;
+import ed.inf.adbs.minibase.operators.Operator;
+import ed.inf.adbs.minibase.operators.PipelineOperator;
+import ed.inf.adbs.minibase.operators.ProjectOperator;
+import ed.inf.adbs.minibase.operators.SelectOperator;
+import ed.inf.adbs.minibase.operators.SumOperator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class for compiling the operator tree built by QueryPlan into Pipelines. Every chain of
+ * SelectOperators that ends with a ProjectOperator or a SumOperator is replaced by a
+ * PipelineOperator, which evaluates the whole chain in one loop over the batches of the operator
+ * below it (a scan or a join). The children of joins are compiled in the same way, and any other
+ * operator is kept as it is, so the interpreted operators remain the fallback.
+ *
+ * Compiled pipelines are cached by the normalized shape of the chain: the kind of the last
+ * operator with its slots, the constants and conditions of the selections with every variable
+ * replaced by its slot, and the layout of the source. Chains with the same shape share one
+ * Pipeline, also across queries and relations. The class uses a singleton pattern.
+ */
+public class PipelineCompiler {
+    /** Class instance */
+    private static PipelineCompiler compiler = null;
+
+    /** Compiled pipelines keyed by their shape */
+    private final Map<String, Pipeline> pipelines = new HashMap<>();
+
+    /**
+     * Method for creating and retrieving the class instance.
+     *
+     * @return returns the class instance
+     */
+    public static synchronized PipelineCompiler getCompiler() {
+        if (compiler == null) {
+            compiler = new PipelineCompiler();
+        }
+        return compiler;
+    }
+
+    /**
+     * Method for compiling an operator tree.
+     *
+     * @param root root of the tree
+     * @return returns the root of the compiled tree
+     */
+    public synchronized Operator compile(Operator root) {
+        if (root instanceof JoinOperator) {
+            JoinOperator join = (JoinOperator) root;
+            join.setChildLeft(compile(join.getChildLeft()));
+            join.setChildRight(compile(join.getChildRight()));
+            return join;
+        }
+
+        Operator child;
+        if (root instanceof ProjectOperator) {
+            child = ((ProjectOperator) root).getChild();
+        } else if (root instanceof SumOperator) {
+            child = ((SumOperator) root).getChild();
+        } else {
+            return root;
+        }
+
+        // collect the selections between the last operator and the source
+        List<Predicate> predicates = new ArrayList<>();
+        StringBuilder shape = new StringBuilder();
+        while (child instanceof SelectOperator) {
+            SelectOperator select = (SelectOperator) child;
+            predicates.add(select.getPredicate());
+            shape.append(" select").append(Predicate.shape(select.getAtom(), select.getConditions()));
+            child = select.getChild();
+        }
+        Operator source = compile(child);
+        boolean[] sourceLayout = source.getLayout();
+        shape.append(" from ");
+        for (boolean string : sourceLayout) {
+            shape.append(string ? 's' : 'i');
+        }
+
+        Pipeline pipeline;
+        if (root instanceof ProjectOperator) {
+            int[] outputIndexes = ((ProjectOperator) root).getOutputIndexes();
+            String key = "project" + Arrays.toString(outputIndexes) + shape;
+            pipeline = pipelines.get(key);
+            if (pipeline == null) {
+                pipeline = Pipeline.projection(Predicate.and(predicates), outputIndexes, root.getLayout());
+                pipelines.put(key, pipeline);
+            }
+        } else {
+            SumOperator sum = (SumOperator) root;
+            for (int slot : sum.getProductSlots()) {
+                // the interpreted operator reports the error when it reads the column
+                if (sourceLayout[slot]) return root;
+            }
+            String key = "sum" + Arrays.toString(sum.getGroupSlots()) + Arrays.toString(sum.getProductSlots())
+                    + "*" + sum.getConstantProduct() + shape;
+            pipeline = pipelines.get(key);
+            if (pipeline == null) {
+                pipeline = Pipeline.aggregation(Predicate.and(predicates), sum.getGroupSlots(),
+                        sum.getProductSlots(), sum.getConstantProduct(), root.getLayout());
+                pipelines.put(key, pipeline);
+            }
+        }
+        return new PipelineOperator(pipeline, source, root.getAtom());
+    }
+}
@@ -0,0 +1,843 @@
+package ed.inf.adbs.minibase.utils;
+
+import ed.inf.adbs.minibase.base.ComparisonAtom;
+import ed.inf.adbs.minibase.base.ComparisonOperator;
+import ed.inf.adbs.minibase.base.Constant;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.base.StringConstant;
+import ed.inf.adbs.minibase.base.Term;
+import ed.inf.adbs.minibase.base.Variable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class for compiled selection conditions. A condition is compiled once, from the slots and the
+ * types of the columns it compares, into an instance of a small class that evaluates exactly one
+ * comparison (e.g. LessThanConstant for an integer column compared with a constant), so that no
+ * types or operators are checked while tuples are filtered. A conjunction of conditions is
+ * compiled into a single And predicate.
+ *
+ * Every predicate can be evaluated on a single tuple with test(), or on all selected rows of a
+ * batch with filter(), which has one loop over the column values per comparison. A scan that
+ * parses a row from left to right uses splitByLastSlot() to evaluate every comparison as soon as
+ * the columns it reads have been parsed.
+ */
+public abstract class Predicate {
+    /** Predicate for conditions that can never hold, e.g. a comparison of a string and an int */
+    public static final Predicate FALSE = new False();
+    /** Predicate for an empty conjunction */
+    public static final Predicate TRUE = new And(new Predicate[0]);
+
+    /** Slots of the columns that the predicate reads */
+    private final int[] slots;
+
+    /**
+     * Constructor for the Predicate class.
+     *
+     * @param slots slots of the columns that the predicate reads
+     */
+    protected Predicate(int... slots) {
+        this.slots = slots;
+    }
+
+    /**
+     * Method for evaluating the predicate on a tuple.
+     *
+     * @param tuple tuple to evaluate the predicate on
+     * @return returns true if the tuple satisfies the predicate
+     */
+    public abstract boolean test(Tuple tuple);
+
+    /**
+     * Method for evaluating the predicate on the selected rows of a batch. The selection vector
+     * is compacted in place to the rows that satisfy the predicate.
+     *
+     * @param batch batch to filter
+     * @return returns the number of selected rows that satisfy the predicate
+     */
+    public abstract int filter(TupleBatch batch);
+
+    /**
+     * Getter for the slots of the columns that the predicate reads.
+     *
+     * @return returns the slots, which may contain duplicates
+     */
+    public int[] getSlots() {
+        return slots;
+    }
+
+    /**
+     * Method for splitting the predicate by the last column that its comparisons read. A scan
+     * that parses the columns of a row from left to right can evaluate the part of a column
+     * right after parsing it, and skip the rest of the row if it fails. Comparisons that read
+     * no column (FALSE) are evaluated after the first column.
+     *
+     * @param columns number of columns of the tuples
+     * @return returns for every column the conjunction of the comparisons whose last column it
+     * is, or TRUE if there are none
+     */
+    public Predicate[] splitByLastSlot(int columns) {
+        Predicate[] parts = this instanceof And ? ((And) this).predicates : new Predicate[]{this};
+        List<List<Predicate>> byColumn = new ArrayList<>();
+        for (int i = 0; i < columns; i++) {
+            byColumn.add(new ArrayList<>());
+        }
+        for (Predicate part : parts) {
+            int last = 0;
+            for (int slot : part.slots) {
+                last = Math.max(last, slot);
+            }
+            byColumn.get(last).add(part);
+        }
+
+        Predicate[] split = new Predicate[columns];
+        for (int i = 0; i < columns; i++) {
+            split[i] = and(byColumn.get(i));
+        }
+        return split;
+    }
+
+    /**
+     * Method for compiling the constants of a relational atom and the selection conditions on
+     * it into one predicate over the tuples of the atom. Every constant must equal the field in
+     * its position, and conditions are compiled with the variable on the left-hand side.
+     * Conditions between two constants are evaluated here: a true one is left out, and a false
+     * one makes the whole predicate FALSE.
+     *
+     * @param atom base relational atom
+     * @param conditions selection conditions whose variables all appear in the atom
+     * @param layout tuple layout of the atom
+     * @return returns the compiled predicate
+     */
+    public static Predicate compile(RelationalAtom atom, List<ComparisonAtom> conditions, boolean[] layout) {
+        List<Term> terms = atom.getTerms();
+        List<Predicate> predicates = new ArrayList<>();
+
+        for (int i = 0;i<terms.size();i++){
+            if (terms.get(i) instanceof Constant){
+                predicates.add(compare(i, layout[i], ComparisonOperator.EQ,
+                        Tuple.encode((Constant) terms.get(i)), terms.get(i) instanceof StringConstant));
+            }
+        }
+
+        for (ComparisonAtom comp:conditions){
+            Term term1 = comp.getTerm1();
+            Term term2 = comp.getTerm2();
+            ComparisonOperator op = comp.getOp();
+
+            if (!(term1 instanceof Variable) && !(term2 instanceof Variable)) {
+                if (!holds((Constant) term1, op, (Constant) term2)) return FALSE;
+                continue;
+            }
+
+            // keep the variable on the left-hand side
+            if (!(term1 instanceof Variable)) {
+                term1 = comp.getTerm2();
+                term2 = comp.getTerm1();
+                op = CompareUtil.swapCompare(op);
+            }
+
+            int slot = terms.indexOf(term1);
+            if (term2 instanceof Variable) {
+                int otherSlot = terms.indexOf(term2);
+                predicates.add(compare(slot, layout[slot], op, otherSlot, layout[otherSlot]));
+            } else {
+                predicates.add(compare(slot, layout[slot], op,
+                        Tuple.encode((Constant) term2), term2 instanceof StringConstant));
+            }
+        }
+        return and(predicates);
+    }
+
+    /**
+     * Method for describing the predicate that compile() builds for a relational atom and
+     * conditions, with every variable replaced by its slot in the atom. Two atoms with the same
+     * description and layout have the same predicate, so the description can be used as a key.
+     *
+     * @param atom base relational atom
+     * @param conditions selection conditions whose variables all appear in the atom
+     * @return returns the normalized description
+     */
+    public static String shape(RelationalAtom atom, List<ComparisonAtom> conditions) {
+        List<Term> terms = atom.getTerms();
+        StringBuilder shape = new StringBuilder("(");
+        for (Term term : terms) {
+            shape.append(normalize(term, terms)).append(',');
+        }
+        for (ComparisonAtom comp : conditions) {
+            shape.append(normalize(comp.getTerm1(), terms)).append(comp.getOp())
+                    .append(normalize(comp.getTerm2(), terms)).append(',');
+        }
+        return shape.append(')').toString();
+    }
+
+    /**
+     * Helper method for normalizing a term: a variable is replaced by its slot, and a constant
+     * is kept as it is (strings are quoted, so the two types cannot be confused).
+     *
+     * @param term term to normalize
+     * @param terms terms of the base relational atom
+     * @return returns the normalized term
+     */
+    private static String normalize(Term term, List<Term> terms) {
+        if (term instanceof Variable) return "$" + terms.indexOf(term);
+        return term.toString();
+    }
+
+    /**
+     * Helper method for collecting the slots read by a number of predicates.
+     *
+     * @param predicates predicates to collect the slots of
+     * @return returns the slots of all the predicates
+     */
+    private static int[] union(Predicate[] predicates) {
+        int count = 0;
+        for (Predicate predicate : predicates) {
+            count += predicate.slots.length;
+        }
+        int[] slots = new int[count];
+        int n = 0;
+        for (Predicate predicate : predicates) {
+            System.arraycopy(predicate.slots, 0, slots, n, predicate.slots.length);
+            n += predicate.slots.length;
+        }
+        return slots;
+    }
+
+    /**
+     * Method for compiling the comparison of a column with a constant.
+     *
+     * @param slot slot of the column
+     * @param columnString whether the column is a string
+     * @param op comparison operator, with the column on the left-hand side
+     * @param constant encoded constant
+     * @param constantString whether the constant is a string
+     * @return returns the compiled predicate
+     */
+    public static Predicate compare(int slot, boolean columnString, ComparisonOperator op, long constant, boolean constantString) {
+        if (columnString != constantString) return FALSE;
+        switch (op) {
+            case EQ:
+                return new EqualsConstant(slot, constant);
+            case NEQ:
+                return new NotEqualsConstant(slot, constant);
+            default:
+        }
+        if (columnString) return new StringCompareConstant(slot, op, constant);
+        switch (op) {
+            case LT:
+                return new LessThanConstant(slot, constant);
+            case LEQ:
+                return new LessOrEqualConstant(slot, constant);
+            case GT:
+                return new GreaterThanConstant(slot, constant);
+            case GEQ:
+                return new GreaterOrEqualConstant(slot, constant);
+            default:
+                throw new IllegalArgumentException("Unrecognized comparison operator");
+        }
+    }
+
+    /**
+     * Method for compiling the comparison of two columns of the same tuple.
+     *
+     * @param slotA slot of the column on the left-hand side
+     * @param stringA whether the left column is a string
+     * @param op comparison operator
+     * @param slotB slot of the column on the right-hand side
+     * @param stringB whether the right column is a string
+     * @return returns the compiled predicate
+     */
+    public static Predicate compare(int slotA, boolean stringA, ComparisonOperator op, int slotB, boolean stringB) {
+        if (stringA != stringB) return FALSE;
+        switch (op) {
+            case EQ:
+                return new EqualsColumn(slotA, slotB);
+            case NEQ:
+                return new NotEqualsColumn(slotA, slotB);
+            default:
+        }
+        if (stringA) return new StringCompareColumn(slotA, op, slotB);
+        switch (op) {
+            case LT:
+                return new LessThanColumn(slotA, slotB);
+            case LEQ:
+                return new LessThanColumn(slotA, slotB, true);
+            case GT:
+                return new LessThanColumn(slotB, slotA);
+            case GEQ:
+                return new LessThanColumn(slotB, slotA, true);
+            default:
+                throw new IllegalArgumentException("Unrecognized comparison operator");
+        }
+    }
+
+    /**
+     * Method for compiling a conjunction of predicates. Predicates that always hold are left out,
+     * and the conjunction is FALSE if one of the predicates is.
+     *
+     * @param predicates predicates that must all hold
+     * @return returns the compiled predicate
+     */
+    public static Predicate and(List<Predicate> predicates) {
+        List<Predicate> parts = new ArrayList<>();
+        for (Predicate predicate : predicates) {
+            if (predicate == FALSE) return FALSE;
+            if (predicate != TRUE) parts.add(predicate);
+        }
+        if (parts.isEmpty()) return TRUE;
+        if (parts.size() == 1) return parts.get(0);
+        return new And(parts.toArray(new Predicate[0]));
+    }
+
+    /**
+     * Predicate that never holds.
+     */
+    private static final class False extends Predicate {
+        @Override
+        public boolean test(Tuple tuple) {
+            return false;
+        }
+
+        @Override
+        public int filter(TupleBatch batch) {
+            return 0;
+        }
+    }
+
+    /**
+     * Conjunction of predicates. The batch form applies the predicates one after the other, so
+     * that every predicate only sees the rows that passed the ones before.
+     */
+    private static final class And extends Predicate {
+        /** Predicates that must all hold */
+        private final Predicate[] predicates;
+
+        /**
+         * Constructor for the conjunction.
+         *
+         * @param predicates predicates that must all hold
+         */
+        private And(Predicate[] predicates) {
+            super(union(predicates));
+            this.predicates = predicates;
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            for (Predicate predicate : predicates) {
+                if (!predicate.test(tuple)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int filter(TupleBatch batch) {
+            for (Predicate predicate : predicates) {
+                if (batch.size() == 0) break;
+                batch.setSize(predicate.filter(batch));
+            }
+            return batch.size();
+        }
+    }
+
+    /**
+     * Equality of a column with a constant. Used for integers and string codes.
+     */
+    private static final class EqualsConstant extends Predicate {
+        /** Slot of the column */
+        private final int slot;
+        /** Encoded constant */
+        private final long constant;
+
+        /**
+         * Constructor for the predicate.
+         *
+         * @param slot slot of the column
+         * @param constant encoded constant
+         */
+        private EqualsConstant(int slot, long constant) {
+            super(slot);
+            this.slot = slot;
+            this.constant = constant;
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return tuple.get(slot) == constant;
+        }
+
+        @Override
+        public int filter(TupleBatch batch) {
+            long[] column = batch.getColumn(slot);
+            int[] selection = batch.getSelection();
+            int n = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                int row = selection[i];
+                if (column[row] == constant) selection[n++] = row;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Inequality of a column with a constant. Used for integers and string codes.
+     */
+    private static final class NotEqualsConstant extends Predicate {
+        /** Slot of the column */
+        private final int slot;
+        /** Encoded constant */
+        private final long constant;
+
+        /**
+         * Constructor for the predicate.
+         *
+         * @param slot slot of the column
+         * @param constant encoded constant
+         */
+        private NotEqualsConstant(int slot, long constant) {
+            super(slot);
+            this.slot = slot;
+            this.constant = constant;
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return tuple.get(slot) != constant;
+        }
+
+        @Override
+        public int filter(TupleBatch batch) {
+            long[] column = batch.getColumn(slot);
+            int[] selection = batch.getSelection();
+            int n = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                int row = selection[i];
+                if (column[row] != constant) selection[n++] = row;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Integer column less than a constant.
+     */
+    private static final class LessThanConstant extends Predicate {
+        /** Slot of the column */
+        private final int slot;
+        /** Constant */
+        private final long constant;
+
+        /**
+         * Constructor for the predicate.
+         *
+         * @param slot slot of the column
+         * @param constant constant
+         */
+        private LessThanConstant(int slot, long constant) {
+            super(slot);
+            this.slot = slot;
+            this.constant = constant;
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return tuple.get(slot) < constant;
+        }
+
+        @Override
+        public int filter(TupleBatch batch) {
+            long[] column = batch.getColumn(slot);
+            int[] selection = batch.getSelection();
+            int n = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                int row = selection[i];
+                if (column[row] < constant) selection[n++] = row;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Integer column less than or equal to a constant.
+     */
+    private static final class LessOrEqualConstant extends Predicate {
+        /** Slot of the column */
+        private final int slot;
+        /** Constant */
+        private final long constant;
+
+        /**
+         * Constructor for the predicate.
+         *
+         * @param slot slot of the column
+         * @param constant constant
+         */
+        private LessOrEqualConstant(int slot, long constant) {
+            super(slot);
+            this.slot = slot;
+            this.constant = constant;
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return tuple.get(slot) <= constant;
+        }
+
+        @Override
+        public int filter(TupleBatch batch) {
+            long[] column = batch.getColumn(slot);
+            int[] selection = batch.getSelection();
+            int n = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                int row = selection[i];
+                if (column[row] <= constant) selection[n++] = row;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Integer column greater than a constant.
+     */
+    private static final class GreaterThanConstant extends Predicate {
+        /** Slot of the column */
+        private final int slot;
+        /** Constant */
+        private final long constant;
+
+        /**
+         * Constructor for the predicate.
+         *
+         * @param slot slot of the column
+         * @param constant constant
+         */
+        private GreaterThanConstant(int slot, long constant) {
+            super(slot);
+            this.slot = slot;
+            this.constant = constant;
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return tuple.get(slot) > constant;
+        }
+
+        @Override
+        public int filter(TupleBatch batch) {
+            long[] column = batch.getColumn(slot);
+            int[] selection = batch.getSelection();
+            int n = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                int row = selection[i];
+                if (column[row] > constant) selection[n++] = row;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Integer column greater than or equal to a constant.
+     */
+    private static final class GreaterOrEqualConstant extends Predicate {
+        /** Slot of the column */
+        private final int slot;
+        /** Constant */
+        private final long constant;
+
+        /**
+         * Constructor for the predicate.
+         *
+         * @param slot slot of the column
+         * @param constant constant
+         */
+        private GreaterOrEqualConstant(int slot, long constant) {
+            super(slot);
+            this.slot = slot;
+            this.constant = constant;
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return tuple.get(slot) >= constant;
+        }
+
+        @Override
+        public int filter(TupleBatch batch) {
+            long[] column = batch.getColumn(slot);
+            int[] selection = batch.getSelection();
+            int n = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                int row = selection[i];
+                if (column[row] >= constant) selection[n++] = row;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Ordering comparison of a string column with a string constant. The constant is decoded
+     * once, the column values are decoded for every row.
+     */
+    private static final class StringCompareConstant extends Predicate {
+        /** Slot of the column */
+        private final int slot;
+        /** Comparison operator */
+        private final ComparisonOperator op;
+        /** Decoded constant */
+        private final String constant;
+
+        /**
+         * Constructor for the predicate.
+         *
+         * @param slot slot of the column
+         * @param op comparison operator, LT, LEQ, GT or GEQ
+         * @param constant string code of the constant
+         */
+        private StringCompareConstant(int slot, ComparisonOperator op, long constant) {
+            super(slot);
+            this.slot = slot;
+            this.op = op;
+            this.constant = StringDictionary.getDictionary().decode(constant);
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return holds(StringDictionary.getDictionary().decode(tuple.get(slot)).compareTo(constant), op);
+        }
+
+        @Override
+        public int filter(TupleBatch batch) {
+            StringDictionary dictionary = StringDictionary.getDictionary();
+            long[] column = batch.getColumn(slot);
+            int[] selection = batch.getSelection();
+            int n = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                int row = selection[i];
+                if (holds(dictionary.decode(column[row]).compareTo(constant), op)) selection[n++] = row;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Equality of two columns. Used for integers and string codes.
+     */
+    private static final class EqualsColumn extends Predicate {
+        /** Slot of the first column */
+        private final int slotA;
+        /** Slot of the second column */
+        private final int slotB;
+
+        /**
+         * Constructor for the predicate.
+         *
+         * @param slotA slot of the first column
+         * @param slotB slot of the second column
+         */
+        private EqualsColumn(int slotA, int slotB) {
+            super(slotA, slotB);
+            this.slotA = slotA;
+            this.slotB = slotB;
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return tuple.get(slotA) == tuple.get(slotB);
+        }
+
+        @Override
+        public int filter(TupleBatch batch) {
+            long[] columnA = batch.getColumn(slotA);
+            long[] columnB = batch.getColumn(slotB);
+            int[] selection = batch.getSelection();
+            int n = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                int row = selection[i];
+                if (columnA[row] == columnB[row]) selection[n++] = row;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Inequality of two columns. Used for integers and string codes.
+     */
+    private static final class NotEqualsColumn extends Predicate {
+        /** Slot of the first column */
+        private final int slotA;
+        /** Slot of the second column */
+        private final int slotB;
+
+        /**
+         * Constructor for the predicate.
+         *
+         * @param slotA slot of the first column
+         * @param slotB slot of the second column
+         */
+        private NotEqualsColumn(int slotA, int slotB) {
+            super(slotA, slotB);
+            this.slotA = slotA;
+            this.slotB = slotB;
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return tuple.get(slotA) != tuple.get(slotB);
+        }
+
+        @Override
+        public int filter(TupleBatch batch) {
+            long[] columnA = batch.getColumn(slotA);
+            long[] columnB = batch.getColumn(slotB);
+            int[] selection = batch.getSelection();
+            int n = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                int row = selection[i];
+                if (columnA[row] != columnB[row]) selection[n++] = row;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Integer column less than (or less than or equal to) another integer column. Greater than
+     * comparisons are compiled to this class with the columns swapped.
+     */
+    private static final class LessThanColumn extends Predicate {
+        /** Slot of the smaller column */
+        private final int slotA;
+        /** Slot of the larger column */
+        private final int slotB;
+        /** Amount added to the larger column, 1 to allow equal values and 0 otherwise */
+        private final long equal;
+
+        /**
+         * Constructor for a strict comparison.
+         *
+         * @param slotA slot of the smaller column
+         * @param slotB slot of the larger column
+         */
+        private LessThanColumn(int slotA, int slotB) {
+            this(slotA, slotB, false);
+        }
+
+        /**
+         * Constructor for the predicate.
+         *
+         * @param slotA slot of the smaller column
+         * @param slotB slot of the larger column
+         * @param orEqual whether equal values satisfy the predicate
+         */
+        private LessThanColumn(int slotA, int slotB, boolean orEqual) {
+            super(slotA, slotB);
+            this.slotA = slotA;
+            this.slotB = slotB;
+            this.equal = orEqual ? 1 : 0;
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return tuple.get(slotA) < tuple.get(slotB) + equal;
+        }
+
+        @Override
+        public int filter(TupleBatch batch) {
+            long[] columnA = batch.getColumn(slotA);
+            long[] columnB = batch.getColumn(slotB);
+            int[] selection = batch.getSelection();
+            int n = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                int row = selection[i];
+                if (columnA[row] < columnB[row] + equal) selection[n++] = row;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Ordering comparison of two string columns. The values are decoded for every row.
+     */
+    private static final class StringCompareColumn extends Predicate {
+        /** Slot of the column on the left-hand side */
+        private final int slotA;
+        /** Comparison operator */
+        private final ComparisonOperator op;
+        /** Slot of the column on the right-hand side */
+        private final int slotB;
+
+        /**
+         * Constructor for the predicate.
+         *
+         * @param slotA slot of the column on the left-hand side
+         * @param op comparison operator, LT, LEQ, GT or GEQ
+         * @param slotB slot of the column on the right-hand side
+         */
+        private StringCompareColumn(int slotA, ComparisonOperator op, int slotB) {
+            super(slotA, slotB);
+            this.slotA = slotA;
+            this.op = op;
+            this.slotB = slotB;
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return holds(CompareUtil.compareValues(tuple.get(slotA), tuple.get(slotB), true), op);
+        }
+
+        @Override
+        public int filter(TupleBatch batch) {
+            long[] columnA = batch.getColumn(slotA);
+            long[] columnB = batch.getColumn(slotB);
+            int[] selection = batch.getSelection();
+            int n = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                int row = selection[i];
+                if (holds(CompareUtil.compareValues(columnA[row], columnB[row], true), op)) selection[n++] = row;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Helper method for evaluating a condition between two constants. Constants of different
+     * types never satisfy a condition, as for the compiled comparisons.
+     *
+     * @param constantA constant on the left-hand side
+     * @param op comparison operator
+     * @param constantB constant on the right-hand side
+     * @return returns true if the constants satisfy the condition
+     */
+    private static boolean holds(Constant constantA, ComparisonOperator op, Constant constantB) {
+        boolean strings = constantA instanceof StringConstant;
+        if (strings != constantB instanceof StringConstant) return false;
+        return holds(CompareUtil.compareValues(Tuple.encode(constantA), Tuple.encode(constantB), strings), op);
+    }
+
+    /**
+     * Helper method for checking whether the result of a comparison satisfies an ordering
+     * operator.
+     *
+     * @param comparison negative, zero or positive as the left-hand side is less than, equal
+     *                   to or greater than the right-hand side
+     * @param op comparison operator, LT, LEQ, GT or GEQ
+     * @return returns true if the comparison satisfies the operator
+     */
+    static boolean holds(int comparison, ComparisonOperator op) {
+        switch (op) {
+            case LT:
+                return comparison < 0;
+            case LEQ:
+                return comparison <= 0;
+            case GT:
+                return comparison > 0;
+            case GEQ:
+                return comparison >= 0;
+            case EQ:
+                return comparison == 0;
+            default:
+                return comparison != 0;
+        }
+    }
+}
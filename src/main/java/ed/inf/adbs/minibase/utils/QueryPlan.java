@@ -4,7 +4,8 @@ package ed.inf.adbs.minibase.utils;
 import ed.inf.adbs.minibase.base.*;
 import ed.inf.adbs.minibase.operators.*;
 
-import java.io.FileNotFoundException;
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -13,6 +14,10 @@ import java.util.*;
  * The only public method (other than getQueryPlan() ) is getRoot(), which returns the root of
  * the query plan. dump() or getNextTuple() repeatedly, can then be called on the root to
  * evaluate the query.
+ *
+ * Every operator resolves the variables it uses to fixed slots of its base relational atom
+ * when it is created (and joins again in reloadIndex() after projection pushdown), so once
+ * buildTree() returns no operator looks up terms while tuples are processed.
  */
 public class QueryPlan {
     /** Class instance */
@@ -41,38 +46,27 @@ public class QueryPlan {
         return plan;
     }
 
+    /**
+     * Method for discarding the query plan, so that the next call of getQueryPlan() builds a
+     * plan for a new query.
+     */
+    public static void reset() {
+        plan = null;
+    }
+
     /**
      * Method for the main logic behind building the tree of operations that the
      * query plan consists of.
      */
     private static void buildTree() {
+        List<RelationalAtom> relationalAtomList = new ArrayList<>();
         List<ComparisonAtom> comparisonAtomList = new ArrayList<>();
         List<Operator> operators = new ArrayList<>();
 
         // Iterate through all atoms
         for (Atom atom:plan.query.getBody()){
             if (atom instanceof RelationalAtom){
-                boolean hasConstant = false;
-                for (Term t:((RelationalAtom) atom).getTerms()){
-                    if (t instanceof Constant) {
-                        hasConstant = true;
-                        break;
-                    }
-                }
-
-                // ScanOperator may return FileNotFoundException
-                try {
-                    // create ScanOperations as the leaf operations
-                    // if the atom has a constant, create a new SelectOperation as a parent operation
-                    if (hasConstant){
-                        ScanOperator child = new ScanOperator(((RelationalAtom) atom).getName(),(RelationalAtom) atom);
-                        operators.add(new SelectOperator(child, new ArrayList<>(), child.getAtom()));
-                    } else {
-                        operators.add(new ScanOperator(((RelationalAtom) atom).getName(),(RelationalAtom) atom));
-                    }
-                } catch (FileNotFoundException e) {
-                    e.printStackTrace();
-                }
+                relationalAtomList.add((RelationalAtom) atom);
             } else if (atom instanceof ComparisonAtom){
                 comparisonAtomList.add((ComparisonAtom) atom);
             } else {
@@ -84,28 +78,48 @@ public class QueryPlan {
         List<ComparisonAtom> selectionComparators = new ArrayList<>();
         List<ComparisonAtom> joinComparators = new ArrayList<>();
         for (ComparisonAtom comp:comparisonAtomList) {
-            if (isJoinComparator(comp,operators)){
+            if (isJoinComparator(comp,relationalAtomList)){
                 joinComparators.add(comp);
             } else {
                 selectionComparators.add(comp);
             }
         }
 
-        // if there are selection conditions, create SelectOperations as parents operations
-        if (selectionComparators.size()!=0){
-            List<Operator> temp = new ArrayList<>();
-            for (Operator operator : operators) {
-                temp.add(new SelectOperator(operator, selectionComparators, operator.getAtom()));
+        // create ScanOperations as the leaf operations, with the constants of the atom and the
+        // selection conditions pushed down into the scan
+        for (RelationalAtom atom:relationalAtomList){
+            // creating the scan may return FileNotFoundException
+            try {
+                operators.add(createScan(atom, selectionComparators));
+            } catch (IOException e) {
+                e.printStackTrace();
             }
-            operators = temp;
         }
 
-        plan.root = operators.get(0);
+        Hypergraph hypergraph = new Hypergraph(relationalAtomList);
+        if (operators.size()>1 && Config.useLeapfrogJoin(!hypergraph.isAcyclic())){
+            // join all relations at once, which avoids large intermediate results of cyclic queries
+            plan.root = new LeapfrogJoinOperator(operators, joinComparators);
+        } else {
+            // remove the dangling tuples of acyclic queries before they reach the joins
+            if (hypergraph.isAcyclic() && operators.size() == relationalAtomList.size()
+                    && Config.useSemiJoinReduction(operators.size())){
+                SemiJoinReduction reduction = new SemiJoinReduction(operators, hypergraph);
+                for (int i = 0;i<operators.size();i++){
+                    operators.set(i, new ReducedScanOperator(reduction, i));
+                }
+            }
+
+            // choose the join order from the estimated sizes of the relations
+            operators = JoinOrderOptimizer.order(operators, selectionComparators, joinComparators);
+
+            plan.root = operators.get(0);
 
-        // if there is more than one relation create joins
-        if (operators.size()>1){
-            operators.remove(0);
-            plan.root = createJoins(operators,plan.root,joinComparators);
+            // if there is more than one relation create joins
+            if (operators.size()>1){
+                operators.remove(0);
+                plan.root = createJoins(operators,plan.root,joinComparators);
+            }
         }
 
         SumAggregate agg = plan.query.getHead().getSumAggregate();
@@ -121,6 +135,99 @@ public class QueryPlan {
         } else {
             plan.root = new ProjectOperator(plan.root, plan.query.getHead().getVariables(), (plan.root).getAtom());
         }
+
+        // replace chains of selections ending with a projection or aggregate by compiled pipelines
+        if (Config.useFusedPipelines()){
+            plan.root = PipelineCompiler.getCompiler().compile(plan.root);
+        }
+    }
+
+    /**
+     * Method for creating the scan operation for a relational atom. If the relation is available
+     * in the binary columnar format a ColumnarScanOperator is used, which only reads the columns
+     * that the query uses. Otherwise the CSV file is read with a ScanOperator, which only parses
+     * the fields of the columns that the query uses, or with a ParallelScanOperator when there is
+     * more than one worker thread (see Config.getParallelism()). The constants of the atom and
+     * the selection conditions that apply to it are compiled into a Predicate that the scan
+     * evaluates, so no SelectOperator is needed. The scan is read through a CachedScanOperator,
+     * so that repeated scans are served from the RelationCache.
+     *
+     * @param atom relational atom to scan
+     * @param selectionComparators selection conditions of the query
+     * @return returns a scan operator
+     * @throws IOException if the relation file could not be opened
+     */
+    private static Operator createScan(RelationalAtom atom, List<ComparisonAtom> selectionComparators) throws IOException {
+        DatabaseCatalog catalog = DatabaseCatalog.getCatalog();
+        String name = atom.getName();
+        boolean[] usedColumns = getUsedColumns(atom);
+        List<ComparisonAtom> conditions = SelectOperator.removeIrrelevantComparisons(atom, selectionComparators);
+        Predicate predicate = Predicate.compile(atom, conditions, catalog.getLayout(name));
+        if (predicate == Predicate.TRUE) predicate = null;
+        Operator scan;
+        StringBuilder path;
+        long lastModified;
+
+        if (catalog.hasColumnarFiles(name)){
+            scan = new ColumnarScanOperator(name, atom, usedColumns, predicate);
+            path = new StringBuilder(new File(catalog.getColumnPath(name, 0)).getParent());
+            lastModified = 0;
+            for (int i = 0;i<usedColumns.length;i++){
+                lastModified = Math.max(lastModified, new File(catalog.getColumnPath(name, i)).lastModified());
+            }
+        } else if (Config.getParallelism() > 1 && Config.useMemoryMappedScan()) {
+            scan = new ParallelScanOperator(name, atom, usedColumns, predicate);
+            path = new StringBuilder(catalog.getFilePath(name));
+            lastModified = new File(path.toString()).lastModified();
+        } else {
+            scan = new ScanOperator(name, atom, usedColumns, predicate);
+            path = new StringBuilder(catalog.getFilePath(name));
+            lastModified = new File(path.toString()).lastModified();
+        }
+
+        // the columns that are not read are part of the key, as they are left empty
+        path.append("#");
+        for (boolean used : usedColumns){
+            path.append(used ? 1 : 0);
+        }
+        // so is the predicate, as only the rows that satisfy it are read
+        if (predicate != null) path.append("?").append(Predicate.shape(atom, conditions));
+
+        long estimatedBytes = CachedRelation.estimateBytes(atom.getTerms().size(),
+                catalog.getStatistics(name).getRowCount());
+        return new CachedScanOperator(scan, path.toString(), lastModified, estimatedBytes);
+    }
+
+    /**
+     * Method for finding which columns of a relational atom the query uses. A column is used if
+     * its term is a constant, or a variable that appears more than once in the atom, or anywhere
+     * else in the query (head, aggregate, comparisons or other relational atoms).
+     *
+     * @param atom relational atom in the query body
+     * @return returns an array with true for every used column
+     */
+    private static boolean[] getUsedColumns(RelationalAtom atom){
+        Set<Term> usedTerms = new HashSet<>(plan.query.getHead().getVariables());
+        if (plan.query.getHead().getSumAggregate() != null){
+            usedTerms.addAll(plan.query.getHead().getSumAggregate().getProductTerms());
+        }
+        for (Atom other:plan.query.getBody()){
+            if (other instanceof ComparisonAtom){
+                usedTerms.add(((ComparisonAtom) other).getTerm1());
+                usedTerms.add(((ComparisonAtom) other).getTerm2());
+            } else if (other != atom){
+                usedTerms.addAll(((RelationalAtom) other).getTerms());
+            }
+        }
+
+        List<Term> terms = atom.getTerms();
+        boolean[] used = new boolean[terms.size()];
+        for (int i = 0;i<terms.size();i++){
+            Term term = terms.get(i);
+            used[i] = term instanceof Constant || usedTerms.contains(term)
+                    || terms.indexOf(term) != terms.lastIndexOf(term);
+        }
+        return used;
     }
 
     /**
@@ -136,14 +243,9 @@ public class QueryPlan {
 
             JoinOperator joinRoot = (JoinOperator) root;
 
-            // Add variables from join condition
-            if (joinRoot.getCompareAtom()!=null){
-                if (!neededVariables.contains((Variable) joinRoot.getCompareAtom().getTerm1()))
-                    neededVariables.add((Variable) joinRoot.getCompareAtom().getTerm1());
-                if (!neededVariables.contains((Variable) joinRoot.getCompareAtom().getTerm2()))
-                    neededVariables.add((Variable) joinRoot.getCompareAtom().getTerm2());
-            } else if (joinRoot.getCompareVar()!=null) {
-                if (!neededVariables.contains(joinRoot.getCompareVar())) neededVariables.add(joinRoot.getCompareVar());
+            // Add variables from join conditions
+            for (Variable joinVariable : joinRoot.getJoinVariables()){
+                if (!neededVariables.contains(joinVariable)) neededVariables.add(joinVariable);
             }
 
             // recursively
@@ -169,16 +271,16 @@ public class QueryPlan {
      * if one of the terms is a constant OR both of the terms exist in one relation.
      *
      * @param comp comparison atom to test
-     * @param operators all operators for which it could be a join condition
+     * @param atoms all relational atoms for which it could be a join condition
      * @return returns true if the comparison atom is a join condition
      */
-    private static boolean isJoinComparator(ComparisonAtom comp,List<Operator> operators){
+    private static boolean isJoinComparator(ComparisonAtom comp,List<RelationalAtom> atoms){
         if (comp.getTerm1() instanceof Constant) return false;
         if (comp.getTerm2() instanceof Constant) return false;
 
-        for (Operator op:operators){
-            boolean term1 = op.getAtom().getTerms().contains(comp.getTerm1());
-            boolean term2 = op.getAtom().getTerms().contains(comp.getTerm2());
+        for (RelationalAtom atom:atoms){
+            boolean term1 = atom.getTerms().contains(comp.getTerm1());
+            boolean term2 = atom.getTerms().contains(comp.getTerm2());
             if (term1 && term2){
                 return false;
             }
@@ -196,10 +298,15 @@ public class QueryPlan {
     }
 
     /**
-     * Method for creating the join tree. Joins relational atoms from left to right. The leftmost
+     * Method for creating the join tree. Joins relational atoms from left to right, in the order
+     * chosen by the JoinOrderOptimizer. The leftmost
      * child operation should be passed into the first call, then the method creates the rest of
      * the joins recursively.
      *
+     * A relational atom whose variables are not needed above its join only filters the query by
+     * existence, so it is joined with a SemiJoinOperator, which returns every left tuple at most
+     * once instead of a copy for every matching right tuple.
+     *
      * @param atoms all unjoined atoms in query
      * @param leftChild left child operation for the join
      * @param comp list of join conditions
@@ -207,7 +314,12 @@ public class QueryPlan {
      */
     private static JoinOperator createJoins(List<Operator> atoms, Operator leftChild, List<ComparisonAtom> comp){
         Operator rightChild = atoms.get(0);
-        JoinOperator newJoin = new JoinOperator(leftChild, rightChild, comp);
+        JoinOperator newJoin;
+        if (isExistential(leftChild, rightChild, atoms.subList(1, atoms.size()), comp)){
+            newJoin = new SemiJoinOperator(leftChild, rightChild, comp);
+        } else {
+            newJoin = createJoin(leftChild, rightChild, comp);
+        }
 
         // call method recursively if newJoin is not the last join
         if (atoms.size()==1){
@@ -217,4 +329,86 @@ public class QueryPlan {
             return createJoins(atoms, newJoin, comp);
         }
     }
+
+    /**
+     * Method for checking whether the right child of a join can be replaced by a semi-join. The
+     * variables of its atom must not be needed above the join: they are not in the head, in the
+     * atoms that are joined later or in the join conditions with those atoms, unless the left
+     * child has them too. Queries with a sum aggregate are never rewritten, because the semi-join
+     * removes the duplicates that the sum counts.
+     *
+     * @param leftChild left child operation for the join
+     * @param rightChild right child operation for the join
+     * @param later operations that are joined after the right child
+     * @param comp list of join conditions
+     * @return returns true if the join can be a SemiJoinOperator
+     */
+    private static boolean isExistential(Operator leftChild, Operator rightChild, List<Operator> later, List<ComparisonAtom> comp){
+        if (plan.query.getHead().getSumAggregate() != null) return false;
+
+        List<Term> leftTerms = leftChild.getAtom().getTerms();
+        List<Term> rightTerms = rightChild.getAtom().getTerms();
+        Set<Term> neededTerms = new HashSet<>(plan.query.getHead().getVariables());
+        for (Operator operator:later){
+            neededTerms.addAll(operator.getAtom().getTerms());
+        }
+        // a join condition with a variable of a later atom is only evaluated above this join
+        for (ComparisonAtom condition:comp){
+            Term term1 = condition.getTerm1();
+            Term term2 = condition.getTerm2();
+            boolean here = (leftTerms.contains(term1) || rightTerms.contains(term1))
+                    && (leftTerms.contains(term2) || rightTerms.contains(term2));
+            if (!here){
+                neededTerms.add(term1);
+                neededTerms.add(term2);
+            }
+        }
+
+        for (Term term:rightTerms){
+            if (term instanceof Variable && !leftTerms.contains(term) && neededTerms.contains(term)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Method for choosing the join algorithm for two operators. If the join conditions include
+     * an equality a HashJoinOperator is used, or a HybridHashJoinOperator if the estimated size
+     * of the hash table of the right child is larger than the join budget (see
+     * Config.getJoinBudget()), or a ParallelHashJoinOperator if there is more than one worker
+     * thread (see Config.getParallelism()). If they include an inequality a
+     * SortMergeJoinOperator is used, otherwise a nested loop JoinOperator.
+     *
+     * @param leftChild left child operation for the join
+     * @param rightChild right child operation for the join
+     * @param comp list of join conditions
+     * @return returns a join operator
+     */
+    private static JoinOperator createJoin(Operator leftChild, Operator rightChild, List<ComparisonAtom> comp){
+        JoinOperator join = new JoinOperator(leftChild, rightChild, comp);
+        if (join.isEquiJoin()){
+            if (estimateBuildBytes(rightChild) > Config.getJoinBudget()){
+                return new HybridHashJoinOperator(leftChild, rightChild, comp);
+            } else if (Config.getParallelism() > 1){
+                return new ParallelHashJoinOperator(leftChild, rightChild, comp);
+            }
+            return new HashJoinOperator(leftChild, rightChild, comp);
+        } else if (join.isRangeJoin()){
+            return new SortMergeJoinOperator(leftChild, rightChild, comp);
+        }
+        return join;
+    }
+
+    /**
+     * Method for estimating the size of the hash table of the right child of a join. The right
+     * children of the left-deep join tree are scans, so the estimate uses the number of rows of
+     * the scanned relation.
+     *
+     * @param rightChild right child operation for the join
+     * @return returns the estimated number of bytes of the hash table
+     */
+    private static long estimateBuildBytes(Operator rightChild){
+        RelationalAtom atom = rightChild.getAtom();
+        long rows = DatabaseCatalog.getCatalog().getStatistics(atom.getName()).getRowCount();
+        return HybridHashJoinOperator.estimateBytes(atom.getTerms().size(), rows);
+    }
 }
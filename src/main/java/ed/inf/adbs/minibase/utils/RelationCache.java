@@ -0,0 +1,111 @@
+package ed.inf.adbs.minibase.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class for keeping parsed relations in memory, so that repeated scans of a relation (e.g. the
+ * inner relation of a nested loop join, which is reset for every outer tuple) do not read and
+ * parse its file again. Relations are keyed by the path of the scanned file and its modification
+ * time, so a changed file is never served from memory.
+ *
+ * The relations together use at most Config.getCacheBudget() bytes. When a new relation does
+ * not fit, the least recently used relations are evicted. The class uses a singleton pattern.
+ */
+public class RelationCache {
+    /** Class instance */
+    private static RelationCache cache = null;
+
+    /** Largest number of bytes used by the cached relations */
+    private final long budget;
+    /** Cached relations in order of last use, keyed by path and modification time */
+    private final LinkedHashMap<String, CachedRelation> relations = new LinkedHashMap<>(16, 0.75f, true);
+    /** Number of bytes used by the cached relations */
+    private long usedBytes = 0;
+
+    /**
+     * Constructor for the RelationCache class.
+     *
+     * @param budget largest number of bytes used by the cached relations
+     */
+    private RelationCache(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Method for creating and retrieving the class instance.
+     *
+     * @return returns the class instance
+     */
+    public static synchronized RelationCache getCache() {
+        if (cache == null) {
+            cache = new RelationCache(Config.getCacheBudget());
+        }
+        return cache;
+    }
+
+    /**
+     * Method for looking up a relation. A successful lookup makes the relation the most
+     * recently used.
+     *
+     * @param path path of the scanned file
+     * @param lastModified modification time of the file
+     * @return returns the cached relation, or null if it is not in the cache
+     */
+    public synchronized CachedRelation get(String path, long lastModified) {
+        return relations.get(key(path, lastModified));
+    }
+
+    /**
+     * Method for adding a relation to the cache. Older versions of the same file and the least
+     * recently used relations are evicted until the relation fits. Relations larger than the
+     * budget are not added.
+     *
+     * @param path path of the scanned file
+     * @param lastModified modification time of the file
+     * @param relation parsed relation
+     */
+    public synchronized void put(String path, long lastModified, CachedRelation relation) {
+        if (!fits(relation.getBytes())) return;
+
+        Iterator<Map.Entry<String, CachedRelation>> entries = relations.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, CachedRelation> entry = entries.next();
+            if (entry.getKey().startsWith(path + "@")) {
+                usedBytes -= entry.getValue().getBytes();
+                entries.remove();
+            }
+        }
+
+        entries = relations.entrySet().iterator();
+        while (usedBytes + relation.getBytes() > budget && entries.hasNext()) {
+            usedBytes -= entries.next().getValue().getBytes();
+            entries.remove();
+        }
+
+        relations.put(key(path, lastModified), relation);
+        usedBytes += relation.getBytes();
+    }
+
+    /**
+     * Method for checking whether a relation of the given size can be cached at all.
+     *
+     * @param bytes size of the relation in bytes
+     * @return returns true if the relation is not larger than the budget
+     */
+    public boolean fits(long bytes) {
+        return bytes <= budget;
+    }
+
+    /**
+     * Helper method for building the key of a relation.
+     *
+     * @param path path of the scanned file
+     * @param lastModified modification time of the file
+     * @return returns the key
+     */
+    private static String key(String path, long lastModified) {
+        return path + "@" + lastModified;
+    }
+}
@@ -0,0 +1,170 @@
+package ed.inf.adbs.minibase.utils;
+
+import ed.inf.adbs.minibase.base.Term;
+import ed.inf.adbs.minibase.base.Variable;
+import ed.inf.adbs.minibase.operators.Operator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Class for the semi-join reduction of the relations of an acyclic query (the first two passes
+ * of the Yannakakis algorithm). The relations are read from their scans, and then reduced
+ * along the join tree of the query (see Hypergraph):
+ *
+ * - bottom-up, every parent keeps only the tuples that match a tuple of each of its children,
+ * - top-down, every child keeps only the tuples that match a tuple of its parent.
+ *
+ * A tuple matches if it has the same values for the variables the two atoms share. After both
+ * passes every remaining tuple is part of at least one result of the join of all relations
+ * (without the join conditions that are not shared variables), so the joins that follow have
+ * no dangling tuples and their intermediate results are at most as large as the inputs plus
+ * the output.
+ *
+ * The batches of the scans are kept as views, and the semi-joins only shrink their selection
+ * vectors, so batches served from the RelationCache are not changed.
+ */
+public class SemiJoinReduction {
+    /** Scans of the relations, one per relational atom */
+    private final List<Operator> scans;
+    /** Parent of every relation in the join tree, -1 for the root */
+    private final int[] parents;
+    /** Relations in the order of the bottom-up pass, ending with the root */
+    private final int[] order;
+    /** Reduced batches of every relation, null until the reduction has run */
+    private List<List<TupleBatch>> relations = null;
+
+    /**
+     * Constructor for the SemiJoinReduction class.
+     *
+     * @param scans scans of the relations, one per relational atom
+     * @param hypergraph acyclic hypergraph of the atoms of the scans, in the same order
+     */
+    public SemiJoinReduction(List<Operator> scans, Hypergraph hypergraph) {
+        if (!hypergraph.isAcyclic()) throw new IllegalArgumentException("Semi-join reduction requires an acyclic query");
+        this.scans = new ArrayList<>(scans);
+        this.parents = hypergraph.getParents();
+        this.order = hypergraph.getOrder();
+    }
+
+    /**
+     * Method for getting the reduced batches of a relation. The reduction runs on the first call.
+     *
+     * @param index position of the relation
+     * @return returns the batches of the relation, every batch with at least one selected row
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    public synchronized List<TupleBatch> getRelation(int index) throws IOException {
+        if (relations == null) reduce();
+        return relations.get(index);
+    }
+
+    /**
+     * Getter for the scan of a relation.
+     *
+     * @param index position of the relation
+     * @return returns the scan
+     */
+    public Operator getScan(int index) {
+        return scans.get(index);
+    }
+
+    /**
+     * Helper method for reading the relations and running the bottom-up and top-down passes.
+     *
+     * @throws IOException throws an error if reading from file at a leaf node was unsuccessful
+     */
+    private void reduce() throws IOException {
+        List<List<TupleBatch>> read = new ArrayList<>();
+        for (Operator scan : scans) {
+            List<TupleBatch> batches = new ArrayList<>();
+            TupleBatch batch = scan.getNextBatch();
+            while (batch != null) {
+                batches.add(batch.view());
+                batch = scan.getNextBatch();
+            }
+            read.add(batches);
+        }
+
+        // bottom-up: every child comes before its parent in the order
+        for (int child : order) {
+            int parent = parents[child];
+            if (parent >= 0) semiJoin(read, parent, child);
+        }
+        // top-down: every parent comes before its children in the reverse order
+        for (int i = order.length - 1; i >= 0; i--) {
+            int child = order[i];
+            int parent = parents[child];
+            if (parent >= 0) semiJoin(read, child, parent);
+        }
+        relations = read;
+    }
+
+    /**
+     * Helper method for removing the tuples of a relation that do not match any tuple of
+     * another relation on the variables the two atoms share.
+     *
+     * @param read batches of all relations
+     * @param target position of the relation that is reduced
+     * @param source position of the relation it is reduced by
+     */
+    private void semiJoin(List<List<TupleBatch>> read, int target, int source) {
+        List<Term> targetTerms = scans.get(target).getAtom().getTerms();
+        List<Term> sourceTerms = scans.get(source).getAtom().getTerms();
+        List<Integer> targetSlots = new ArrayList<>();
+        List<Integer> sourceSlots = new ArrayList<>();
+        for (int slot = 0; slot < targetTerms.size(); slot++) {
+            Term term = targetTerms.get(slot);
+            if (term instanceof Variable && targetTerms.indexOf(term) == slot && sourceTerms.contains(term)) {
+                targetSlots.add(slot);
+                sourceSlots.add(sourceTerms.indexOf(term));
+            }
+        }
+
+        Set<Tuple> keys = new HashSet<>();
+        boolean[] sourceLayout = scans.get(source).getLayout();
+        for (TupleBatch batch : read.get(source)) {
+            int[] selection = batch.getSelection();
+            for (int i = 0; i < batch.size(); i++) {
+                keys.add(getKey(batch, selection[i], sourceSlots, sourceLayout));
+            }
+        }
+
+        boolean[] targetLayout = scans.get(target).getLayout();
+        List<TupleBatch> reduced = new ArrayList<>();
+        for (TupleBatch batch : read.get(target)) {
+            int[] selection = batch.getSelection();
+            int size = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                if (keys.contains(getKey(batch, selection[i], targetSlots, targetLayout))) {
+                    selection[size++] = selection[i];
+                }
+            }
+            batch.setSize(size);
+            if (size > 0) reduced.add(batch);
+        }
+        read.set(target, reduced);
+    }
+
+    /**
+     * Helper method for extracting the values of the shared variables from a row of a batch.
+     *
+     * @param batch batch that holds the row
+     * @param row row number in the batch
+     * @param slots slots of the shared variables
+     * @param layout layout of the batch
+     * @return returns the key values as a tuple
+     */
+    private static Tuple getKey(TupleBatch batch, int row, List<Integer> slots, boolean[] layout) {
+        long[] values = new long[slots.size()];
+        boolean[] keyLayout = new boolean[slots.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = batch.getColumn(slots.get(i))[row];
+            keyLayout[i] = layout[slots.get(i)];
+        }
+        return new Tuple(values, keyLayout);
+    }
+}
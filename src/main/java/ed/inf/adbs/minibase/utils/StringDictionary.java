@@ -0,0 +1,82 @@
+package ed.inf.adbs.minibase.utils;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class for dictionary encoding of strings. Every distinct string is given an integer code
+ * the first time it is encoded, so that tuples can store strings as primitive values. Equal
+ * strings always have equal codes, but the codes do not follow the order of the strings.
+ *
+ * The dictionary can be used by several scan threads at once. Looking up a string that is
+ * already encoded does not lock, and new strings are added under the lock of the dictionary.
+ * A code is only published in the map after its string has been stored, so any thread that
+ * holds a code can decode it. The class uses a singleton pattern.
+ */
+public class StringDictionary {
+    /** Class instance */
+    private static StringDictionary dictionary = null;
+
+    /** Map from every encoded string to its code */
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    /** Array of the encoded strings, where the index of a string is its code */
+    private volatile String[] strings = new String[1024];
+    /** Number of encoded strings */
+    private int size = 0;
+
+    /**
+     * Method for creating and retrieving the class instance.
+     *
+     * @return returns the class instance
+     */
+    public static synchronized StringDictionary getDictionary() {
+        if (dictionary == null) {
+            dictionary = new StringDictionary();
+        }
+        return dictionary;
+    }
+
+    /**
+     * Method for getting the code of a string. New strings are added to the dictionary.
+     *
+     * @param value string to encode
+     * @return returns the code of the string
+     */
+    public int encode(String value) {
+        Integer code = codes.get(value);
+        if (code != null) return code;
+        return add(value);
+    }
+
+    /**
+     * Helper method for adding a string to the dictionary, unless another thread has added it
+     * in the meantime.
+     *
+     * @param value string to encode
+     * @return returns the code of the string
+     */
+    private synchronized int add(String value) {
+        Integer code = codes.get(value);
+        if (code != null) return code;
+
+        String[] current = strings;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[size] = value;
+        strings = current;
+        codes.put(value, size);
+        return size++;
+    }
+
+    /**
+     * Method for getting the string with a given code.
+     *
+     * @param code code of the string
+     * @return returns the string
+     */
+    public String decode(long code) {
+        return strings[(int) code];
+    }
+}
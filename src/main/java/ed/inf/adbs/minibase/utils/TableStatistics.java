@@ -0,0 +1,441 @@
+package ed.inf.adbs.minibase.utils;
+
+import ed.inf.adbs.minibase.base.ComparisonOperator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Class for storing statistics about a table: the number of rows and, for every column, the
+ * number of distinct values. Integer columns of analyzed tables also have the minimum and
+ * maximum value and an equi-depth histogram. Used by the JoinOrderOptimizer to estimate the
+ * size of selections and joins.
+ *
+ * Statistics are either computed by a full scan of the table (analyze, used by the Analyzer and
+ * persisted in the statistics file of the database) or estimated from a sample of the first
+ * SAMPLE_ROWS rows when a table has not been analyzed.
+ *
+ * In the statistics file every table has a line with its name and number of rows, followed by a
+ * line for every column with the table name, the column index and the number of distinct values.
+ * For integer columns the line continues with the minimum, the maximum and the histogram bounds.
+ */
+public class TableStatistics {
+    /** Number of rows read to estimate the statistics of a table that has not been analyzed */
+    private static final int SAMPLE_ROWS = 10000;
+    /** Number of values per column kept to build the histogram of an analyzed table */
+    private static final int HISTOGRAM_SAMPLE = 10000;
+    /** Number of buckets in a histogram */
+    private static final int BUCKETS = 32;
+    /** Estimated selectivity of an inequality when there is no histogram */
+    private static final double RANGE_SELECTIVITY = 1.0 / 3;
+
+    /** Number of rows in the table */
+    private final long rowCount;
+    /** Number of distinct values in each column */
+    private final long[] distinctCounts;
+    /** Smallest value of each column, only valid if the column has a histogram */
+    private final long[] min;
+    /** Largest value of each column, only valid if the column has a histogram */
+    private final long[] max;
+    /** Bounds of the equi-depth histogram of each column, null if the column has no histogram.
+     * Every bucket between two consecutive bounds holds the same number of rows. */
+    private final long[][] histograms;
+
+    /**
+     * Constructor for statistics without histograms.
+     *
+     * @param rowCount number of rows in the table
+     * @param distinctCounts number of distinct values in each column
+     */
+    public TableStatistics(long rowCount, long[] distinctCounts) {
+        this(rowCount, distinctCounts, new long[distinctCounts.length], new long[distinctCounts.length],
+                new long[distinctCounts.length][]);
+    }
+
+    /**
+     * Constructor for the TableStatistics class.
+     *
+     * @param rowCount number of rows in the table
+     * @param distinctCounts number of distinct values in each column
+     * @param min smallest value of each column
+     * @param max largest value of each column
+     * @param histograms histogram bounds of each column, null for columns without a histogram
+     */
+    public TableStatistics(long rowCount, long[] distinctCounts, long[] min, long[] max, long[][] histograms) {
+        this.rowCount = rowCount;
+        this.distinctCounts = distinctCounts;
+        this.min = min;
+        this.max = max;
+        this.histograms = histograms;
+    }
+
+    /**
+     * Class for collecting the statistics of one column during a full scan. Distinct values are
+     * counted with a HyperLogLog sketch and the histogram is built from a reservoir sample.
+     */
+    private static class ColumnSummary {
+        /** Sketch of the distinct values */
+        private final HyperLogLog sketch = new HyperLogLog();
+        /** Reservoir sample of the values */
+        private final long[] sample = new long[HISTOGRAM_SAMPLE];
+        /** Random generator for the reservoir, seeded so that the statistics are reproducible */
+        private final Random random = new Random(HISTOGRAM_SAMPLE);
+        /** Number of values added */
+        private long count = 0;
+        /** Smallest value added */
+        private long min = Long.MAX_VALUE;
+        /** Largest value added */
+        private long max = Long.MIN_VALUE;
+
+        /**
+         * Method for adding a value of the column.
+         *
+         * @param value value to add
+         */
+        private void add(long value) {
+            sketch.add(value);
+            if (value < min) min = value;
+            if (value > max) max = value;
+
+            if (count < HISTOGRAM_SAMPLE) {
+                sample[(int) count] = value;
+            } else {
+                long slot = (long) (random.nextDouble() * (count + 1));
+                if (slot < HISTOGRAM_SAMPLE) sample[(int) slot] = value;
+            }
+            count++;
+        }
+
+        /**
+         * Method for building the equi-depth histogram from the sample. The first and last
+         * bounds are the exact minimum and maximum.
+         *
+         * @return returns the histogram bounds
+         */
+        private long[] histogram() {
+            int size = (int) Math.min(count, HISTOGRAM_SAMPLE);
+            long[] sorted = Arrays.copyOf(sample, size);
+            Arrays.sort(sorted);
+
+            long[] bounds = new long[BUCKETS + 1];
+            for (int k = 0; k <= BUCKETS; k++) {
+                bounds[k] = sorted[(int) ((long) k * (size - 1) / BUCKETS)];
+            }
+            bounds[0] = min;
+            bounds[BUCKETS] = max;
+            return bounds;
+        }
+    }
+
+    /**
+     * Method for computing the statistics of a table with a full scan. The table is read from the
+     * binary columnar files if they are available, otherwise from the CSV file.
+     *
+     * @param catalog database catalog
+     * @param name name of the table
+     * @return returns the statistics of the table
+     * @throws IOException throws an error if reading from file was unsuccessful
+     */
+    public static TableStatistics analyze(DatabaseCatalog catalog, String name) throws IOException {
+        boolean[] layout = catalog.getLayout(name);
+        ColumnSummary[] summaries = new ColumnSummary[layout.length];
+        for (int i = 0; i < layout.length; i++) {
+            summaries[i] = new ColumnSummary();
+        }
+        long rowCount = 0;
+
+        if (catalog.hasColumnarFiles(name)) {
+            rowCount = catalog.getColumnarRowCount(name);
+            for (int i = 0; i < layout.length; i++) {
+                ColumnReader reader = new ColumnReader(catalog.getColumnPath(name, i));
+                for (long r = 0; r < rowCount; r++) {
+                    summaries[i].add(layout[i] ? StringDictionary.getDictionary().encode(reader.readString()) : reader.readInt());
+                }
+                reader.close();
+            }
+        } else {
+            MappedCSVReader reader = new MappedCSVReader(catalog.getFilePath(name), catalog.getSchema(name), layout);
+            TupleBatch batch = reader.readBatch();
+            while (batch != null) {
+                int[] selection = batch.getSelection();
+                for (int i = 0; i < layout.length; i++) {
+                    long[] column = batch.getColumn(i);
+                    for (int s = 0; s < batch.size(); s++) {
+                        summaries[i].add(column[selection[s]]);
+                    }
+                }
+                rowCount += batch.size();
+                batch = reader.readBatch();
+            }
+        }
+
+        long[] distinctCounts = new long[layout.length];
+        long[] min = new long[layout.length];
+        long[] max = new long[layout.length];
+        long[][] histograms = new long[layout.length][];
+        for (int i = 0; i < layout.length; i++) {
+            distinctCounts[i] = Math.max(Math.min(summaries[i].sketch.estimate(), rowCount), 1);
+            if (!layout[i] && rowCount > 0) {
+                min[i] = summaries[i].min;
+                max[i] = summaries[i].max;
+                histograms[i] = summaries[i].histogram();
+            }
+        }
+        return new TableStatistics(rowCount, distinctCounts, min, max, histograms);
+    }
+
+    /**
+     * Method for estimating the statistics of a table from a sample of its rows. The number of
+     * rows is estimated from the file size and the size of the sampled lines, unless the sample
+     * covers the whole table or the table is stored in the binary columnar format.
+     *
+     * @param catalog database catalog
+     * @param name name of the table
+     * @return returns the estimated statistics
+     * @throws IOException throws an error if reading from file was unsuccessful
+     */
+    public static TableStatistics sample(DatabaseCatalog catalog, String name) throws IOException {
+        int columns = catalog.getSchema(name).size();
+        boolean[] layout = catalog.getLayout(name);
+        List<Set<Long>> values = newSets(columns);
+        long sampled = 0;
+        long rowCount;
+
+        if (catalog.hasColumnarFiles(name)) {
+            rowCount = catalog.getColumnarRowCount(name);
+            sampled = Math.min(rowCount, SAMPLE_ROWS);
+            for (int i = 0; i < columns; i++) {
+                ColumnReader reader = new ColumnReader(catalog.getColumnPath(name, i));
+                for (long r = 0; r < sampled; r++) {
+                    values.get(i).add(layout[i] ? (long) StringDictionary.getDictionary().encode(reader.readString()) : (long) reader.readInt());
+                }
+                reader.close();
+            }
+        } else {
+            MappedCSVReader reader = new MappedCSVReader(catalog.getFilePath(name), catalog.getSchema(name), layout);
+            Tuple tuple = reader.readTuple();
+            while (tuple != null && sampled < SAMPLE_ROWS) {
+                for (int i = 0; i < columns; i++) {
+                    values.get(i).add(tuple.get(i));
+                }
+                sampled++;
+                tuple = reader.readTuple();
+            }
+
+            if (tuple == null) {
+                rowCount = sampled;
+            } else {
+                long fileSize = new File(catalog.getFilePath(name)).length();
+                rowCount = Math.round((double) fileSize / reader.getPosition() * sampled);
+            }
+        }
+
+        long[] distinctCounts = new long[columns];
+        for (int i = 0; i < columns; i++) {
+            distinctCounts[i] = scaleDistinct(values.get(i).size(), sampled, rowCount);
+        }
+        return new TableStatistics(rowCount, distinctCounts);
+    }
+
+    /**
+     * Helper method for scaling the number of distinct values in a sample to the whole table.
+     * If most sampled values are distinct the column is assumed to be (close to) unique,
+     * otherwise the sample is assumed to contain all the distinct values.
+     *
+     * @param distinct number of distinct values in the sample
+     * @param sampled number of sampled rows
+     * @param rowCount number of rows in the table
+     * @return returns the estimated number of distinct values in the table
+     */
+    private static long scaleDistinct(long distinct, long sampled, long rowCount) {
+        if (sampled >= rowCount || distinct * 2 < sampled) return Math.max(distinct, 1);
+        return Math.max(Math.round((double) distinct / sampled * rowCount), 1);
+    }
+
+    /**
+     * Helper method for creating a list of empty sets.
+     *
+     * @param size size of the list
+     * @return returns the list of sets
+     */
+    private static List<Set<Long>> newSets(int size) {
+        List<Set<Long>> sets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            sets.add(new HashSet<>());
+        }
+        return sets;
+    }
+
+    /**
+     * Method for estimating the fraction of rows for which a column satisfies a comparison with a
+     * constant. Columns with a histogram use the minimum, maximum and histogram, the others use
+     * the number of distinct values for equality and a fixed estimate for inequalities.
+     *
+     * @param column index of the column
+     * @param op comparison operator, with the column on the left
+     * @param value encoded constant on the right
+     * @return returns the estimated selectivity
+     */
+    public double selectivity(int column, ComparisonOperator op, long value) {
+        double equal = 1.0 / Math.max(distinctCounts[column], 1);
+        if (histograms[column] == null) {
+            if (op == ComparisonOperator.EQ) return equal;
+            if (op == ComparisonOperator.NEQ) return 1 - equal;
+            return RANGE_SELECTIVITY;
+        }
+
+        if (value < min[column] || value > max[column]) equal = 0;
+        switch (op) {
+            case EQ:
+                return equal;
+            case NEQ:
+                return 1 - equal;
+            case LT:
+                return fractionBelow(column, value);
+            case LEQ:
+                return fractionBelow(column, value + 1);
+            case GT:
+                return 1 - fractionBelow(column, value + 1);
+            default:
+                return 1 - fractionBelow(column, value);
+        }
+    }
+
+    /**
+     * Helper method for estimating the fraction of rows with a value smaller than the given one.
+     * The values in a bucket are assumed to be spread evenly between its bounds.
+     *
+     * @param column index of a column with a histogram
+     * @param value value to compare with
+     * @return returns the estimated fraction of rows
+     */
+    private double fractionBelow(int column, long value) {
+        long[] bounds = histograms[column];
+        if (value <= bounds[0]) return 0;
+        if (value > bounds[BUCKETS]) return 1;
+
+        int bucket = 0;
+        while (bucket < BUCKETS - 1 && value > bounds[bucket + 1]) {
+            bucket++;
+        }
+        double width = bounds[bucket + 1] - bounds[bucket] + 1;
+        double inBucket = Math.min((value - bounds[bucket]) / width, 1);
+        return (bucket + inBucket) / BUCKETS;
+    }
+
+    /**
+     * Method for formatting the statistics as lines of the statistics file.
+     *
+     * @param name name of the table
+     * @return returns the lines describing the table
+     */
+    public List<String> format(String name) {
+        List<String> lines = new ArrayList<>();
+        lines.add(name + " " + rowCount);
+        for (int i = 0; i < distinctCounts.length; i++) {
+            StringBuilder s = new StringBuilder(name).append(" ").append(i).append(" ").append(distinctCounts[i]);
+            if (histograms[i] != null) {
+                s.append(" ").append(min[i]).append(" ").append(max[i]);
+                for (long bound : histograms[i]) {
+                    s.append(" ").append(bound);
+                }
+            }
+            lines.add(s.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * Method for parsing the lines of the statistics file.
+     *
+     * @param lines lines of the statistics file
+     * @param catalog database catalog, used for the number of columns of every table
+     * @return returns a map from table name to statistics
+     */
+    public static Map<String, TableStatistics> parse(List<String> lines, DatabaseCatalog catalog) {
+        Map<String, TableStatistics> statistics = new HashMap<>();
+        for (String line : lines) {
+            if (line.trim().isEmpty()) continue;
+            String[] parts = line.trim().split(" ");
+            if (catalog.getSchema(parts[0]) == null) {
+                throw new IllegalArgumentException("Statistics for unknown table " + parts[0]);
+            }
+
+            if (parts.length == 2) {
+                int columns = catalog.getSchema(parts[0]).size();
+                statistics.put(parts[0], new TableStatistics(Long.parseLong(parts[1]), new long[columns]));
+                continue;
+            }
+
+            TableStatistics table = statistics.get(parts[0]);
+            int column = Integer.parseInt(parts[1]);
+            if (table == null || column >= table.distinctCounts.length) {
+                throw new IllegalArgumentException("Statistics do not match schema for " + parts[0]);
+            }
+            table.distinctCounts[column] = Long.parseLong(parts[2]);
+            if (parts.length > 3) {
+                if (parts.length != BUCKETS + 6) {
+                    throw new IllegalArgumentException("Malformed histogram for " + parts[0]);
+                }
+                table.min[column] = Long.parseLong(parts[3]);
+                table.max[column] = Long.parseLong(parts[4]);
+                table.histograms[column] = new long[BUCKETS + 1];
+                for (int k = 0; k <= BUCKETS; k++) {
+                    table.histograms[column][k] = Long.parseLong(parts[k + 5]);
+                }
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Getter for the number of rows in the table.
+     *
+     * @return returns the number of rows
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Getter for the number of distinct values in a column.
+     *
+     * @param column index of the column
+     * @return returns the number of distinct values
+     */
+    public long getDistinctCount(int column) {
+        return distinctCounts[column];
+    }
+
+    /**
+     * Getter for the smallest value of a column. Only valid if the column has a histogram.
+     *
+     * @param column index of the column
+     * @return returns the smallest value
+     */
+    public long getMin(int column) {
+        return min[column];
+    }
+
+    /**
+     * Getter for the largest value of a column. Only valid if the column has a histogram.
+     *
+     * @param column index of the column
+     * @return returns the largest value
+     */
+    public long getMax(int column) {
+        return max[column];
+    }
+
+    /**
+     * Method for checking whether a column has a histogram, i.e. whether it is an integer column
+     * of a table that has been analyzed.
+     *
+     * @param column index of the column
+     * @return returns true if the column has a histogram
+     */
+    public boolean hasHistogram(int column) {
+        return histograms[column] != null;
+    }
+}
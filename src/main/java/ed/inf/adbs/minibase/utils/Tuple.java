@@ -1,32 +1,134 @@
 package ed.inf.adbs.minibase.utils;
 
 import ed.inf.adbs.minibase.base.Constant;
-import java.util.List;
+import ed.inf.adbs.minibase.base.IntegerConstant;
+import ed.inf.adbs.minibase.base.StringConstant;
+
+import java.util.Arrays;
 
 /**
- * Class to represent a tuple in the database
+ * Class to represent a tuple in the database. The fields are stored as primitive values:
+ * integers as they are and strings as their code in the StringDictionary. Which fields are
+ * strings is given by the layout of the tuple, which is shared by all tuples produced by
+ * the same operator.
  */
 public class Tuple {
-    /** The values of the tuple as a list of Constants*/
-    private final List<Constant> fields;
+    /** The values of the tuple */
+    private final long[] values;
+    /** The layout of the tuple, true for every field that is a string */
+    private final boolean[] layout;
+
+    /**
+     * Constructor for the Tuple. The arrays are stored without copying.
+     *
+     * @param values values of the fields
+     * @param layout true for every field that is a string
+     */
+    public Tuple(long[] values, boolean[] layout) {
+        this.values = values;
+        this.layout = layout;
+    }
+
+    /**
+     * Getter method for the value of a field.
+     *
+     * @param index index of the field
+     * @return returns the integer value or the string code of the field
+     */
+    public long get(int index) {
+        return values[index];
+    }
 
     /**
-     * Constructor for the Tuple. Sets the private variable to be the input
-     * list of Constants.
+     * Method for checking whether a field is a string.
      *
-     * @param fields List of Constants
+     * @param index index of the field
+     * @return returns true if the field is a string
      */
-    public Tuple(List<Constant> fields) {
-        this.fields = fields;
+    public boolean isString(int index) {
+        return layout[index];
     }
 
     /**
-     * Getter method for accessing the Tuple fields.
+     * Getter method for the number of fields.
      *
-     * @return returns a List of Constants
+     * @return returns the number of fields
      */
-    public List<Constant> getFields() {
-        return fields;
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Getter method for the values of the tuple. The array must not be modified.
+     *
+     * @return returns the values of the fields
+     */
+    public long[] getValues() {
+        return values;
+    }
+
+    /**
+     * Getter method for the layout of the tuple. The array must not be modified.
+     *
+     * @return returns the layout of the tuple
+     */
+    public boolean[] getLayout() {
+        return layout;
+    }
+
+    /**
+     * Method for converting a field to a Constant.
+     *
+     * @param index index of the field
+     * @return returns an IntegerConstant or a StringConstant
+     */
+    public Constant getConstant(int index) {
+        if (layout[index]) {
+            return new StringConstant(StringDictionary.getDictionary().decode(values[index]));
+        }
+        return new IntegerConstant((int) values[index]);
+    }
+
+    /**
+     * Method for joining two tuples. The fields of the right tuple follow the fields of the left.
+     *
+     * @param left left tuple
+     * @param right right tuple
+     * @param layout layout of the joined tuple
+     * @return returns the joined tuple
+     */
+    public static Tuple join(Tuple left, Tuple right, boolean[] layout) {
+        long[] values = Arrays.copyOf(left.values, left.values.length + right.values.length);
+        System.arraycopy(right.values, 0, values, left.values.length, right.values.length);
+        return new Tuple(values, layout);
+    }
+
+    /**
+     * Method for joining two layouts. The fields of the right layout follow the fields of the left.
+     *
+     * @param left left layout
+     * @param right right layout
+     * @return returns the joined layout
+     */
+    public static boolean[] join(boolean[] left, boolean[] right) {
+        boolean[] layout = Arrays.copyOf(left, left.length + right.length);
+        System.arraycopy(right, 0, layout, left.length, right.length);
+        return layout;
+    }
+
+    /**
+     * Method for encoding a constant as a primitive tuple value.
+     *
+     * @param constant constant to encode
+     * @return returns the integer value or the string code of the constant
+     */
+    public static long encode(Constant constant) {
+        if (constant instanceof StringConstant) {
+            return StringDictionary.getDictionary().encode(((StringConstant) constant).getValue());
+        } else if (constant instanceof IntegerConstant) {
+            return ((IntegerConstant) constant).getValue();
+        }
+        throw new IllegalArgumentException("Unrecognized constant type");
     }
 
     /**
@@ -38,8 +140,13 @@ public class Tuple {
     @Override
     public String toString() {
         StringBuilder s = new StringBuilder();
-        for (Constant c:fields){
-            s.append(c.toString()).append(",");
+        for (int i = 0; i < values.length; i++){
+            if (layout[i]) {
+                s.append('\'').append(StringDictionary.getDictionary().decode(values[i])).append('\'');
+            } else {
+                s.append(values[i]);
+            }
+            s.append(",");
         }
         return s.substring(0, s.length() - 1) + "\n";
     }
@@ -47,25 +154,26 @@ public class Tuple {
     /**
      * Overridden hashCode method.
      *
-     * @return returns hashcode of the fields list.
+     * @return returns hashcode of the values.
      */
     @Override
     public int hashCode() {
-        return fields.hashCode();
+        return Arrays.hashCode(values);
     }
 
     /**
-     * Overridden equals method. Two Tuples are equal if the fields are equal.
+     * Overridden equals method. Two Tuples are equal if the values and the layouts are equal.
      *
      * @param o Object to compare this Tuple to
-     * @return returns true if the input Object o is a Tuple and the fields are
-     * equal to this tuples fields.
+     * @return returns true if the input Object o is a Tuple and the values and layout are
+     * equal to this tuples values and layout.
      */
     @Override
     public boolean equals(Object o) {
         if(o instanceof Tuple){
             Tuple comp = (Tuple) o;
-            return this.fields.equals(comp.getFields());
+            return Arrays.equals(this.values, comp.values)
+                    && (this.layout == comp.layout || Arrays.equals(this.layout, comp.layout));
         }
         return false;
     }
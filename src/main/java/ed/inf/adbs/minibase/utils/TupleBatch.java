@@ -0,0 +1,165 @@
+package ed.inf.adbs.minibase.utils;
+
+/**
+ * Class to represent a batch of up to CAPACITY tuples in column-oriented form. Every column is
+ * an array of primitive values, encoded in the same way as in Tuple. The selection vector holds
+ * the row numbers of the rows that are part of the batch, so that filters can drop rows without
+ * moving any values.
+ */
+public class TupleBatch {
+    /** Maximum number of rows in a batch */
+    public static final int CAPACITY = 1024;
+
+    /** The values of the batch, indexed by column and then by row */
+    private final long[][] columns;
+    /** The layout of the rows, true for every column that is a string */
+    private final boolean[] layout;
+    /** Row numbers of the selected rows */
+    private final int[] selection;
+    /** Number of rows stored in the columns */
+    private int rowCount;
+    /** Number of selected rows */
+    private int size;
+
+    /**
+     * Constructor for an empty TupleBatch.
+     *
+     * @param layout layout of the rows
+     */
+    public TupleBatch(boolean[] layout) {
+        this.layout = layout;
+        this.columns = new long[layout.length][CAPACITY];
+        this.selection = new int[CAPACITY];
+    }
+
+    /**
+     * Constructor for a batch that shares the columns of another batch.
+     *
+     * @param columns values of the batch
+     * @param layout layout of the rows
+     * @param selection row numbers of the selected rows
+     * @param rowCount number of rows stored in the columns
+     * @param size number of selected rows
+     */
+    private TupleBatch(long[][] columns, boolean[] layout, int[] selection, int rowCount, int size) {
+        this.columns = columns;
+        this.layout = layout;
+        this.selection = selection;
+        this.rowCount = rowCount;
+        this.size = size;
+    }
+
+    /**
+     * Method for creating a view of the batch. The view shares the columns of this batch but has
+     * its own copy of the selection vector, so filters applied to the view do not change this
+     * batch. Rows must not be added to the view.
+     *
+     * @return returns the view
+     */
+    public TupleBatch view() {
+        return new TupleBatch(columns, layout, selection.clone(), rowCount, size);
+    }
+
+    /**
+     * Method for adding a row to the batch. The row is selected.
+     *
+     * @param values values of the row
+     */
+    public void addRow(long[] values) {
+        for (int c = 0; c < columns.length; c++) {
+            columns[c][rowCount] = values[c];
+        }
+        selection[size++] = rowCount++;
+    }
+
+    /**
+     * Method for adding a tuple to the batch. The row is selected.
+     *
+     * @param tuple tuple to add
+     */
+    public void addTuple(Tuple tuple) {
+        addRow(tuple.getValues());
+    }
+
+    /**
+     * Method for reserving the next row, for operators that fill the columns directly. The
+     * row is selected.
+     *
+     * @return returns the row number of the new row
+     */
+    public int nextRow() {
+        selection[size++] = rowCount;
+        return rowCount++;
+    }
+
+    /**
+     * Method for creating a tuple from a selected row.
+     *
+     * @param i position of the row in the selection vector
+     * @return returns the row as a Tuple
+     */
+    public Tuple getTuple(int i) {
+        int row = selection[i];
+        long[] values = new long[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            values[c] = columns[c][row];
+        }
+        return new Tuple(values, layout);
+    }
+
+    /**
+     * Method for checking whether the batch has room for more rows.
+     *
+     * @return returns true if no more rows can be added
+     */
+    public boolean isFull() {
+        return rowCount >= CAPACITY;
+    }
+
+    /**
+     * Getter method for the values of a column.
+     *
+     * @param column index of the column
+     * @return returns the values of the column, indexed by row number
+     */
+    public long[] getColumn(int column) {
+        return columns[column];
+    }
+
+    /**
+     * Getter method for the selection vector. Only the first size() entries are valid.
+     *
+     * @return returns the row numbers of the selected rows
+     */
+    public int[] getSelection() {
+        return selection;
+    }
+
+    /**
+     * Getter method for the number of selected rows.
+     *
+     * @return returns the number of selected rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Setter method for the number of selected rows, used after a filter has compacted the
+     * selection vector.
+     *
+     * @param size number of selected rows
+     */
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Getter method for the layout of the rows.
+     *
+     * @return returns the layout of the rows
+     */
+    public boolean[] getLayout() {
+        return layout;
+    }
+}
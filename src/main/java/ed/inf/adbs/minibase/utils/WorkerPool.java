@@ -0,0 +1,60 @@
+package ed.inf.adbs.minibase.utils;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Class for the worker threads that parallel operators run their tasks on. The pool has
+ * Config.getParallelism() threads and is shared by all operators and queries, so the number of
+ * threads does not grow with the number of parallel operators in a plan. If the configured
+ * number of threads changes (e.g. between tests), the pool is replaced by a new one. The threads
+ * are daemon threads and do not keep the JVM alive. The class uses a singleton pattern.
+ */
+public class WorkerPool {
+    /** Class instance */
+    private static WorkerPool workers = null;
+
+    /** Pool that runs the tasks */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor for the WorkerPool class.
+     *
+     * @param parallelism number of worker threads
+     */
+    private WorkerPool(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Method for creating and retrieving the class instance.
+     *
+     * @return returns the class instance
+     */
+    public static synchronized WorkerPool getWorkers() {
+        int parallelism = Config.getParallelism();
+        if (workers == null || workers.getParallelism() != parallelism) {
+            // tasks that were already submitted to the old pool still run to completion
+            if (workers != null) workers.pool.shutdown();
+            workers = new WorkerPool(parallelism);
+        }
+        return workers;
+    }
+
+    /**
+     * Getter for the pool that runs the tasks.
+     *
+     * @return returns the pool
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Getter for the number of worker threads.
+     *
+     * @return returns the number of worker threads
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+}
@@ -0,0 +1,62 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.utils.DatabaseCatalog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit test for ColumnarConverter.
+ */
+public class ColumnarConverterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A relation with a malformed row must not leave half-written column files behind: the
+     * files of the previous conversion stay in place, and no temporary files are left.
+     */
+    @Test
+    public void failedConversionKeepsPreviousFiles() throws IOException {
+        File directory = folder.getRoot();
+        TestDatabase database = new TestDatabase(directory)
+                .relation("R", "int string", Arrays.asList("1, 'a'", "2, 'b'"))
+                .relation("S", "int int", Arrays.asList("1, 2", "3, 4"))
+                .open();
+        ColumnarConverter.convert(directory.getPath());
+        List<String> header = Files.readAllLines(new File(directory, DatabaseCatalog.COLUMNAR_HEADER).toPath());
+        byte[] column = Files.readAllBytes(new File(directory, "columns/R/1.col").toPath());
+        assertEquals(Arrays.asList("R 2 int string", "S 2 int int"), header);
+
+        database.relation("R", "int string", Arrays.asList("1, 'a'", "2, 'b'", "3, 'c'"))
+                .relation("S", "int int", Arrays.asList("1, 2", "3, x"))
+                .open();
+        try {
+            ColumnarConverter.convert(directory.getPath());
+            fail("malformed row was converted");
+        } catch (IllegalArgumentException e) {
+            // expected, the row cannot be parsed
+        }
+
+        assertEquals(header, Files.readAllLines(new File(directory, DatabaseCatalog.COLUMNAR_HEADER).toPath()));
+        assertTrue(Arrays.equals(column, Files.readAllBytes(new File(directory, "columns/R/1.col").toPath())));
+        try (Stream<Path> files = Files.walk(directory.toPath())) {
+            List<Path> temporary = files.filter(file -> file.toString().endsWith(".tmp")).collect(Collectors.toList());
+            assertEquals(0, temporary.size());
+        }
+    }
+}
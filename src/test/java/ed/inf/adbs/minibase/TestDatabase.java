@@ -0,0 +1,183 @@
+package ed.inf.adbs.minibase;
+
+import ed.inf.adbs.minibase.base.Atom;
+import ed.inf.adbs.minibase.base.ComparisonAtom;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.operators.JoinOperator;
+import ed.inf.adbs.minibase.operators.MorselOperator;
+import ed.inf.adbs.minibase.operators.Operator;
+import ed.inf.adbs.minibase.operators.ScanOperator;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import ed.inf.adbs.minibase.utils.Config;
+import ed.inf.adbs.minibase.utils.DatabaseCatalog;
+import ed.inf.adbs.minibase.utils.QueryPlan;
+import ed.inf.adbs.minibase.utils.Tuple;
+import ed.inf.adbs.minibase.utils.TupleBatch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Helper for tests that need a database on disk. The relations are written to a directory
+ * (usually a TemporaryFolder), and open() resets the DatabaseCatalog so that it reads them.
+ */
+public class TestDatabase {
+    /** Directory of the database */
+    private final File directory;
+    /** Lines of the schema file */
+    private final List<String> schema = new ArrayList<>();
+
+    /**
+     * Constructor for the TestDatabase class.
+     *
+     * @param directory directory of the database, which must exist
+     */
+    public TestDatabase(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Method for writing a relation file and adding the relation to the schema.
+     *
+     * @param name name of the relation
+     * @param types types of the columns, e.g. "int string"
+     * @param rows lines of the relation file
+     * @return returns the database, for chaining
+     * @throws IOException if a file could not be written
+     */
+    public TestDatabase relation(String name, String types, List<String> rows) throws IOException {
+        File files = new File(directory, "files");
+        if (!files.isDirectory() && !files.mkdirs()) throw new IOException("Could not create " + files);
+        try (PrintWriter relation = new PrintWriter(new File(files, name + ".csv"))) {
+            for (String row : rows) {
+                relation.print(row + "\n");
+            }
+        }
+        schema.add(name + " " + types);
+        try (PrintWriter file = new PrintWriter(new File(directory, "schema.txt"))) {
+            for (String line : schema) {
+                file.print(line + "\n");
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Method for making the database the one that the DatabaseCatalog reads.
+     *
+     * @return returns the database, for chaining
+     */
+    public TestDatabase open() {
+        DatabaseCatalog.reset();
+        QueryPlan.reset();
+        DatabaseCatalog.getCatalog(directory.getPath());
+        return this;
+    }
+
+    /**
+     * Method for evaluating a query with the current configuration.
+     *
+     * @param query query to evaluate
+     * @return returns the output tuples as text, sorted
+     * @throws IOException if a relation could not be read
+     */
+    public List<String> evaluate(String query) throws IOException {
+        QueryPlan.reset();
+        QueryPlan.getQueryPlan(directory.getPath(), QueryParser.parse(query));
+        Operator root = QueryPlan.getRoot();
+        if (Config.useMorselExecution()) root = new MorselOperator(root);
+        List<String> output = collect(root);
+        QueryPlan.reset();
+        return output;
+    }
+
+    /**
+     * Method for creating a scan of every relational atom in the body of a query.
+     *
+     * @param query query whose body holds the atoms
+     * @return returns the scans, in the order of the atoms
+     * @throws IOException if a relation file does not exist
+     */
+    public static List<Operator> scans(String query) throws IOException {
+        List<Operator> scans = new ArrayList<>();
+        for (Atom atom : QueryParser.parse(query).getBody()) {
+            if (atom instanceof RelationalAtom) {
+                scans.add(new ScanOperator(((RelationalAtom) atom).getName(), (RelationalAtom) atom));
+            }
+        }
+        return scans;
+    }
+
+    /**
+     * Method for joining the relational atoms of a query from left to right with nested loop
+     * JoinOperators, the reference that the other join algorithms are compared with.
+     *
+     * @param query query whose body holds the atoms and the join conditions
+     * @return returns the root of the left-deep join tree
+     * @throws IOException if a relation file does not exist
+     */
+    public static Operator nestedLoopJoin(String query) throws IOException {
+        List<Operator> scans = scans(query);
+        Operator root = scans.get(0);
+        for (int i = 1; i < scans.size(); i++) {
+            root = new JoinOperator(root, scans.get(i), comparisons(query));
+        }
+        return root;
+    }
+
+    /**
+     * Method for getting the comparison atoms in the body of a query.
+     *
+     * @param query query whose body holds the atoms
+     * @return returns the comparison atoms
+     */
+    public static List<ComparisonAtom> comparisons(String query) {
+        List<ComparisonAtom> comparisons = new ArrayList<>();
+        for (Atom atom : QueryParser.parse(query).getBody()) {
+            if (atom instanceof ComparisonAtom) comparisons.add((ComparisonAtom) atom);
+        }
+        return comparisons;
+    }
+
+    /**
+     * Method for reading all tuples of an operator.
+     *
+     * @param operator operator to read
+     * @return returns the tuples as text, sorted
+     * @throws IOException if a relation could not be read
+     */
+    public static List<String> collect(Operator operator) throws IOException {
+        List<String> tuples = new ArrayList<>();
+        Tuple tuple = operator.getNextTuple();
+        while (tuple != null) {
+            tuples.add(tuple.toString().trim());
+            tuple = operator.getNextTuple();
+        }
+        Collections.sort(tuples);
+        return tuples;
+    }
+
+    /**
+     * Method for reading all tuples of an operator through getNextBatch().
+     *
+     * @param operator operator to read
+     * @return returns the tuples as text, sorted
+     * @throws IOException if a relation could not be read
+     */
+    public static List<String> collectBatches(Operator operator) throws IOException {
+        List<String> tuples = new ArrayList<>();
+        TupleBatch batch = operator.getNextBatch();
+        while (batch != null) {
+            for (int i = 0; i < batch.size(); i++) {
+                tuples.add(batch.getTuple(i).toString().trim());
+            }
+            batch = operator.getNextBatch();
+        }
+        Collections.sort(tuples);
+        return tuples;
+    }
+}
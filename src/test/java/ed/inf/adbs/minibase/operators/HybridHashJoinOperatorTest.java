@@ -0,0 +1,87 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.TestDatabase;
+import ed.inf.adbs.minibase.utils.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for HybridHashJoinOperator. The join budget is a few kilobytes, so the build side is
+ * spilled, and the results must be the same as those of the nested loop JoinOperator.
+ */
+public class HybridHashJoinOperatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void createDatabase() throws IOException {
+        System.setProperty(Config.JOIN_BYTES, "2048");
+        Random random = new Random(42);
+        List<String> r = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            r.add(i + ", " + random.nextInt(150) + ", '" + (char) ('a' + random.nextInt(5)) + "'");
+        }
+        List<String> s = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            s.add(random.nextInt(200) + ", " + random.nextInt(600));
+        }
+        // every row of K has the same key, so its partition cannot be split by repartitioning
+        List<String> k = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            k.add("7, " + i);
+        }
+        new TestDatabase(folder.getRoot())
+                .relation("R", "int int string", r)
+                .relation("S", "int int", s)
+                .relation("K", "int int", k)
+                .open();
+    }
+
+    @After
+    public void clearBudget() {
+        System.clearProperty(Config.JOIN_BYTES);
+    }
+
+    /**
+     * With a budget of two kilobytes the build side is spilled to partition files, and the
+     * joins of the partitions give the same tuples as the nested loop join.
+     */
+    @Test
+    public void spilledJoinMatchesNestedLoopJoin() throws IOException {
+        for (String query : new String[]{"Q(a) :- R(a, b, c), S(b, d)", "Q(a) :- R(a, b, c), S(b, d), a < d"}) {
+            List<String> expected = TestDatabase.collect(TestDatabase.nestedLoopJoin(query));
+            assertTrue(expected.size() > 100);
+            List<Operator> scans = TestDatabase.scans(query);
+            Operator join = new HybridHashJoinOperator(scans.get(0), scans.get(1), TestDatabase.comparisons(query));
+            assertEquals(query, expected, TestDatabase.collect(join));
+        }
+    }
+
+    /**
+     * A partition with a single key is still too large at the last partitioning level, where
+     * it is joined in memory, and a reset join reads the spilled partitions again.
+     */
+    @Test
+    public void skewedKeyIsJoinedAtLastLevel() throws IOException {
+        String query = "Q(a) :- K(x, a), K(x, b)";
+        List<String> expected = TestDatabase.collect(TestDatabase.nestedLoopJoin(query));
+        assertEquals(200 * 200, expected.size());
+        List<Operator> scans = TestDatabase.scans(query);
+        Operator join = new HybridHashJoinOperator(scans.get(0), scans.get(1), TestDatabase.comparisons(query));
+        assertEquals(expected, TestDatabase.collect(join));
+        join.reset();
+        assertEquals(expected, TestDatabase.collect(join));
+    }
+}
@@ -0,0 +1,212 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.TestDatabase;
+import ed.inf.adbs.minibase.base.ComparisonAtom;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test for the join algorithms, whose results must be the same as those of the nested loop
+ * JoinOperator. Every algorithm is run on the queries whose join conditions it supports.
+ */
+@RunWith(Parameterized.class)
+public class JoinOperatorTest {
+    /** Queries with an equality join condition, on an int and on a string column */
+    private static final String[] EQUI_JOINS = {
+            "Q(a) :- R(a, b, c), S(b, d)",
+            "Q(a) :- R(a, b, c), S(b, d), a < d",
+            "Q(a) :- R(a, b, c), U(c, e), e > b",
+    };
+    /**
+     * Queries with an inequality and no equality join condition. The int and the string join
+     * columns hold equal values on both sides, and the last query compares an int with a string
+     * column, which no pair of tuples satisfies.
+     */
+    private static final String[] RANGE_JOINS = {
+            "Q(a) :- R(a, b, c), S(x, d), b < d",
+            "Q(a) :- R(a, b, c), S(x, d), b <= d",
+            "Q(a) :- R(a, b, c), S(x, d), b > d",
+            "Q(a) :- R(a, b, c), S(x, d), b >= d, a != x",
+            "Q(a) :- R(a, b, c), U(f, e), c < f",
+            "Q(a) :- R(a, b, c), U(f, e), f <= c",
+            "Q(a) :- R(a, b, c), U(f, e), c > f",
+            "Q(a) :- R(a, b, c), U(f, e), b > f",
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** Name of the join algorithm */
+    private final String name;
+    /** Factory of the join */
+    private final Join join;
+    /** Queries the join supports */
+    private final String[] queries;
+
+    /**
+     * Constructor for the JoinOperatorTest class.
+     *
+     * @param name name of the join algorithm
+     * @param join factory of the join
+     * @param queries queries the join supports
+     */
+    public JoinOperatorTest(String name, Join join, String[] queries) {
+        this.name = name;
+        this.join = join;
+        this.queries = queries;
+    }
+
+    /**
+     * Method for getting the join algorithms that are tested.
+     *
+     * @return returns the name, factory and queries of every join algorithm
+     */
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> joins() {
+        return Arrays.asList(new Object[][]{
+                {"hash", (Join) (scans, conditions) -> new HashJoinOperator(scans.get(0), scans.get(1), conditions), EQUI_JOINS},
+                {"sort-merge", (Join) (scans, conditions) -> new SortMergeJoinOperator(scans.get(0), scans.get(1), conditions), RANGE_JOINS},
+                {"hybrid hash", (Join) (scans, conditions) -> new HybridHashJoinOperator(scans.get(0), scans.get(1), conditions), EQUI_JOINS},
+                {"parallel hash", (Join) (scans, conditions) -> new ParallelHashJoinOperator(scans.get(0), scans.get(1), conditions), EQUI_JOINS},
+                {"leapfrog", (Join) LeapfrogJoinOperator::new, concat(EQUI_JOINS, RANGE_JOINS)},
+                {"semi", (Join) (scans, conditions) -> new SemiJoinOperator(scans.get(0), scans.get(1), conditions), concat(EQUI_JOINS, RANGE_JOINS)},
+        });
+    }
+
+    @Before
+    public void createDatabase() throws IOException {
+        Random random = new Random(42);
+        List<String> r = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            r.add(random.nextInt(100) + ", " + random.nextInt(150) + ", " + letter(random));
+        }
+        r.addAll(new ArrayList<>(r.subList(0, 20)));
+        List<String> s = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            s.add(random.nextInt(200) + ", " + random.nextInt(100));
+        }
+        List<String> u = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            u.add(letter(random) + ", " + random.nextInt(150));
+        }
+        new TestDatabase(folder.getRoot())
+                .relation("R", "int int string", r)
+                .relation("S", "int int", s)
+                .relation("U", "string int", u)
+                .open();
+    }
+
+    /**
+     * Every supported query gives the same tuples as the reference, read through
+     * getNextTuple() and through getNextBatch().
+     */
+    @Test
+    public void joinMatchesNestedLoopJoin() throws IOException {
+        for (String query : queries) {
+            List<String> expected = expected(query);
+            assertEquals(name + ": " + query, expected, TestDatabase.collect(join(query)));
+            assertEquals(name + ": " + query, expected, TestDatabase.collectBatches(join(query)));
+        }
+    }
+
+    /**
+     * A reset join returns the same tuples again.
+     */
+    @Test
+    public void resetJoinReturnsTheSameTuples() throws IOException {
+        Operator operator = join(queries[1]);
+        List<String> first = TestDatabase.collect(operator);
+        operator.reset();
+        assertEquals(name, first, TestDatabase.collect(operator));
+    }
+
+    /**
+     * Helper method for creating the join of the relational atoms of a query.
+     *
+     * @param query query whose body holds the atoms and the join conditions
+     * @return returns the join
+     * @throws IOException if a relation file does not exist
+     */
+    private Operator join(String query) throws IOException {
+        return join.create(TestDatabase.scans(query), TestDatabase.comparisons(query));
+    }
+
+    /**
+     * Helper method for the expected result of a query. For a semi-join these are the tuples of
+     * the left relation that are the prefix of a tuple of the nested loop join, every one of
+     * them once, so duplicate left tuples are kept.
+     *
+     * @param query query whose body holds the atoms and the join conditions
+     * @return returns the sorted tuples
+     * @throws IOException if a relation file does not exist
+     */
+    private List<String> expected(String query) throws IOException {
+        List<String> joined = TestDatabase.collect(TestDatabase.nestedLoopJoin(query));
+        if (!name.equals("semi")) return joined;
+
+        Operator left = TestDatabase.scans(query).get(0);
+        int width = left.getAtom().getTerms().size();
+        Set<String> matched = new HashSet<>();
+        for (String tuple : joined) {
+            matched.add(String.join(",", Arrays.copyOf(tuple.split(","), width)));
+        }
+        List<String> expected = new ArrayList<>();
+        for (String tuple : TestDatabase.collect(left)) {
+            if (matched.contains(tuple)) expected.add(tuple);
+        }
+        return expected;
+    }
+
+    /**
+     * Helper method for generating a quoted string of one letter.
+     *
+     * @param random generator of the letter
+     * @return returns the string constant
+     */
+    private static String letter(Random random) {
+        return "'" + (char) ('a' + random.nextInt(5)) + "'";
+    }
+
+    /**
+     * Helper method for concatenating two lists of queries.
+     *
+     * @param first first queries
+     * @param second second queries
+     * @return returns all queries
+     */
+    private static String[] concat(String[] first, String[] second) {
+        String[] all = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, all, first.length, second.length);
+        return all;
+    }
+
+    /**
+     * Factory of a join of the scans of a query.
+     */
+    interface Join {
+        /**
+         * Method for creating the join.
+         *
+         * @param scans scans of the relational atoms, in the order of the query
+         * @param conditions comparison atoms of the query
+         * @return returns the join
+         */
+        Operator create(List<Operator> scans, List<ComparisonAtom> conditions);
+    }
+}
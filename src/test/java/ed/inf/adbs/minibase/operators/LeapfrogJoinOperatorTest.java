@@ -0,0 +1,80 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.TestDatabase;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for LeapfrogJoinOperator on queries with three atoms, whose results must be the same
+ * as those of a left-deep tree of nested loop joins of the same atoms.
+ */
+public class LeapfrogJoinOperatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void createDatabase() throws IOException {
+        Random random = new Random(42);
+        new TestDatabase(folder.getRoot())
+                .relation("R", "int int", edges(random))
+                .relation("S", "int int", edges(random))
+                .relation("T", "int int", edges(random))
+                .open();
+    }
+
+    /**
+     * The triangle query, whose relations hold duplicate edges, gives every combination of
+     * matching rows, also after the sorted tries have been reset.
+     */
+    @Test
+    public void triangleMatchesNestedLoopJoin() throws IOException {
+        String query = "Q(x) :- R(x, y), S(y, z), T(z, x)";
+        List<String> expected = TestDatabase.collect(TestDatabase.nestedLoopJoin(query));
+        assertTrue(expected.size() > 100);
+        Operator join = new LeapfrogJoinOperator(TestDatabase.scans(query), TestDatabase.comparisons(query));
+        assertEquals(expected, TestDatabase.collect(join));
+        join.reset();
+        assertEquals(expected, TestDatabase.collectBatches(join));
+    }
+
+    /**
+     * Join conditions are checked once their variables are bound, in the triangle query and in
+     * a chain of three atoms.
+     */
+    @Test
+    public void conditionsMatchNestedLoopJoin() throws IOException {
+        for (String query : new String[]{
+                "Q(x) :- R(x, y), S(y, z), T(z, x), x < y, z != x",
+                "Q(x) :- R(x, y), S(y, z), T(z, w), x <= w"}) {
+            List<String> expected = TestDatabase.collect(TestDatabase.nestedLoopJoin(query));
+            assertTrue(expected.size() > 10);
+            Operator join = new LeapfrogJoinOperator(TestDatabase.scans(query), TestDatabase.comparisons(query));
+            assertEquals(query, expected, TestDatabase.collect(join));
+        }
+    }
+
+    /**
+     * Helper method for generating random edges between 30 vertices, some of them duplicates.
+     *
+     * @param random generator of the vertices
+     * @return returns the rows of the relation
+     */
+    private static List<String> edges(Random random) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            rows.add(random.nextInt(30) + ", " + random.nextInt(30));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,69 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.TestDatabase;
+import ed.inf.adbs.minibase.utils.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for ParallelHashJoinOperator with four worker threads and a left child that is
+ * probed in several chunks.
+ */
+public class ParallelHashJoinOperatorTest {
+    /** Number of rows of the left relation, more than one chunk of four threads */
+    private static final int ROWS = 70000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void createDatabase() throws IOException {
+        System.setProperty(Config.PARALLELISM, "4");
+        List<String> left = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            left.add(i + ", " + (i * 31 % 1000));
+        }
+        List<String> right = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            right.add((i * 3) + ", " + i);
+        }
+        new TestDatabase(folder.getRoot())
+                .relation("L", "int int", left)
+                .relation("S", "int int", right)
+                .open();
+    }
+
+    @After
+    public void clearParallelism() {
+        System.clearProperty(Config.PARALLELISM);
+    }
+
+    /**
+     * Every chunk of the left child is joined with the same hash tables, so all chunks together
+     * give the same tuples as the serial hash join, also after a reset.
+     */
+    @Test
+    public void chunksGiveTheSameTuplesAsHashJoin() throws IOException {
+        String query = "Q(a) :- L(a, b), S(b, d)";
+        List<Operator> scans = TestDatabase.scans(query);
+        List<String> expected = TestDatabase.collect(
+                new HashJoinOperator(scans.get(0), scans.get(1), TestDatabase.comparisons(query)));
+        assertTrue(expected.size() > ROWS / 4);
+
+        scans = TestDatabase.scans(query);
+        Operator join = new ParallelHashJoinOperator(scans.get(0), scans.get(1), TestDatabase.comparisons(query));
+        assertEquals(expected, TestDatabase.collectBatches(join));
+        join.reset();
+        assertEquals(expected, TestDatabase.collect(join));
+    }
+}
@@ -0,0 +1,88 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.TestDatabase;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import ed.inf.adbs.minibase.utils.Config;
+import ed.inf.adbs.minibase.utils.Predicate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for ParallelScanOperator, with a file large enough to be split into several chunks.
+ */
+public class ParallelScanOperatorTest {
+    /** Number of rows of the relation, about 2MB */
+    private static final int ROWS = 100000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void createDatabase() throws IOException {
+        System.setProperty(Config.PARALLELISM, "4");
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(i + ", " + (i * 7 % 1000) + ", 'value " + (i % 100) + "'");
+        }
+        new TestDatabase(folder.getRoot()).relation("R", "int int string", rows).open();
+        assertTrue(new File(folder.getRoot(), "files/R.csv").length() > 1 << 20);
+    }
+
+    @After
+    public void clearParallelism() {
+        System.clearProperty(Config.PARALLELISM);
+    }
+
+    /**
+     * The chunks together hold every row exactly once, read through getNextTuple() and
+     * through getNextBatch().
+     */
+    @Test
+    public void chunksGiveTheSameTuplesAsScan() throws IOException {
+        RelationalAtom atom = atom("Q(x) :- R(x, y, z)");
+        List<String> expected = TestDatabase.collect(new ScanOperator("R", atom));
+        assertEquals(ROWS, expected.size());
+        assertEquals(expected, TestDatabase.collect(new ParallelScanOperator("R", atom, null, null)));
+        assertEquals(expected, TestDatabase.collectBatches(new ParallelScanOperator("R", atom, null, null)));
+    }
+
+    /**
+     * The pushed down predicate is evaluated in every chunk, and a reset scan returns the
+     * tuples again.
+     */
+    @Test
+    public void chunksEvaluateThePredicate() throws IOException {
+        RelationalAtom atom = atom("Q(x) :- R(x, y, z), y < 100");
+        Predicate predicate = Predicate.compile(atom, TestDatabase.comparisons("Q(x) :- R(x, y, z), y < 100"),
+                new boolean[]{false, false, true});
+        List<String> expected = TestDatabase.collect(new ScanOperator("R", atom, null, predicate));
+        assertEquals(ROWS / 10, expected.size());
+
+        Operator scan = new ParallelScanOperator("R", atom, null, predicate);
+        assertEquals(expected, TestDatabase.collect(scan));
+        scan.reset();
+        assertEquals(expected, TestDatabase.collectBatches(scan));
+    }
+
+    /**
+     * Helper method for getting the first relational atom of a query.
+     *
+     * @param query query whose body holds the atom
+     * @return returns the atom
+     */
+    private static RelationalAtom atom(String query) {
+        return (RelationalAtom) QueryParser.parse(query).getBody().get(0);
+    }
+}
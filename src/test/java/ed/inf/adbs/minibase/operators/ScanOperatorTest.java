@@ -0,0 +1,70 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.TestDatabase;
+import ed.inf.adbs.minibase.utils.Config;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit test for ScanOperator, which must read a file in the same way with the memory-mapped
+ * scan and with the BufferedReader scan.
+ */
+public class ScanOperatorTest {
+    /** Scan modes to compare */
+    private static final String[] MODES = {"mmap", "reader"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void clearScanMode() {
+        System.clearProperty(Config.SCAN_MODE);
+    }
+
+    /**
+     * Spaces around the fields and Windows line endings give the same tuples in both modes.
+     */
+    @Test
+    public void scanModesReadTheSameTuples() throws IOException {
+        new TestDatabase(folder.getRoot())
+                .relation("R", "int string int", Arrays.asList("1, 'a', 2", "  3,'b b' ,-4\r", "5 , 'c', 6"))
+                .open();
+        List<String> expected = Arrays.asList("1,'a',2", "3,'b b',-4", "5,'c',6");
+        for (String mode : MODES) {
+            System.setProperty(Config.SCAN_MODE, mode);
+            assertEquals(mode, expected, TestDatabase.collect(TestDatabase.scans("Q(x) :- R(x, y, z)").get(0)));
+            assertEquals(mode, expected, TestDatabase.collectBatches(TestDatabase.scans("Q(x) :- R(x, y, z)").get(0)));
+        }
+    }
+
+    /**
+     * A blank line is rejected in both modes, also when it is the last line of the file.
+     */
+    @Test
+    public void scanModesRejectBlankLines() throws IOException {
+        new TestDatabase(folder.getRoot())
+                .relation("R", "int int", Arrays.asList("1, 2", "", "3, 4"))
+                .relation("S", "int int", Arrays.asList("1, 2", "  "))
+                .open();
+        for (String mode : MODES) {
+            System.setProperty(Config.SCAN_MODE, mode);
+            for (String query : new String[]{"Q(x) :- R(x, y)", "Q(x) :- S(x, y)"}) {
+                try {
+                    TestDatabase.collect(TestDatabase.scans(query).get(0));
+                    fail(mode + " scan accepted a blank line: " + query);
+                } catch (IllegalArgumentException e) {
+                    assertEquals("Number of fields in file does not match schema", e.getMessage());
+                }
+            }
+        }
+    }
+}
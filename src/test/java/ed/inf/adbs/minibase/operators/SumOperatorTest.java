@@ -0,0 +1,141 @@
+package ed.inf.adbs.minibase.operators;
+
+import ed.inf.adbs.minibase.TestDatabase;
+import ed.inf.adbs.minibase.utils.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test for the two-phase parallel aggregate of SumOperator, whose results must be the same
+ * as those of the serial aggregate.
+ */
+public class SumOperatorTest {
+    /** Number of rows of the relation, many batches for every worker thread */
+    private static final int ROWS = 60000;
+    /** Queries with and without grouping variables */
+    private static final String[] QUERIES = {
+            "Q(x, SUM(y)) :- R(x, y, z)",
+            "Q(z, x, SUM(y * 2)) :- R(x, y, z)",
+            "Q(z, SUM(1)) :- R(x, y, z), y > 0",
+            "Q(SUM(y)) :- R(x, y, z)",
+            "Q(SUM(x * y)) :- R(x, y, z), z = 'group d'",
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** Database of the tests */
+    private TestDatabase database;
+
+    @Before
+    public void createDatabase() throws IOException {
+        Random random = new Random(42);
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(random.nextInt(5000) + ", " + (random.nextInt(2001) - 1000) + ", 'group " + (char) ('a' + random.nextInt(7)) + "'");
+        }
+        database = new TestDatabase(folder.getRoot()).relation("R", "int int string", rows).open();
+    }
+
+    @After
+    public void clearProperties() {
+        System.clearProperty(Config.PARALLELISM);
+        System.clearProperty(Config.AGGREGATION_BYTES);
+        System.clearProperty(Config.ENGINE);
+    }
+
+    /**
+     * With enough memory the partial tables of the worker threads are merged.
+     */
+    @Test
+    public void parallelSumMatchesSerialSum() throws IOException {
+        for (String query : QUERIES) {
+            assertEquals(query, serial(query), parallel(query));
+        }
+    }
+
+    /**
+     * With a budget of a few kilobytes the partial tables are spilled and aggregated again from
+     * the spilled partitions.
+     */
+    @Test
+    public void spilledParallelSumMatchesSerialSum() throws IOException {
+        for (String query : QUERIES) {
+            List<String> expected = serial(query);
+            System.setProperty(Config.AGGREGATION_BYTES, "4096");
+            assertEquals(query, expected, parallel(query));
+            System.clearProperty(Config.AGGREGATION_BYTES);
+        }
+    }
+
+    /**
+     * The fused pipeline and the morsel executor spill their groups with the same budget, with
+     * one and with four worker threads.
+     */
+    @Test
+    public void spilledSumMatchesInEveryEngine() throws IOException {
+        for (String query : QUERIES) {
+            List<String> expected = serial(query);
+            System.setProperty(Config.AGGREGATION_BYTES, "4096");
+            for (String engine : new String[]{"fused", "morsel"}) {
+                System.setProperty(Config.ENGINE, engine);
+                assertEquals(engine + ": " + query, expected, serial(query));
+                assertEquals(engine + ": " + query, expected, parallel(query));
+            }
+            System.clearProperty(Config.ENGINE);
+            System.clearProperty(Config.AGGREGATION_BYTES);
+        }
+    }
+
+    /**
+     * A product of constants larger than Integer.MAX_VALUE is kept as a long in every engine,
+     * so the sums are the sums of x multiplied by the whole product.
+     */
+    @Test
+    public void constantProductIsNotTruncated() throws IOException {
+        long factor = 100000L * 100000L;
+        List<String> expected = new ArrayList<>();
+        for (String tuple : serial("Q(z, SUM(x)) :- R(x, y, z)")) {
+            String[] values = tuple.split(",");
+            expected.add(values[0] + "," + Long.parseLong(values[1]) * factor);
+        }
+        for (String engine : new String[]{"interpreter", "fused", "morsel"}) {
+            System.setProperty(Config.ENGINE, engine);
+            assertEquals(engine, expected, serial("Q(z, SUM(100000 * 100000 * x)) :- R(x, y, z)"));
+        }
+    }
+
+    /**
+     * Helper method for evaluating a query with a single thread.
+     *
+     * @param query query to evaluate
+     * @return returns the sorted output tuples
+     * @throws IOException if the relation could not be read
+     */
+    private List<String> serial(String query) throws IOException {
+        System.setProperty(Config.PARALLELISM, "1");
+        return database.evaluate(query);
+    }
+
+    /**
+     * Helper method for evaluating a query with four worker threads.
+     *
+     * @param query query to evaluate
+     * @return returns the sorted output tuples
+     * @throws IOException if the relation could not be read
+     */
+    private List<String> parallel(String query) throws IOException {
+        System.setProperty(Config.PARALLELISM, "4");
+        return database.evaluate(query);
+    }
+}
@@ -0,0 +1,70 @@
+package ed.inf.adbs.minibase.utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for ExternalAggregation.
+ */
+public class ExternalAggregationTest {
+
+    /**
+     * A budget of a few kilobytes forces the groups to be spilled, and the spilled partitions
+     * must give the same groups and sums as an in-memory aggregation.
+     */
+    @Test
+    public void spilledGroupsMatchInMemorySums() throws IOException {
+        ExternalAggregation aggregation = new ExternalAggregation(2, 4096);
+        Map<List<Long>, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            long[] key = {random.nextInt(5000), random.nextInt(3)};
+            long value = random.nextInt(1000) - 500;
+            aggregation.add(key, value);
+            expected.merge(Arrays.asList(key[0], key[1]), value, Long::sum);
+        }
+        assertTrue(aggregation.hasSpilled());
+
+        Map<List<Long>, Long> actual = new HashMap<>();
+        GroupTable table = aggregation.nextTable();
+        while (table != null) {
+            Set<List<Long>> tableKeys = new HashSet<>();
+            for (int group = 0; group < table.size(); group++) {
+                List<Long> key = Arrays.asList(table.getKey(group, 0), table.getKey(group, 1));
+                assertTrue(tableKeys.add(key));
+                assertFalse("group returned by two tables: " + key, actual.containsKey(key));
+                actual.put(key, table.getSum(group));
+            }
+            table = aggregation.nextTable();
+        }
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Without spilling the in-memory table is returned as the only table.
+     */
+    @Test
+    public void groupsWithinBudgetAreNotSpilled() throws IOException {
+        ExternalAggregation aggregation = new ExternalAggregation(1, 1 << 20);
+        for (int i = 0; i < 100; i++) {
+            aggregation.add(new long[]{i % 10}, i);
+        }
+        assertFalse(aggregation.hasSpilled());
+        GroupTable table = aggregation.nextTable();
+        assertEquals(10, table.size());
+        assertNull(aggregation.nextTable());
+    }
+}
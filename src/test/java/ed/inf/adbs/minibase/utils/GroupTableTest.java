@@ -0,0 +1,189 @@
+package ed.inf.adbs.minibase.utils;
+
+import ed.inf.adbs.minibase.base.StringConstant;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for GroupTable, whose groups and sums must be the same as those of a hash map of the
+ * grouping values.
+ */
+public class GroupTableTest {
+    /** Layout of the rows, an integer and a string grouping value and an integer value */
+    private static final boolean[] LAYOUT = {false, true, false};
+    /** Slots of the grouping values in the rows */
+    private static final int[] GROUP_SLOTS = {0, 1};
+
+    /**
+     * Groups added row by row and from a batch give the same sums as a hash map, after the table
+     * has grown far past its initial 64 slots.
+     */
+    @Test
+    public void groupsMatchHashMap() {
+        Map<List<Long>, Long> expected = new HashMap<>();
+        GroupTable table = new GroupTable(2);
+        GroupTable batchTable = new GroupTable(2);
+        TupleBatch batch = new TupleBatch(LAYOUT);
+        for (long[] row : rows(new Random(42), 20000)) {
+            table.add(new long[]{row[0], row[1]}, row[2]);
+            expected.merge(Arrays.asList(row[0], row[1]), row[2], Long::sum);
+            batch.addRow(row);
+            if (batch.isFull()) {
+                addBatch(batchTable, batch);
+                batch = new TupleBatch(LAYOUT);
+            }
+        }
+        addBatch(batchTable, batch);
+        assertTrue(expected.size() > 1000);
+        assertEquals(expected, sums(Arrays.asList(table)));
+        assertEquals(expected, sums(Arrays.asList(batchTable)));
+    }
+
+    /**
+     * Merging the partial tables of four threads gives tables with disjoint groups, every one in
+     * the partition of its merged table, which together hold the same sums as a hash map.
+     */
+    @Test
+    public void mergedTablesHoldDisjointGroups() {
+        Map<List<Long>, Long> expected = new HashMap<>();
+        List<GroupTable> partials = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 4; i++) {
+            GroupTable partial = new GroupTable(2);
+            for (long[] row : rows(random, 5000)) {
+                partial.add(new long[]{row[0], row[1]}, row[2]);
+                expected.merge(Arrays.asList(row[0], row[1]), row[2], Long::sum);
+            }
+            partials.add(partial);
+        }
+
+        List<GroupTable> merged = GroupTable.merge(partials, 2);
+        assertEquals(4, merged.size());
+        for (int part = 0; part < merged.size(); part++) {
+            GroupTable table = merged.get(part);
+            assertTrue(table.size() > 0);
+            for (int group = 0; group < table.size(); group++) {
+                assertEquals(part, table.getPartition(group, 4, 0));
+            }
+        }
+        assertEquals(expected, sums(merged));
+    }
+
+    /**
+     * A group is in the same partition in every table, and the groups of one partition are split
+     * again at the next level, so that a spilled partition can be partitioned once more.
+     */
+    @Test
+    public void partitionsAreStableAndSplitAgain() {
+        GroupTable table = new GroupTable(2);
+        GroupTable reversed = new GroupTable(2);
+        List<long[]> rows = rows(new Random(42), 5000);
+        for (long[] row : rows) {
+            table.add(new long[]{row[0], row[1]}, row[2]);
+        }
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            reversed.add(new long[]{rows.get(i)[0], rows.get(i)[1]}, rows.get(i)[2]);
+        }
+        Map<List<Long>, Integer> reversedGroups = new HashMap<>();
+        for (int group = 0; group < reversed.size(); group++) {
+            reversedGroups.put(key(reversed, group), group);
+        }
+
+        for (int level = 0; level < GroupTable.PARTITION_LEVELS; level++) {
+            Set<Integer> used = new HashSet<>();
+            Set<Integer> nextLevel = new HashSet<>();
+            for (int group = 0; group < table.size(); group++) {
+                int part = table.getPartition(group, 8, level);
+                assertTrue(part >= 0 && part < 8);
+                used.add(part);
+                int other = reversedGroups.get(key(table, group));
+                assertEquals(part, reversed.getPartition(other, 8, level));
+                if (part == 0 && level + 1 < GroupTable.PARTITION_LEVELS) {
+                    nextLevel.add(table.getPartition(group, 8, level + 1));
+                }
+            }
+            assertEquals(8, used.size());
+            assertFalse(level + 1 < GroupTable.PARTITION_LEVELS && nextLevel.size() < 2);
+        }
+        for (int hash : new int[]{0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE, 123456789}) {
+            for (int level = 0; level < GroupTable.PARTITION_LEVELS; level++) {
+                int part = GroupTable.partition(hash, 5, level);
+                assertTrue(part >= 0 && part < 5);
+                assertEquals(0, GroupTable.partition(hash, 1, level));
+            }
+        }
+    }
+
+    /**
+     * Helper method for generating random rows with an integer and a string grouping value and
+     * a value that can be negative.
+     *
+     * @param random generator of the values
+     * @param count number of rows
+     * @return returns the rows
+     */
+    private static List<long[]> rows(Random random, int count) {
+        List<long[]> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = String.valueOf((char) ('a' + random.nextInt(5)));
+            rows.add(new long[]{random.nextInt(400) - 200, Tuple.encode(new StringConstant(name)),
+                    random.nextInt(1000) - 500});
+        }
+        return rows;
+    }
+
+    /**
+     * Helper method for adding every row of a batch to a table, grouped by its first two columns
+     * and summing its last column.
+     *
+     * @param table table to add the rows to
+     * @param batch batch of rows
+     */
+    private static void addBatch(GroupTable table, TupleBatch batch) {
+        for (int row = 0; row < batch.size(); row++) {
+            table.add(batch, GROUP_SLOTS, row, batch.getColumn(2)[row]);
+        }
+    }
+
+    /**
+     * Helper method for collecting the sums of tables that hold disjoint groups, checking that
+     * no group appears twice.
+     *
+     * @param tables tables with two grouping values
+     * @return returns the sums by grouping values
+     */
+    private static Map<List<Long>, Long> sums(List<GroupTable> tables) {
+        Map<List<Long>, Long> sums = new HashMap<>();
+        for (GroupTable table : tables) {
+            for (int group = 0; group < table.size(); group++) {
+                List<Long> key = key(table, group);
+                assertFalse("group returned twice: " + key, sums.containsKey(key));
+                sums.put(key, table.getSum(group));
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * Helper method for getting the grouping values of a group.
+     *
+     * @param table table with two grouping values
+     * @param group group number
+     * @return returns the grouping values
+     */
+    private static List<Long> key(GroupTable table, int group) {
+        return Arrays.asList(table.getKey(group, 0), table.getKey(group, 1));
+    }
+}
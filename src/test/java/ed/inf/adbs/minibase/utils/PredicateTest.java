@@ -0,0 +1,142 @@
+package ed.inf.adbs.minibase.utils;
+
+import ed.inf.adbs.minibase.TestDatabase;
+import ed.inf.adbs.minibase.base.ComparisonAtom;
+import ed.inf.adbs.minibase.base.Constant;
+import ed.inf.adbs.minibase.base.IntegerConstant;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.base.StringConstant;
+import ed.inf.adbs.minibase.base.Term;
+import ed.inf.adbs.minibase.parser.QueryParser;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test for the predicates built by Predicate.compile(), which must select the same rows as
+ * the conditions evaluated on the constants of every row.
+ */
+public class PredicateTest {
+    /** Layout of the tuples of R(x, y, z) */
+    private static final boolean[] LAYOUT = {false, false, true};
+    /** Queries with every operator, constants on either side, and conditions between columns */
+    private static final String[] QUERIES = {
+            "Q(x) :- R(x, y, z), x = 3",
+            "Q(x) :- R(x, y, z), x != 3, 5 > y",
+            "Q(x) :- R(x, y, z), x < y",
+            "Q(x) :- R(x, y, z), x <= y, y >= 4",
+            "Q(x) :- R(x, y, z), 2 <= x, x > y",
+            "Q(x) :- R(x, y, z), z = 'c'",
+            "Q(x) :- R(x, y, z), 'b' < z, z <= 'd'",
+            "Q(x) :- R(x, y, z), z >= 'd', z != 'e'",
+            "Q(x) :- R(x, 4, z), z > 'a'",
+            "Q(x) :- R(x, y, 'b'), y != x",
+            "Q(x) :- R(x, y, z), x < z",
+            "Q(x) :- R(x, y, z), z = 3",
+            "Q(x) :- R(x, y, z), 1 < 2, y = 7",
+            "Q(x) :- R(x, y, z), 'a' > 'b'",
+    };
+
+    /**
+     * Every compiled predicate selects the same rows as the reference, on single tuples with
+     * test(), on a batch with filter(), and split by the last column that its comparisons read.
+     */
+    @Test
+    public void compiledPredicatesMatchConditions() {
+        List<Tuple> tuples = new ArrayList<>();
+        TupleBatch batch = new TupleBatch(LAYOUT);
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 10; y++) {
+                for (char z = 'a'; z <= 'e'; z++) {
+                    long[] values = {x, y, Tuple.encode(new StringConstant(String.valueOf(z)))};
+                    tuples.add(new Tuple(values, LAYOUT));
+                    batch.addRow(values);
+                }
+            }
+        }
+
+        for (String query : QUERIES) {
+            RelationalAtom atom = (RelationalAtom) QueryParser.parse(query).getBody().get(0);
+            List<ComparisonAtom> conditions = TestDatabase.comparisons(query);
+            Predicate predicate = Predicate.compile(atom, conditions, LAYOUT);
+            Predicate[] split = predicate.splitByLastSlot(LAYOUT.length);
+
+            List<String> expected = new ArrayList<>();
+            List<String> tested = new ArrayList<>();
+            List<String> splitTested = new ArrayList<>();
+            for (Tuple tuple : tuples) {
+                if (holds(atom, conditions, tuple)) expected.add(tuple.toString());
+                if (predicate.test(tuple)) tested.add(tuple.toString());
+                boolean all = true;
+                for (Predicate part : split) {
+                    all = all && part.test(tuple);
+                }
+                if (all) splitTested.add(tuple.toString());
+            }
+            assertEquals(query, expected, tested);
+            assertEquals(query, expected, splitTested);
+
+            TupleBatch view = batch.view();
+            view.setSize(predicate.filter(view));
+            List<String> filtered = new ArrayList<>();
+            for (int i = 0; i < view.size(); i++) {
+                filtered.add(view.getTuple(i).toString());
+            }
+            assertEquals(query, expected, filtered);
+        }
+    }
+
+    /**
+     * Helper method for the reference evaluation of the constants of an atom and the conditions
+     * on a tuple, by comparing the constants of its fields.
+     *
+     * @param atom base relational atom
+     * @param conditions selection conditions
+     * @param tuple tuple of the atom
+     * @return returns true if the tuple matches the constants and satisfies the conditions
+     */
+    private static boolean holds(RelationalAtom atom, List<ComparisonAtom> conditions, Tuple tuple) {
+        List<Term> terms = atom.getTerms();
+        for (int i = 0; i < terms.size(); i++) {
+            Term term = terms.get(i);
+            if (term instanceof Constant && !term.equals(tuple.getConstant(i))) return false;
+        }
+        for (ComparisonAtom condition : conditions) {
+            Constant left = value(condition.getTerm1(), terms, tuple);
+            Constant right = value(condition.getTerm2(), terms, tuple);
+            int comparison;
+            if (left instanceof IntegerConstant && right instanceof IntegerConstant) {
+                comparison = ((IntegerConstant) left).compareTo((IntegerConstant) right);
+            } else if (left instanceof StringConstant && right instanceof StringConstant) {
+                comparison = ((StringConstant) left).compareTo((StringConstant) right);
+            } else {
+                return false;
+            }
+            switch (condition.getOp()) {
+                case EQ: if (comparison != 0) return false; break;
+                case NEQ: if (comparison == 0) return false; break;
+                case LT: if (comparison >= 0) return false; break;
+                case LEQ: if (comparison > 0) return false; break;
+                case GT: if (comparison <= 0) return false; break;
+                case GEQ: if (comparison < 0) return false; break;
+                default: throw new IllegalArgumentException("Unrecognized comparison operator");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper method for getting the constant that a term of a condition stands for in a tuple.
+     *
+     * @param term variable or constant of the condition
+     * @param terms terms of the base relational atom
+     * @param tuple tuple of the atom
+     * @return returns the constant
+     */
+    private static Constant value(Term term, List<Term> terms, Tuple tuple) {
+        return term instanceof Constant ? (Constant) term : tuple.getConstant(terms.indexOf(term));
+    }
+}
@@ -0,0 +1,81 @@
+package ed.inf.adbs.minibase.utils;
+
+import ed.inf.adbs.minibase.TestDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test for the query plans built by QueryPlan.
+ */
+public class QueryPlanTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** Database of the tests */
+    private TestDatabase database;
+
+    @After
+    public void clearProperties() {
+        System.clearProperty(Config.ENGINE);
+        System.clearProperty(Config.SEMIJOIN);
+    }
+
+    @Before
+    public void createDatabase() throws IOException {
+        database = new TestDatabase(folder.getRoot())
+                .relation("R", "int int string", Arrays.asList("1, 9, 'a'", "1, 8, 'b'", "2, 7, 'c'"))
+                .relation("S", "int int", Arrays.asList("1, 5", "2, 6", "3, 7"))
+                .relation("T", "int int", Arrays.asList("5, 1", "5, 2", "7, 3"))
+                .open();
+    }
+
+    /**
+     * A condition between two constants that is true does not remove any tuples.
+     */
+    @Test
+    public void trueGroundComparisonIsIgnored() throws IOException {
+        assertEquals(Arrays.asList("8", "9"), database.evaluate("Q(y) :- R(1, y, z), 1 < 2"));
+        assertEquals(Arrays.asList("7", "8", "9"), database.evaluate("Q(y) :- R(x, y, z), 'a' = 'a'"));
+        assertEquals(Arrays.asList("7,6", "8,5", "9,5"), database.evaluate("Q(y, w) :- R(x, y, z), S(x, w), 2 >= 2"));
+    }
+
+    /**
+     * A condition between two constants that is false removes every tuple, also when no
+     * relational atom holds one of the constants.
+     */
+    @Test
+    public void falseGroundComparisonGivesNoTuples() throws IOException {
+        assertEquals(Collections.emptyList(), database.evaluate("Q(y) :- R(1, y, z), 1 > 2"));
+        assertEquals(Collections.emptyList(), database.evaluate("Q(y) :- R(x, y, z), 1 > 2"));
+        assertEquals(Collections.emptyList(), database.evaluate("Q(y) :- R(x, y, z), 1 = 'a'"));
+        assertEquals(Collections.emptyList(), database.evaluate("Q(y, w) :- R(x, y, z), S(x, w), 'b' < 'a'"));
+    }
+
+    /**
+     * An atom whose variables are not needed above its join is joined with a SemiJoinOperator,
+     * and every engine gives the same tuples with and without the semi-join reduction.
+     */
+    @Test
+    public void existentialAtomGivesTheSameTuplesInEveryEngine() throws IOException {
+        for (String engine : new String[]{"interpreter", "fused", "morsel"}) {
+            for (String semijoin : new String[]{"on", "off"}) {
+                System.setProperty(Config.ENGINE, engine);
+                System.setProperty(Config.SEMIJOIN, semijoin);
+                String plan = engine + ", semijoin " + semijoin;
+                assertEquals(plan, Arrays.asList("8,5", "9,5"), database.evaluate("Q(y, w) :- R(x, y, z), S(x, w), T(w, v)"));
+                assertEquals(plan, Arrays.asList("5", "7"), database.evaluate("Q(w) :- S(x, w), T(w, v), R(u, t, z)"));
+                assertEquals(plan, Collections.emptyList(), database.evaluate("Q(y) :- R(x, y, z), S(x, w), T(w, v), v > 2"));
+            }
+        }
+    }
+}
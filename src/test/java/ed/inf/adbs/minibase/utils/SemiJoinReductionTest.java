@@ -0,0 +1,114 @@
+package ed.inf.adbs.minibase.utils;
+
+import ed.inf.adbs.minibase.TestDatabase;
+import ed.inf.adbs.minibase.base.RelationalAtom;
+import ed.inf.adbs.minibase.operators.JoinOperator;
+import ed.inf.adbs.minibase.operators.Operator;
+import ed.inf.adbs.minibase.operators.ReducedScanOperator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for SemiJoinReduction on an acyclic query whose relations hold dangling tuples.
+ */
+public class SemiJoinReductionTest {
+    /** Acyclic query, a chain with a branch */
+    private static final String QUERY = "Q(a) :- R(a, b), S(b, c), T(c, d), U(b, e)";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void createDatabase() throws IOException {
+        Random random = new Random(42);
+        new TestDatabase(folder.getRoot())
+                .relation("R", "int int", rows(random))
+                .relation("S", "int int", rows(random))
+                .relation("T", "int int", rows(random))
+                .relation("U", "int int", rows(random))
+                .open();
+    }
+
+    /**
+     * After the reduction every relation holds exactly the tuples that are part of a result of
+     * the join, and some dangling tuples have been removed.
+     */
+    @Test
+    public void reducedRelationsAreProjectionsOfTheJoin() throws IOException {
+        List<String> join = TestDatabase.collect(TestDatabase.nestedLoopJoin(QUERY));
+        assertTrue(join.size() > 10);
+
+        List<Operator> scans = TestDatabase.scans(QUERY);
+        SemiJoinReduction reduction = reduction(scans);
+        int offset = 0;
+        for (int i = 0; i < scans.size(); i++) {
+            int width = scans.get(i).getAtom().getTerms().size();
+            TreeSet<String> expected = new TreeSet<>();
+            for (String tuple : join) {
+                String[] values = tuple.split(",");
+                expected.add(String.join(",", Arrays.copyOfRange(values, offset, offset + width)));
+            }
+            List<String> reduced = TestDatabase.collect(new ReducedScanOperator(reduction, i));
+            List<String> relation = TestDatabase.collect(TestDatabase.scans(QUERY).get(i));
+            assertEquals(expected, new TreeSet<>(reduced));
+            assertTrue(reduced.size() < relation.size());
+            offset = offset + width;
+        }
+    }
+
+    /**
+     * Joining the reduced relations gives the same tuples as joining the relations, with the
+     * duplicate tuples kept.
+     */
+    @Test
+    public void joinOfReducedRelationsMatchesJoin() throws IOException {
+        List<String> expected = TestDatabase.collect(TestDatabase.nestedLoopJoin(QUERY));
+        SemiJoinReduction reduction = reduction(TestDatabase.scans(QUERY));
+        Operator root = new ReducedScanOperator(reduction, 0);
+        for (int i = 1; i < 4; i++) {
+            root = new JoinOperator(root, new ReducedScanOperator(reduction, i), TestDatabase.comparisons(QUERY));
+        }
+        assertEquals(expected, TestDatabase.collect(root));
+    }
+
+    /**
+     * Helper method for generating random rows, so that some tuples of every relation do not
+     * match any tuple of its neighbours.
+     *
+     * @param random generator of the values
+     * @return returns the rows of the relation
+     */
+    private static List<String> rows(Random random) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            rows.add(random.nextInt(60) + ", " + random.nextInt(60));
+        }
+        return rows;
+    }
+
+    /**
+     * Helper method for the semi-join reduction of scans.
+     *
+     * @param scans scans of the relational atoms of the query
+     * @return returns the reduction
+     */
+    private static SemiJoinReduction reduction(List<Operator> scans) {
+        List<RelationalAtom> atoms = new ArrayList<>();
+        for (Operator scan : scans) {
+            atoms.add(scan.getAtom());
+        }
+        return new SemiJoinReduction(scans, new Hypergraph(atoms));
+    }
+}